@@ -36,6 +36,12 @@ import org.jboss.resteasy.annotations.providers.multipart.PartType;
  * subsequent parts. The document is parsed when the final part is sent with
  * last=TRUE.
  *
+ * Chunks may also set 'chunkIndex' (starting from 0 for the first part). Once
+ * the first part has returned an uploadId, chunks with an index may be sent in
+ * any order, and concurrently, as long as the final part is only sent after
+ * all the others have been accepted. Chunks without an index are joined in the
+ * order they are received.
+ *
  * Hash should always be set to the md5 hash of the entire document. For chunked
  * upload, the hash is checked against the complete document after the chunks
  * are joined.
@@ -75,6 +81,10 @@ public class DocumentFileUploadForm implements Serializable {
     @PartType("text/plain")
     private Long size;
 
+    @FormParam("chunkIndex")
+    @PartType("text/plain")
+    private Integer chunkIndex;
+
     @FormParam("adapterParams")
     @PartType("text/plain")
     private String adapterParams;
@@ -135,6 +145,14 @@ public class DocumentFileUploadForm implements Serializable {
         this.size = size;
     }
 
+    public Integer getChunkIndex() {
+        return chunkIndex;
+    }
+
+    public void setChunkIndex(Integer chunkIndex) {
+        this.chunkIndex = chunkIndex;
+    }
+
     public String getAdapterParams() {
         return adapterParams;
     }
@@ -21,11 +21,13 @@
 package org.zanata.rest.service;
 
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 
 import org.zanata.rest.dto.CopyTransStatus;
@@ -51,6 +53,10 @@ public interface CopyTransResource extends RestResource {
      *            Project version identifier
      * @param docId
      *            Document Id to copy translations into.
+     * @param incremental
+     *            If true, only copy translations into the text flows which
+     *            were added or changed since the last completed translation
+     *            copy for each locale. Defaults to false.
      * @return The following response status codes will be returned from this
      *         operation:<br>
      *         OK(200) - Translation copy was started for the given document.
@@ -70,7 +76,9 @@ public interface CopyTransResource extends RestResource {
             CopyTransStatus startCopyTrans(
                     @PathParam("projectSlug") String projectSlug,
                     @PathParam("iterationSlug") String iterationSlug,
-                    @PathParam("docId") String docId);
+                    @PathParam("docId") String docId,
+                    @QueryParam("incremental") @DefaultValue("false")
+                    boolean incremental);
 
     /**
      * Retrieves the status for a Translation copy process for a document.
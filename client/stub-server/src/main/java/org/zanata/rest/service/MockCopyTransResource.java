@@ -33,7 +33,7 @@ import org.zanata.rest.dto.CopyTransStatus;
 public class MockCopyTransResource implements CopyTransResource {
     @Override
     public CopyTransStatus startCopyTrans(String projectSlug,
-            String iterationSlug, String docId) {
+            String iterationSlug, String docId, boolean incremental) {
         CopyTransStatus copyTransStatus = new CopyTransStatus();
         copyTransStatus.setInProgress(true);
         copyTransStatus.setPercentageComplete(50);
@@ -46,6 +46,7 @@ public class PushOptionsImpl extends AbstractPushPullOptionsImpl<PushOptions>
     private static final boolean DEF_COPYTRANS = false;
     private static final boolean DEF_MY_TRANS = false;
     private static final int DEF_CHUNK_SIZE = 1024 * 1024;
+    private static final int DEF_PARALLEL_CHUNKS = 1;
     /** @see org.zanata.common.MergeType for options */
     private static final String DEF_MERGE_TYPE = "AUTO";
     private static final String DEF_PUSH_TYPE = "source";
@@ -58,6 +59,7 @@ public class PushOptionsImpl extends AbstractPushPullOptionsImpl<PushOptions>
     private String mergeType = DEF_MERGE_TYPE;
     private boolean caseSensitive = DEF_CASE_SENSITIVE;
     private int chunkSize = DEF_CHUNK_SIZE;
+    private int parallelChunks = DEF_PARALLEL_CHUNKS;
     private boolean excludeLocaleFilenames = DEF_EXCLUDE_LOCALES;
     private boolean copyTrans = DEF_COPYTRANS;
     private String pushType = DEF_PUSH_TYPE;
@@ -190,6 +192,21 @@ public class PushOptionsImpl extends AbstractPushPullOptionsImpl<PushOptions>
         this.chunkSize = chunkSize;
     }
 
+    @Override
+    public int getParallelChunks() {
+        return parallelChunks;
+    }
+
+    @Option(
+            name = "--parallel-chunks",
+            metaVar = "N",
+            usage = "Number of document chunks to transmit at the same time. Values above 1\n"
+                    + "can make uploads of large documents much faster over slow\n"
+                    + "connections, but require a server which accepts chunks out of order.")
+    public void setParallelChunks(int parallelChunks) {
+        this.parallelChunks = parallelChunks;
+    }
+
     @Override
     public ImmutableList<String> getFileTypes() {
         return fileTypes;
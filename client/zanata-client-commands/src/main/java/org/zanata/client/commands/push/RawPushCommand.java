@@ -22,11 +22,15 @@ package org.zanata.client.commands.push;
 
 import java.io.ByteArrayInputStream;
 import java.io.Closeable;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -42,12 +46,17 @@ import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
 import javax.ws.rs.NotFoundException;
+import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ResponseProcessingException;
 
 import com.google.common.collect.ImmutableMap;
@@ -548,7 +557,8 @@ public class RawPushCommand extends PushPullCommand<PushOptions> {
      * @param locale
      * @param docFile
      */
-    private void pushDocumentToServer(String docId, String fileType,
+    @VisibleForTesting
+    void pushDocumentToServer(String docId, String fileType,
             @Nullable String locale, File docFile) {
         try {
             String md5hash = calculateFileHash(docFile);
@@ -561,6 +571,9 @@ public class RawPushCommand extends PushPullCommand<PushOptions> {
                                     docFile.length(), fileStream);
                     uploadDocumentPart(docId, locale, uploadForm);
                 }
+            } else if (getOpts().getParallelChunks() > 1) {
+                pushDocumentInParallelChunks(docId, fileType, locale, docFile,
+                        md5hash);
             } else {
                 try (StreamChunker chunker = new StreamChunker(docFile,
                         getOpts().getChunkSize())) {
@@ -601,6 +614,108 @@ public class RawPushCommand extends PushPullCommand<PushOptions> {
         }
     }
 
+    /**
+     * Sends the first chunk to get an upload id, then the middle chunks
+     * concurrently, then the last chunk once all the others have been
+     * accepted. Chunks are numbered so that the server can join them in the
+     * right order.
+     */
+    private void pushDocumentInParallelChunks(String docId, String fileType,
+            @Nullable String locale, File docFile, String md5hash)
+            throws IOException {
+        int chunkSize = getOpts().getChunkSize();
+        int totalChunks =
+                (int) ((docFile.length() + chunkSize - 1) / chunkSize);
+        int parallelChunks = getOpts().getParallelChunks();
+        log.info("    transmitting file [{}] as {} chunks, {} at a time",
+                docFile.getAbsolutePath(), totalChunks, parallelChunks);
+        try (FileChannel channel = FileChannel.open(docFile.toPath(),
+                StandardOpenOption.READ)) {
+            log.info("        pushing chunk 1 of {}", totalChunks);
+            ChunkUploadResponse uploadResponse = uploadDocumentPart(docId,
+                    locale, generateChunkUploadForm(channel, 0, totalChunks,
+                            fileType, md5hash, null));
+            Long uploadId = uploadResponse.getUploadId();
+            if (uploadId == null) {
+                throw new RuntimeException("server did not return upload id");
+            }
+
+            // the default client only has one connection, so the middle
+            // chunks need a client which can hold one per thread
+            Client pooledClient =
+                    getClientFactory().newPooledClient(parallelChunks);
+            FileResourceClient pooledFileClient =
+                    getClientFactory().getFileResourceClient(pooledClient);
+            ExecutorService executor =
+                    Executors.newFixedThreadPool(parallelChunks);
+            ConsoleUtils.startProgressFeedback();
+            try {
+                List<Future<ChunkUploadResponse>> responses =
+                        new ArrayList<>();
+                for (int i = 1; i < totalChunks - 1; i++) {
+                    int chunkIndex = i;
+                    // each chunk is read when its upload starts, so only
+                    // parallelChunks chunks are held in memory
+                    responses.add(executor.submit(() -> {
+                        log.info("        pushing chunk {} of {}",
+                                chunkIndex + 1, totalChunks);
+                        return sendDocumentPart(pooledFileClient, docId,
+                                locale, generateChunkUploadForm(channel, chunkIndex,
+                                        totalChunks, fileType, md5hash,
+                                        uploadId));
+                    }));
+                }
+                for (Future<ChunkUploadResponse> response : responses) {
+                    String errorMessage = response.get().getErrorMessage();
+                    if (errorMessage != null) {
+                        throw new RuntimeException(
+                                "server rejected chunk: " + errorMessage);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            } finally {
+                executor.shutdownNow();
+                pooledClient.close();
+                ConsoleUtils.endProgressFeedback();
+            }
+
+            log.info("        pushing chunk {} of {}", totalChunks,
+                    totalChunks);
+            uploadDocumentPart(docId, locale,
+                    generateChunkUploadForm(channel, totalChunks - 1,
+                            totalChunks, fileType, md5hash, uploadId));
+        }
+    }
+
+    /**
+     * Reads one chunk of the file. Positional reads do not change the state
+     * of the channel, so chunks can be read concurrently.
+     */
+    private DocumentFileUploadForm generateChunkUploadForm(
+            FileChannel channel, int chunkIndex, int totalChunks,
+            String fileType, String md5hash, @Nullable Long uploadId)
+            throws IOException {
+        long position = (long) chunkIndex * getOpts().getChunkSize();
+        int size = (int) Math.min(getOpts().getChunkSize(),
+                channel.size() - position);
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("file is shorter than expected");
+            }
+        }
+        DocumentFileUploadForm uploadForm = generateUploadForm(
+                chunkIndex == 0, chunkIndex == totalChunks - 1, fileType,
+                md5hash, size, new ByteArrayInputStream(buffer.array()));
+        uploadForm.setChunkIndex(chunkIndex);
+        uploadForm.setUploadId(uploadId);
+        return uploadForm;
+    }
+
     private DocumentFileUploadForm generateUploadForm(boolean isFirst,
             boolean isLast, String fileType, String md5hash, long streamSize,
             InputStream fileStream) {
@@ -617,19 +732,31 @@ public class RawPushCommand extends PushPullCommand<PushOptions> {
     private ChunkUploadResponse uploadDocumentPart(
             String docName, @Nullable String locale, DocumentFileUploadForm uploadForm) {
         ConsoleUtils.startProgressFeedback();
+        ChunkUploadResponse response =
+                sendDocumentPart(client, docName, locale, uploadForm);
+        ConsoleUtils.endProgressFeedback();
+        return response;
+    }
+
+    /**
+     * Uploads a chunk without progress feedback, so it is safe to call from
+     * several threads as long as the file client has enough connections.
+     */
+    private ChunkUploadResponse sendDocumentPart(
+            FileResourceClient fileClient, String docName,
+            @Nullable String locale, DocumentFileUploadForm uploadForm) {
         ChunkUploadResponse response;
         if (locale == null) {
             response =
-                    client.uploadSourceFile(getOpts().getProj(),
+                    fileClient.uploadSourceFile(getOpts().getProj(),
                             getOpts().getProjectVersion(), docName, uploadForm);
         } else {
             response =
-                    client.uploadTranslationFile(getOpts().getProj(),
+                    fileClient.uploadTranslationFile(getOpts().getProj(),
                             getOpts().getProjectVersion(), locale, docName,
                             getOpts().getMergeType(), uploadForm);
         }
         log.debug("response from server: {}", response);
-        ConsoleUtils.endProgressFeedback();
         return response;
     }
 
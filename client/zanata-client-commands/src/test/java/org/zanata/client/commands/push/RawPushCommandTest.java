@@ -1,21 +1,41 @@
 package org.zanata.client.commands.push;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.ws.rs.client.Client;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.stubbing.Answer;
 import org.zanata.client.commands.ConsoleInteractor;
 import org.zanata.common.FileTypeName;
+import org.zanata.rest.DocumentFileUploadForm;
+import org.zanata.rest.client.FileResourceClient;
 import org.zanata.rest.client.RestClientFactory;
+import org.zanata.rest.dto.ChunkUploadResponse;
 
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -29,6 +49,14 @@ public class RawPushCommandTest {
     private RestClientFactory clientFactory;
     @Mock
     private ConsoleInteractor console;
+    @Mock
+    private FileResourceClient fileClient;
+    @Mock
+    private FileResourceClient pooledFileClient;
+    @Mock
+    private Client pooledClient;
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
 
     private RawPushCommand command;
 
@@ -38,6 +66,7 @@ public class RawPushCommandTest {
         when(opts.getProj()).thenReturn("project");
         when(opts.getProjectVersion()).thenReturn("version");
         when(opts.getProjectType()).thenReturn("File");
+        when(clientFactory.getFileResourceClient()).thenReturn(fileClient);
         command = new RawPushCommand(opts, clientFactory, console);
     }
 
@@ -101,4 +130,80 @@ public class RawPushCommandTest {
                 command.extractExtensions(fileNameAndExtension).keySet();
         assertThat(extensions.size(), equalTo(0));
     }
+
+    @Test
+    public void parallelChunksUsePooledClient() throws IOException {
+        File docFile = tempFolder.newFile("doc.txt");
+        FileUtils.writeStringToFile(docFile, "abcdefghijk", "UTF-8");
+        when(opts.getChunkSize()).thenReturn(3);
+        when(opts.getParallelChunks()).thenReturn(2);
+        when(clientFactory.newPooledClient(2)).thenReturn(pooledClient);
+        when(clientFactory.getFileResourceClient(pooledClient))
+                .thenReturn(pooledFileClient);
+        Map<Integer, DocumentFileUploadForm> forms =
+                new ConcurrentHashMap<>();
+        Map<Integer, String> contents = new ConcurrentHashMap<>();
+        Answer<ChunkUploadResponse> recordChunk = invocation -> {
+            DocumentFileUploadForm form =
+                    (DocumentFileUploadForm) invocation.getArguments()[3];
+            forms.put(form.getChunkIndex(), form);
+            contents.put(form.getChunkIndex(),
+                    IOUtils.toString(form.getFileStream(), "UTF-8"));
+            ChunkUploadResponse response = new ChunkUploadResponse();
+            response.setUploadId(7L);
+            return response;
+        };
+        when(fileClient.uploadSourceFile(anyString(), anyString(),
+                anyString(), any(DocumentFileUploadForm.class)))
+                .thenAnswer(recordChunk);
+        when(pooledFileClient.uploadSourceFile(anyString(), anyString(),
+                anyString(), any(DocumentFileUploadForm.class)))
+                .thenAnswer(recordChunk);
+
+        command.pushDocumentToServer("doc.txt", "txt", null, docFile);
+
+        // first and last chunks go through the default client, the middle
+        // ones through the pooled client
+        verify(fileClient, times(2)).uploadSourceFile(eq("project"),
+                eq("version"), eq("doc.txt"),
+                any(DocumentFileUploadForm.class));
+        verify(pooledFileClient, times(2)).uploadSourceFile(eq("project"),
+                eq("version"), eq("doc.txt"),
+                any(DocumentFileUploadForm.class));
+        verify(pooledClient).close();
+        assertThat(contents.keySet(), containsInAnyOrder(0, 1, 2, 3));
+        assertThat(contents.get(0), equalTo("abc"));
+        assertThat(contents.get(1), equalTo("def"));
+        assertThat(contents.get(2), equalTo("ghi"));
+        assertThat(contents.get(3), equalTo("jk"));
+        assertThat(forms.get(0).getFirst(), equalTo(true));
+        assertThat(forms.get(0).getUploadId(), nullValue());
+        assertThat(forms.get(3).getLast(), equalTo(true));
+        for (int i = 1; i < 4; i++) {
+            assertThat(forms.get(i).getFirst(), equalTo(false));
+            assertThat(forms.get(i).getUploadId(), equalTo(7L));
+        }
+        assertThat(forms.get(1).getLast(), equalTo(false));
+        assertThat(forms.get(2).getLast(), equalTo(false));
+    }
+
+    @Test
+    public void sequentialChunksDoNotCreatePooledClient() throws IOException {
+        File docFile = tempFolder.newFile("doc.txt");
+        FileUtils.writeStringToFile(docFile, "abcdefg", "UTF-8");
+        when(opts.getChunkSize()).thenReturn(3);
+        when(opts.getParallelChunks()).thenReturn(1);
+        ChunkUploadResponse response = new ChunkUploadResponse();
+        response.setUploadId(7L);
+        when(fileClient.uploadSourceFile(anyString(), anyString(),
+                anyString(), any(DocumentFileUploadForm.class)))
+                .thenReturn(response);
+
+        command.pushDocumentToServer("doc.txt", "txt", null, docFile);
+
+        verify(fileClient, times(3)).uploadSourceFile(eq("project"),
+                eq("version"), eq("doc.txt"),
+                any(DocumentFileUploadForm.class));
+        verify(clientFactory, never()).newPooledClient(anyInt());
+    }
 }
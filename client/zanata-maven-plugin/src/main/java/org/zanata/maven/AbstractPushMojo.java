@@ -107,6 +107,18 @@ public abstract class AbstractPushMojo extends
      */
     private int maxChunkSize = 1024 * 1024;
 
+    /**
+     * Number of document chunks to transmit at the same time when using
+     * project type 'file'. Values above 1 can make uploads of large documents
+     * much faster over slow connections, but require a server which accepts
+     * chunks out of order.
+     *
+     * Usage -Dzanata.parallelChunks=4
+     *
+     * @parameter expression="${zanata.parallelChunks}" default-value="1"
+     */
+    private int parallelChunks = 1;
+
     /**
      * File types to locate and transmit to the server
      * when using project type "file".
@@ -214,6 +226,11 @@ public abstract class AbstractPushMojo extends
         return maxChunkSize;
     }
 
+    @Override
+    public int getParallelChunks() {
+        return parallelChunks;
+    }
+
     @Override
     public ImmutableList<String> getFileTypes() {
         return ImmutableList.copyOf(fileTypes);
@@ -26,6 +26,7 @@ import java.net.URI;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
@@ -45,11 +46,18 @@ public class CopyTransClient implements CopyTransResource {
         baseUri = factory.getBaseUri();
     }
 
-    @Override
     public CopyTransStatus startCopyTrans(String projectSlug,
             String iterationSlug, String docId) {
+        return startCopyTrans(projectSlug, iterationSlug, docId, false);
+    }
+
+    @Override
+    public CopyTransStatus startCopyTrans(String projectSlug,
+            String iterationSlug, String docId, boolean incremental) {
         Client client = factory.getClient();
-        Response response = webResource(client, projectSlug, iterationSlug, docId)
+        Response response = webTarget(client, projectSlug, iterationSlug, docId)
+                .queryParam("incremental", incremental)
+                .request(MediaType.APPLICATION_XML_TYPE)
                 .post(Entity.json(""));
         response.bufferEntity();
         return response.readEntity(CopyTransStatus.class);
@@ -58,12 +66,17 @@ public class CopyTransClient implements CopyTransResource {
     private Invocation.Builder webResource(Client client, String projectSlug,
             String iterationSlug,
             String docId) {
+        return webTarget(client, projectSlug, iterationSlug, docId)
+                .request(MediaType.APPLICATION_XML_TYPE);
+    }
+
+    private WebTarget webTarget(Client client, String projectSlug,
+            String iterationSlug, String docId) {
         return client.target(baseUri)
                 .path(CopyTransResource.SERVICE_PATH)
                 .path("/proj").path(projectSlug)
                 .path("iter").path(iterationSlug)
-                .path("doc").path(docId)
-                .request(MediaType.APPLICATION_XML_TYPE);
+                .path("doc").path(docId);
     }
 
     @Override
@@ -46,21 +46,24 @@ import com.google.common.base.Throwables;
  *         href="mailto:pahuang@redhat.com">pahuang@redhat.com</a>
  */
 public class FileResourceClient {
-    private final RestClientFactory factory;
+    private final Client client;
 
     private final URI baseUri;
     private final Annotation[] multipartFormAnnotations =
             { new MultipartFormLiteral() };
 
     FileResourceClient(RestClientFactory restClientFactory) {
-        this.factory = restClientFactory;
-        baseUri = restClientFactory.getBaseUri();
+        this(restClientFactory, restClientFactory.getClient());
+    }
 
+    FileResourceClient(RestClientFactory restClientFactory, Client client) {
+        this.client = client;
+        baseUri = restClientFactory.getBaseUri();
     }
 
     @Deprecated
     public List<DocumentType> acceptedFileTypes() {
-        List<DocumentType> types = factory.getClient()
+        List<DocumentType> types = client
                 .target(baseUri)
                 .path(FileResource.SERVICE_PATH
                     + FileResource.ACCEPTED_TYPE_LIST_RESOURCE)
@@ -71,7 +74,7 @@ public class FileResourceClient {
     }
 
     public List<FileTypeInfo> fileTypeInfoList() {
-        List<FileTypeInfo> types = factory.getClient()
+        List<FileTypeInfo> types = client
                 .target(baseUri)
                 .path(FileResource.SERVICE_PATH
                         + FileResource.FILE_TYPE_INFO_RESOURCE)
@@ -85,7 +88,6 @@ public class FileResourceClient {
             String projectSlug,
             String iterationSlug, String docId,
             DocumentFileUploadForm documentFileUploadForm) {
-        Client client = factory.getClient();
         Invocation.Builder builder = client
                 .target(baseUri)
                 .path("file").path("source").path(projectSlug)
@@ -110,7 +112,6 @@ public class FileResourceClient {
             String iterationSlug, String locale, String docId,
             String mergeType,
             DocumentFileUploadForm documentFileUploadForm) {
-        Client client = factory.getClient();
         Invocation.Builder builder = client.target(baseUri)
                 .path(FileResource.SERVICE_PATH)
                 .path("translation")
@@ -131,7 +132,7 @@ public class FileResourceClient {
     public Response downloadSourceFile(String projectSlug,
             String iterationSlug,
             String fileType, String docId) {
-        WebTarget webResource = factory.getClient().target(baseUri)
+        WebTarget webResource = client.target(baseUri)
                 .path(FileResource.SERVICE_PATH).path("source")
                 .path(projectSlug).path(iterationSlug).path(fileType);
         return webResource.queryParam("docId", docId)
@@ -142,7 +143,7 @@ public class FileResourceClient {
     public Response downloadTranslationFile(String projectSlug,
             String iterationSlug, String locale, String fileExtension,
             String docId) {
-        WebTarget webResource = factory.getClient().target(baseUri)
+        WebTarget webResource = client.target(baseUri)
                 .path(FileResource.SERVICE_PATH).path("translation")
                 .path(projectSlug).path(iterationSlug).path(locale)
                 .path(fileExtension);
@@ -59,6 +59,10 @@ public class RestClientFactory {
 
     private Client client;
     private URI baseURI;
+    private String username;
+    private String apiKey;
+    private boolean logHttp;
+    private boolean sslCertDisabled;
 
     // for use by InitCommand
     protected RestClientFactory() {
@@ -70,16 +74,40 @@ public class RestClientFactory {
         baseURI = base;
         this.clientApiVersion = clientApiVersion;
         clientVersion = clientApiVersion.getVersionNo();
+        this.username = username;
+        this.apiKey = apiKey;
+        this.logHttp = logHttp;
+        this.sslCertDisabled = sslCertDisabled;
 
-        this.client = ResteasyClientBuilder.newBuilder()
+        this.client = newClientBuilder().build();
+
+    }
+
+    private ResteasyClientBuilder newClientBuilder() {
+        return new ResteasyClientBuilder()
                 .sslContext(sslConfiguration(sslCertDisabled))
                 .register(new RedirectFilter())
                 .register(new ResponseStatusFilter())
                 .register(new ApiKeyHeaderFilter(username, apiKey, clientVersion))
                 .register(new TraceDebugFilter(logHttp))
-                .register(new InvalidContentTypeFilter())
-                .build();
+                .register(new InvalidContentTypeFilter());
+    }
 
+    /**
+     * Creates a client which can keep several connections to the server open
+     * at once, for callers which send requests from more than one thread. The
+     * default client only has a single connection.
+     * <p>
+     * The caller is responsible for closing the returned client.
+     *
+     * @param maxConnections
+     *            maximum number of concurrent connections
+     */
+    public Client newPooledClient(int maxConnections) {
+        return newClientBuilder()
+                .connectionPoolSize(maxConnections)
+                .maxPooledPerRoute(maxConnections)
+                .build();
     }
 
     private static SSLContext sslConfiguration(boolean sslCertDisabled) {
@@ -210,6 +238,14 @@ public class RestClientFactory {
         return new FileResourceClient(this);
     }
 
+    /**
+     * @param client
+     *            a client created by {@link #newPooledClient(int)}
+     */
+    public FileResourceClient getFileResourceClient(Client client) {
+        return new FileResourceClient(this, client);
+    }
+
     public GlossaryClient getGlossaryClient() {
         return new GlossaryClient(this);
     }
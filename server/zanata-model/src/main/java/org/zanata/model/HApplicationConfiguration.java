@@ -68,6 +68,7 @@ public class HApplicationConfiguration extends ModelEntityBase {
     public static String KEY_TERMS_CONDITIONS_URL = "terms.conditions.url";
     public static String KEY_MAX_CONCURRENT_REQ_PER_API_KEY = "max.concurrent.req.per.apikey";
     public static String KEY_MAX_ACTIVE_REQ_PER_API_KEY = "max.active.req.per.apikey";
+    public static String KEY_MAX_REQ_PER_SECOND_PER_API_KEY = "max.req.per.second.per.apikey";
     public static String KEY_MAX_FILES_PER_UPLOAD = "fileupload.max.files.per.upload";
 
     private static final long serialVersionUID = 8652817113098817448L;
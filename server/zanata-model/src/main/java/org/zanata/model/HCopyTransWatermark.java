@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.model;
+
+import java.io.Serializable;
+
+import javax.persistence.Access;
+import javax.persistence.AccessType;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Records how far CopyTrans has got for a document in one locale, so that an
+ * incremental CopyTrans run only needs to look at the text flows which have
+ * been added or changed since.
+ *
+ * Text flows whose revision is no later than {@link #documentRevision} have
+ * been through a completed CopyTrans run for the locale, since a text flow's
+ * revision is set to the new document revision whenever it is added or its
+ * content changes.
+ */
+@Entity
+@Access(AccessType.FIELD)
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = { "documentId",
+        "localeId" }))
+@NoArgsConstructor
+@Getter
+public class HCopyTransWatermark implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "documentId", nullable = false, updatable = false)
+    private HDocument document;
+
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "localeId", nullable = false, updatable = false)
+    private HLocale locale;
+
+    /**
+     * The document revision when the last completed run started.
+     */
+    @Setter
+    @Column(nullable = false)
+    private int documentRevision;
+
+    public HCopyTransWatermark(HDocument document, HLocale locale,
+            int documentRevision) {
+        this.document = document;
+        this.locale = locale;
+        this.documentRevision = documentRevision;
+    }
+}
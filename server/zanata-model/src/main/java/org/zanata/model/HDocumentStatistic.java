@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.model;
+
+import java.io.Serializable;
+
+import javax.persistence.Access;
+import javax.persistence.AccessType;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import javax.validation.constraints.NotNull;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import org.zanata.common.ContentState;
+
+/**
+ * Word count of one content state for a document in one locale.
+ *
+ * These rows are a denormalised copy of the sums of HTextFlow.wordCount over
+ * the document's targets, grouped by state (with untranslated words stored
+ * as {@link ContentState#New}). They are created from the targets when first
+ * needed, and kept up to date from the word deltas of DocStatsEvent.
+ */
+@Entity
+@Access(AccessType.FIELD)
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = { "documentId",
+        "localeId", "state" }))
+@NoArgsConstructor
+@Getter
+public class HDocumentStatistic implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "documentId", nullable = false, updatable = false)
+    private HDocument document;
+
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "localeId", nullable = false, updatable = false)
+    private HLocale locale;
+
+    @NotNull
+    @Column(nullable = false, updatable = false)
+    private ContentState state;
+
+    @Column(nullable = false)
+    private long wordCount;
+
+    public HDocumentStatistic(HDocument document, HLocale locale,
+            ContentState state, long wordCount) {
+        this.document = document;
+        this.locale = locale;
+        this.state = state;
+        this.wordCount = wordCount;
+    }
+}
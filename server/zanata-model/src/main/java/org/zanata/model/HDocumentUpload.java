@@ -21,21 +21,16 @@
 package org.zanata.model;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.List;
 
-import javax.persistence.CascadeType;
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
-import javax.persistence.OneToMany;
 
 import lombok.Getter;
 import lombok.Setter;
 
-import org.hibernate.annotations.IndexColumn;
 import org.hibernate.validator.constraints.NotEmpty;
 import org.zanata.common.DocumentType;
 
@@ -51,12 +46,6 @@ public class HDocumentUpload extends ModelEntityBase implements Serializable {
     private DocumentType type;
     private HLocale locale;
     private String contentHash;
-    private List<HDocumentUploadPart> parts;
-
-    public HDocumentUpload() {
-        // hibernate requires this to be an ArrayList
-        parts = new ArrayList<HDocumentUploadPart>();
-    }
 
     public void setId(Long id) {
         super.setId(id);
@@ -90,13 +79,6 @@ public class HDocumentUpload extends ModelEntityBase implements Serializable {
         return contentHash;
     }
 
-    @OneToMany(cascade = CascadeType.ALL)
-    @JoinColumn(name = "documentUploadId", nullable = false)
-    @IndexColumn(name = "partIndex", base = 0, nullable = false)
-    public List<HDocumentUploadPart> getParts() {
-        return parts;
-    }
-
     @Override
     public String toString() {
         return getClass().getSimpleName() + "@"
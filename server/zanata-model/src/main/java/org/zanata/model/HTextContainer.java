@@ -38,6 +38,7 @@ import org.hibernate.search.annotations.AnalyzerDiscriminator;
 import org.hibernate.search.annotations.Field;
 import org.hibernate.search.annotations.FieldBridge;
 import org.hibernate.search.annotations.Parameter;
+import org.hibernate.search.annotations.Store;
 import org.hibernate.search.annotations.TokenFilterDef;
 import org.hibernate.search.annotations.TokenizerDef;
 import org.zanata.common.HasContents;
@@ -76,9 +77,10 @@ import org.zanata.hibernate.search.TextContainerAnalyzerDiscriminator;
 public abstract class HTextContainer implements HasContents, Serializable {
     private static final long serialVersionUID = 1L;
 
+    // stored so that TM searches can project the contents
     @SuppressWarnings("unused")
-    @Field(name = IndexFieldLabels.CONTENT, bridge = @FieldBridge(
-            impl = StringListBridge.class))
+    @Field(name = IndexFieldLabels.CONTENT, store = Store.YES,
+            bridge = @FieldBridge(impl = StringListBridge.class))
     @AnalyzerDiscriminator(impl = TextContainerAnalyzerDiscriminator.class)
     private List<String> getContentsToIndex() {
         return getContents();
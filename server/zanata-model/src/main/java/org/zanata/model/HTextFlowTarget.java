@@ -64,6 +64,7 @@ import org.hibernate.search.annotations.FieldBridge;
 import org.hibernate.search.annotations.Indexed;
 import org.hibernate.search.annotations.IndexedEmbedded;
 import org.hibernate.search.annotations.Parameter;
+import org.hibernate.search.annotations.Store;
 import org.zanata.common.ContentState;
 import org.zanata.common.HasContents;
 import org.zanata.common.LocaleId;
@@ -194,7 +195,7 @@ public class HTextFlowTarget extends ModelEntityBase implements HasContents,
     }
 
     @NotNull
-    @Field(analyze = Analyze.NO)
+    @Field(analyze = Analyze.NO, store = Store.YES)
     @FieldBridge(impl = ContentStateBridge.class)
     @Override
     public @Nonnull
@@ -282,7 +283,8 @@ public class HTextFlowTarget extends ModelEntityBase implements HasContents,
     @Override
     @Transient
     // TODO extend HTextContainer and remove this
-    @Field(name = IndexFieldLabels.CONTENT, bridge = @FieldBridge(
+    // stored so that TM searches can project the contents
+    @Field(name = IndexFieldLabels.CONTENT, store = Store.YES, bridge = @FieldBridge(
             impl = StringListBridge.class, params = {
                     @Parameter(name = "case", value = "fold"),
                     @Parameter(name = "ngrams", value = "multisize") }))
@@ -27,6 +27,7 @@ import java.util.List;
 import java.util.Map;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.xml.XMLConstants;
 
 import lombok.extern.slf4j.Slf4j;
@@ -202,7 +203,8 @@ public class TMXMetadataHelper {
      */
     public static void setMetadata(TransMemory toTransMemory,
             @Nonnull Element fromHeaderElem) throws TMXParseException {
-        Map<String, Object> metadata = buildMetadata(fromHeaderElem);
+        Map<String, Object> metadata = buildMetadata(
+                getAttributes(fromHeaderElem), getChildrenAsXml(fromHeaderElem));
         String srclang = (String) metadata.remove(SRC_LANG);
         if (srclang != null) {
             toTransMemory.setSourceLanguage(getValidLang(srclang));
@@ -222,7 +224,27 @@ public class TMXMetadataHelper {
      */
     public static void setMetadata(TransMemoryUnit toTransUnit,
             @Nonnull Element fromTuElem, String tmSrcLang) {
-        Map<String, Object> metadata = buildMetadata(fromTuElem);
+        setMetadata(toTransUnit, getAttributes(fromTuElem),
+                getChildrenAsXml(fromTuElem), tmSrcLang);
+    }
+
+    /**
+     * Sets all the TU's metadata from attributes and children which have
+     * already been read, eg by a StAX parser.
+     *
+     * @param toTransUnit
+     * @param attributes
+     *            attributes keyed as by {@link #getAttributeKey}
+     * @param childrenXml
+     *            supported children (see {@link #isSupportedChild}) in XML
+     *            string form, without a namespace
+     * @param tmSrcLang
+     *            srclang to use if the TU does not specify srclang
+     */
+    public static void setMetadata(TransMemoryUnit toTransUnit,
+            Map<String, String> attributes, List<String> childrenXml,
+            String tmSrcLang) {
+        Map<String, Object> metadata = buildMetadata(attributes, childrenXml);
         String tuid = (String) metadata.remove(TUID);
         if (tuid != null) {
             toTransUnit.setTransUnitId(tuid);
@@ -247,13 +269,35 @@ public class TMXMetadataHelper {
      */
     public static void setMetadata(TransMemoryUnitVariant toTuv,
             Element fromTuvElem) throws TMXParseException {
-        Map<String, Object> metadata = buildMetadata(fromTuvElem);
+        Map<String, String> attributes = getAttributes(fromTuvElem);
+        if (!attributes.containsKey(XML_LANG)) {
+            throw new TMXParseException("missing xml:lang in tuv: "
+                    + fromTuvElem.toXML());
+        }
+        setMetadata(toTuv, attributes, getChildrenAsXml(fromTuvElem));
+    }
+
+    /**
+     * Sets all the TUV's metadata from attributes and children which have
+     * already been read, eg by a StAX parser.
+     *
+     * @param attributes
+     *            attributes keyed as by {@link #getAttributeKey}
+     * @param childrenXml
+     *            supported children (see {@link #isSupportedChild}) in XML
+     *            string form, without a namespace
+     * @throws TMXParseException
+     */
+    public static void setMetadata(TransMemoryUnitVariant toTuv,
+            Map<String, String> attributes, List<String> childrenXml)
+            throws TMXParseException {
+        Map<String, Object> metadata = buildMetadata(attributes, childrenXml);
         String lang = (String) metadata.remove(XML_LANG);
         if (lang != null) {
             toTuv.setLanguage(getValidLang(lang));
         } else {
-            throw new TMXParseException("missing xml:lang in tuv: "
-                    + fromTuvElem.toXML());
+            throw new TMXParseException("missing xml:lang in tuv with "
+                    + "attributes " + attributes);
         }
         setSharedMetadata(toTuv, metadata);
     }
@@ -304,23 +348,39 @@ public class TMXMetadataHelper {
         return ISO8601Z.print(date.getTime());
     }
 
-    private static Map<String, Object> buildMetadata(Element fromElem) {
-        Map<String, Object> metadata = Maps.newHashMap();
+    private static Map<String, Object> buildMetadata(
+            Map<String, String> attributes, List<String> childrenXml) {
+        Map<String, Object> metadata = Maps.newHashMap(attributes);
+        metadata.put(TMX_ELEMENT_CHILDREN, childrenXml);
+        return metadata;
+    }
+
+    private static Map<String, String> getAttributes(Element fromElem) {
+        Map<String, String> attributes = Maps.newHashMap();
         for (int i = 0; i < fromElem.getAttributeCount(); i++) {
             Attribute attr = fromElem.getAttribute(i);
-            String uri = attr.getNamespaceURI();
-            String name = attr.getLocalName();
-            if (inTmxNamespace(uri)) {
-                String value = attr.getValue();
-                metadata.put(name, value);
-            } else if (attr.getQualifiedName().equals(XML_LANG)) {
-                String value = attr.getValue();
-                metadata.put(attr.getQualifiedName(), value);
+            String key = getAttributeKey(attr.getNamespaceURI(),
+                    attr.getLocalName());
+            if (key != null) {
+                attributes.put(key, attr.getValue());
             }
         }
-        List<String> childrenXml = getChildrenAsXml(fromElem);
-        metadata.put(TMX_ELEMENT_CHILDREN, childrenXml);
-        return metadata;
+        return attributes;
+    }
+
+    /**
+     * Returns the metadata key for an attribute of a TMX element, or null if
+     * the attribute is not stored.
+     */
+    public static @Nullable
+    String getAttributeKey(@Nullable String namespaceUri, String localName) {
+        if (inTmxNamespace(namespaceUri)) {
+            return localName;
+        } else if (XMLConstants.XML_NS_URI.equals(namespaceUri)
+                && localName.equals("lang")) {
+            return XML_LANG;
+        }
+        return null;
     }
 
     /**
@@ -347,9 +407,7 @@ public class TMXMetadataHelper {
      */
     private static void addChildIfSupported(Element child,
             Builder<String> childrenXml) {
-        String uri = child.getNamespaceURI();
-        String name = child.getLocalName();
-        if (inTmxNamespace(uri) && (name.equals("prop") || name.equals("note"))) {
+        if (isSupportedChild(child.getNamespaceURI(), child.getLocalName())) {
             Element copy = (Element) child.copy();
             copy.setNamespacePrefix("");
             copy.setNamespaceURI("");
@@ -357,8 +415,18 @@ public class TMXMetadataHelper {
         }
     }
 
-    private static boolean inTmxNamespace(String uri) {
-        return uri.equals(EMPTY_NAMESPACE)
+    /**
+     * Whether a child element of a TMX element is stored in its metadata.
+     */
+    public static boolean isSupportedChild(@Nullable String namespaceUri,
+            String localName) {
+        return inTmxNamespace(namespaceUri)
+                && (localName.equals("prop") || localName.equals("note"));
+    }
+
+    private static boolean inTmxNamespace(@Nullable String uri) {
+        // StAX uses null for no namespace
+        return uri == null || uri.equals(EMPTY_NAMESPACE)
                 || uri.equals(TMXConstants.TMX14_NAMESPACE);
     }
 }
@@ -43,6 +43,7 @@ import lombok.ToString;
 
 import org.hibernate.search.annotations.AnalyzerDiscriminator;
 import org.hibernate.search.annotations.ClassBridge;
+import org.hibernate.search.annotations.Store;
 import org.zanata.hibernate.search.TextContainerAnalyzerDiscriminator;
 import org.zanata.hibernate.search.TransUnitVariantClassBridge;
 import org.zanata.model.ModelEntityBase;
@@ -61,7 +62,8 @@ import org.zanata.util.OkapiUtil;
 @NoArgsConstructor
 @Data
 @Access(AccessType.FIELD)
-@ClassBridge(impl = TransUnitVariantClassBridge.class)
+// stored so that TM searches can project the contents
+@ClassBridge(impl = TransUnitVariantClassBridge.class, store = Store.YES)
 @AnalyzerDiscriminator(impl = TextContainerAnalyzerDiscriminator.class)
 public class TransMemoryUnitVariant extends ModelEntityBase implements
         HasTMMetadata {
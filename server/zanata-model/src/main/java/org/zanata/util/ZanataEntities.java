@@ -27,8 +27,10 @@ import org.zanata.model.Glossary;
 import org.zanata.model.HAccount;
 import org.zanata.model.HAccountActivationKey;
 import org.zanata.model.HAccountResetPasswordKey;
+import org.zanata.model.HCopyTransWatermark;
 import org.zanata.model.HDocument;
 import org.zanata.model.HDocumentHistory;
+import org.zanata.model.HDocumentStatistic;
 import org.zanata.model.HGlossaryEntry;
 import org.zanata.model.HGlossaryTerm;
 import org.zanata.model.HIterationGroup;
@@ -86,7 +88,8 @@ public class ZanataEntities {
                 HTextFlow.class);
         builder.add(HPotEntryData.class);
         // documents
-        builder.add(HDocumentHistory.class, HDocument.class);
+        builder.add(HCopyTransWatermark.class, HDocumentStatistic.class,
+                HDocumentHistory.class, HDocument.class);
         builder.add(HPoHeader.class);
         // iteration group (references locales)
         builder.add(HIterationGroup.class);
@@ -418,6 +418,10 @@ public class ApplicationConfiguration implements Serializable {
         return parseIntegerOrDefault(databaseBackedConfig.getMaxActiveRequestsPerApiKey(), 2);
     }
 
+    public int getMaxRequestsPerSecondPerApiKey() {
+        return parseIntegerOrDefault(databaseBackedConfig.getMaxRequestsPerSecondPerApiKey(), 0);
+    }
+
     public int getMaxFilesPerUpload() {
         return parseIntegerOrDefault(databaseBackedConfig.getMaxFilesPerUpload(), defaultMaxFilesPerUpload);
     }
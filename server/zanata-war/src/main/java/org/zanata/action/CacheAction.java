@@ -28,8 +28,13 @@ import org.apache.commons.beanutils.BeanUtils;
 import org.infinispan.Cache;
 import org.infinispan.manager.EmbeddedCacheManager;
 import org.infinispan.stats.Stats;
+import org.zanata.async.AsyncTaskHandle;
+import org.zanata.async.AsyncTaskHandleManager;
+import org.zanata.cache.CacheLoaderStats;
+import org.zanata.file.FilePersistService;
 import org.zanata.i18n.Messages;
 import org.zanata.security.annotations.CheckRole;
+import org.zanata.service.DocumentStatisticService;
 import org.zanata.util.Zanata;
 import javax.faces.bean.ViewScoped;
 import javax.inject.Inject;
@@ -57,6 +62,21 @@ public class CacheAction implements Serializable {
     @Inject
     private Messages msgs;
 
+    @Inject
+    private DocumentStatisticService documentStatisticServiceImpl;
+
+    @Inject
+    private FilePersistService filePersistService;
+
+    @Inject
+    private AsyncTaskHandleManager asyncTaskHandleManager;
+
+    private static final String REBUILD_STATISTICS_KEY =
+            "CacheAction.rebuildDocumentStatistics";
+
+    private static final String DELETE_UNREFERENCED_FILES_KEY =
+            "CacheAction.deleteUnreferencedDocumentFiles";
+
     public CacheAction() {
     }
 
@@ -106,12 +126,64 @@ public class CacheAction implements Serializable {
 
     public void resetCacheStats(String cacheName) {
         getStats(cacheName).reset();
+        CacheLoaderStats loaderStats = CacheLoaderStats.getIfPresent(cacheName);
+        if (loaderStats != null) {
+            loaderStats.reset();
+        }
     }
 
     public void clearAllCaches(){
         cacheManager.getCacheNames().forEach(this::clearCache);
     }
 
+    /**
+     * Recalculate the stored document statistics (which the statistics
+     * caches are loaded from) in the background.
+     */
+    public void rebuildDocumentStatistics() {
+        if (isRebuildingDocumentStatistics()) {
+            return;
+        }
+        AsyncTaskHandle<Void> handle = new AsyncTaskHandle<>();
+        asyncTaskHandleManager.registerTaskHandle(handle,
+                REBUILD_STATISTICS_KEY);
+        try {
+            documentStatisticServiceImpl.rebuildStatistics(handle);
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    public boolean isRebuildingDocumentStatistics() {
+        AsyncTaskHandle handle =
+                asyncTaskHandleManager.getHandleByKey(REBUILD_STATISTICS_KEY);
+        return handle != null && !handle.isDone();
+    }
+
+    /**
+     * Delete the stored document files which are no longer used by any
+     * document, in the background.
+     */
+    public void deleteUnreferencedDocumentFiles() {
+        if (isDeletingUnreferencedDocumentFiles()) {
+            return;
+        }
+        AsyncTaskHandle<Void> handle = new AsyncTaskHandle<>();
+        asyncTaskHandleManager.registerTaskHandle(handle,
+                DELETE_UNREFERENCED_FILES_KEY);
+        try {
+            filePersistService.deleteUnreferencedFiles(handle);
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    public boolean isDeletingUnreferencedDocumentFiles() {
+        AsyncTaskHandle handle = asyncTaskHandleManager
+                .getHandleByKey(DELETE_UNREFERENCED_FILES_KEY);
+        return handle != null && !handle.isDone();
+    }
+
     /**
      * Return the entire set of properties for which the specified bean provides a read method.
      * In this case, the bean is a stats object. The returning value is the set of StatsImpl
@@ -125,12 +197,38 @@ public class CacheAction implements Serializable {
               Map<String, String> properties =
                   BeanUtils.describe(getStats(cacheName));
               properties.remove("class");
+              addLoaderStatsProperties(cacheName, properties);
               return properties;
           } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
               throw Throwables.propagate(e);
           }
     }
 
+    /**
+     * Add the statistics of the Zanata cache loader (if any) to the
+     * properties. Caches without a loader show -1, like unavailable Stats.
+     */
+    private void addLoaderStatsProperties(String cacheName,
+            Map<String, String> properties) {
+        CacheLoaderStats loaderStats = CacheLoaderStats.getIfPresent(cacheName);
+        if (loaderStats == null) {
+            String unavailable = String.valueOf(-1);
+            properties.put("loaderLoads", unavailable);
+            properties.put("loaderAverageLoadTime", unavailable);
+            properties.put("loaderWaits", unavailable);
+            properties.put("loaderAverageWaitTime", unavailable);
+        } else {
+            properties.put("loaderLoads",
+                    String.valueOf(loaderStats.getLoads()));
+            properties.put("loaderAverageLoadTime",
+                    String.valueOf(loaderStats.getAverageLoadTime()));
+            properties.put("loaderWaits",
+                    String.valueOf(loaderStats.getWaits()));
+            properties.put("loaderAverageWaitTime",
+                    String.valueOf(loaderStats.getAverageWaitTime()));
+        }
+    }
+
     public String getNameOfProperty(String key) {
         return msgs.get("jsf.cacheStats." + key + ".name");
     }
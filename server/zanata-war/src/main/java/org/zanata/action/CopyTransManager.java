@@ -99,6 +99,22 @@ public class CopyTransManager implements Serializable {
      *            The options to run copy trans with.
      */
     public void startCopyTrans(HDocument document, HCopyTransOptions options) {
+        startCopyTrans(document, options, false);
+    }
+
+    /**
+     * Start a Translation copy for a document with the given options.
+     *
+     * @param document
+     *            The document for which to start copy trans.
+     * @param options
+     *            The options to run copy trans with.
+     * @param incremental
+     *            Whether to copy only into text flows which changed since the
+     *            last completed copy trans.
+     */
+    public void startCopyTrans(HDocument document, HCopyTransOptions options,
+            boolean incremental) {
         if (isCopyTransRunning(document)) {
             throw new RuntimeException(
                     "Copy Trans is already running for document '"
@@ -109,7 +125,7 @@ public class CopyTransManager implements Serializable {
         CopyTransTaskHandle handle = new CopyTransTaskHandle();
         asyncTaskHandleManager.registerTaskHandle(handle, key);
         copyTransServiceImpl.startCopyTransForDocument(document, options,
-                handle);
+                incremental, handle);
     }
 
     /**
@@ -128,7 +144,7 @@ public class CopyTransManager implements Serializable {
         CopyTransTaskHandle handle = new CopyTransTaskHandle();
         asyncTaskHandleManager.registerTaskHandle(handle, key);
         copyTransServiceImpl.startCopyTransForIteration(iteration, options,
-                handle);
+                false, handle);
     }
 
     public CopyTransTaskHandle getCopyTransProcessHandle(@Nonnull Object target) {
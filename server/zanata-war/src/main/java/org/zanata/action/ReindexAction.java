@@ -177,6 +177,26 @@ public class ReindexAction implements Serializable {
         }
     }
 
+    public boolean isAnyReindexSelected() {
+        for (ReindexClassOptions opts : searchIndexManager.getReindexOptions()) {
+            if (opts.isReindex()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reindexes only the rows of the selected tables which have changed since
+     * they were last reindexed.
+     */
+    public void reindexChanges() {
+        if (searchIndexManager.getProcessHandle() == null
+                || searchIndexManager.getProcessHandle().isDone()) {
+            searchIndexManager.startIncrementalProcess(null);
+        }
+    }
+
     public void cancel() {
         searchIndexManager.getProcessHandle().cancel(true);
     }
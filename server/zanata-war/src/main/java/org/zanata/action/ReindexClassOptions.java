@@ -5,6 +5,8 @@ import java.io.Serializable;
 import lombok.Getter;
 import lombok.Setter;
 
+import org.zanata.search.IndexingStats;
+
 /**
  * Stores options for the lucene indexing
  *
@@ -26,6 +28,14 @@ public class ReindexClassOptions implements Serializable {
     @Setter
     private boolean optimize = false;
 
+    /**
+     * Progress of the current (or last) reindex of this class, or null if it
+     * hasn't been reindexed.
+     */
+    @Getter
+    @Setter
+    private IndexingStats stats;
+
     public ReindexClassOptions(Class<?> indexableClass) {
         clazz = indexableClass;
     }
@@ -157,6 +157,11 @@ public class ServerConfigurationBean implements Serializable {
     @Setter
     private String maxActiveRequestsPerApiKey;
 
+    @Pattern(regexp = "\\d{0,5}")
+    @Getter
+    @Setter
+    private String maxRequestsPerSecondPerApiKey;
+
     @Pattern(regexp = "\\d{0,5}")
     @Getter
     @Setter
@@ -175,6 +180,7 @@ public class ServerConfigurationBean implements Serializable {
             new PropertyWithKey<String>("helpUrl", KEY_HELP_URL),
             new PropertyWithKey<String>("maxConcurrentRequestsPerApiKey", KEY_MAX_CONCURRENT_REQ_PER_API_KEY),
             new PropertyWithKey<String>("maxActiveRequestsPerApiKey", KEY_MAX_ACTIVE_REQ_PER_API_KEY),
+            new PropertyWithKey<String>("maxRequestsPerSecondPerApiKey", KEY_MAX_REQ_PER_SECOND_PER_API_KEY),
             new PropertyWithKey<String>("maxFilesPerUpload", KEY_MAX_FILES_PER_UPLOAD),
             new PropertyWithKey<String>("displayUserEmail", KEY_DISPLAY_USER_EMAIL),
             homeContentProperty
@@ -103,7 +103,7 @@ public class AsyncMethodInterceptor {
             };
 
             ListenableFuture<Object> futureResult =
-                    taskManager.startTask(asyncTask);
+                    taskManager.startTask(asyncTask, getTaskClass(ctx));
             if (handle.isPresent()) {
                 handle.get().setFutureResult(futureResult);
             }
@@ -114,6 +114,15 @@ public class AsyncMethodInterceptor {
         }
     }
 
+    private static AsyncTaskClass getTaskClass(InvocationContext ctx) {
+        Async async = ctx.getMethod().getAnnotation(Async.class);
+        if (async == null) {
+            async = ctx.getMethod().getDeclaringClass()
+                    .getAnnotation(Async.class);
+        }
+        return async != null ? async.value() : AsyncTaskClass.INTERACTIVE;
+    }
+
     private AsyncTaskHandle findHandleIfPresent(Object[] params) {
         for (Object param : params) {
             if (param instanceof AsyncTaskHandle) {
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.async;
+
+/**
+ * Kinds of asynchronous task, in order of priority. Each kind has its own
+ * limit on the number of threads it may use, so that long-running tasks can't
+ * take every thread away from the tasks users are waiting for.
+ *
+ * @see Async#value()
+ * @see org.zanata.config.AsyncConfig
+ */
+public enum AsyncTaskClass {
+    /**
+     * Short tasks which a user is waiting for, eg document and translation
+     * pushes, and event handlers.
+     */
+    INTERACTIVE,
+    /**
+     * Long-running bulk operations, eg CopyTrans, merge translations, copy
+     * version and building translation archives.
+     */
+    BULK,
+    /**
+     * Administrative maintenance, eg reindexing and rebuilding statistics.
+     */
+    MAINTENANCE
+}
@@ -61,7 +61,8 @@ public class AsyncTaskHandle<V> {
     @Getter
     private long finishTime = -1;
 
-    public int increaseProgress(int increaseBy) {
+    // synchronized because some tasks report progress from several threads
+    public synchronized int increaseProgress(int increaseBy) {
         currentProgress += increaseBy;
         return currentProgress;
     }
@@ -21,6 +21,8 @@
 package org.zanata.async;
 
 import java.security.Principal;
+import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -40,13 +42,17 @@ import org.apache.deltaspike.cdise.api.ContextControl;
 import org.zanata.config.AsyncConfig;
 import org.zanata.dao.AccountDAO;
 import org.zanata.model.HAccount;
+import org.zanata.rest.dto.DTOUtil;
 import org.zanata.seam.security.ZanataJpaIdentityStore;
 import org.zanata.security.ZanataIdentity;
 import org.zanata.security.annotations.Authenticated;
 import org.zanata.security.annotations.AuthenticatedLiteral;
+import org.zanata.util.Introspectable;
 import org.zanata.util.ServiceLocator;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * @author Carlos Munoz <a
@@ -56,79 +62,99 @@ import com.google.common.util.concurrent.ListenableFuture;
 @javax.enterprise.context.ApplicationScoped
 @Slf4j
 // TODO consider switching from Guava's ListenableFuture to Java 8's CompletableFuture
-public class AsyncTaskManager {
+public class AsyncTaskManager implements Introspectable {
 
     // TODO use ManagedExecutorService on Java EE 7, so that we can eg inject UserTransaction
-    private ExecutorService scheduler;
+    private ExecutorService executor;
+
+    private AsyncTaskScheduler scheduler;
+
+    private ExecutorService workerExecutor;
+
+    private int workerThreads;
 
     @Inject
     private AsyncConfig asyncConfig;
 
     @PostConstruct
     public void init() {
-        scheduler =
-                Executors.newFixedThreadPool(asyncConfig.getThreadPoolSize());
+        int threads = asyncConfig.getThreadPoolSize();
+        Map<AsyncTaskClass, Integer> maxRunning = ImmutableMap.of(
+                AsyncTaskClass.BULK, asyncConfig.getBulkMaxThreads(),
+                AsyncTaskClass.MAINTENANCE,
+                asyncConfig.getMaintenanceMaxThreads());
+        if (maxRunning.values().stream().mapToInt(Integer::intValue)
+                .sum() >= threads) {
+            log.warn("bulk and maintenance tasks may use all {} async "
+                    + "threads; interactive tasks may have to wait", threads);
+        }
+        executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("async-task-%d")
+                        .build());
+        scheduler = new AsyncTaskScheduler(executor, threads, maxRunning);
+        workerThreads = asyncConfig.getWorkerThreads();
+        workerExecutor = Executors.newFixedThreadPool(workerThreads,
+                new ThreadFactoryBuilder().setNameFormat("async-worker-%d")
+                        .build());
     }
 
     @PreDestroy
     public void cleanup() {
-        scheduler.shutdown();
+        executor.shutdown();
+        workerExecutor.shutdown();
+    }
+
+    /**
+     * Starts an interactive task asynchronously.
+     *
+     * @see #startTask(AsyncTask, AsyncTaskClass)
+     */
+    public <V> ListenableFuture<V> startTask(
+            final @Nonnull AsyncTask<Future<V>> task) {
+        return startTask(task, AsyncTaskClass.INTERACTIVE);
     }
 
     /**
      * Starts a task asynchronously.
      * In its present implementation can only run tasks which expect a
      * {@code Future} result.
+     * The task is queued until a thread is available for its class.
      * @param task The task to run.
+     * @param taskClass The kind of task, which determines its priority.
      * @param <V> The type of result expected.
      * @return A listenable future for the expected result.
      */
     public <V> ListenableFuture<V> startTask(
-            final @Nonnull AsyncTask<Future<V>> task) {
-        HAccount taskOwner = ServiceLocator.instance()
-                .getInstance(HAccount.class, new AuthenticatedLiteral());
-        ZanataIdentity ownerIdentity = ZanataIdentity.instance();
-
-        // Extract security context from current thread
-        final String taskOwnerUsername =
-                taskOwner != null ? taskOwner.getUsername() : null;
-        final Principal runAsPpal = ownerIdentity.getPrincipal();
-        final Subject runAsSubject = ownerIdentity.getSubject();
-
+            final @Nonnull AsyncTask<Future<V>> task,
+            final @Nonnull AsyncTaskClass taskClass) {
+        TaskOwner owner = TaskOwner.current();
         // final result
         final AsyncTaskResult<V> taskFuture = new AsyncTaskResult<V>();
+        scheduler.submit(taskClass, owner.username,
+                owner.wrap(() -> getReturnValue(task.call()), taskFuture));
+        return taskFuture;
+    }
 
-        // The logic to run to setup all necessary contexts and specific logic
-        final Runnable executableCommand = () -> {
-            ContextControl ctxCtrl = null;
-
-            try {
-                // Start CDI contexts
-                ctxCtrl =
-                        ServiceLocator.instance().getInstance(
-                                ContextControl.class);
-                ctxCtrl.startContext(RequestScoped.class);
-                ctxCtrl.startContext(SessionScoped.class);
-                // Prepare the security context
-                prepareSecurityContext(taskOwnerUsername, runAsPpal, runAsSubject);
-                // run the task and capture the result
-                V returnValue = getReturnValue(task.call());
-                taskFuture.set(returnValue);
-            } catch (Throwable t) {
-                taskFuture.setException(t);
-                log.error(
-                        "Exception when executing an asynchronous task.", t);
-            } finally {
-                // stop the contexts to make sure all beans are cleaned up
-                if (ctxCtrl != null) {
-                    ctxCtrl.stopContext(RequestScoped.class);
-                    ctxCtrl.stopContext(SessionScoped.class);
-                }
-            }
-        };
+    /**
+     * Runs part of a task on the worker pool, as the current user, with its
+     * own CDI contexts (and so its own persistence context). The worker pool
+     * is separate from the task threads, so a task never waits for a thread
+     * which it holds itself.
+     *
+     * @see #getWorkerThreads()
+     */
+    public <V> ListenableFuture<V> startSubtask(
+            final @Nonnull Callable<V> subtask) {
+        final AsyncTaskResult<V> result = new AsyncTaskResult<V>();
+        workerExecutor.execute(TaskOwner.current().wrap(subtask::call, result));
+        return result;
+    }
 
-        scheduler.execute(executableCommand);
-        return taskFuture;
+    /**
+     * @return the number of subtasks which can run at once
+     */
+    public int getWorkerThreads() {
+        return workerThreads;
     }
 
     private static <V> V getReturnValue(Future<V> asyncTaskFuture)
@@ -140,6 +166,81 @@ public class AsyncTaskManager {
         return asyncTaskFuture.get();
     }
 
+    // below are all monitoring stuff
+    @Override
+    public String getIntrospectableId() {
+        return getClass().getCanonicalName();
+    }
+
+    @Override
+    public String getFieldValuesAsJSON() {
+        return DTOUtil.toJSON(scheduler.getStatistics());
+    }
+
+    /**
+     * The user who started a task (or subtask), captured from the current
+     * thread so that the work can run with the same security context.
+     */
+    private static final class TaskOwner {
+        private final String username;
+        private final Principal runAsPpal;
+        private final Subject runAsSubject;
+
+        private TaskOwner(String username, Principal runAsPpal,
+                Subject runAsSubject) {
+            this.username = username;
+            this.runAsPpal = runAsPpal;
+            this.runAsSubject = runAsSubject;
+        }
+
+        static TaskOwner current() {
+            HAccount taskOwner = ServiceLocator.instance()
+                    .getInstance(HAccount.class, new AuthenticatedLiteral());
+            ZanataIdentity ownerIdentity = ZanataIdentity.instance();
+
+            // Extract security context from current thread
+            return new TaskOwner(
+                    taskOwner != null ? taskOwner.getUsername() : null,
+                    ownerIdentity.getPrincipal(), ownerIdentity.getSubject());
+        }
+
+        /**
+         * The logic to run to setup all necessary contexts and specific
+         * logic
+         */
+        <V> Runnable wrap(AsyncTask<V> work, AsyncTaskResult<V> result) {
+            return () -> {
+                ContextControl ctxCtrl = null;
+
+                try {
+                    // Start CDI contexts
+                    ctxCtrl =
+                            ServiceLocator.instance().getInstance(
+                                    ContextControl.class);
+                    ctxCtrl.startContext(RequestScoped.class);
+                    ctxCtrl.startContext(SessionScoped.class);
+                    // Prepare the security context
+                    prepareSecurityContext(username, runAsPpal,
+                            runAsSubject);
+                    // run the task and capture the result
+                    result.set(work.call());
+                } catch (Throwable t) {
+                    result.setException(t);
+                    log.error(
+                            "Exception when executing an asynchronous task.",
+                            t);
+                } finally {
+                    // stop the contexts to make sure all beans are cleaned
+                    // up
+                    if (ctxCtrl != null) {
+                        ctxCtrl.stopContext(RequestScoped.class);
+                        ctxCtrl.stopContext(SessionScoped.class);
+                    }
+                }
+            };
+        }
+    }
+
     /**
      * Prepares the security context so that it contains all the
      * necessary facts for security checking.
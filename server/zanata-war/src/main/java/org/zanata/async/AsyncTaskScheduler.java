@@ -0,0 +1,255 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.async;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Decides which queued task runs next, and hands it to the executor.
+ * <p>
+ * At most {@code maxThreads} tasks run at once, and at most the limit for its
+ * {@link AsyncTaskClass} from each class. When a thread is free, the next task
+ * comes from the highest priority class which is below its limit. Within a
+ * class, the task owners take turns, so that one user's queued tasks don't
+ * delay everyone else's.
+ */
+@Slf4j
+class AsyncTaskScheduler {
+    private final Executor executor;
+    private final Ticker ticker;
+    private final int maxThreads;
+    private final Map<AsyncTaskClass, TaskQueue> queues =
+            new EnumMap<>(AsyncTaskClass.class);
+    // guarded by this
+    private int running;
+
+    /**
+     * @param executor
+     *            runs the tasks; must not queue them (the scheduler never
+     *            hands it more than maxThreads tasks at once)
+     * @param maxRunningByClass
+     *            maximum number of running tasks for each class (classes
+     *            without an entry may use every thread)
+     */
+    AsyncTaskScheduler(Executor executor, int maxThreads,
+            Map<AsyncTaskClass, Integer> maxRunningByClass) {
+        this(executor, maxThreads, maxRunningByClass, Ticker.systemTicker());
+    }
+
+    AsyncTaskScheduler(Executor executor, int maxThreads,
+            Map<AsyncTaskClass, Integer> maxRunningByClass, Ticker ticker) {
+        this.executor = executor;
+        this.ticker = ticker;
+        this.maxThreads = maxThreads;
+        for (AsyncTaskClass taskClass : AsyncTaskClass.values()) {
+            int maxRunning = maxRunningByClass.getOrDefault(taskClass,
+                    maxThreads);
+            queues.put(taskClass, new TaskQueue(Math.max(1, maxRunning)));
+        }
+    }
+
+    /**
+     * Queues a task, and starts it straight away if its class has a free
+     * thread.
+     *
+     * @param owner
+     *            the user the task runs for, or null for system tasks
+     */
+    void submit(AsyncTaskClass taskClass, @Nullable String owner,
+            Runnable task) {
+        synchronized (this) {
+            queues.get(taskClass).add(
+                    new QueuedTask(taskClass, owner == null ? "" : owner,
+                            task, ticker.read()));
+        }
+        dispatch();
+    }
+
+    private void dispatch() {
+        List<QueuedTask> toStart = Lists.newArrayList();
+        synchronized (this) {
+            while (running < maxThreads) {
+                QueuedTask next = pollNext();
+                if (next == null) {
+                    break;
+                }
+                running++;
+                toStart.add(next);
+            }
+        }
+        for (QueuedTask task : toStart) {
+            try {
+                executor.execute(() -> run(task));
+            } catch (RejectedExecutionException e) {
+                log.warn("asynchronous task rejected (shutting down?)", e);
+                finished(task);
+            }
+        }
+    }
+
+    // guarded by this
+    private @Nullable QueuedTask pollNext() {
+        long now = ticker.read();
+        for (TaskQueue queue : queues.values()) {
+            if (queue.running < queue.maxRunning) {
+                QueuedTask task = queue.poll();
+                if (task != null) {
+                    queue.running++;
+                    queue.started++;
+                    queue.totalWaitNanos += now - task.queuedAt;
+                    return task;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void run(QueuedTask task) {
+        try {
+            task.runnable.run();
+        } finally {
+            finished(task);
+            dispatch();
+        }
+    }
+
+    private synchronized void finished(QueuedTask task) {
+        running--;
+        queues.get(task.taskClass).running--;
+    }
+
+    synchronized int getQueuedCount(AsyncTaskClass taskClass) {
+        return queues.get(taskClass).size;
+    }
+
+    synchronized int getRunningCount(AsyncTaskClass taskClass) {
+        return queues.get(taskClass).running;
+    }
+
+    /**
+     * Returns the queue depth, running tasks and waiting times of each class.
+     */
+    synchronized Map<String, String> getStatistics() {
+        long now = ticker.read();
+        ImmutableMap.Builder<String, String> builder = ImmutableMap.builder();
+        builder.put("running", String.valueOf(running));
+        builder.put("maxThreads", String.valueOf(maxThreads));
+        for (Map.Entry<AsyncTaskClass, TaskQueue> entry : queues
+                .entrySet()) {
+            String prefix = entry.getKey().name().toLowerCase() + ".";
+            TaskQueue queue = entry.getValue();
+            long averageWaitNanos = queue.started == 0 ? 0
+                    : queue.totalWaitNanos / queue.started;
+            builder.put(prefix + "queued", String.valueOf(queue.size))
+                    .put(prefix + "running", String.valueOf(queue.running))
+                    .put(prefix + "maxRunning",
+                            String.valueOf(queue.maxRunning))
+                    .put(prefix + "started", String.valueOf(queue.started))
+                    .put(prefix + "averageWaitMillis", String.valueOf(
+                            TimeUnit.NANOSECONDS.toMillis(averageWaitNanos)))
+                    .put(prefix + "oldestQueuedMillis", String.valueOf(
+                            TimeUnit.NANOSECONDS
+                                    .toMillis(queue.oldestWait(now))));
+        }
+        return builder.build();
+    }
+
+    private static final class QueuedTask {
+        private final AsyncTaskClass taskClass;
+        private final String owner;
+        private final Runnable runnable;
+        private final long queuedAt;
+
+        private QueuedTask(AsyncTaskClass taskClass, String owner,
+                Runnable runnable, long queuedAt) {
+            this.taskClass = taskClass;
+            this.owner = owner;
+            this.runnable = runnable;
+            this.queuedAt = queuedAt;
+        }
+    }
+
+    /**
+     * Queued tasks of one class, with a FIFO queue per owner. The owners are
+     * kept in the order of their turns.
+     */
+    private static final class TaskQueue {
+        private final int maxRunning;
+        private final LinkedHashMap<String, Deque<QueuedTask>> byOwner =
+                new LinkedHashMap<>();
+        private int size;
+        private int running;
+        private long started;
+        private long totalWaitNanos;
+
+        private TaskQueue(int maxRunning) {
+            this.maxRunning = maxRunning;
+        }
+
+        private void add(QueuedTask task) {
+            byOwner.computeIfAbsent(task.owner, owner -> new ArrayDeque<>())
+                    .add(task);
+            size++;
+        }
+
+        private @Nullable QueuedTask poll() {
+            Iterator<Map.Entry<String, Deque<QueuedTask>>> it =
+                    byOwner.entrySet().iterator();
+            if (!it.hasNext()) {
+                return null;
+            }
+            Map.Entry<String, Deque<QueuedTask>> first = it.next();
+            it.remove();
+            QueuedTask task = first.getValue().poll();
+            if (!first.getValue().isEmpty()) {
+                // the owner's next task goes to the back of the line
+                byOwner.put(first.getKey(), first.getValue());
+            }
+            size--;
+            return task;
+        }
+
+        private long oldestWait(long now) {
+            long oldest = 0;
+            for (Deque<QueuedTask> tasks : byOwner.values()) {
+                oldest = Math.max(oldest, now - tasks.peek().queuedAt);
+            }
+            return oldest;
+        }
+    }
+}
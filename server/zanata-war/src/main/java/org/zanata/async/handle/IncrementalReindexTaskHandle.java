@@ -0,0 +1,48 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.async.handle;
+
+import java.util.Date;
+
+import javax.annotation.Nullable;
+
+import lombok.Getter;
+import org.zanata.async.AsyncTaskHandle;
+
+/**
+ * Asynchronous task handle for reindexing only the entities which have changed
+ * since the last reindex.
+ */
+public class IncrementalReindexTaskHandle extends AsyncTaskHandle<Void> {
+    /**
+     * Reindex entities changed since this time, instead of since the stored
+     * watermark for each class (eg the time of a database backup which has
+     * been restored). Null to use the stored watermarks.
+     */
+    @Getter
+    @Nullable
+    private final Date changedSince;
+
+    public IncrementalReindexTaskHandle(@Nullable Date changedSince) {
+        this.changedSince =
+                changedSince == null ? null : new Date(changedSince.getTime());
+    }
+}
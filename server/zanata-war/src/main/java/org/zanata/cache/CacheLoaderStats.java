@@ -0,0 +1,107 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load-time and wait-time statistics for the cache loader of an
+ * {@link InfinispanCacheWrapper}.
+ *
+ * A "load" is a call to the cache loader after a cache miss. A "wait" is a
+ * cache miss which was satisfied by a load already running in another thread
+ * for the same key.
+ */
+public class CacheLoaderStats {
+
+    private static final ConcurrentMap<String, CacheLoaderStats> statsByCache =
+            new ConcurrentHashMap<>();
+
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    /**
+     * Returns the statistics for the named cache, creating them if needed.
+     */
+    public static CacheLoaderStats forCache(String cacheName) {
+        return statsByCache.computeIfAbsent(cacheName,
+                name -> new CacheLoaderStats());
+    }
+
+    /**
+     * Returns the statistics for the named cache, or null if the cache has
+     * no loader.
+     */
+    public static CacheLoaderStats getIfPresent(String cacheName) {
+        return statsByCache.get(cacheName);
+    }
+
+    void recordLoad(long nanos) {
+        loads.increment();
+        loadNanos.add(nanos);
+    }
+
+    void recordWait(long nanos) {
+        waits.increment();
+        waitNanos.add(nanos);
+    }
+
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    public long getWaits() {
+        return waits.sum();
+    }
+
+    /**
+     * @return average milliseconds spent in the cache loader per load
+     */
+    public long getAverageLoadTime() {
+        return average(loadNanos.sum(), loads.sum());
+    }
+
+    /**
+     * @return average milliseconds spent waiting for another thread's load
+     */
+    public long getAverageWaitTime() {
+        return average(waitNanos.sum(), waits.sum());
+    }
+
+    public void reset() {
+        loads.reset();
+        loadNanos.reset();
+        waits.reset();
+        waitNanos.reset();
+    }
+
+    private static long average(long totalNanos, long count) {
+        if (count == 0) {
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(totalNanos / count);
+    }
+}
@@ -20,11 +20,23 @@
  */
 package org.zanata.cache;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
 import com.google.common.cache.CacheLoader;
 import org.infinispan.Cache;
 import org.infinispan.manager.CacheContainer;
 
 /**
+ * Wraps an Infinispan cache, optionally loading missing entries with a
+ * {@link CacheLoader}.
+ *
+ * Loading is single-flight per key: concurrent misses for the same key share
+ * one call to the loader, while misses for different keys load in parallel.
+ * Load and wait times are recorded in {@link CacheLoaderStats}.
+ *
  * @author Carlos Munoz <a href="mailto:camunoz@redhat.com">camunoz@redhat.com</a>
  */
 public class InfinispanCacheWrapper<K, V> implements CacheWrapper<K, V> {
@@ -32,6 +44,9 @@ public class InfinispanCacheWrapper<K, V> implements CacheWrapper<K, V> {
     private final String cacheName;
     private final CacheContainer cacheContainer;
     private CacheLoader<K, V> cacheLoader;
+    private CacheLoaderStats loaderStats;
+    private final ConcurrentMap<K, PendingLoad<V>> pendingLoads =
+            new ConcurrentHashMap<>();
 
     public InfinispanCacheWrapper(String cacheName,
             CacheContainer cacheContainer) {
@@ -44,10 +59,12 @@ public class InfinispanCacheWrapper<K, V> implements CacheWrapper<K, V> {
             CacheLoader<K, V> cacheLoader) {
         this(cacheName, cacheContainer);
         this.cacheLoader = cacheLoader;
+        this.loaderStats = CacheLoaderStats.forCache(cacheName);
     }
 
     @Override
     public void put(K key, V value) {
+        invalidatePendingLoad(key);
         getCache().put(key, value);
     }
 
@@ -57,26 +74,78 @@ public class InfinispanCacheWrapper<K, V> implements CacheWrapper<K, V> {
     }
 
     @Override
-    public synchronized V getWithLoader(K key) {
+    public V getWithLoader(K key) {
         // NB: Need to manually implement the cache loader feature
         V cachedValue = getCache().get(key);
-        if(cachedValue == null && cacheLoader != null) {
-            try {
+        if (cachedValue != null || cacheLoader == null) {
+            return cachedValue;
+        }
+        PendingLoad<V> load = new PendingLoad<>();
+        PendingLoad<V> existingLoad = pendingLoads.putIfAbsent(key, load);
+        if (existingLoad != null) {
+            return waitForLoad(existingLoad);
+        }
+        try {
+            // another thread may have finished loading this key between our
+            // cache miss and registering the pending load
+            cachedValue = getCache().get(key);
+            if (cachedValue == null) {
+                long start = System.nanoTime();
                 cachedValue = cacheLoader.load(key);
-            } catch (Exception e) {
-                throw new RuntimeException(
-                        "Unable to load entry with cache loader ", e);
+                loaderStats.recordLoad(System.nanoTime() - start);
+                // don't overwrite a newer value put (or a removal) which
+                // happened while we were loading
+                if (!load.invalidated) {
+                    getCache().put(key, cachedValue);
+                }
             }
-            getCache().put(key, cachedValue);
+            load.future.complete(cachedValue);
+            return cachedValue;
+        } catch (Exception e) {
+            load.future.completeExceptionally(e);
+            throw new RuntimeException(
+                    "Unable to load entry with cache loader ", e);
+        } finally {
+            pendingLoads.remove(key, load);
+        }
+    }
+
+    private V waitForLoad(PendingLoad<V> load) {
+        long start = System.nanoTime();
+        try {
+            return load.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(
+                    "Interrupted while waiting for cache loader", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(
+                    "Unable to load entry with cache loader ", e.getCause());
+        } finally {
+            loaderStats.recordWait(System.nanoTime() - start);
+        }
+    }
+
+    private void invalidatePendingLoad(K key) {
+        PendingLoad<V> load = pendingLoads.remove(key);
+        if (load != null) {
+            load.invalidated = true;
         }
-        return cachedValue;
     }
 
     @Override
     public boolean remove(K key) {
+        invalidatePendingLoad(key);
         return getCache().remove(key) != null;
     }
 
+    /**
+     * @return loader statistics, or null if this wrapper has no loader
+     */
+    public CacheLoaderStats getLoaderStats() {
+        return loaderStats;
+    }
+
     public Cache<K, V> getCache() {
         return cacheContainer.getCache(cacheName);
     }
@@ -94,4 +163,13 @@ public class InfinispanCacheWrapper<K, V> implements CacheWrapper<K, V> {
         cacheManager.getCache(cacheName);
         return new InfinispanCacheWrapper<K, V>(cacheName, cacheManager, loader);
     }
+
+    /**
+     * A load in progress for one key, shared by all threads which miss on
+     * that key while it runs.
+     */
+    private static final class PendingLoad<V> {
+        private final CompletableFuture<V> future = new CompletableFuture<>();
+        private volatile boolean invalidated;
+    }
 }
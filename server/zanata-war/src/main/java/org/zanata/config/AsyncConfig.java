@@ -39,6 +39,10 @@ import javax.inject.Named;
 public class AsyncConfig {
 
     public static final String THREAD_POOL_SIZE = "async.threadpool.size";
+    public static final String BULK_MAX_THREADS = "async.bulk.max.threads";
+    public static final String MAINTENANCE_MAX_THREADS =
+            "async.maintenance.max.threads";
+    public static final String WORKER_THREADS = "async.worker.threads";
 
     @Inject
     private SystemPropertyConfigStore systemPropertyConfigStore;
@@ -50,4 +54,29 @@ public class AsyncConfig {
     public int getThreadPoolSize() {
         return systemPropertyConfigStore.get(THREAD_POOL_SIZE, 10);
     }
+
+    /**
+     * Maximum number of threads for bulk tasks such as CopyTrans. Defaults to
+     * half the thread pool, leaving the rest for interactive tasks.
+     */
+    public int getBulkMaxThreads() {
+        return systemPropertyConfigStore.get(BULK_MAX_THREADS,
+                Math.max(1, getThreadPoolSize() / 2));
+    }
+
+    /**
+     * Maximum number of threads for maintenance tasks such as reindexing.
+     */
+    public int getMaintenanceMaxThreads() {
+        return systemPropertyConfigStore.get(MAINTENANCE_MAX_THREADS, 1);
+    }
+
+    /**
+     * Number of threads shared by tasks which split their work into
+     * subtasks, such as CopyTrans for several locales.
+     */
+    public int getWorkerThreads() {
+        return systemPropertyConfigStore.get(WORKER_THREADS,
+                Math.min(4, Runtime.getRuntime().availableProcessors()));
+    }
 }
@@ -119,6 +119,10 @@ public class DatabaseBackedConfig implements Serializable {
         return getConfigValue(HApplicationConfiguration.KEY_MAX_ACTIVE_REQ_PER_API_KEY);
     }
 
+    public String getMaxRequestsPerSecondPerApiKey() {
+        return getConfigValue(HApplicationConfiguration.KEY_MAX_REQ_PER_SECOND_PER_API_KEY);
+    }
+
     public String getMaxFilesPerUpload() {
         return getConfigValue(HApplicationConfiguration.KEY_MAX_FILES_PER_UPLOAD);
     }
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.dao;
+
+import javax.annotation.Nullable;
+import javax.enterprise.context.RequestScoped;
+import javax.inject.Named;
+
+import org.hibernate.Session;
+import org.zanata.model.HCopyTransWatermark;
+import org.zanata.model.HDocument;
+import org.zanata.model.HLocale;
+
+/**
+ * Reads and stores the CopyTrans watermark of each document and locale.
+ *
+ * @see HCopyTransWatermark
+ */
+@Named("copyTransWatermarkDAO")
+@RequestScoped
+public class CopyTransWatermarkDAO extends
+        AbstractDAOImpl<HCopyTransWatermark, Long> {
+
+    public CopyTransWatermarkDAO() {
+        super(HCopyTransWatermark.class);
+    }
+
+    public CopyTransWatermarkDAO(Session session) {
+        super(HCopyTransWatermark.class, session);
+    }
+
+    /**
+     * @return the watermark of the document and locale, or null if CopyTrans
+     *         has never completed for them
+     */
+    public @Nullable HCopyTransWatermark getWatermark(Long documentId,
+            Long localeId) {
+        return (HCopyTransWatermark) getSession()
+                .createQuery("from HCopyTransWatermark w "
+                        + "where w.document.id = :documentId "
+                        + "and w.locale.id = :localeId")
+                .setParameter("documentId", documentId)
+                .setParameter("localeId", localeId)
+                .setComment("CopyTransWatermarkDAO.getWatermark")
+                .uniqueResult();
+    }
+
+    /**
+     * Records a completed CopyTrans run for the document and locale.
+     *
+     * @param documentRevision
+     *            the document revision when the run started
+     */
+    public void saveWatermark(Long documentId, Long localeId,
+            int documentRevision) {
+        HCopyTransWatermark watermark = getWatermark(documentId, localeId);
+        if (watermark == null) {
+            watermark = new HCopyTransWatermark(
+                    (HDocument) getSession().load(HDocument.class, documentId),
+                    (HLocale) getSession().load(HLocale.class, localeId),
+                    documentRevision);
+        } else {
+            watermark.setDocumentRevision(documentRevision);
+        }
+        makePersistent(watermark);
+        flush();
+    }
+}
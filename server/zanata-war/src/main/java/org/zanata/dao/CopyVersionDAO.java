@@ -0,0 +1,401 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.dao;
+
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import javax.enterprise.context.RequestScoped;
+import javax.inject.Named;
+
+import org.hibernate.Session;
+import org.hibernate.type.LongType;
+import org.hibernate.type.StringType;
+import org.zanata.model.HSimpleComment;
+import org.zanata.model.HTextFlow;
+import org.zanata.model.po.HPotEntryData;
+import org.zanata.model.type.EntityType;
+import org.zanata.model.type.TranslationSourceType;
+
+import com.google.common.collect.Lists;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Copies the text flows and translations of documents into another project
+ * version with set-based SQL (INSERT ... SELECT), instead of loading and
+ * persisting each entity.
+ *
+ * Copied rows are matched to their copies by natural key: documents by
+ * docId within the new version, text flows by resId within the document,
+ * targets by locale and history by versionNum. Only comments and PO entry
+ * data, which have no natural key, are inserted one at a time.
+ *
+ * The inserted targets are not indexed by Hibernate Search, so callers must
+ * reindex them when they are done.
+ *
+ * @see org.zanata.service.impl.CopyVersionServiceImpl
+ */
+@Named("copyVersionDAO")
+@RequestScoped
+@Slf4j
+public class CopyVersionDAO extends AbstractDAOImpl<HTextFlow, Long> {
+    private static final long serialVersionUID = 1L;
+
+    // joins text flow "tf" in document "d" to its copy "ntf" in document "nd"
+    private static final String TEXT_FLOW_COPY_JOINS =
+            "JOIN HDocument d ON d.id = tf.document_id "
+                    + "JOIN HDocument nd ON nd.docId = d.docId "
+                    + "AND nd.project_iteration_id = :newVersionId "
+                    + "JOIN HTextFlow ntf ON ntf.document_id = nd.id "
+                    + "AND ntf.resId = tf.resId ";
+
+    // joins target "t" to its copy "nt"
+    private static final String TARGET_COPY_JOINS =
+            "JOIN HTextFlow tf ON tf.id = t.tf_id "
+                    + TEXT_FLOW_COPY_JOINS
+                    + "JOIN HTextFlowTarget nt ON nt.tf_id = ntf.id "
+                    + "AND nt.locale = t.locale ";
+
+    private static final String TARGET_FILTER =
+            "WHERE tf.document_id IN (:documentIds) "
+                    + "AND tf.obsolete = :obsolete AND t.locale = :localeId ";
+
+    private static final String COPY_TEXT_FLOWS_SQL =
+            "INSERT INTO HTextFlow (document_id, resId, revision, pos, "
+                    + "obsolete, wordCount, contentHash, plural, content0, "
+                    + "content1, content2, content3, content4, content5) "
+                    + "SELECT nd.id, tf.resId, tf.revision, tf.pos, "
+                    + "tf.obsolete, tf.wordCount, tf.contentHash, tf.plural, "
+                    + "tf.content0, tf.content1, tf.content2, tf.content3, "
+                    + "tf.content4, tf.content5 "
+                    + "FROM HTextFlow tf "
+                    + "JOIN HDocument d ON d.id = tf.document_id "
+                    + "JOIN HDocument nd ON nd.docId = d.docId "
+                    + "AND nd.project_iteration_id = :newVersionId "
+                    + "WHERE tf.document_id IN (:documentIds) "
+                    + "AND tf.obsolete = :obsolete";
+
+    private static final String TEXT_FLOW_EXTRAS_SQL =
+            "SELECT ntf.id AS newId, c.comment AS textFlowComment, "
+                    + "ped.id AS potEntryDataId, ped.context AS context, "
+                    + "ped.flags AS flags, ped.refs AS refs, "
+                    + "pc.comment AS extractedComment "
+                    + "FROM HTextFlow tf "
+                    + TEXT_FLOW_COPY_JOINS
+                    + "LEFT JOIN HSimpleComment c ON c.id = tf.comment_id "
+                    + "LEFT JOIN HPotEntryData ped "
+                    + "ON ped.id = tf.potEntryData_id "
+                    + "LEFT JOIN HSimpleComment pc ON pc.id = ped.comment_id "
+                    + "WHERE tf.document_id IN (:documentIds) "
+                    + "AND tf.obsolete = :obsolete "
+                    + "AND (tf.comment_id IS NOT NULL "
+                    + "OR tf.potEntryData_id IS NOT NULL)";
+
+    private static final String COPY_TARGETS_SQL =
+            "INSERT INTO HTextFlowTarget (versionNum, creationDate, "
+                    + "lastChanged, tf_id, locale, content0, content1, "
+                    + "content2, content3, content4, content5, state, "
+                    + "tf_revision, last_modified_by_id, translated_by_id, "
+                    + "reviewed_by_id, revisionComment, copiedEntityType, "
+                    + "copiedEntityId, sourceType, automatedEntry) "
+                    + "SELECT t.versionNum, :now, t.lastChanged, ntf.id, "
+                    + "t.locale, t.content0, t.content1, t.content2, "
+                    + "t.content3, t.content4, t.content5, t.state, "
+                    + "ntf.revision, t.last_modified_by_id, "
+                    + "t.translated_by_id, t.reviewed_by_id, "
+                    // see TranslationUtil.getCopyVersionMessage
+                    + "CONCAT(:messagePrefix, d.docId, '''', "
+                    + "CASE WHEN p.name IS NULL OR p.name = '' THEN '' "
+                    + "ELSE CONCAT(', author ''', p.name, '''') END), "
+                    + "COALESCE(t.copiedEntityType, :targetEntityType), "
+                    + "COALESCE(t.copiedEntityId, t.id), :sourceType, "
+                    + ":automatedEntry "
+                    + "FROM HTextFlowTarget t "
+                    + "JOIN HTextFlow tf ON tf.id = t.tf_id "
+                    + TEXT_FLOW_COPY_JOINS
+                    + "LEFT JOIN HPerson p ON p.id = t.last_modified_by_id "
+                    + TARGET_FILTER;
+
+    private static final String TARGET_COMMENTS_SQL =
+            "SELECT nt.id AS newId, c.comment AS targetComment "
+                    + "FROM HTextFlowTarget t "
+                    + TARGET_COPY_JOINS
+                    + "JOIN HSimpleComment c ON c.id = t.comment_id "
+                    + TARGET_FILTER;
+
+    private static final String COPY_HISTORY_SQL =
+            "INSERT INTO HTextFlowTargetHistory (target_id, versionNum, "
+                    + "lastChanged, last_modified_by_id, state, tf_revision, "
+                    + "translated_by_id, reviewed_by_id, revisionComment, "
+                    + "copiedEntityType, copiedEntityId, sourceType, "
+                    + "automatedEntry) "
+                    + "SELECT nt.id, h.versionNum, h.lastChanged, "
+                    + "h.last_modified_by_id, h.state, h.tf_revision, "
+                    + "h.translated_by_id, h.reviewed_by_id, "
+                    + "h.revisionComment, "
+                    + "COALESCE(h.copiedEntityType, :historyEntityType), "
+                    + "COALESCE(h.copiedEntityId, h.id), :sourceType, "
+                    + ":automatedEntry "
+                    + "FROM HTextFlowTargetHistory h "
+                    + "JOIN HTextFlowTarget t ON t.id = h.target_id "
+                    + TARGET_COPY_JOINS
+                    + TARGET_FILTER;
+
+    private static final String COPY_HISTORY_CONTENTS_SQL =
+            "INSERT INTO HTextFlowTargetContentHistory "
+                    + "(text_flow_target_history_id, pos, content) "
+                    + "SELECT nh.id, hc.pos, hc.content "
+                    + "FROM HTextFlowTargetContentHistory hc "
+                    + "JOIN HTextFlowTargetHistory h "
+                    + "ON h.id = hc.text_flow_target_history_id "
+                    + "JOIN HTextFlowTarget t ON t.id = h.target_id "
+                    + TARGET_COPY_JOINS
+                    + "JOIN HTextFlowTargetHistory nh ON nh.target_id = nt.id "
+                    + "AND nh.versionNum = h.versionNum "
+                    + TARGET_FILTER;
+
+    private static final String COPY_REVIEW_COMMENTS_SQL =
+            "INSERT INTO HTextFlowTargetReviewComment (versionNum, "
+                    + "creationDate, lastChanged, commenter_id, target_id, "
+                    + "comment, targetVersion) "
+                    + "SELECT 0, :now, :now, r.commenter_id, nt.id, "
+                    + "r.comment, nt.versionNum "
+                    + "FROM HTextFlowTargetReviewComment r "
+                    + "JOIN HTextFlowTarget t ON t.id = r.target_id "
+                    + TARGET_COPY_JOINS
+                    + TARGET_FILTER
+                    // keeps the comments in their original order
+                    + "ORDER BY r.id";
+
+    public CopyVersionDAO() {
+        super(HTextFlow.class);
+    }
+
+    public CopyVersionDAO(Session session) {
+        super(HTextFlow.class, session);
+    }
+
+    /**
+     * Returns the ids of the locales which have targets in any of the given
+     * documents.
+     */
+    public List<Long> getTargetLocaleIds(Collection<Long> documentIds) {
+        @SuppressWarnings("unchecked")
+        List<Long> localeIds = getSession()
+                .createQuery("select distinct tft.locale.id "
+                        + "from HTextFlowTarget tft "
+                        + "where tft.textFlow.document.id in (:documentIds)")
+                .setParameterList("documentIds", documentIds)
+                .setComment("CopyVersionDAO.getTargetLocaleIds").list();
+        return localeIds;
+    }
+
+    /**
+     * Copies the non-obsolete text flows of the given documents, with their
+     * comments and PO entry data, into the documents with the same docIds in
+     * another version.
+     *
+     * @return number of text flows copied
+     */
+    public int copyTextFlows(Collection<Long> documentIds, Long newVersionId) {
+        Session session = getSession();
+        int count = session.createSQLQuery(COPY_TEXT_FLOWS_SQL)
+                .addSynchronizedQuerySpace("HTextFlow")
+                .setParameter("newVersionId", newVersionId)
+                .setParameterList("documentIds", documentIds)
+                .setBoolean("obsolete", false)
+                .setComment("CopyVersionDAO.copyTextFlows")
+                .executeUpdate();
+
+        @SuppressWarnings("unchecked")
+        List<Object[]> extras = session.createSQLQuery(TEXT_FLOW_EXTRAS_SQL)
+                .addScalar("newId", LongType.INSTANCE)
+                .addScalar("textFlowComment", StringType.INSTANCE)
+                .addScalar("potEntryDataId", LongType.INSTANCE)
+                .addScalar("context", StringType.INSTANCE)
+                .addScalar("flags", StringType.INSTANCE)
+                .addScalar("refs", StringType.INSTANCE)
+                .addScalar("extractedComment", StringType.INSTANCE)
+                .setParameter("newVersionId", newVersionId)
+                .setParameterList("documentIds", documentIds)
+                .setBoolean("obsolete", false)
+                .setComment("CopyVersionDAO.copyTextFlows-extras").list();
+        List<Long[]> updates = Lists.newArrayListWithCapacity(extras.size());
+        for (Object[] row : extras) {
+            Long commentId = null;
+            if (row[1] != null) {
+                commentId = (Long) session
+                        .save(new HSimpleComment((String) row[1]));
+            }
+            Long potEntryDataId = null;
+            if (row[2] != null) {
+                potEntryDataId = (Long) session.save(copyPotEntryData(
+                        (String) row[3], (String) row[4], (String) row[5],
+                        (String) row[6]));
+            }
+            updates.add(new Long[] { commentId, potEntryDataId,
+                    (Long) row[0] });
+        }
+        // the copied rows are not visible (or cached) outside this
+        // transaction yet, so they can be updated behind Hibernate's back
+        batchUpdate("UPDATE HTextFlow SET comment_id = ?, "
+                + "potEntryData_id = ? WHERE id = ?", updates);
+        return count;
+    }
+
+    /**
+     * Copies the targets of the given documents in a locale, with their
+     * comments, history and review comments, to the text flows with the same
+     * resIds in the documents with the same docIds in another version.
+     * {@link #copyTextFlows(Collection, Long)} must have been called first.
+     *
+     * The copies are marked as copied by copy version, and refer to the
+     * target they were copied from (or to its original, if it was itself a
+     * copy).
+     *
+     * @param messagePrefix
+     *            start of the revision comment, as returned by
+     *            {@link org.zanata.util.TranslationUtil#getCopyVersionMessagePrefix(String, String)}
+     * @return number of targets copied
+     */
+    public int copyTextFlowTargets(Collection<Long> documentIds,
+            Long newVersionId, Long localeId, String messagePrefix) {
+        Session session = getSession();
+        Date now = new Date();
+        String sourceType = TranslationSourceType.COPY_VERSION.getAbbr();
+        boolean automatedEntry =
+                TranslationSourceType.COPY_VERSION.isAutomatedEntry();
+
+        int count = session.createSQLQuery(COPY_TARGETS_SQL)
+                .addSynchronizedQuerySpace("HTextFlowTarget")
+                .setTimestamp("now", now)
+                .setParameter("messagePrefix", messagePrefix)
+                .setParameter("targetEntityType",
+                        EntityType.HTexFlowTarget.getAbbr())
+                .setParameter("sourceType", sourceType)
+                .setBoolean("automatedEntry", automatedEntry)
+                .setParameter("newVersionId", newVersionId)
+                .setParameterList("documentIds", documentIds)
+                .setBoolean("obsolete", false)
+                .setParameter("localeId", localeId)
+                .setComment("CopyVersionDAO.copyTextFlowTargets")
+                .executeUpdate();
+        if (count == 0) {
+            return 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Object[]> comments = session.createSQLQuery(TARGET_COMMENTS_SQL)
+                .addScalar("newId", LongType.INSTANCE)
+                .addScalar("targetComment", StringType.INSTANCE)
+                .setParameter("newVersionId", newVersionId)
+                .setParameterList("documentIds", documentIds)
+                .setBoolean("obsolete", false)
+                .setParameter("localeId", localeId)
+                .setComment("CopyVersionDAO.copyTextFlowTargets-comments")
+                .list();
+        List<Long[]> updates = Lists.newArrayListWithCapacity(comments.size());
+        for (Object[] row : comments) {
+            Long commentId =
+                    (Long) session.save(new HSimpleComment((String) row[1]));
+            updates.add(new Long[] { commentId, (Long) row[0] });
+        }
+        batchUpdate("UPDATE HTextFlowTarget SET comment_id = ? WHERE id = ?",
+                updates);
+
+        session.createSQLQuery(COPY_HISTORY_SQL)
+                .addSynchronizedQuerySpace("HTextFlowTargetHistory")
+                .setParameter("historyEntityType",
+                        EntityType.HTextFlowTargetHistory.getAbbr())
+                .setParameter("sourceType", sourceType)
+                .setBoolean("automatedEntry", automatedEntry)
+                .setParameter("newVersionId", newVersionId)
+                .setParameterList("documentIds", documentIds)
+                .setBoolean("obsolete", false)
+                .setParameter("localeId", localeId)
+                .setComment("CopyVersionDAO.copyTextFlowTargets-history")
+                .executeUpdate();
+        session.createSQLQuery(COPY_HISTORY_CONTENTS_SQL)
+                .addSynchronizedQuerySpace("HTextFlowTargetContentHistory")
+                .setParameter("newVersionId", newVersionId)
+                .setParameterList("documentIds", documentIds)
+                .setBoolean("obsolete", false)
+                .setParameter("localeId", localeId)
+                .setComment(
+                        "CopyVersionDAO.copyTextFlowTargets-historyContents")
+                .executeUpdate();
+        session.createSQLQuery(COPY_REVIEW_COMMENTS_SQL)
+                .addSynchronizedQuerySpace("HTextFlowTargetReviewComment")
+                .setTimestamp("now", now)
+                .setParameter("newVersionId", newVersionId)
+                .setParameterList("documentIds", documentIds)
+                .setBoolean("obsolete", false)
+                .setParameter("localeId", localeId)
+                .setComment("CopyVersionDAO.copyTextFlowTargets-reviews")
+                .executeUpdate();
+        return count;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static HPotEntryData copyPotEntryData(String context,
+            String flags, String references, String extractedComment) {
+        HPotEntryData potEntryData = new HPotEntryData();
+        potEntryData.setContext(context);
+        potEntryData.setFlags(flags);
+        potEntryData.setReferences(references);
+        if (extractedComment != null) {
+            potEntryData
+                    .setExtractedComment(new HSimpleComment(extractedComment));
+        }
+        return potEntryData;
+    }
+
+    /**
+     * Runs an update once for each row of (possibly null) id parameters, as a
+     * JDBC batch.
+     */
+    private void batchUpdate(String sql, List<Long[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        Session session = getSession();
+        // make sure the inserted comments exist before referring to them
+        session.flush();
+        session.doWork(connection -> {
+            try (PreparedStatement statement =
+                    connection.prepareStatement(sql)) {
+                for (Long[] row : rows) {
+                    for (int i = 0; i < row.length; i++) {
+                        statement.setObject(i + 1, row[i],
+                                Types.BIGINT);
+                    }
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        });
+        log.debug("updated {} copied rows: {}", rows.size(), sql);
+    }
+}
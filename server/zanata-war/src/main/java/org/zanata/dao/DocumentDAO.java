@@ -1,6 +1,8 @@
 package org.zanata.dao;
 
 import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -14,6 +16,7 @@ import org.hibernate.Session;
 import org.hibernate.type.TimestampType;
 
 import javax.enterprise.context.RequestScoped;
+import javax.inject.Inject;
 import javax.inject.Named;
 import org.zanata.common.ContentState;
 import org.zanata.common.LocaleId;
@@ -39,6 +42,10 @@ import lombok.extern.slf4j.Slf4j;
 @RequestScoped
 @Slf4j
 public class DocumentDAO extends AbstractDAOImpl<HDocument, Long> {
+
+    @Inject
+    DocumentStatisticDAO documentStatisticDAO;
+
     public DocumentDAO() {
         super(HDocument.class);
     }
@@ -186,23 +193,27 @@ public class DocumentDAO extends AbstractDAOImpl<HDocument, Long> {
                 .uniqueResult();
     }
 
+    /**
+     * Returns word statistics from the stored per-document statistics
+     * (calculating them first if necessary).
+     *
+     * @see DocumentStatisticDAO#getWordCounts(Long, LocaleId)
+     */
     public WordStatistic getWordStatistics(Long documentId, LocaleId localeId) {
         WordStatistic wordStatistic = new WordStatistic();
-
-        List<StatusCount> stats = getWordStatusCount(documentId, localeId);
-
-        for (StatusCount count : stats) {
-            wordStatistic.set(count.status, count.count.intValue());
+        HDocument document = getById(documentId);
+        if (document == null || document.isObsolete()) {
+            // an obsolete document has no translated words
+            wordStatistic.set(ContentState.New,
+                    getTotalWordCountForDocument(documentId).intValue());
+            return wordStatistic;
         }
 
-        Long totalCount = getTotalWordCountForDocument(documentId);
-        wordStatistic.set(
-                ContentState.New,
-                totalCount.intValue()
-                        - (wordStatistic.getTranslated()
-                                + wordStatistic.getNeedReview() + wordStatistic
-                                    .getRejected()));
-
+        Map<ContentState, Long> wordCounts =
+                documentStatisticDAO.getWordCounts(documentId, localeId);
+        for (Map.Entry<ContentState, Long> count : wordCounts.entrySet()) {
+            wordStatistic.set(count.getKey(), count.getValue().intValue());
+        }
         return wordStatistic;
     }
 
@@ -469,7 +480,7 @@ public class DocumentDAO extends AbstractDAOImpl<HDocument, Long> {
         Query q =
                 getSession()
                         .createQuery(
-                                "from HDocument doc where doc.obsolete=0 and doc.projectIteration.id = :versionId");
+                                "from HDocument doc where doc.obsolete=0 and doc.projectIteration.id = :versionId order by doc.id");
         q.setParameter("versionId", versionId);
         q.setFirstResult(offset);
         q.setMaxResults(maxResults);
@@ -615,6 +626,24 @@ public class DocumentDAO extends AbstractDAOImpl<HDocument, Long> {
         return docs;
     }
 
+    /**
+     * Returns the given file ids which are still used by at least one raw
+     * document.
+     */
+    public Set<String> getReferencedFileIds(Collection<String> fileIds) {
+        if (fileIds.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Query q = getSession().createQuery(
+                "select distinct r.fileId from HRawDocument r " +
+                        "where r.fileId in (:fileIds)");
+        q.setParameterList("fileIds", fileIds);
+        q.setComment("DocumentDAO.getReferencedFileIds");
+        @SuppressWarnings("unchecked")
+        List<String> results = q.list();
+        return new HashSet<>(results);
+    }
+
     public LobHelper getLobHelper() {
         return getSession().getLobHelper();
     }
@@ -0,0 +1,421 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.dao;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.enterprise.context.RequestScoped;
+import javax.inject.Named;
+
+import org.hibernate.Session;
+import org.zanata.common.ContentState;
+import org.zanata.common.LocaleId;
+import org.zanata.model.HDocument;
+import org.zanata.model.HDocumentStatistic;
+import org.zanata.model.HLocale;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Reads and maintains the per-document word statistics in
+ * {@link HDocumentStatistic}.
+ *
+ * Reads never write: statistics which have not been stored yet are
+ * calculated from the targets without storing them. Rows are only created on
+ * the write path, when the first word delta arrives for a document and locale
+ * (see {@link #applyOrCreateStatistics(Long, LocaleId, Map)}), and by the
+ * rebuild task. Both lock the document rows first (see
+ * {@link #lockDocuments(Collection)}), so that concurrent writers can't create
+ * the same rows twice, or miss each other's deltas.
+ *
+ * @see org.zanata.service.impl.DocumentStatisticServiceImpl
+ */
+@Named("documentStatisticDAO")
+@RequestScoped
+@Slf4j
+public class DocumentStatisticDAO extends
+        AbstractDAOImpl<HDocumentStatistic, Long> {
+
+    // maximum number of document ids in one "in" clause
+    static final int DOCUMENT_BATCH_SIZE = 500;
+
+    public DocumentStatisticDAO() {
+        super(HDocumentStatistic.class);
+    }
+
+    public DocumentStatisticDAO(Session session) {
+        super(HDocumentStatistic.class, session);
+    }
+
+    /**
+     * Returns the word count for each content state of a document in a
+     * locale, calculating them from the targets if they have not been stored.
+     * Untranslated words are counted as {@link ContentState#New}.
+     */
+    public Map<ContentState, Long> getWordCounts(Long documentId,
+            LocaleId localeId) {
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = getSession()
+                .createQuery("select s.state, s.wordCount "
+                        + "from HDocumentStatistic s "
+                        + "where s.document.id = :documentId "
+                        + "and s.locale.localeId = :localeId")
+                .setParameter("documentId", documentId)
+                .setParameter("localeId", localeId)
+                .setComment("DocumentStatisticDAO.getWordCounts").list();
+        if (rows.isEmpty()) {
+            return calculateStatistics(Collections.singletonList(documentId),
+                    localeId).get(documentId);
+        }
+        return toStateMap(rows);
+    }
+
+    /**
+     * Returns the word count for each content state of the non-obsolete
+     * documents of a project version in a locale, calculating the statistics
+     * of any documents which don't have them stored yet.
+     */
+    public Map<ContentState, Long> getWordCountsForIteration(Long iterationId,
+            LocaleId localeId) {
+        @SuppressWarnings("unchecked")
+        List<Long> missingDocIds = getSession()
+                .createQuery("select doc.id from HDocument doc "
+                        + "where doc.projectIteration.id = :iterationId "
+                        + "and doc.obsolete = false "
+                        + "and not exists (select s.id from HDocumentStatistic s "
+                        + "where s.document = doc "
+                        + "and s.locale.localeId = :localeId)")
+                .setParameter("iterationId", iterationId)
+                .setParameter("localeId", localeId)
+                .setComment(
+                        "DocumentStatisticDAO.getWordCountsForIteration-missing")
+                .list();
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = getSession()
+                .createQuery("select s.state, sum(s.wordCount) "
+                        + "from HDocumentStatistic s "
+                        + "where s.document.projectIteration.id = :iterationId "
+                        + "and s.document.obsolete = false "
+                        + "and s.locale.localeId = :localeId "
+                        + "group by s.state")
+                .setParameter("iterationId", iterationId)
+                .setParameter("localeId", localeId)
+                .setComment("DocumentStatisticDAO.getWordCountsForIteration")
+                .list();
+        Map<ContentState, Long> counts = toStateMap(rows);
+        for (List<Long> docIds : Lists.partition(missingDocIds,
+                DOCUMENT_BATCH_SIZE)) {
+            for (Map<ContentState, Long> docCounts : calculateStatistics(
+                    docIds, localeId).values()) {
+                docCounts.forEach((state, count) -> counts.merge(state, count,
+                        Long::sum));
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Adds word deltas (as carried by DocStatsEvent) to the statistics of a
+     * document in a locale, if they have been stored, otherwise stores
+     * statistics calculated from the targets (which already include the
+     * change described by the deltas).
+     *
+     * The document is locked before the statistics are created, and the
+     * deltas are applied again afterwards, because another transaction may
+     * have created them in the meantime (without this change).
+     */
+    public void applyOrCreateStatistics(Long documentId, LocaleId localeId,
+            Map<ContentState, Long> wordDeltasByState) {
+        if (!hasDeltas(wordDeltasByState) || applyWordDeltas(documentId,
+                localeId, wordDeltasByState) > 0) {
+            return;
+        }
+        lockDocuments(Collections.singletonList(documentId));
+        if (applyWordDeltas(documentId, localeId, wordDeltasByState) == 0) {
+            createStatistics(Collections.singletonList(documentId), localeId);
+        }
+    }
+
+    /**
+     * Locks the rows of the given documents until the end of the transaction.
+     * Writers of HDocumentStatistic rows take these locks before creating
+     * rows.
+     */
+    public void lockDocuments(Collection<Long> documentIds) {
+        if (documentIds.isEmpty()) {
+            return;
+        }
+        getSession()
+                .createSQLQuery("select id from HDocument "
+                        + "where id in (:documentIds) for update")
+                .setParameterList("documentIds", documentIds)
+                .setComment("DocumentStatisticDAO.lockDocuments")
+                .list();
+    }
+
+    private static boolean hasDeltas(Map<ContentState, Long> wordDeltasByState) {
+        for (Map.Entry<ContentState, Long> entry : wordDeltasByState
+                .entrySet()) {
+            if (entry.getKey() != null && entry.getValue() != null
+                    && entry.getValue() != 0L) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds word deltas (as carried by DocStatsEvent) to the statistics of a
+     * document in a locale. Does nothing if the statistics have not been
+     * stored yet.
+     *
+     * @return number of statistic rows updated
+     */
+    public int applyWordDeltas(Long documentId, LocaleId localeId,
+            Map<ContentState, Long> wordDeltasByState) {
+        int updated = 0;
+        for (Map.Entry<ContentState, Long> entry : wordDeltasByState
+                .entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null
+                    || entry.getValue() == 0L) {
+                continue;
+            }
+            updated += getSession()
+                    .createQuery("update HDocumentStatistic "
+                            + "set wordCount = wordCount + :delta "
+                            + "where document.id = :documentId "
+                            + "and state = :state "
+                            + "and locale.id in (select l.id from HLocale l "
+                            + "where l.localeId = :localeId)")
+                    .setParameter("delta", entry.getValue())
+                    .setParameter("documentId", documentId)
+                    .setParameter("state", entry.getKey())
+                    .setParameter("localeId", localeId)
+                    .setComment("DocumentStatisticDAO.applyWordDeltas")
+                    .executeUpdate();
+        }
+        return updated;
+    }
+
+    /**
+     * Removes the statistics of a document for all locales, so that they will
+     * be recalculated when next read. This is needed when the document's text
+     * flows change.
+     */
+    public int deleteForDocument(Long documentId) {
+        return getSession()
+                .createQuery("delete from HDocumentStatistic "
+                        + "where document.id = :documentId")
+                .setParameter("documentId", documentId)
+                .setComment("DocumentStatisticDAO.deleteForDocument")
+                .executeUpdate();
+    }
+
+    /**
+     * Removes the statistics of a batch of documents for all locales.
+     */
+    public int deleteForDocuments(Collection<Long> documentIds) {
+        if (documentIds.isEmpty()) {
+            return 0;
+        }
+        return getSession()
+                .createQuery("delete from HDocumentStatistic "
+                        + "where document.id in (:documentIds)")
+                .setParameterList("documentIds", documentIds)
+                .setComment("DocumentStatisticDAO.deleteForDocuments")
+                .executeUpdate();
+    }
+
+    /**
+     * Removes the statistics of all documents in a project version.
+     */
+    public int deleteForIteration(Long iterationId) {
+        return getSession()
+                .createQuery("delete from HDocumentStatistic "
+                        + "where document.id in (select doc.id from HDocument doc "
+                        + "where doc.projectIteration.id = :iterationId)")
+                .setParameter("iterationId", iterationId)
+                .setComment("DocumentStatisticDAO.deleteForIteration")
+                .executeUpdate();
+    }
+
+    /**
+     * Returns the project version id of every document, keyed and ordered by
+     * document id.
+     */
+    public Map<Long, Long> getAllDocumentVersionIds() {
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = getSession()
+                .createQuery("select doc.id, doc.projectIteration.id "
+                        + "from HDocument doc order by doc.id")
+                .setComment("DocumentStatisticDAO.getAllDocumentVersionIds")
+                .list();
+        Map<Long, Long> versionIdByDocId = Maps.newLinkedHashMap();
+        for (Object[] row : rows) {
+            versionIdByDocId.put((Long) row[0], (Long) row[1]);
+        }
+        return versionIdByDocId;
+    }
+
+    /**
+     * Returns the locales which have targets in any of the given documents.
+     */
+    public List<LocaleId> getTargetLocales(Collection<Long> documentIds) {
+        if (documentIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        @SuppressWarnings("unchecked")
+        List<LocaleId> localeIds = getSession()
+                .createQuery("select distinct tft.locale.localeId "
+                        + "from HTextFlowTarget tft "
+                        + "where tft.textFlow.document.id in (:documentIds)")
+                .setParameterList("documentIds", documentIds)
+                .setComment("DocumentStatisticDAO.getTargetLocales").list();
+        return localeIds;
+    }
+
+    /**
+     * Calculates the statistics of the given documents in a locale from their
+     * text flows and targets, and stores them. Callers must hold the locks of
+     * the documents (see {@link #lockDocuments(Collection)}), and the
+     * documents must not have statistics for the locale.
+     *
+     * @return word counts by state, for each document id
+     */
+    public Map<Long, Map<ContentState, Long>> createStatistics(
+            List<Long> documentIds, LocaleId localeId) {
+        Session session = getSession();
+        // the targets changed in this transaction must be counted
+        session.flush();
+        Map<Long, Map<ContentState, Long>> result =
+                calculateStatistics(documentIds, localeId);
+        if (result.isEmpty()) {
+            return result;
+        }
+        HLocale locale = (HLocale) session.byNaturalId(HLocale.class)
+                .using("localeId", localeId).load();
+        if (locale == null) {
+            // nothing to attach the statistics to
+            return result;
+        }
+        for (Long docId : documentIds) {
+            HDocument document =
+                    (HDocument) session.load(HDocument.class, docId);
+            for (Map.Entry<ContentState, Long> entry : result.get(docId)
+                    .entrySet()) {
+                session.save(new HDocumentStatistic(document, locale,
+                        entry.getKey(), entry.getValue()));
+            }
+        }
+        session.flush();
+        log.debug("created word statistics for {} document(s) in {}",
+                documentIds.size(), localeId);
+        return result;
+    }
+
+    /**
+     * Calculates the statistics of the given documents in a locale from their
+     * text flows and targets, without storing them.
+     *
+     * @return word counts by state, for each document id
+     */
+    private Map<Long, Map<ContentState, Long>> calculateStatistics(
+            List<Long> documentIds, LocaleId localeId) {
+        Map<Long, Map<ContentState, Long>> result = Maps.newHashMap();
+        if (documentIds.isEmpty()) {
+            return result;
+        }
+        Session session = getSession();
+
+        @SuppressWarnings("unchecked")
+        List<Object[]> totals = session
+                .createQuery("select tf.document.id, sum(tf.wordCount) "
+                        + "from HTextFlow tf "
+                        + "where tf.document.id in (:documentIds) "
+                        + "and tf.obsolete = false "
+                        + "group by tf.document.id")
+                .setParameterList("documentIds", documentIds)
+                .setComment("DocumentStatisticDAO.createStatistics-totals")
+                .list();
+        Map<Long, Long> totalByDoc = Maps.newHashMap();
+        for (Object[] row : totals) {
+            totalByDoc.put((Long) row[0], (Long) row[1]);
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Object[]> stateCounts = session
+                .createQuery("select tft.textFlow.document.id, tft.state, "
+                        + "sum(tft.textFlow.wordCount) "
+                        + "from HTextFlowTarget tft "
+                        + "where tft.textFlow.document.id in (:documentIds) "
+                        + "and tft.locale.localeId = :localeId "
+                        + "and tft.textFlow.obsolete = false "
+                        + "group by tft.textFlow.document.id, tft.state")
+                .setParameterList("documentIds", documentIds)
+                .setParameter("localeId", localeId)
+                .setComment("DocumentStatisticDAO.createStatistics-states")
+                .list();
+
+        for (Long docId : documentIds) {
+            result.put(docId, newStateMap());
+        }
+        for (Object[] row : stateCounts) {
+            ContentState state = (ContentState) row[1];
+            if (state != ContentState.New) {
+                result.get((Long) row[0]).put(state, (Long) row[2]);
+            }
+        }
+
+        for (Long docId : documentIds) {
+            Map<ContentState, Long> counts = result.get(docId);
+            long total = totalByDoc.getOrDefault(docId, 0L);
+            long counted = 0L;
+            for (Long count : counts.values()) {
+                counted += count;
+            }
+            counts.put(ContentState.New, total - counted);
+        }
+        return result;
+    }
+
+    private static Map<ContentState, Long> newStateMap() {
+        Map<ContentState, Long> counts = new EnumMap<>(ContentState.class);
+        for (ContentState state : ContentState.values()) {
+            counts.put(state, 0L);
+        }
+        return counts;
+    }
+
+    private static Map<ContentState, Long> toStateMap(List<Object[]> rows) {
+        Map<ContentState, Long> counts = newStateMap();
+        for (Object[] row : rows) {
+            counts.put((ContentState) row[0], (Long) row[1]);
+        }
+        return counts;
+    }
+}
@@ -20,6 +20,14 @@
  */
 package org.zanata.dao;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hibernate.Query;
 import org.hibernate.Session;
 
 import javax.enterprise.context.RequestScoped;
@@ -39,4 +47,29 @@ public class DocumentUploadDAO extends AbstractDAOImpl<HDocumentUpload, Long> {
         super(HDocumentUpload.class, session);
     }
 
+    public List<HDocumentUpload> getUploadsLastChangedBefore(Date cutoff) {
+        Query q = getSession().createQuery(
+                "from HDocumentUpload where lastChanged < :cutoff");
+        q.setTimestamp("cutoff", cutoff);
+        q.setComment("DocumentUploadDAO.getUploadsLastChangedBefore");
+        @SuppressWarnings("unchecked")
+        List<HDocumentUpload> results = q.list();
+        return results;
+    }
+
+    /**
+     * Returns the given ids which belong to an existing upload.
+     */
+    public Set<Long> getExistingUploadIds(Collection<Long> uploadIds) {
+        if (uploadIds.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Query q = getSession().createQuery(
+                "select id from HDocumentUpload where id in (:uploadIds)");
+        q.setParameterList("uploadIds", uploadIds);
+        q.setComment("DocumentUploadDAO.getExistingUploadIds");
+        @SuppressWarnings("unchecked")
+        List<Long> results = q.list();
+        return new HashSet<>(results);
+    }
 }
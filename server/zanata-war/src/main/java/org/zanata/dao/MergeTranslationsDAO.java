@@ -0,0 +1,241 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.dao;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import javax.enterprise.context.RequestScoped;
+import javax.inject.Named;
+
+import org.hibernate.Session;
+import org.hibernate.type.IntegerType;
+import org.hibernate.type.LongType;
+import org.zanata.common.ContentState;
+import org.zanata.model.HTextFlow;
+import org.zanata.model.HTextFlowTarget;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import lombok.Value;
+
+/**
+ * Finds the translations to merge from one project version into another.
+ *
+ * Source and target versions are joined in the database on docId, resId,
+ * content hash and locale, and the useNewerTranslation rule is applied in
+ * the same query, so that only the targets which may change are returned.
+ * Candidates are returned in pages ordered by the id of the source target,
+ * so that the caller can commit after each page without holding a cursor
+ * open.
+ *
+ * @see org.zanata.service.impl.MergeTranslationsServiceImpl
+ */
+@Named("mergeTranslationsDAO")
+@RequestScoped
+public class MergeTranslationsDAO extends AbstractDAOImpl<HTextFlowTarget, Long> {
+    private static final long serialVersionUID = 1L;
+
+    private static final List<Integer> TRANSLATED_STATES = ImmutableList.of(
+            ContentState.Translated.ordinal(),
+            ContentState.Approved.ordinal());
+
+    // joins translated target "st" in the source version to the matching
+    // text flow "ttf" and its (optional) target "tt" in the target version
+    private static final String CANDIDATE_JOINS =
+            "FROM HTextFlowTarget st "
+                    + "JOIN HTextFlow stf ON stf.id = st.tf_id "
+                    + "JOIN HDocument sd ON sd.id = stf.document_id "
+                    + "JOIN HDocument td ON td.docId = sd.docId "
+                    + "JOIN HTextFlow ttf ON ttf.document_id = td.id "
+                    + "AND ttf.resId = stf.resId "
+                    + "AND ttf.contentHash = stf.contentHash "
+                    + "LEFT JOIN HTextFlowTarget tt ON tt.tf_id = ttf.id "
+                    + "AND tt.locale = st.locale "
+                    + "WHERE sd.project_iteration_id = :sourceVersionId "
+                    + "AND td.project_iteration_id = :targetVersionId "
+                    + "AND sd.obsolete = :obsolete AND td.obsolete = :obsolete "
+                    + "AND stf.obsolete = :obsolete "
+                    + "AND ttf.obsolete = :obsolete "
+                    + "AND ttf.id <> stf.id "
+                    + "AND st.state IN (:translatedStates) "
+                    + "AND st.locale IN (:localeIds) ";
+
+    // see MergeTranslationsServiceImpl.shouldMerge: translated targets with
+    // the same state and contents are filtered out by the caller, since
+    // content comparison in SQL depends on the column collation
+    private static final String MERGE_RULE =
+            "AND (tt.id IS NULL OR tt.state NOT IN (:translatedStates)";
+
+    private static final String MERGE_NEWER_RULE =
+            " OR st.lastChanged > tt.lastChanged";
+
+    public MergeTranslationsDAO() {
+        super(HTextFlowTarget.class);
+    }
+
+    public MergeTranslationsDAO(Session session) {
+        super(HTextFlowTarget.class, session);
+    }
+
+    /**
+     * Counts the source translations which
+     * {@link #findMergeCandidates(Long, Long, Collection, boolean, long, int)}
+     * would return.
+     */
+    public int countMergeCandidates(Long sourceVersionId,
+            Long targetVersionId, Collection<Long> localeIds,
+            boolean useNewerTranslation) {
+        Number count = (Number) getSession()
+                .createSQLQuery("SELECT COUNT(*) " + CANDIDATE_JOINS
+                        + mergeRule(useNewerTranslation))
+                .setParameter("sourceVersionId", sourceVersionId)
+                .setParameter("targetVersionId", targetVersionId)
+                .setBoolean("obsolete", false)
+                .setParameterList("translatedStates", TRANSLATED_STATES)
+                .setParameterList("localeIds", localeIds)
+                .setComment("MergeTranslationsDAO.countMergeCandidates")
+                .uniqueResult();
+        return count == null ? 0 : count.intValue();
+    }
+
+    /**
+     * Returns the next page of translated source targets which should be
+     * merged into the target version, in the given locales.
+     *
+     * @param afterSourceId
+     *            only return source targets with a greater id than this (the
+     *            last source id of the previous page, or 0)
+     * @param maxResults
+     *            page size
+     */
+    public List<MergeCandidate> findMergeCandidates(Long sourceVersionId,
+            Long targetVersionId, Collection<Long> localeIds,
+            boolean useNewerTranslation, long afterSourceId,
+            int maxResults) {
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = getSession()
+                .createSQLQuery("SELECT st.id AS sourceId, "
+                        + "ttf.id AS textFlowId, st.locale AS localeId, "
+                        + "tt.id AS targetId, tt.state AS targetState, "
+                        + "td.id AS documentId, ttf.wordCount AS wordCount "
+                        + CANDIDATE_JOINS + mergeRule(useNewerTranslation)
+                        + "AND st.id > :afterSourceId ORDER BY st.id")
+                .addScalar("sourceId", LongType.INSTANCE)
+                .addScalar("textFlowId", LongType.INSTANCE)
+                .addScalar("localeId", LongType.INSTANCE)
+                .addScalar("targetId", LongType.INSTANCE)
+                .addScalar("targetState", IntegerType.INSTANCE)
+                .addScalar("documentId", LongType.INSTANCE)
+                .addScalar("wordCount", LongType.INSTANCE)
+                .setParameter("sourceVersionId", sourceVersionId)
+                .setParameter("targetVersionId", targetVersionId)
+                .setBoolean("obsolete", false)
+                .setParameterList("translatedStates", TRANSLATED_STATES)
+                .setParameterList("localeIds", localeIds)
+                .setLong("afterSourceId", afterSourceId)
+                .setMaxResults(maxResults)
+                .setComment("MergeTranslationsDAO.findMergeCandidates")
+                .list();
+        List<MergeCandidate> candidates =
+                Lists.newArrayListWithCapacity(rows.size());
+        for (Object[] row : rows) {
+            ContentState targetState = row[4] == null ? ContentState.New
+                    : ContentState.values()[(Integer) row[4]];
+            candidates.add(new MergeCandidate((Long) row[0], (Long) row[1],
+                    (Long) row[2], (Long) row[3], targetState,
+                    (Long) row[5], row[6] == null ? 0 : (Long) row[6]));
+        }
+        return candidates;
+    }
+
+    /**
+     * Loads the given targets with their text flows, documents, versions,
+     * projects, comments and last modifying persons, keyed by id.
+     */
+    public Map<Long, HTextFlowTarget> getTargetsWithContext(
+            Collection<Long> targetIds) {
+        Map<Long, HTextFlowTarget> targets = Maps.newHashMap();
+        if (targetIds.isEmpty()) {
+            return targets;
+        }
+        @SuppressWarnings("unchecked")
+        List<HTextFlowTarget> results = getSession()
+                .createQuery("from HTextFlowTarget tft "
+                        + "join fetch tft.textFlow tf "
+                        + "join fetch tf.document doc "
+                        + "join fetch doc.projectIteration iter "
+                        + "join fetch iter.project "
+                        + "left join fetch tft.comment "
+                        + "left join fetch tft.lastModifiedBy "
+                        + "where tft.id in (:ids)")
+                .setParameterList("ids", targetIds)
+                .setComment("MergeTranslationsDAO.getTargetsWithContext")
+                .list();
+        for (HTextFlowTarget target : results) {
+            targets.put(target.getId(), target);
+        }
+        return targets;
+    }
+
+    /**
+     * Loads the given text flows, keyed by id.
+     */
+    public Map<Long, HTextFlow> getTextFlows(Collection<Long> textFlowIds) {
+        Map<Long, HTextFlow> textFlows = Maps.newHashMap();
+        if (textFlowIds.isEmpty()) {
+            return textFlows;
+        }
+        @SuppressWarnings("unchecked")
+        List<HTextFlow> results = getSession()
+                .createQuery("from HTextFlow tf where tf.id in (:ids)")
+                .setParameterList("ids", textFlowIds)
+                .setComment("MergeTranslationsDAO.getTextFlows").list();
+        for (HTextFlow textFlow : results) {
+            textFlows.put(textFlow.getId(), textFlow);
+        }
+        return textFlows;
+    }
+
+    private static String mergeRule(boolean useNewerTranslation) {
+        return MERGE_RULE + (useNewerTranslation ? MERGE_NEWER_RULE : "")
+                + ") ";
+    }
+
+    /**
+     * A translated source target and the text flow (and target, if any) it
+     * may be merged into.
+     */
+    @Value
+    public static class MergeCandidate {
+        Long sourceId;
+        Long textFlowId;
+        Long localeId;
+        // null if the text flow has no target in this locale yet
+        Long targetId;
+        ContentState targetState;
+        Long documentId;
+        long wordCount;
+    }
+}
@@ -29,6 +29,7 @@ import java.util.Map;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.enterprise.context.RequestScoped;
+import javax.inject.Inject;
 import javax.ws.rs.core.EntityTag;
 
 import org.apache.commons.lang.StringUtils;
@@ -56,6 +57,9 @@ import com.google.common.collect.Lists;
 public class ProjectIterationDAO extends
         AbstractDAOImpl<HProjectIteration, Long> {
 
+    @Inject
+    DocumentStatisticDAO documentStatisticDAO;
+
     public ProjectIterationDAO() {
         super(HProjectIteration.class);
     }
@@ -155,41 +159,32 @@ public class ProjectIterationDAO extends
      */
     public TransUnitWords getWordStatsForContainer(Long iterationId,
             LocaleId localeId) {
-
-        List<StatusCount> stats = getWordStatusCount(iterationId, localeId);
+        Map<ContentState, Long> wordCounts = documentStatisticDAO
+                .getWordCountsForIteration(iterationId, localeId);
 
         TransUnitWords stat = new TransUnitWords();
 
-        for (StatusCount count : stats) {
-            stat.set(count.status, count.count.intValue());
+        for (Map.Entry<ContentState, Long> count : wordCounts.entrySet()) {
+            stat.set(count.getKey(), count.getValue().intValue());
         }
-
-        Long totalCount = getTotalWordCountForIteration(iterationId);
-
-        stat.set(ContentState.New, totalCount.intValue()
-                - (stat.getApproved() + stat.getNeedReview()));
-
         return stat;
     }
 
+    /**
+     * Returns word statistics from the stored per-document statistics
+     * (calculating them first for any documents which don't have them).
+     *
+     * @see DocumentStatisticDAO#getWordCountsForIteration(Long, LocaleId)
+     */
     public WordStatistic getWordStatistics(Long iterationId, LocaleId localeId) {
-
-        List<StatusCount> stats = getWordStatusCount(iterationId, localeId);
+        Map<ContentState, Long> wordCounts = documentStatisticDAO
+                .getWordCountsForIteration(iterationId, localeId);
 
         WordStatistic wordStatistic = new WordStatistic();
 
-        for (StatusCount count : stats) {
-            wordStatistic.set(count.status, count.count.intValue());
+        for (Map.Entry<ContentState, Long> count : wordCounts.entrySet()) {
+            wordStatistic.set(count.getKey(), count.getValue().intValue());
         }
-
-        Long totalCount = getTotalWordCountForIteration(iterationId);
-
-        wordStatistic.set(
-                ContentState.New,
-                totalCount.intValue()
-                        - (wordStatistic.getTranslated()
-                                + wordStatistic.getNeedReview() + wordStatistic
-                                    .getRejected()));
         return wordStatistic;
     }
 
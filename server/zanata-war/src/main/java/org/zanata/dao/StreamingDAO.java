@@ -48,10 +48,7 @@ public abstract class StreamingDAO<T> {
      * @return a CloseableIterator
      */
     StreamingEntityIterator<T> createIterator() {
-        @SuppressWarnings("null")
-        @Nonnull
-        Session session =
-                entityManagerFactory.getSessionFactory().openSession();
+        Session session = openSession();
         try {
             return new StreamingEntityIterator<T>(session);
         } catch (Throwable e) {
@@ -60,4 +57,13 @@ public abstract class StreamingDAO<T> {
         }
     }
 
+    /**
+     * Opens a new Session, which the caller must close.
+     */
+    @SuppressWarnings("null")
+    @Nonnull
+    Session openSession() {
+        return entityManagerFactory.getSessionFactory().openSession();
+    }
+
 }
@@ -17,7 +17,7 @@ class StreamingEntityIterator<E> implements CloseableIterator<E> {
     // http://www.numerati.com/2012/06/26/reading-large-result-sets-with-hibernate-and-mysql/
     // and
     // http://dev.mysql.com/doc/refman/5.5/en/connector-j-reference-implementation-notes.html
-    private final int fetchSize = Integer.MIN_VALUE;
+    static final int FETCH_SIZE = Integer.MIN_VALUE;
 
     private final @Nonnull
     Session session;
@@ -66,7 +66,7 @@ class StreamingEntityIterator<E> implements CloseableIterator<E> {
 
     public void initQuery(Query q) {
         assert iter == null;
-        q.setFetchSize(fetchSize);
+        q.setFetchSize(FETCH_SIZE);
         q.setReadOnly(true);
         ScrollableResults scroll = q.scroll(ScrollMode.FORWARD_ONLY);
         iter = new ScrollableResultsIterator(scroll);
@@ -43,7 +43,6 @@ import org.zanata.search.FilterConstraints;
 import org.zanata.webtrans.shared.model.DocumentId;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Lists;
 import lombok.extern.slf4j.Slf4j;
 
 @RequestScoped
@@ -190,6 +189,142 @@ public class TextFlowDAO extends AbstractDAOImpl<HTextFlow, Long> {
         return q.list();
     }
 
+    /**
+     * Loads a page of a document's text flows together with their targets in
+     * the given locale and the number of review comments on each target, in a
+     * single query.
+     *
+     * Pages start at a text flow position rather than a row offset, so that
+     * the database can seek to the first row using the position instead of
+     * reading and discarding all the rows before it. Since the non-obsolete
+     * text flows of a document are numbered 0..n-1 (see
+     * {@link HDocument#getTextFlows()}), the position of the first row in a
+     * page is the same as its offset.
+     *
+     * @param documentId
+     *            document id (NOT the String type docId)
+     * @param localeId
+     *            id of the HLocale
+     * @param fromPos
+     *            position of the first text flow in the page
+     * @param maxResults
+     *            page size
+     * @return rows of [HTextFlow, HTextFlowTarget (may be null), Long review
+     *         comment count] in position order
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object[]> getTextFlowsWithTargetsByPosition(Long documentId,
+            Long localeId, int fromPos, int maxResults) {
+        Query q = getSession().createQuery(
+                "select tf, tft, " +
+                        "(select count(*) from HTextFlowTargetReviewComment c " +
+                        " where c.textFlowTarget = tft) " +
+                        "from HTextFlow tf " +
+                        "left join fetch tf.potEntryData " +
+                        "left join fetch tf.comment " +
+                        "left join tf.targets tft with tft.locale.id = :localeId " +
+                        "left join fetch tft.comment " +
+                        "left join fetch tft.lastModifiedBy " +
+                        "where tf.obsolete = 0 and tf.document.id = :documentId " +
+                        "and tf.pos >= :fromPos " +
+                        "order by tf.pos");
+        q.setParameter("documentId", documentId)
+                .setParameter("localeId", localeId)
+                .setParameter("fromPos", fromPos)
+                .setMaxResults(maxResults);
+        q.setComment("TextFlowDAO.getTextFlowsWithTargetsByPosition");
+        return q.list();
+    }
+
+    /**
+     * Loads the targets of the given text flows in a locale, together with the
+     * number of review comments on each target, in a single query.
+     *
+     * @param textFlowIds
+     *            ids of the text flows
+     * @param localeId
+     *            id of the HLocale
+     * @return rows of [HTextFlowTarget, Long review comment count]. Text flows
+     *         without a target in the locale have no row.
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object[]> getTargetsWithReviewCommentCounts(
+            Collection<Long> textFlowIds, Long localeId) {
+        if (textFlowIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Query q = getSession().createQuery(
+                "select tft, " +
+                        "(select count(*) from HTextFlowTargetReviewComment c " +
+                        " where c.textFlowTarget = tft) " +
+                        "from HTextFlowTarget tft " +
+                        "left join fetch tft.comment " +
+                        "left join fetch tft.lastModifiedBy " +
+                        "where tft.textFlow.id in (:textFlowIds) " +
+                        "and tft.locale.id = :localeId");
+        q.setParameterList("textFlowIds", textFlowIds)
+                .setParameter("localeId", localeId);
+        q.setComment("TextFlowDAO.getTargetsWithReviewCommentCounts");
+        return q.list();
+    }
+
+    /**
+     * Finds which of the given text flows have no target in the given state
+     * for a locale (ie no target at all, or a target in another state).
+     *
+     * @param textFlowIds
+     *            ids of the text flows
+     * @param localeId
+     *            id of the HLocale
+     * @param state
+     *            the state of an acceptable target
+     * @return ids of the text flows without an acceptable target
+     */
+    @SuppressWarnings("unchecked")
+    public List<Long> getIdsWithoutTargetInState(Collection<Long> textFlowIds,
+            Long localeId, ContentState state) {
+        if (textFlowIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Query q = getSession().createQuery(
+                "select tf.id from HTextFlow tf " +
+                        "where tf.id in (:textFlowIds) " +
+                        "and not exists (from HTextFlowTarget tft " +
+                        " where tft.textFlow = tf " +
+                        " and tft.locale.id = :localeId " +
+                        " and tft.state = :state)");
+        q.setParameterList("textFlowIds", textFlowIds)
+                .setParameter("localeId", localeId)
+                .setParameter("state", state);
+        q.setComment("TextFlowDAO.getIdsWithoutTargetInState");
+        return q.list();
+    }
+
+    /**
+     * Finds the non-obsolete text flows of a document which have been added
+     * or changed since a given document revision.
+     *
+     * @param documentId
+     *            document id (NOT the String type docId)
+     * @param revision
+     *            text flows with a greater revision are included
+     * @return ids of the text flows, in document order
+     */
+    @SuppressWarnings("unchecked")
+    public List<Long> getActiveIdsChangedSince(Long documentId,
+            int revision) {
+        Query q = getSession().createQuery(
+                "select tf.id from HTextFlow tf " +
+                        "where tf.document.id = :documentId " +
+                        "and tf.obsolete = 0 " +
+                        "and tf.revision > :revision " +
+                        "order by tf.pos");
+        q.setParameter("documentId", documentId)
+                .setParameter("revision", revision);
+        q.setComment("TextFlowDAO.getActiveIdsChangedSince");
+        return q.list();
+    }
+
     /**
      * for a given locale, we can filter it by content state or search in source
      * and target.
@@ -299,85 +434,4 @@ public class TextFlowDAO extends AbstractDAOImpl<HTextFlow, Long> {
         return builder.build();
     }
 
-    /**
-     * Return text flows that have matching document id and content, resId
-     * between the given source and target version
-     *
-     * Each array in the result list will contain two text flows:
-     * [0] the text flow from the source version
-     * [1] the text flow from the target version
-     *
-     * @param sourceVersionId
-     * @param targetVersionId
-     * @param offset
-     * @param maxResults
-     */
-    public List<HTextFlow[]> getSourceByMatchedContext(Long sourceVersionId,
-        Long targetVersionId, int offset, int maxResults) {
-        String queryString = generateSourceByMatchedContext(false);
-
-        Query query = getSession()
-            .createQuery(queryString)
-            .setParameter("sourceVersionId", sourceVersionId)
-            .setParameter("targetVersionId" , targetVersionId)
-            .setMaxResults(maxResults)
-            .setFirstResult(offset)
-            .setCacheable(true)
-            .setComment("TextFlowDAO.getTranslationsByMatchedContext");
-
-        List<HTextFlow[]> results = Lists.newArrayList();
-        for(Object result: query.list()) {
-            Object[] castResults = (Object[]) result;
-            results.add(new HTextFlow[] { (HTextFlow) castResults[0],
-                (HTextFlow) castResults[1] });
-        }
-        return results;
-    }
-
-    public int getSourceByMatchedContextCount(Long sourceVersionId,
-        Long targetVersionId) {
-        String queryString = generateSourceByMatchedContext(true);
-        Query query = getSession()
-            .createQuery(queryString)
-            .setParameter("sourceVersionId", sourceVersionId)
-            .setParameter("targetVersionId" , targetVersionId)
-            .setCacheable(true)
-            .setComment("TextFlowDAO.getTranslationsByMatchedContextCount");
-        Long count = (Long) query.uniqueResult();
-        return count == null ? 0 : count.intValue();
-    }
-
-    /**
-     * Generate query string for text flows that have matching document id and
-     * content between the given source and target version
-     *
-     * @param getRecordCount - if true, generate select count(*) hql.
-     *
-     */
-    private String generateSourceByMatchedContext(boolean getRecordCount) {
-        StringBuilder queryBuilder = new StringBuilder();
-
-        if(getRecordCount) {
-            queryBuilder.append(
-                "select count(fromTF.id) from HTextFlow fromTF, HTextFlow toTF ");
-        } else {
-            queryBuilder.append(
-                "select fromTF, toTF from HTextFlow fromTF, HTextFlow toTF ");
-        }
-        queryBuilder
-            .append("where fromTF.document.projectIteration.id = :sourceVersionId ")
-            .append("and toTF.document.projectIteration.id = :targetVersionId ")
-            .append("and fromTF.obsolete = false ")
-            .append("and fromTF.document.obsolete = false ")
-            .append("and toTF.obsolete = false ")
-            .append("and toTF.document.obsolete = false ")
-            .append("and fromTF <> toTF ")
-            .append("and fromTF.contentHash = toTF.contentHash ")
-            .append("and fromTF.resId = toTF.resId ")
-            .append("and fromTF.document.docId = toTF.document.docId");
-
-        return queryBuilder.toString();
-
-    }
-
 }
@@ -21,20 +21,27 @@
 
 package org.zanata.dao;
 
+import java.util.function.Consumer;
+
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import lombok.NoArgsConstructor;
 
 import org.hibernate.Query;
+import org.hibernate.Session;
 import org.hibernate.ejb.HibernateEntityManagerFactory;
 
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
 import javax.inject.Named;
+import org.zanata.common.ContentState;
 import org.zanata.common.EntityStatus;
+import org.zanata.common.LocaleId;
 import org.zanata.model.HProject;
 import org.zanata.model.HProjectIteration;
 import org.zanata.model.HTextFlow;
+import org.zanata.model.ITextFlow;
 import org.zanata.util.CloseableIterator;
 import org.zanata.util.Zanata;
 
@@ -57,6 +64,22 @@ import org.zanata.util.Zanata;
  * may leak.
  */
 public class TextFlowStreamingDAO extends StreamingDAO<HTextFlow> {
+    // see TextFlowTranslationsIterator for the expected columns
+    private static final String TRANSLATIONS_SELECT =
+            "select tf.id, proj.slug, iter.slug, doc.docId, tf.resId, "
+                    + "docLocale.localeId, tf.content0, "
+                    + "targetLocale.localeId, target.state, target.content0 "
+                    + "from HTextFlow tf "
+                    + "inner join tf.targets target "
+                    + "inner join target.locale targetLocale "
+                    + "inner join tf.document doc "
+                    + "inner join doc.locale docLocale "
+                    + "inner join doc.projectIteration iter "
+                    + "inner join iter.project proj "
+                    + "where target.state in (:translated) "
+                    + "and doc.obsolete=0 "
+                    + "and tf.obsolete=0 ";
+
     public TextFlowStreamingDAO() {
         this(null);
     }
@@ -182,4 +205,93 @@ public class TextFlowStreamingDAO extends StreamingDAO<HTextFlow> {
         }
     }
 
+    /**
+     * Returns the translated text flows in all projects, as read-only
+     * ITextFlows containing only their Translated/Approved targets (for the
+     * specified locale, if any). Obsolete projects, iterations, documents and
+     * textflows are skipped. No entities are loaded.
+     * <p>
+     * NB: caller must close the iterator, or call next() until the iterator is
+     * exhausted, or else a database connection will be leaked.
+     *
+     * @param localeId
+     *            target locale, or null for all locales
+     */
+    public @Nonnull
+    CloseableIterator<ITextFlow> findTranslations(
+            @Nullable LocaleId localeId) {
+        return findTranslations("and proj.status<>:OBSOLETE "
+                + "and iter.status<>:OBSOLETE ", localeId,
+                "TextFlowStreamDAO.findTranslations",
+                q -> q.setParameter("OBSOLETE", EntityStatus.OBSOLETE));
+    }
+
+    /**
+     * Returns the translated text flows in project, as read-only ITextFlows
+     * containing only their Translated/Approved targets (for the specified
+     * locale, if any). Obsolete iterations, documents and textflows are
+     * skipped. No entities are loaded.
+     * <p>
+     * NB: caller must close the iterator, or call next() until the iterator is
+     * exhausted, or else a database connection will be leaked.
+     *
+     * @param localeId
+     *            target locale, or null for all locales
+     */
+    public @Nonnull
+    CloseableIterator<ITextFlow> findTranslationsByProject(HProject hProject,
+            @Nullable LocaleId localeId) {
+        return findTranslations("and iter.status<>:OBSOLETE "
+                + "and proj=:proj ", localeId,
+                "TextFlowStreamDAO.findTranslationsByProject",
+                q -> q.setParameter("OBSOLETE", EntityStatus.OBSOLETE)
+                        .setParameter("proj", hProject));
+    }
+
+    /**
+     * Returns the translated text flows in project iteration, as read-only
+     * ITextFlows containing only their Translated/Approved targets (for the
+     * specified locale, if any). Obsolete documents and textflows are skipped.
+     * No entities are loaded.
+     * <p>
+     * NB: caller must close the iterator, or call next() until the iterator is
+     * exhausted, or else a database connection will be leaked.
+     *
+     * @param localeId
+     *            target locale, or null for all locales
+     */
+    public @Nonnull
+    CloseableIterator<ITextFlow> findTranslationsByProjectIteration(
+            HProjectIteration hProjectIteration, @Nullable LocaleId localeId) {
+        return findTranslations("and iter=:iter ", localeId,
+                "TextFlowStreamDAO.findTranslationsByProjectIteration",
+                q -> q.setParameter("iter", hProjectIteration));
+    }
+
+    private CloseableIterator<ITextFlow> findTranslations(String condition,
+            @Nullable LocaleId localeId, String comment,
+            Consumer<Query> setConditionParameters) {
+        Session session = openSession();
+        try {
+            StringBuilder hql =
+                    new StringBuilder(TRANSLATIONS_SELECT).append(condition);
+            if (localeId != null) {
+                hql.append("and targetLocale.localeId=:locale ");
+            }
+            // keeps the rows for each text flow together
+            hql.append("order by tf.id");
+            Query q = session.createQuery(hql.toString());
+            q.setParameterList("translated", ContentState.TRANSLATED_STATES);
+            setConditionParameters.accept(q);
+            if (localeId != null) {
+                q.setParameter("locale", localeId);
+            }
+            q.setComment(comment);
+            return new TextFlowTranslationsIterator(session, q);
+        } catch (Throwable e) {
+            session.close();
+            throw new RuntimeException(e);
+        }
+    }
+
 }
@@ -1,7 +1,10 @@
 package org.zanata.dao;
 
 import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.hibernate.Query;
 import org.hibernate.SQLQuery;
@@ -21,12 +24,22 @@ import org.zanata.model.HTextFlowTarget;
 import org.zanata.service.TranslationFinder;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
 
 @Named("textFlowTargetDAO")
 @RequestScoped
 public class TextFlowTargetDAO extends AbstractDAOImpl<HTextFlowTarget, Long>
         implements TranslationFinder {
 
+    /**
+     * Maximum number of text flows in one bulk TM query.
+     */
+    private static final int BULK_SEARCH_BATCH_SIZE = 500;
+
     public TextFlowTargetDAO() {
         super(HTextFlowTarget.class);
     }
@@ -203,6 +216,58 @@ public class TextFlowTargetDAO extends AbstractDAOImpl<HTextFlowTarget, Long>
         return q.list();
     }
 
+    /**
+     * Summarises the state of the translations of each document in a project
+     * version, for a locale. The summary changes whenever a translation or its
+     * comment is added, changed or removed, or the document's PO header for
+     * the locale changes, even if the change keeps an old lastChanged date
+     * (eg translations copied by CopyTrans or merged from another version).
+     *
+     * @return an opaque summary of the translations of each document, by
+     *         document id. Documents without translations or a header in the
+     *         locale are absent.
+     */
+    public Map<Long, String> getTranslationStateByDocument(
+            HProjectIteration projectIteration, HLocale locale) {
+        Query q = getSession().createQuery(
+                "select t.textFlow.document.id, count(t), max(t.id), "
+                        + "sum(t.versionNum), count(c), max(c.lastChanged) "
+                        + "from HTextFlowTarget t left join t.comment c "
+                        + "where t.textFlow.document.projectIteration = :iteration "
+                        + "and t.locale = :locale "
+                        + "group by t.textFlow.document.id");
+        q.setParameter("iteration", projectIteration);
+        q.setParameter("locale", locale);
+        q.setComment("TextFlowTargetDAO.getTranslationStateByDocument");
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = q.list();
+        Map<Long, String> states = Maps.newHashMapWithExpectedSize(
+                rows.size());
+        for (Object[] row : rows) {
+            Date lastCommentChange = (Date) row[5];
+            states.put((Long) row[0], row[1] + ":" + row[2] + ":" + row[3]
+                    + ":" + row[4] + ":" + (lastCommentChange == null ? ""
+                            : lastCommentChange.getTime()));
+        }
+
+        Query headers = getSession().createQuery(
+                "select h.document.id, h.versionNum from HPoTargetHeader h "
+                        + "where h.document.projectIteration = :iteration "
+                        + "and h.targetLanguage = :locale");
+        headers.setParameter("iteration", projectIteration);
+        headers.setParameter("locale", locale);
+        headers.setComment(
+                "TextFlowTargetDAO.getTranslationStateByDocument-header");
+        @SuppressWarnings("unchecked")
+        List<Object[]> headerRows = headers.list();
+        for (Object[] row : headerRows) {
+            String state = states.get((Long) row[0]);
+            states.put((Long) row[0], (state == null ? "" : state)
+                    + ":header=" + row[1]);
+        }
+        return states;
+    }
+
     /**
      * Finds the best matching translations for a single text flow and a locale.
      * Other parameters (context, document id, and project) can also influence
@@ -274,6 +339,267 @@ public class TextFlowTargetDAO extends AbstractDAOImpl<HTextFlowTarget, Long>
         return Optional.fromNullable((HTextFlowTarget) sqlQuery.uniqueResult());
     }
 
+    /**
+     * Finds the best matching translations for a batch of text flows in a
+     * locale, using one query per {@value #BULK_SEARCH_BATCH_SIZE} text flows
+     * (per document) instead of one query per text flow. Matches are ranked
+     * the same way as
+     * {@link #searchBestMatchTransMemory(HTextFlow, LocaleId, LocaleId, boolean, boolean, boolean)}:
+     * matching context first, then matching document id, then matching
+     * project, then most recently changed.
+     */
+    @Override
+    @NativeQuery
+    public Map<Long, HTextFlowTarget> searchBestMatchTransMemory(
+            List<HTextFlow> textFlows, LocaleId targetLocaleId,
+            LocaleId sourceLocaleId, boolean checkContext,
+            boolean checkDocument, boolean checkProject) {
+        // ranking depends on the document (and project) of each text flow
+        Map<HDocument, List<HTextFlow>> textFlowsByDoc = new LinkedHashMap<>();
+        for (HTextFlow textFlow : textFlows) {
+            List<HTextFlow> docTextFlows =
+                    textFlowsByDoc.get(textFlow.getDocument());
+            if (docTextFlows == null) {
+                docTextFlows = Lists.newArrayList();
+                textFlowsByDoc.put(textFlow.getDocument(), docTextFlows);
+            }
+            docTextFlows.add(textFlow);
+        }
+
+        Map<Long, BulkMatchCandidate> bestCandidates = Maps.newHashMap();
+        for (Map.Entry<HDocument, List<HTextFlow>> entry : textFlowsByDoc
+                .entrySet()) {
+            HDocument document = entry.getKey();
+            Multimap<String, HTextFlow> docTextFlowsByHash =
+                    ArrayListMultimap.create();
+            for (HTextFlow textFlow : entry.getValue()) {
+                docTextFlowsByHash.put(textFlow.getContentHash(), textFlow);
+            }
+            // values() keeps text flows with the same hash together, so a hash
+            // is only queried again if it spans two batches
+            for (List<HTextFlow> batch : Lists.partition(
+                    Lists.newArrayList(docTextFlowsByHash.values()),
+                    BULK_SEARCH_BATCH_SIZE)) {
+                Multimap<String, HTextFlow> textFlowsByHash =
+                        ArrayListMultimap.create();
+                for (HTextFlow textFlow : batch) {
+                    textFlowsByHash.put(textFlow.getContentHash(), textFlow);
+                }
+                findBulkMatchCandidates(document,
+                        Lists.newArrayList(textFlowsByHash.keySet()),
+                        textFlowsByHash, targetLocaleId, checkContext,
+                        checkDocument, checkProject, bestCandidates);
+            }
+        }
+        if (bestCandidates.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<Long, Long> targetIdByTextFlowId = Maps.newHashMap();
+        for (Map.Entry<Long, BulkMatchCandidate> entry : bestCandidates
+                .entrySet()) {
+            targetIdByTextFlowId.put(entry.getKey(), entry.getValue().targetId);
+        }
+        Map<Long, HTextFlowTarget> targetsById = Maps.newHashMap();
+        for (List<Long> ids : Lists.partition(
+                Lists.newArrayList(
+                        Sets.newHashSet(targetIdByTextFlowId.values())),
+                BULK_SEARCH_BATCH_SIZE)) {
+            @SuppressWarnings("unchecked")
+            List<HTextFlowTarget> targets = getSession()
+                    .createQuery(
+                            "from HTextFlowTarget where id in (:ids)")
+                    .setParameterList("ids", ids)
+                    .setComment(
+                            "TextFlowTargetDAO.searchBestMatchTransMemory")
+                    .list();
+            for (HTextFlowTarget target : targets) {
+                targetsById.put(target.getId(), target);
+            }
+        }
+        Map<Long, HTextFlowTarget> results = Maps.newHashMap();
+        for (Map.Entry<Long, Long> entry : targetIdByTextFlowId.entrySet()) {
+            HTextFlowTarget target = targetsById.get(entry.getValue());
+            if (target != null) {
+                results.put(entry.getKey(), target);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Finds the candidates which can be the best match for any of the text
+     * flows with the given content hashes. Ranking happens in SQL, so that
+     * common strings don't load every translated copy on the server: for each
+     * content hash, matching resId (only the resIds of the batch are told
+     * apart), matching document and matching project, only the most recently
+     * changed targets are returned. Targets of the batch's own text flows are
+     * returned as well, since a text flow must never match its own
+     * translation, but may match another text flow of the batch.
+     */
+    private void findBulkMatchCandidates(HDocument document,
+            List<String> contentHashes,
+            Multimap<String, HTextFlow> textFlowsByHash,
+            LocaleId targetLocaleId, boolean checkContext,
+            boolean checkDocument, boolean checkProject,
+            Map<Long, BulkMatchCandidate> bestCandidates) {
+        String docId = document.getDocId();
+        Long projectId = document.getProjectIteration().getProject().getId();
+        List<Long> textFlowIds = Lists.newArrayList();
+        List<String> resIds = Lists.newArrayList();
+        for (String hash : contentHashes) {
+            for (HTextFlow textFlow : textFlowsByHash.get(hash)) {
+                textFlowIds.add(textFlow.getId());
+                resIds.add(textFlow.getResId());
+            }
+        }
+
+        StringBuilder queryBuilder = new StringBuilder();
+        queryBuilder
+                .append("SELECT tft.id, tf.id, tf.contentHash, tf.resId, ")
+                .append("hDoc.docId, iter.project_id, tft.lastChanged ");
+        appendBulkMatchJoins(queryBuilder, "");
+        // most recent lastChanged for each hash, resId, document and project
+        // match, leaving out the batch's own text flows
+        queryBuilder
+                .append("LEFT JOIN (SELECT tf2.contentHash AS contentHash, ")
+                .append("CASE WHEN tf2.resId in (:resIds) THEN tf2.resId ELSE '' END AS resId, ")
+                .append("CASE WHEN hDoc2.docId = :docId THEN 0 ELSE 1 END AS docRank, ")
+                .append("CASE WHEN iter2.project_id = :projectId THEN 0 ELSE 1 END AS projectRank, ")
+                .append("MAX(tft2.lastChanged) AS lastChanged ");
+        appendBulkMatchJoins(queryBuilder, "2");
+        appendBulkMatchConditions(queryBuilder, "2", checkContext,
+                checkDocument, checkProject);
+        queryBuilder
+                .append("AND tf2.id not in (:textFlowIds) ")
+                .append("GROUP BY tf2.contentHash, ")
+                .append("CASE WHEN tf2.resId in (:resIds) THEN tf2.resId ELSE '' END, ")
+                .append("CASE WHEN hDoc2.docId = :docId THEN 0 ELSE 1 END, ")
+                .append("CASE WHEN iter2.project_id = :projectId THEN 0 ELSE 1 END")
+                .append(") latest ON latest.contentHash = tf.contentHash ")
+                .append("AND latest.resId = CASE WHEN tf.resId in (:resIds) THEN tf.resId ELSE '' END ")
+                .append("AND latest.docRank = CASE WHEN hDoc.docId = :docId THEN 0 ELSE 1 END ")
+                .append("AND latest.projectRank = CASE WHEN iter.project_id = :projectId THEN 0 ELSE 1 END ")
+                .append("AND latest.lastChanged = tft.lastChanged ");
+        appendBulkMatchConditions(queryBuilder, "", checkContext,
+                checkDocument, checkProject);
+        queryBuilder.append(
+                "AND (tf.id in (:textFlowIds) OR latest.contentHash IS NOT NULL)");
+        SQLQuery sqlQuery =
+                getSession().createSQLQuery(queryBuilder.toString());
+        sqlQuery.setParameterList("contentHashes", contentHashes);
+        sqlQuery.setParameter("localeId", targetLocaleId.getId());
+        sqlQuery.setParameterList("textFlowIds", textFlowIds);
+        sqlQuery.setParameterList("resIds", resIds);
+        sqlQuery.setParameter("docId", docId);
+        sqlQuery.setParameter("projectId", projectId);
+        sqlQuery.setComment("TextFlowTargetDAO.findBulkMatchCandidates");
+
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = sqlQuery.list();
+        for (Object[] row : rows) {
+            long targetId = ((Number) row[0]).longValue();
+            long matchTextFlowId = ((Number) row[1]).longValue();
+            String contentHash = (String) row[2];
+            String resId = (String) row[3];
+            String matchDocId = (String) row[4];
+            long matchProjectId = ((Number) row[5]).longValue();
+            Date lastChanged = (Date) row[6];
+
+            for (HTextFlow textFlow : textFlowsByHash.get(contentHash)) {
+                if (textFlow.getId().equals(matchTextFlowId)) {
+                    // never match a text flow against its own translation
+                    continue;
+                }
+                boolean resIdMatches = textFlow.getResId().equals(resId);
+                if (checkContext && !resIdMatches) {
+                    continue;
+                }
+                int rank = (resIdMatches ? 0 : 4)
+                        + (docId.equals(matchDocId) ? 0 : 2)
+                        + (projectId == matchProjectId ? 0 : 1);
+                BulkMatchCandidate candidate =
+                        new BulkMatchCandidate(targetId, rank, lastChanged);
+                BulkMatchCandidate best = bestCandidates.get(textFlow.getId());
+                if (best == null || candidate.isBetterThan(best)) {
+                    bestCandidates.put(textFlow.getId(), candidate);
+                }
+            }
+        }
+    }
+
+    private static void appendBulkMatchJoins(StringBuilder queryBuilder,
+            String suffix) {
+        String tft = "tft" + suffix;
+        String tf = "tf" + suffix;
+        String locale = "locale" + suffix;
+        String hDoc = "hDoc" + suffix;
+        String iter = "iter" + suffix;
+        String project = "project" + suffix;
+        queryBuilder
+                .append("FROM HTextFlowTarget ").append(tft).append(" ")
+                .append("JOIN HTextFlow ").append(tf).append(" ON ")
+                .append(tf).append(".id = ").append(tft).append(".tf_id ")
+                .append("JOIN HLocale ").append(locale).append(" ON ")
+                .append(locale).append(".id = ").append(tft).append(".locale ")
+                .append("JOIN HDocument ").append(hDoc).append(" ON ")
+                .append(hDoc).append(".id = ").append(tf).append(".document_id ")
+                .append("JOIN HProjectIteration ").append(iter).append(" ON ")
+                .append(iter).append(".id = ").append(hDoc).append(".project_iteration_id ")
+                .append("JOIN HProject ").append(project).append(" ON ")
+                .append(project).append(".id = ").append(iter).append(".project_id ");
+    }
+
+    private static void appendBulkMatchConditions(StringBuilder queryBuilder,
+            String suffix, boolean checkContext, boolean checkDocument,
+            boolean checkProject) {
+        queryBuilder
+                .append("WHERE tf").append(suffix).append(".contentHash in (:contentHashes) ")
+                .append("AND locale").append(suffix).append(".localeId = :localeId ")
+                .append("AND tft").append(suffix).append(".state in (2, 3) ")
+                .append("AND iter").append(suffix).append(".status <> 'O' ")
+                .append("AND project").append(suffix).append(".status <> 'O' ");
+        if (checkContext) {
+            queryBuilder.append("AND tf").append(suffix)
+                    .append(".resId in (:resIds) ");
+        }
+        if (checkDocument) {
+            queryBuilder.append("AND hDoc").append(suffix)
+                    .append(".docId = :docId ");
+        }
+        if (checkProject) {
+            queryBuilder.append("AND project").append(suffix)
+                    .append(".id = :projectId ");
+        }
+    }
+
+    /**
+     * A possible bulk TM match, with enough information to rank it against
+     * other candidates for the same text flow.
+     */
+    private static final class BulkMatchCandidate {
+        private final long targetId;
+        // lower is better: context, then document, then project mismatch
+        private final int rank;
+        private final Date lastChanged;
+
+        private BulkMatchCandidate(long targetId, int rank, Date lastChanged) {
+            this.targetId = targetId;
+            this.rank = rank;
+            this.lastChanged = lastChanged;
+        }
+
+        private boolean isBetterThan(BulkMatchCandidate other) {
+            if (rank != other.rank) {
+                return rank < other.rank;
+            }
+            if (other.lastChanged == null) {
+                return lastChanged != null;
+            }
+            return lastChanged != null && lastChanged.after(other.lastChanged);
+        }
+    }
+
     /**
      * Look up the {@link HTextFlowTarget} for the given hLocale in hTextFlow,
      * creating a new one if none is present.
@@ -358,6 +684,36 @@ public class TextFlowTargetDAO extends AbstractDAOImpl<HTextFlowTarget, Long>
         return query.list();
     }
 
+    /**
+     * Gets the targets in a locale for a document's text flows (with their
+     * text flows), in text flow position order, starting at the given
+     * position. Used to go through a document's translations a chunk at a
+     * time.
+     *
+     * @param fromPos
+     *            position of the first text flow to include
+     */
+    @SuppressWarnings("unchecked")
+    public List<HTextFlowTarget> getTargetsByDocumentPosition(Long documentId,
+            LocaleId localeId, int fromPos, int maxResults) {
+        Query query =
+                getSession()
+                        .createQuery(
+                                "select tft from HTextFlowTarget tft "
+                                        + "join fetch tft.textFlow tf "
+                                        + "where tf.document.id = :documentId "
+                                        + "and tf.obsolete = 0 "
+                                        + "and tf.pos >= :fromPos "
+                                        + "and tft.locale.localeId = :localeId "
+                                        + "order by tf.pos");
+        query.setParameter("documentId", documentId);
+        query.setParameter("fromPos", fromPos);
+        query.setParameter("localeId", localeId);
+        query.setMaxResults(maxResults);
+        query.setComment("TextFlowTargetDAO.getTargetsByDocumentPosition");
+        return query.list();
+    }
+
     public HTextFlowTarget getTextFlowTarget(HTextFlow hTextFlow,
             LocaleId localeId) {
         HTextFlowTarget hTextFlowTarget =
@@ -21,7 +21,9 @@
 
 package org.zanata.dao;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.hibernate.Query;
 import org.hibernate.Session;
@@ -32,6 +34,8 @@ import org.zanata.common.LocaleId;
 import org.zanata.model.HTextFlowTargetReviewComment;
 import org.zanata.webtrans.shared.model.TransUnitId;
 
+import com.google.common.collect.Maps;
+
 /**
  *
  * @author Patrick Huang <a
@@ -63,4 +67,31 @@ public class TextFlowTargetReviewCommentsDAO extends
         query.setCacheable(true);
         return query.list();
     }
+
+    /**
+     * Counts the review comments of each of the given targets in one query.
+     *
+     * @param targetIds
+     *            ids of HTextFlowTarget
+     * @return comment count by target id. Targets without comments are not
+     *         included.
+     */
+    public Map<Long, Integer> getCommentCounts(Collection<Long> targetIds) {
+        Map<Long, Integer> counts = Maps.newHashMap();
+        if (targetIds.isEmpty()) {
+            return counts;
+        }
+        Query query =
+                getSession()
+                        .createQuery(
+                                "select c.textFlowTarget.id, count(c) from HTextFlowTargetReviewComment c where c.textFlowTarget.id in (:targetIds) group by c.textFlowTarget.id");
+        query.setParameterList("targetIds", targetIds);
+        query.setComment("TextFlowTargetReviewCommentsDAO.getCommentCounts");
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = query.list();
+        for (Object[] row : rows) {
+            counts.put((Long) row[0], ((Long) row[1]).intValue());
+        }
+        return counts;
+    }
 }
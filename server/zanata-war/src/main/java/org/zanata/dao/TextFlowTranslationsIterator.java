@@ -0,0 +1,194 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.dao;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.Session;
+import org.zanata.common.ContentState;
+import org.zanata.common.LocaleId;
+import org.zanata.model.ITextFlow;
+import org.zanata.model.ITextFlowTarget;
+import org.zanata.util.CloseableIterator;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.PeekingIterator;
+
+/**
+ * Streams the rows of a text flow/target projection query, grouping the
+ * consecutive rows for each text flow into a read-only ITextFlow. No entities
+ * are loaded into the Session.
+ * <p>
+ * The query must select, in order: text flow id, project slug, iteration
+ * slug, docId, resId, source locale id, source content0, target locale id,
+ * target state and target content0, and must be ordered by text flow id.
+ */
+class TextFlowTranslationsIterator implements CloseableIterator<ITextFlow> {
+    private final Session session;
+    private final ScrollableResultsIterator scroll;
+    private final PeekingIterator<Object[]> rows;
+
+    TextFlowTranslationsIterator(Session session, Query query) {
+        this.session = session;
+        query.setFetchSize(StreamingEntityIterator.FETCH_SIZE);
+        query.setReadOnly(true);
+        this.scroll =
+                new ScrollableResultsIterator(
+                        query.scroll(ScrollMode.FORWARD_ONLY));
+        this.rows = Iterators.peekingIterator(scroll);
+    }
+
+    @Override
+    public void close() {
+        scroll.close();
+        session.close();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return rows.hasNext();
+    }
+
+    @Override
+    public ITextFlow next() {
+        Object[] row = rows.next();
+        Object textFlowId = row[0];
+        String qualifiedId = row[1] + ":" + row[2] + ":" + row[3] + ":"
+                + row[4];
+        TextFlowTranslations textFlow = new TextFlowTranslations(qualifiedId,
+                (LocaleId) row[5], (String) row[6]);
+        textFlow.addTarget(row);
+        while (rows.hasNext() && textFlowId.equals(rows.peek()[0])) {
+            textFlow.addTarget(rows.next());
+        }
+        return textFlow;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private static final class TextFlowTranslations implements ITextFlow {
+        private final String qualifiedId;
+        private final LocaleId locale;
+        private final List<String> contents;
+        private final List<ITextFlowTarget> targets = Lists.newArrayList();
+
+        private TextFlowTranslations(String qualifiedId, LocaleId locale,
+                String content0) {
+            this.qualifiedId = qualifiedId;
+            this.locale = locale;
+            this.contents = Collections.singletonList(content0);
+        }
+
+        private void addTarget(Object[] row) {
+            targets.add(new TargetTranslation((LocaleId) row[7],
+                    (ContentState) row[8], (String) row[9]));
+        }
+
+        @Override
+        public @Nonnull LocaleId getLocale() {
+            return locale;
+        }
+
+        @Override
+        public @Nonnull String getQualifiedId() {
+            return qualifiedId;
+        }
+
+        @Override
+        public @Nullable ITextFlowTarget getTargetContents(
+                @Nonnull LocaleId localeId) {
+            for (ITextFlowTarget target : targets) {
+                if (target.getLocaleId().equals(localeId)) {
+                    return target;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public @Nonnull Iterable<ITextFlowTarget> getAllTargetContents() {
+            return targets;
+        }
+
+        @Override
+        public List<String> getContents() {
+            return contents;
+        }
+
+        @Override
+        public void setContents(String... contents) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setContents(List<String> contents) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class TargetTranslation implements ITextFlowTarget {
+        private final LocaleId localeId;
+        private final ContentState state;
+        private final List<String> contents;
+
+        private TargetTranslation(LocaleId localeId, ContentState state,
+                String content0) {
+            this.localeId = localeId;
+            this.state = state;
+            this.contents = Collections.singletonList(content0);
+        }
+
+        @Override
+        public @Nonnull LocaleId getLocaleId() {
+            return localeId;
+        }
+
+        @Override
+        public @Nonnull ContentState getState() {
+            return state;
+        }
+
+        @Override
+        public List<String> getContents() {
+            return contents;
+        }
+
+        @Override
+        public void setContents(String... contents) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setContents(List<String> contents) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
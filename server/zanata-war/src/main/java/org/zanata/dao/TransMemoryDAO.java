@@ -20,7 +20,13 @@
  */
 package org.zanata.dao;
 
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -37,7 +43,9 @@ import org.zanata.exception.EntityMissingException;
 import org.zanata.jpa.FullText;
 import org.zanata.model.tm.TransMemory;
 import org.zanata.model.tm.TransMemoryUnit;
+import org.zanata.model.tm.TransMemoryUnitVariant;
 import com.google.common.base.Optional;
+import com.google.common.collect.Maps;
 
 /**
  * Data Access Object for Translation Memory and related entities.
@@ -49,6 +57,19 @@ import com.google.common.base.Optional;
 @RequestScoped
 public class TransMemoryDAO extends AbstractDAOImpl<TransMemory, Long> {
 
+    private static final String INSERT_UNIT_SQL =
+            "INSERT INTO TransMemoryUnit (trans_unit_id, source_language, "
+                    + "tm_id, unique_id, position, metadata_type, metadata, "
+                    + "creationDate, lastChanged, versionNum) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, 0)";
+
+    private static final String INSERT_VARIANT_SQL =
+            "INSERT INTO TransMemoryUnitVariant (trans_unit_id, language, "
+                    + "tagged_segment, plain_text_segment, "
+                    + "plain_text_segment_hash, metadata_type, metadata, "
+                    + "creationDate, lastChanged, versionNum) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, 0)";
+
     @Inject @FullText
     private FullTextSession session;
 
@@ -140,6 +161,133 @@ public class TransMemoryDAO extends AbstractDAOImpl<TransMemory, Long> {
                 .setCacheable(false).uniqueResult();
     }
 
+    /**
+     * Finds the translation units of a translation memory which have any of
+     * the given unique ids, with their variants.
+     *
+     * @return the translation units, keyed by unique id
+     */
+    public Map<String, TransMemoryUnit> findTranslationUnits(
+            @Nonnull TransMemory tm, @Nonnull Collection<String> uniqueIds) {
+        Map<String, TransMemoryUnit> units = Maps.newHashMap();
+        if (uniqueIds.isEmpty()) {
+            return units;
+        }
+        @SuppressWarnings("unchecked")
+        List<TransMemoryUnit> results = getSession()
+                .createQuery("select distinct tu from TransMemoryUnit tu "
+                        + "left join fetch tu.transUnitVariants "
+                        + "where tu.translationMemory.id = :tmId "
+                        + "and tu.uniqueId in (:uniqueIds)")
+                .setParameter("tmId", tm.getId())
+                .setParameterList("uniqueIds", uniqueIds)
+                .setComment("TransMemoryDAO.findTranslationUnits").list();
+        for (TransMemoryUnit tu : results) {
+            units.put(tu.getUniqueId(), tu);
+        }
+        return units;
+    }
+
+    /**
+     * Inserts new translation units (which must have distinct unique ids, not
+     * already used in the translation memory) and their variants with JDBC
+     * batch statements, then adds them to the search index.
+     *
+     * The units themselves are not attached to the session. Dates which are
+     * not set default to now, as for persisted entities.
+     */
+    public void insertTranslationUnits(@Nonnull TransMemory tm,
+            @Nonnull Collection<TransMemoryUnit> units) {
+        if (units.isEmpty()) {
+            return;
+        }
+        Session hibernateSession = getSession();
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        hibernateSession.doWork(connection -> {
+            try (PreparedStatement statement =
+                    connection.prepareStatement(INSERT_UNIT_SQL)) {
+                for (TransMemoryUnit tu : units) {
+                    statement.setString(1, tu.getTransUnitId());
+                    statement.setString(2, tu.getSourceLanguage());
+                    statement.setLong(3, tm.getId());
+                    statement.setString(4, tu.getUniqueId());
+                    statement.setObject(5, tu.getPosition(), Types.INTEGER);
+                    statement.setString(6, tu.getMetadataType() == null
+                            ? null : tu.getMetadataType().name());
+                    statement.setString(7, tu.getMetadata());
+                    statement.setTimestamp(8,
+                            timestamp(tu.getCreationDate(), now));
+                    statement.setTimestamp(9,
+                            timestamp(tu.getLastChanged(), now));
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        });
+
+        // unique ids are unique within the TM, so they identify the new rows
+        Map<String, Long> idsByUniqueId = Maps.newHashMap();
+        for (TransMemoryUnit tu : units) {
+            idsByUniqueId.put(tu.getUniqueId(), null);
+        }
+        @SuppressWarnings("unchecked")
+        List<Object[]> ids = hibernateSession
+                .createQuery("select tu.uniqueId, tu.id "
+                        + "from TransMemoryUnit tu "
+                        + "where tu.translationMemory.id = :tmId "
+                        + "and tu.uniqueId in (:uniqueIds)")
+                .setParameter("tmId", tm.getId())
+                .setParameterList("uniqueIds", idsByUniqueId.keySet())
+                .setComment("TransMemoryDAO.insertTranslationUnits-ids")
+                .list();
+        for (Object[] row : ids) {
+            idsByUniqueId.put((String) row[0], (Long) row[1]);
+        }
+
+        hibernateSession.doWork(connection -> {
+            try (PreparedStatement statement =
+                    connection.prepareStatement(INSERT_VARIANT_SQL)) {
+                for (TransMemoryUnit tu : units) {
+                    long unitId = idsByUniqueId.get(tu.getUniqueId());
+                    for (TransMemoryUnitVariant tuv : tu
+                            .getTransUnitVariants().values()) {
+                        statement.setLong(1, unitId);
+                        statement.setString(2, tuv.getLanguage());
+                        statement.setString(3, tuv.getTaggedSegment());
+                        statement.setString(4, tuv.getPlainTextSegment());
+                        statement.setString(5, tuv.getPlainTextSegmentHash());
+                        statement.setString(6, tuv.getMetadataType() == null
+                                ? null : tuv.getMetadataType().name());
+                        statement.setString(7, tuv.getMetadata());
+                        statement.setTimestamp(8,
+                                timestamp(tuv.getCreationDate(), now));
+                        statement.setTimestamp(9,
+                                timestamp(tuv.getLastChanged(), now));
+                        statement.addBatch();
+                    }
+                }
+                statement.executeBatch();
+            }
+        });
+
+        // rows inserted behind Hibernate's back are not indexed automatically
+        @SuppressWarnings("unchecked")
+        List<TransMemoryUnit> inserted = hibernateSession
+                .createQuery("select distinct tu from TransMemoryUnit tu "
+                        + "left join fetch tu.transUnitVariants "
+                        + "where tu.id in (:ids)")
+                .setParameterList("ids", idsByUniqueId.values())
+                .setComment("TransMemoryDAO.insertTranslationUnits-index")
+                .list();
+        for (TransMemoryUnit tu : inserted) {
+            session.index(tu);
+        }
+    }
+
+    private static Timestamp timestamp(Date date, Timestamp defaultValue) {
+        return date == null ? defaultValue : new Timestamp(date.getTime());
+    }
+
     public long getTranslationMemorySize(@Nonnull String tmSlug) {
         return (Long) getSession()
                 .createQuery(
@@ -1,14 +1,17 @@
 package org.zanata.events;
 
+import java.util.Map;
+
 import lombok.Value;
 import org.zanata.webtrans.server.TranslationWorkspace;
 import org.zanata.webtrans.shared.rpc.TransUnitUpdated;
 
 /**
- * This event is raised in Hibernate entity listener after change has been made.
+ * This event is raised after a transaction which changed text flow targets has
+ * committed, once for each workspace affected by the transaction.
  *
- * We then gather all relevant information required for TransUnitUpdated object
- * creation.
+ * The Hibernate entity listener gathers all relevant information required for
+ * TransUnitUpdated object creation before the transaction completes.
  *
  * @see org.zanata.webtrans.server.HibernateIntegrator
  * @see org.zanata.webtrans.shared.rpc.TransUnitUpdated
@@ -19,6 +22,9 @@ import org.zanata.webtrans.shared.rpc.TransUnitUpdated;
 @Value
 public class TextFlowTargetUpdatedEvent {
     private final TranslationWorkspace workspace;
-    private final Long textFlowTargetId;
-    private final TransUnitUpdated transUnitUpdated;
+    /**
+     * TransUnitUpdated for each text flow target id, in the order the targets
+     * were first changed
+     */
+    private final Map<Long, TransUnitUpdated> transUnitUpdates;
 }
@@ -25,13 +25,18 @@ import static com.google.common.base.Strings.isNullOrEmpty;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.SequenceInputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.sql.SQLException;
-import java.util.Vector;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.stream.Collectors;
 
 import javax.enterprise.context.Dependent;
 import javax.ws.rs.core.Response.Status;
@@ -49,7 +54,6 @@ import org.zanata.dao.ProjectIterationDAO;
 import org.zanata.exception.ChunkUploadException;
 import org.zanata.exception.HashMismatchException;
 import org.zanata.model.HDocumentUpload;
-import org.zanata.model.HDocumentUploadPart;
 import org.zanata.model.HLocale;
 import org.zanata.model.HProjectIteration;
 import org.zanata.rest.DocumentFileUploadForm;
@@ -58,6 +62,8 @@ import org.zanata.service.TranslationFileService;
 import org.zanata.util.PasswordUtil;
 
 import com.google.common.base.Optional;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
 
 // TODO damason: add thorough unit testing
 @Slf4j
@@ -126,6 +132,12 @@ public class DocumentUploadUtil {
                     "Form parameters 'first' and 'last' must both be provided.");
         }
 
+        if (uploadForm.getChunkIndex() != null
+                && uploadForm.getChunkIndex() < 0) {
+            throw new ChunkUploadException(Status.PRECONDITION_FAILED,
+                    "Form parameter 'chunkIndex' must not be negative.");
+        }
+
         if (isNullOrEmpty(uploadForm.getFileType())) {
             throw new ChunkUploadException(Status.PRECONDITION_FAILED,
                     "Required form parameter 'type' was not found.");
@@ -206,11 +218,18 @@ public class DocumentUploadUtil {
         }
     }
 
+    /**
+     * Stores a part of a chunked upload. Apart from the first part, which
+     * creates the upload record, parts do not update the database, so they
+     * can be received concurrently.
+     */
     protected HDocumentUpload saveUploadPart(GlobalDocumentId id,
             HLocale locale, DocumentFileUploadForm uploadForm) {
         HDocumentUpload upload;
         if (uploadForm.getFirst()) {
             upload = createMultipartUpload(id, uploadForm, locale);
+            session.save(upload);
+            session.flush();
         } else {
             upload = documentUploadDAO.findById(uploadForm.getUploadId());
         }
@@ -218,6 +237,13 @@ public class DocumentUploadUtil {
         return upload;
     }
 
+    /**
+     * @return the number of parts stored so far for the upload
+     */
+    protected int countUploadParts(HDocumentUpload upload) {
+        return uploadPartPersistService.getUploadParts(upload).size();
+    }
+
     private HDocumentUpload createMultipartUpload(GlobalDocumentId id,
             DocumentFileUploadForm uploadForm, HLocale locale) {
         HProjectIteration projectIteration =
@@ -235,14 +261,15 @@ public class DocumentUploadUtil {
 
     private void saveUploadPart(DocumentFileUploadForm uploadForm,
             HDocumentUpload upload) {
-        InputStream contentStream = uploadForm.getFileStream();
-        int contentLength = uploadForm.getSize().intValue();
-        HDocumentUploadPart newPart =
-                uploadPartPersistService.newUploadPartFromStream(contentStream,
-                        contentLength);
-        upload.getParts().add(newPart);
-        session.saveOrUpdate(upload);
-        session.flush();
+        int partIndex;
+        if (uploadForm.getChunkIndex() != null) {
+            partIndex = uploadForm.getChunkIndex();
+        } else {
+            // clients which send parts in order do not need to number them
+            partIndex = uploadForm.getFirst() ? 0 : countUploadParts(upload);
+        }
+        uploadPartPersistService.persistUploadPart(upload, partIndex,
+                uploadForm.getFileStream());
     }
 
     protected static boolean isSinglePart(DocumentFileUploadForm uploadForm) {
@@ -253,6 +280,7 @@ public class DocumentUploadUtil {
             DocumentFileUploadForm finalPart) {
         File tempFile;
         try {
+            saveUploadPart(finalPart, upload);
             tempFile = combineToTempFile(upload, finalPart);
         } catch (HashMismatchException e) {
             throw new ChunkUploadException(Status.CONFLICT, "MD5 hash \""
@@ -261,40 +289,96 @@ public class DocumentUploadUtil {
                     + " server-generated hash of combined parts \""
                     + e.getGeneratedHash()
                     + "\". Upload aborted. Retry upload from first part.");
-        } catch (SQLException e) {
-            throw new ChunkUploadException(Status.INTERNAL_SERVER_ERROR,
-                    "Error while retrieving document upload part contents", e);
         } finally {
             // no more need for upload
+            uploadPartPersistService.deleteUploadParts(upload);
             session.delete(upload);
         }
         return tempFile;
     }
 
-    private File
-            combineToTempFile(HDocumentUpload upload, DocumentFileUploadForm finalPart)
-                    throws SQLException {
-        Vector<InputStream> partStreams = new Vector<InputStream>();
-        for (HDocumentUploadPart part : upload.getParts()) {
-            partStreams.add(part.getContent().getBinaryStream());
+    /**
+     * Deletes uploads which have not received a part since the cutoff, along
+     * with their stored parts. Stored parts of uploads whose record no longer
+     * exists (e.g. because the first part was rolled back) are deleted too.
+     *
+     * @return the number of uploads deleted
+     */
+    public int deleteExpiredUploads(Date cutoff) {
+        Map<Long, Date> storedUploads =
+                uploadPartPersistService.getStoredUploads();
+        Set<Long> expiredStoredIds = storedUploads.entrySet().stream()
+                .filter(entry -> entry.getValue().before(cutoff))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+        Set<Long> existingIds =
+                documentUploadDAO.getExistingUploadIds(expiredStoredIds);
+        for (Long uploadId : expiredStoredIds) {
+            if (!existingIds.contains(uploadId)) {
+                uploadPartPersistService.deleteUploadParts(uploadId);
+            }
         }
-        partStreams.add(finalPart.getFileStream());
+        int deleted = 0;
+        for (HDocumentUpload upload : documentUploadDAO
+                .getUploadsLastChangedBefore(cutoff)) {
+            Date lastPart = storedUploads.get(upload.getId());
+            if (lastPart == null || lastPart.before(cutoff)) {
+                uploadPartPersistService.deleteUploadParts(upload);
+                session.delete(upload);
+                deleted++;
+            }
+        }
+        return deleted;
+    }
 
-        MessageDigest md;
+    /**
+     * Joins the stored parts in index order with FileChannel.transferTo, so
+     * that the content is not copied through the heap, then checks the hash
+     * of the result.
+     */
+    private File combineToTempFile(HDocumentUpload upload,
+            DocumentFileUploadForm finalPart) {
+        SortedMap<Integer, File> parts =
+                uploadPartPersistService.getUploadParts(upload);
+        // indexes are unique and not negative, so this means 0 to size-1
+        if (parts.isEmpty() || parts.lastKey() != parts.size() - 1) {
+            throw new ChunkUploadException(Status.PRECONDITION_FAILED,
+                    "Upload parts " + parts.keySet()
+                            + " were received, but parts 0 to "
+                            + (parts.isEmpty() ? 0 : parts.lastKey())
+                            + " are required. Upload aborted. Retry upload"
+                            + " from first part.");
+        }
+        File tempFile = null;
         try {
-            md = MessageDigest.getInstance("MD5");
-        } catch (NoSuchAlgorithmException e) {
-            log.error("MD5 algorithm not available.", e);
-            throw new RuntimeException(e);
+            tempFile = File.createTempFile("zupload", ".tmp");
+            try (FileChannel out = FileChannel.open(tempFile.toPath(),
+                    StandardOpenOption.WRITE)) {
+                for (File part : parts.values()) {
+                    try (FileChannel in = FileChannel.open(part.toPath(),
+                            StandardOpenOption.READ)) {
+                        long size = in.size();
+                        long position = 0;
+                        while (position < size) {
+                            position += in.transferTo(position,
+                                    size - position, out);
+                        }
+                    }
+                }
+            }
+            String md5hash = Files.hash(tempFile, Hashing.md5()).toString();
+            checkAndUpdateHash(finalPart, md5hash, upload.getContentHash());
+            File combinedFile = tempFile;
+            tempFile = null;
+            return combinedFile;
+        } catch (IOException e) {
+            throw new ChunkUploadException(Status.INTERNAL_SERVER_ERROR,
+                    "Error while combining document upload parts", e);
+        } finally {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
         }
-        InputStream combinedParts =
-                new SequenceInputStream(partStreams.elements());
-        combinedParts = new DigestInputStream(combinedParts, md);
-        File tempFile =
-                translationFileServiceImpl.persistToTempFile(combinedParts);
-
-        checkAndUpdateHash(finalPart, md, upload.getContentHash());
-        return tempFile;
     }
 
     protected static InputStream getInputStream(Optional<File> tempFile,
@@ -322,7 +406,9 @@ public class DocumentUploadUtil {
             tempFile =
                     translationFileServiceImpl.persistToTempFile(fileContents);
             String providedHash = uploadForm.getHash();
-            checkAndUpdateHash(uploadForm, md, providedHash);
+            checkAndUpdateHash(uploadForm,
+                    new String(PasswordUtil.encodeHex(md.digest())),
+                    providedHash);
         } catch (NoSuchAlgorithmException e) {
             throw new ChunkUploadException(Status.INTERNAL_SERVER_ERROR,
                     "MD5 hash algorithm not available", e);
@@ -334,15 +420,13 @@ public class DocumentUploadUtil {
      * Makes sure any provided hash matches the calculated hash, and sets the
      * calculated hash into the given upload form for use in subsequent steps.
      *
-     * @param md an MD5 message digester that has had the contents of the file
-     *        streamed through it.
+     * @param md5hash the hex MD5 hash of the file contents
      * @param providedHash provided by client, may be null or empty
      * @throws ChunkUploadException if a hash is provided and it does not match
      *         the hash of the file contents.
      */
     private void checkAndUpdateHash(DocumentFileUploadForm uploadForm,
-            MessageDigest md, String providedHash) {
-        String md5hash = new String(PasswordUtil.encodeHex(md.digest()));
+            String md5hash, String providedHash) {
         if (isNullOrEmpty(providedHash)) {
             // Web upload with no hash provided, use generated hash for metadata
             uploadForm.setHash(md5hash);
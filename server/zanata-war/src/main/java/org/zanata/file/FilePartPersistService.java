@@ -0,0 +1,183 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.enterprise.context.Dependent;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.core.Response.Status;
+
+import org.zanata.ApplicationConfiguration;
+import org.zanata.exception.ChunkUploadException;
+import org.zanata.model.HDocumentUpload;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.primitives.Longs;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Stores upload parts as files named by their index, in a directory for each
+ * upload, under the document storage location (or the temporary directory if
+ * that is not configured).
+ */
+@Named("filePartPersistService")
+@Dependent
+@Slf4j
+public class FilePartPersistService implements UploadPartPersistService {
+
+    private static final String UPLOADS_SUBDIRECTORY = "uploads";
+    private static final String PART_SUFFIX = ".part";
+    private static final Pattern PART_NAME =
+            Pattern.compile("(\\d+)" + Pattern.quote(PART_SUFFIX));
+
+    @Inject
+    private ApplicationConfiguration appConfig;
+
+    private File uploadsDirectory;
+
+    public FilePartPersistService() {
+    }
+
+    @VisibleForTesting
+    FilePartPersistService(File uploadsDirectory) {
+        this.uploadsDirectory = uploadsDirectory;
+    }
+
+    @Override
+    public void persistUploadPart(HDocumentUpload upload, int partIndex,
+            InputStream partContentStream) {
+        File uploadDirectory = getUploadDirectory(upload);
+        uploadDirectory.mkdirs();
+        File tempFile = null;
+        try {
+            // written beside the part and then renamed, so that a part which
+            // is still being received is never joined to the others
+            tempFile = File.createTempFile(".upload-", null, uploadDirectory);
+            Files.copy(partContentStream, tempFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            File partFile =
+                    new File(uploadDirectory, partIndex + PART_SUFFIX);
+            Files.move(tempFile.toPath(), partFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            tempFile = null;
+        } catch (IOException e) {
+            throw new ChunkUploadException(Status.INTERNAL_SERVER_ERROR,
+                    "Error while storing document upload part", e);
+        } finally {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    @Override
+    public SortedMap<Integer, File> getUploadParts(HDocumentUpload upload) {
+        SortedMap<Integer, File> parts = new TreeMap<>();
+        File[] files = getUploadDirectory(upload).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Matcher matcher = PART_NAME.matcher(file.getName());
+                if (matcher.matches()) {
+                    parts.put(Integer.valueOf(matcher.group(1)), file);
+                }
+            }
+        }
+        return parts;
+    }
+
+    @Override
+    public void deleteUploadParts(HDocumentUpload upload) {
+        deleteUploadParts(upload.getId());
+    }
+
+    @Override
+    public void deleteUploadParts(long uploadId) {
+        File uploadDirectory = getUploadDirectory(uploadId);
+        File[] files = uploadDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.delete()) {
+                    log.warn("unable to delete upload part {}", file);
+                }
+            }
+        }
+        uploadDirectory.delete();
+    }
+
+    @Override
+    public Map<Long, Date> getStoredUploads() {
+        Map<Long, Date> uploads = new HashMap<>();
+        File[] directories = getUploadsDirectory().listFiles(File::isDirectory);
+        if (directories != null) {
+            for (File directory : directories) {
+                Long uploadId = Longs.tryParse(directory.getName());
+                if (uploadId == null) {
+                    continue;
+                }
+                long lastModified = directory.lastModified();
+                File[] files = directory.listFiles();
+                if (files != null) {
+                    for (File file : files) {
+                        lastModified =
+                                Math.max(lastModified, file.lastModified());
+                    }
+                }
+                uploads.put(uploadId, new Date(lastModified));
+            }
+        }
+        return uploads;
+    }
+
+    private File getUploadDirectory(HDocumentUpload upload) {
+        return getUploadDirectory(upload.getId());
+    }
+
+    private File getUploadDirectory(long uploadId) {
+        return new File(getUploadsDirectory(), Long.toString(uploadId));
+    }
+
+    private File getUploadsDirectory() {
+        if (uploadsDirectory == null) {
+            String basePath = appConfig.getDocumentFileStorageLocation();
+            if (basePath == null) {
+                basePath = new File(System.getProperty("java.io.tmpdir"),
+                        "zanata").getPath();
+            }
+            uploadsDirectory = new File(basePath, UPLOADS_SUBDIRECTORY);
+        }
+        return uploadsDirectory;
+    }
+}
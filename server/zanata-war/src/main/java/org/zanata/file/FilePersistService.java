@@ -22,7 +22,11 @@ package org.zanata.file;
 
 import java.io.File;
 import java.io.InputStream;
+import java.util.concurrent.Future;
 
+import org.zanata.async.Async;
+import org.zanata.async.AsyncTaskClass;
+import org.zanata.async.AsyncTaskHandle;
 import org.zanata.model.HRawDocument;
 
 public interface FilePersistService {
@@ -47,4 +51,12 @@ public interface FilePersistService {
 
     boolean hasPersistedDocument(GlobalDocumentId id);
 
+    /**
+     * Delete stored files which are no longer referenced by any raw document,
+     * eg after documents are deleted or replaced.
+     */
+    @Async(AsyncTaskClass.MAINTENANCE)
+    Future<Void> deleteUnreferencedFiles(AsyncTaskHandle<Void> handle)
+            throws Exception;
+
 }
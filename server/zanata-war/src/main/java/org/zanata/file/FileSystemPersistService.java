@@ -25,6 +25,15 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -34,6 +43,10 @@ import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
 import javax.inject.Named;
 import org.zanata.ApplicationConfiguration;
+import org.zanata.async.Async;
+import org.zanata.async.AsyncTaskClass;
+import org.zanata.async.AsyncTaskHandle;
+import org.zanata.async.AsyncTaskResult;
 import org.zanata.config.SystemPropertyConfigStore;
 import org.zanata.dao.DocumentDAO;
 import org.zanata.model.HDocument;
@@ -42,14 +55,29 @@ import org.zanata.model.HProjectIteration;
 import org.zanata.model.HRawDocument;
 import org.zanata.rest.service.VirusScanner;
 
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import com.google.common.io.Files;
 
+import static org.zanata.transaction.TransactionUtil.runInTransaction;
+
 @Named("filePersistService")
 @RequestScoped
 @Slf4j
 public class FileSystemPersistService implements FilePersistService {
 
     private static final String RAW_DOCUMENTS_SUBDIRECTORY = "documents";
+    private static final String BLOBS_SUBDIRECTORY = "blobs";
+    private static final String TEMP_FILE_PREFIX = ".upload-";
+
+    // files newer than this may belong to an upload which is not committed yet
+    private static final long GC_GRACE_PERIOD_MILLIS =
+            TimeUnit.HOURS.toMillis(1);
+    // number of files checked for references in each transaction
+    private static final int GC_BATCH_SIZE = 500;
 
     @Inject
     private ApplicationConfiguration appConfig;
@@ -61,30 +89,168 @@ public class FileSystemPersistService implements FilePersistService {
     @Override
     public void persistRawDocumentContentFromFile(HRawDocument rawDocument,
             File fromFile, String extension) {
-        String fileName = generateFileNameFor(rawDocument, extension);
-        rawDocument.setFileId(fileName);
-
-        File newFile = getFileForName(fileName);
+        GlobalDocumentId globalId = getGlobalId(rawDocument);
+        String fileId;
         try {
-            Files.copy(fromFile, newFile);
+            fileId = blobFileId(Files.hash(fromFile, Hashing.sha256()));
         } catch (IOException e) {
             // FIXME damason: throw something more specific and handle at call
             // sites
             throw new RuntimeException(e);
         }
+        rawDocument.setFileId(fileId);
 
-        GlobalDocumentId globalId = getGlobalId(rawDocument);
+        File blob = getFileForName(fileId);
+        if (reuseExistingFile(blob)) {
+            log.info("Raw document {} has the same content as file {}",
+                    globalId, blob.getAbsolutePath());
+            return;
+        }
+        writeBlob(fromFile, blob, globalId);
         log.info("Persisted raw document {} to file {}", globalId,
-                newFile.getAbsolutePath());
-        virusScanner.scan(newFile, globalId.toString());
+                blob.getAbsolutePath());
+    }
+
+    /**
+     * Copies the file to a temporary file beside the blob, scans it, then
+     * renames it, so that a blob is never visible before it is complete.
+     */
+    private void writeBlob(File fromFile, File blob,
+            GlobalDocumentId globalId) {
+        File blobDirectory = blob.getParentFile();
+        blobDirectory.mkdirs();
+        File tempFile = null;
+        try {
+            tempFile = File.createTempFile(TEMP_FILE_PREFIX, null,
+                    blobDirectory);
+            Files.copy(fromFile, tempFile);
+            virusScanner.scan(tempFile, globalId.toString());
+            // a concurrent upload of the same content may have won the race,
+            // in which case this replaces the blob with identical content
+            java.nio.file.Files.move(tempFile.toPath(), blob.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            tempFile = null;
+        } catch (IOException e) {
+            // FIXME damason: throw something more specific and handle at call
+            // sites
+            throw new RuntimeException(e);
+        } finally {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Touches an existing file, which tells the garbage collector that it is
+     * in use again.
+     *
+     * @return false if the file does not exist (any more)
+     */
+    private static boolean reuseExistingFile(File file) {
+        if (!file.exists()) {
+            return false;
+        }
+        if (!file.setLastModified(System.currentTimeMillis())) {
+            log.warn("unable to update the modification time of {}",
+                    file.getAbsolutePath());
+        }
+        // the garbage collector may have deleted it before it was touched
+        return file.exists();
     }
 
     @Override
     public void copyAndPersistRawDocument(HRawDocument fromDoc,
             HRawDocument toDoc) {
         File file = getFileForRawDocument(fromDoc);
-        persistRawDocumentContentFromFile(toDoc, file,
-                FilenameUtils.getExtension(file.getName()));
+        if (isBlob(fromDoc.getFileId()) && reuseExistingFile(file)) {
+            // same content, so the copy can share the blob
+            toDoc.setFileId(fromDoc.getFileId());
+        } else {
+            // files stored before the blob store was introduced
+            persistRawDocumentContentFromFile(toDoc, file,
+                    FilenameUtils.getExtension(file.getName()));
+        }
+    }
+
+    @Override
+    @Async(AsyncTaskClass.MAINTENANCE)
+    public Future<Void> deleteUnreferencedFiles(AsyncTaskHandle<Void> handle)
+            throws Exception {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        long cutoff = System.currentTimeMillis() - GC_GRACE_PERIOD_MILLIS;
+        Path docsDirectory = ensureDocsDirectory().toPath();
+        List<Path> candidates = findFilesModifiedBefore(docsDirectory, cutoff);
+        handle.setMaxProgress(candidates.size());
+
+        int deleted = 0;
+        for (List<Path> batch : Lists.partition(candidates, GC_BATCH_SIZE)) {
+            if (handle.isCancelled()) {
+                log.info("document file garbage collection cancelled");
+                break;
+            }
+            Map<String, File> filesByFileId = Maps.newHashMap();
+            for (Path file : batch) {
+                String fileId = docsDirectory.relativize(file).toString()
+                        .replace(File.separatorChar, '/');
+                filesByFileId.put(fileId, file.toFile());
+            }
+            Set<String> referenced = runInTransaction(
+                    () -> documentDAO.getReferencedFileIds(
+                            filesByFileId.keySet()));
+            for (Map.Entry<String, File> entry : filesByFileId.entrySet()) {
+                File file = entry.getValue();
+                // skip files which were reused after they were listed
+                if (!referenced.contains(entry.getKey())
+                        && file.lastModified() < cutoff && file.delete()) {
+                    deleted++;
+                }
+            }
+            handle.increaseProgress(batch.size());
+        }
+        log.info("deleted {} of {} unreferenced document files in {}",
+                deleted, candidates.size(), stopwatch);
+        return AsyncTaskResult.taskResult();
+    }
+
+    /**
+     * Lists the blobs, and the files stored before the blob store was
+     * introduced (named {@code <document id>.<extension>}), which have not
+     * been modified since the cutoff.
+     */
+    private static List<Path> findFilesModifiedBefore(Path docsDirectory,
+            long cutoff) throws IOException {
+        Predicate<Path> isOldFile = path -> {
+            File file = path.toFile();
+            return file.isFile() && file.lastModified() < cutoff;
+        };
+        List<Path> files = Lists.newArrayList();
+        try (Stream<Path> paths = java.nio.file.Files.list(docsDirectory)) {
+            paths.filter(isOldFile).forEach(files::add);
+        }
+        Path blobsDirectory = docsDirectory.resolve(BLOBS_SUBDIRECTORY);
+        if (java.nio.file.Files.isDirectory(blobsDirectory)) {
+            try (Stream<Path> paths =
+                    java.nio.file.Files.walk(blobsDirectory)) {
+                // includes temporary files left behind by failed uploads
+                paths.filter(isOldFile).forEach(files::add);
+            }
+        }
+        return files;
+    }
+
+    private static boolean isBlob(String fileId) {
+        return fileId.startsWith(BLOBS_SUBDIRECTORY + "/");
+    }
+
+    /**
+     * Blobs are named by the SHA-256 of their content, and spread over
+     * subdirectories named by the first two hex digits.
+     */
+    private static String blobFileId(HashCode hash) {
+        String name = hash.toString();
+        return BLOBS_SUBDIRECTORY + "/" + name.substring(0, 2) + "/" + name;
     }
 
     private File getFileForName(String fileName) {
@@ -107,13 +273,6 @@ public class FileSystemPersistService implements FilePersistService {
         return docsDirectory;
     }
 
-    private static String generateFileNameFor(HRawDocument rawDocument, String extension) {
-        // Could change to use id of rawDocument, and throw if rawDocument has
-        // no id yet.
-        String idAsString = rawDocument.getDocument().getId().toString();
-        return idAsString + "." + extension;
-    }
-
     // TODO damason: put this in a more appropriate location
     private static GlobalDocumentId getGlobalId(HRawDocument rawDocument) {
         HDocument document = rawDocument.getDocument();
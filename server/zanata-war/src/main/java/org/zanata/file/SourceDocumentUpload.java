@@ -129,7 +129,7 @@ public class SourceDocumentUpload {
             if (!uploadForm.getLast()) {
                 HDocumentUpload upload =
                         util.saveUploadPart(id, NULL_LOCALE, uploadForm);
-                totalChunks = upload.getParts().size();
+                totalChunks = util.countUploadParts(upload);
                 return Response
                         .status(Status.ACCEPTED)
                         .entity(new ChunkUploadResponse(upload.getId(),
@@ -144,7 +144,7 @@ public class SourceDocumentUpload {
             } else {
                 HDocumentUpload previousParts =
                         documentUploadDAO.findById(uploadForm.getUploadId());
-                totalChunks = previousParts.getParts().size();
+                totalChunks = util.countUploadParts(previousParts);
                 totalChunks++; // add final part
                 tempFile =
                         Optional.of(util
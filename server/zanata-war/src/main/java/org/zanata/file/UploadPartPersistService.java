@@ -20,13 +20,40 @@
  */
 package org.zanata.file;
 
+import java.io.File;
 import java.io.InputStream;
+import java.util.Date;
+import java.util.Map;
+import java.util.SortedMap;
 
-import org.zanata.model.HDocumentUploadPart;
+import org.zanata.model.HDocumentUpload;
 
+/**
+ * Stages the parts of a chunked document upload until the final part arrives.
+ */
 public interface UploadPartPersistService {
 
-    public HDocumentUploadPart newUploadPartFromStream(
-            InputStream partContentStream, int contentLength);
+    /**
+     * Stores the content of one part of an upload, replacing any content
+     * already stored for the same index. Parts of the same upload may be
+     * stored concurrently and in any order.
+     */
+    void persistUploadPart(HDocumentUpload upload, int partIndex,
+            InputStream partContentStream);
+
+    /**
+     * @return the stored parts of the upload, keyed by part index
+     */
+    SortedMap<Integer, File> getUploadParts(HDocumentUpload upload);
+
+    void deleteUploadParts(HDocumentUpload upload);
+
+    void deleteUploadParts(long uploadId);
+
+    /**
+     * @return the time each upload which has stored parts last received a
+     *         part, keyed by upload id
+     */
+    Map<Long, Date> getStoredUploads();
 
 }
@@ -43,6 +43,9 @@ public class RateLimitManager implements Introspectable {
     @Getter(AccessLevel.PROTECTED)
     @VisibleForTesting
     private int maxActive;
+    @Getter(AccessLevel.PROTECTED)
+    @VisibleForTesting
+    private int maxPerSecond;
 
     @Inject
     private ApplicationConfiguration appConfig;
@@ -59,6 +62,7 @@ public class RateLimitManager implements Introspectable {
     private void readRateLimitState() {
         maxConcurrent = appConfig.getMaxConcurrentRequestsPerApiKey();
         maxActive = appConfig.getMaxActiveRequestsPerApiKey();
+        maxPerSecond = appConfig.getMaxRequestsPerSecondPerApiKey();
     }
 
     @Async
@@ -68,6 +72,7 @@ public class RateLimitManager implements Introspectable {
             ConfigurationChanged payload) {
         int oldConcurrent = maxConcurrent;
         int oldActive = maxActive;
+        int oldPerSecond = maxPerSecond;
         boolean changed = false;
         readRateLimitState();
         if (oldConcurrent != maxConcurrent) {
@@ -82,10 +87,17 @@ public class RateLimitManager implements Introspectable {
                     oldActive, maxActive);
             changed = true;
         }
+        if (oldPerSecond != maxPerSecond) {
+            log.info(
+                    "application configuration changed. Old per second: {}, New per second: {}",
+                    oldPerSecond, maxPerSecond);
+            changed = true;
+        }
         if (changed) {
             for (RestCallLimiter restCallLimiter : activeCallers.asMap()
                     .values()) {
-                restCallLimiter.changeConfig(maxConcurrent, maxActive);
+                restCallLimiter.changeConfig(maxConcurrent, maxActive,
+                        maxPerSecond);
             }
         }
     }
@@ -115,7 +127,8 @@ public class RateLimitManager implements Introspectable {
      */
     public RestCallLimiter getLimiter(final RateLimiterToken key) {
 
-        if (getMaxConcurrent() == 0 && getMaxActive() == 0) {
+        if (getMaxConcurrent() == 0 && getMaxActive() == 0
+                && getMaxPerSecond() == 0) {
             if (activeCallers.size() > 0) {
                 activeCallers.invalidateAll();
             }
@@ -126,7 +139,7 @@ public class RateLimitManager implements Introspectable {
             return activeCallers.get(key, () -> {
                 log.debug("creating rate limiter for key: {}", key);
                 return new RestCallLimiter(getMaxConcurrent(),
-                        getMaxActive());
+                        getMaxActive(), getMaxPerSecond());
             });
         } catch (ExecutionException e) {
             throw new RuntimeException(e);
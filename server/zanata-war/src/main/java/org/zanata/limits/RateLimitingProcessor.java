@@ -1,5 +1,6 @@
 package org.zanata.limits;
 
+import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 
 import lombok.AccessLevel;
@@ -10,6 +11,8 @@ import org.zanata.util.RunnableEx;
 
 import javax.servlet.http.HttpServletResponse;
 
+import com.google.common.net.HttpHeaders;
+
 /**
  * This class is used by RestLimitingSynchronousDispatcher to dispatch API calls
  * via the appropriate RestCallLimiter and have access to seam environment.
@@ -22,6 +25,8 @@ import javax.servlet.http.HttpServletResponse;
 public class RateLimitingProcessor {
     // http://tools.ietf.org/html/rfc6585
     public static final int TOO_MANY_REQUEST = 429;
+    // suggested delay before retrying after too many concurrent requests
+    private static final long CONCURRENT_RETRY_AFTER_SECONDS = 1;
     private RateLimitManager rateLimitManager;
 
     // for seam to use
@@ -56,6 +61,32 @@ public class RateLimitingProcessor {
             RunnableEx taskToRun) throws Exception {
         RestCallLimiter rateLimiter = rateLimitManager.getLimiter(key);
 
+        long waitNanos = rateLimiter.tryAcquireRequestPermit();
+        if (waitNanos > 0) {
+            if (logLimiter.tryAcquire()) {
+                log.warn(
+                        "{} has too many requests per second. Returning status 429",
+                        key);
+            }
+
+            String errorMessage;
+            if (key.getType().equals(RateLimiterToken.TYPE.API_KEY)) {
+                errorMessage =
+                        String.format(
+                                "Too many requests per second for client API key (maximum is %d)",
+                                rateLimiter.getMaxRequestsPerSecond());
+            } else {
+                errorMessage =
+                        String.format(
+                                "Too many requests per second for client '%s' (maximum is %d)",
+                                key.getValue(),
+                                rateLimiter.getMaxRequestsPerSecond());
+            }
+            sendTooManyRequests(response, retryAfterSeconds(waitNanos),
+                    errorMessage);
+            return;
+        }
+
         log.debug("check semaphore for {}", this);
 
         if (!rateLimiter.tryAcquireAndRun(taskToRun)) {
@@ -77,7 +108,23 @@ public class RateLimitingProcessor {
                                 "Too many concurrent requests for client '%s' (maximum is %d)",
                                 key.getValue(), rateLimiter.getMaxConcurrentPermits());
             }
-            response.sendError(TOO_MANY_REQUEST, errorMessage);
+            sendTooManyRequests(response, CONCURRENT_RETRY_AFTER_SECONDS,
+                    errorMessage);
         }
     }
+
+    private static void sendTooManyRequests(HttpServletResponse response,
+            long retryAfterSeconds, String errorMessage) throws IOException {
+        response.setHeader(HttpHeaders.RETRY_AFTER,
+                String.valueOf(retryAfterSeconds));
+        response.sendError(TOO_MANY_REQUEST, errorMessage);
+    }
+
+    /**
+     * Rounds up, since Retry-After only allows whole seconds.
+     */
+    private static long retryAfterSeconds(long waitNanos) {
+        long nanosPerSecond = TimeUnit.SECONDS.toNanos(1);
+        return Math.max(1, (waitNanos + nanosPerSecond - 1) / nanosPerSecond);
+    }
 }
@@ -17,8 +17,11 @@ import org.zanata.util.RunnableEx;
 class RestCallLimiter {
     private volatile Semaphore maxConcurrentSemaphore;
     private volatile Semaphore maxActiveSemaphore;
+    // null if there is no limit on requests per second
+    private volatile TokenBucket requestRateBucket;
     private int maxConcurrent;
     private int maxActive;
+    private int maxPerSecond;
 
     /**
      * Creates a limiter which limits maximum concurrent requests and maximum
@@ -34,10 +37,24 @@ class RestCallLimiter {
      *            maximum allowed active requests/threads for a single user.
      */
     RestCallLimiter(int maxConcurrent, int maxActive) {
+        this(maxConcurrent, maxActive, 0);
+    }
+
+    /**
+     * Creates a limiter which also limits the rate of requests.
+     *
+     * @param maxPerSecond
+     *            maximum allowed requests per second for a single user, with
+     *            bursts of up to this many requests. 0 means no limit.
+     * @see #RestCallLimiter(int, int)
+     */
+    RestCallLimiter(int maxConcurrent, int maxActive, int maxPerSecond) {
         this.maxConcurrent = maxConcurrent;
         this.maxActive = maxActive;
+        this.maxPerSecond = maxPerSecond;
         this.maxConcurrentSemaphore = makeSemaphore(maxConcurrent);
         this.maxActiveSemaphore = makeSemaphore(maxActive);
+        this.requestRateBucket = makeTokenBucket(maxPerSecond);
     }
 
     @VisibleForTesting
@@ -79,6 +96,25 @@ class RestCallLimiter {
         return gotConcurrentPermit;
     }
 
+    /**
+     * Counts a request against the limit on requests per second. Will not
+     * block.
+     *
+     * @return 0 if the request is allowed, otherwise the number of
+     *         nanoseconds until it would be allowed
+     */
+    public long tryAcquireRequestPermit() {
+        TokenBucket bucket = requestRateBucket;
+        if (bucket == null) {
+            return 0;
+        }
+        long waitNanos = bucket.tryAcquire();
+        if (waitNanos > 0) {
+            log.debug("failed to acquire [rate] permit");
+        }
+        return waitNanos;
+    }
+
     private boolean acquireActivePermit(RunnableEx taskAfterAcquire)
             throws Exception {
         log.debug("before acquire [active] semaphore:{}", maxActiveSemaphore);
@@ -141,11 +177,33 @@ class RestCallLimiter {
         }
     }
 
+    /**
+     * Replaces the token bucket, so that the new rate starts with a full
+     * bucket.
+     *
+     * @param maxPerSecond
+     *            new maximum allowed requests per second
+     */
+    public synchronized void setMaxPerSecond(int maxPerSecond) {
+        if (maxPerSecond != this.maxPerSecond) {
+            log.debug("change max [rate] with new permits per second {}",
+                    maxPerSecond);
+            requestRateBucket = makeTokenBucket(maxPerSecond);
+            this.maxPerSecond = maxPerSecond;
+        }
+    }
+
     public synchronized void changeConfig(int maxConcurrent, int maxActive) {
         setMaxConcurrent(maxConcurrent);
         setMaxActive(maxActive);
     }
 
+    public synchronized void changeConfig(int maxConcurrent, int maxActive,
+            int maxPerSecond) {
+        changeConfig(maxConcurrent, maxActive);
+        setMaxPerSecond(maxPerSecond);
+    }
+
     public int availableConcurrentPermit() {
         return maxConcurrentSemaphore.availablePermits();
     }
@@ -154,6 +212,10 @@ class RestCallLimiter {
         return maxActiveSemaphore.availablePermits();
     }
 
+    private static TokenBucket makeTokenBucket(int permitsPerSecond) {
+        return permitsPerSecond == 0 ? null : new TokenBucket(permitsPerSecond);
+    }
+
     private static Semaphore makeSemaphore(int permit) {
         if (permit == 0) {
             return NoLimitSemaphore.INSTANCE;
@@ -172,6 +234,7 @@ class RestCallLimiter {
                 .add("maxActive(available)",
                         maxActiveSemaphore.availablePermits())
                 .add("maxActive(queue)", maxActiveSemaphore.getQueueLength())
+                .add("maxPerSecond", requestRateBucket)
                 .toString();
     }
 
@@ -179,6 +242,10 @@ class RestCallLimiter {
         return maxConcurrent;
     }
 
+    public int getMaxRequestsPerSecond() {
+        return maxPerSecond;
+    }
+
     /**
      * Overrides tryAcquire method to return true all the time.
      */
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.limits;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+
+/**
+ * Lock-free token bucket which allows a number of permits per second, with
+ * bursts of up to one second's worth of permits.
+ *
+ * Instead of a count of tokens and the time of the last refill, the state is
+ * a single timestamp: the time at which the bucket will be full again. Each
+ * permit pushes that time forward by one refill interval, and a permit is
+ * refused if it would push it more than the bucket's capacity into the
+ * future. This lets the state be updated with a single compare-and-set.
+ */
+public class TokenBucket {
+    private final Ticker ticker;
+    private final int permitsPerSecond;
+    // time needed to refill one permit
+    private final long intervalNanos;
+    // time needed to refill the whole bucket
+    private final long capacityNanos;
+    private final AtomicLong fullAt;
+
+    /**
+     * @param permitsPerSecond
+     *            permits to allow per second (also the bucket's capacity)
+     */
+    public TokenBucket(int permitsPerSecond) {
+        this(permitsPerSecond, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    TokenBucket(int permitsPerSecond, Ticker ticker) {
+        Preconditions.checkArgument(permitsPerSecond > 0,
+                "permitsPerSecond must be positive");
+        this.ticker = ticker;
+        this.permitsPerSecond = permitsPerSecond;
+        intervalNanos = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+        capacityNanos = intervalNanos * permitsPerSecond;
+        fullAt = new AtomicLong(ticker.read());
+    }
+
+    /**
+     * Try acquire 1 permit. Will not block.
+     *
+     * @return 0 if a permit was acquired, otherwise the number of nanoseconds
+     *         until one will be available
+     */
+    public long tryAcquire() {
+        while (true) {
+            long now = ticker.read();
+            long current = fullAt.get();
+            // nanoTime values may only be compared by subtraction
+            long next = (current - now > 0 ? current : now) + intervalNanos;
+            long waitNanos = next - now - capacityNanos;
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    public long availablePermits() {
+        long emptyNanos = Math.max(0, fullAt.get() - ticker.read());
+        return (capacityNanos - emptyNanos) / intervalNanos;
+    }
+
+    public int getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return "TokenBucket(permitsPerSecond=" + permitsPerSecond
+                + ", available=" + availablePermits() + ")";
+    }
+}
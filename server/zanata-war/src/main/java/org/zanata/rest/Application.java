@@ -3,6 +3,7 @@ package org.zanata.rest;
 import com.google.common.collect.ImmutableSet;
 import lombok.extern.slf4j.Slf4j;
 import org.atteo.classindex.ClassIndex;
+import org.jboss.resteasy.plugins.interceptors.encoding.GZIPEncodingInterceptor;
 import org.zanata.rest.service.RestResource;
 
 import javax.enterprise.context.ApplicationScoped;
@@ -33,7 +34,10 @@ public class Application extends javax.ws.rs.core.Application {
     /**
      * Collect all classes annotated with {@code @Path} or
      * {@code @Provider}, except in the packages
-     * {@code org.zanata.rest.client} and {@code org.zanata.rest.enunciate}.
+     * {@code org.zanata.rest.client} and {@code org.zanata.rest.enunciate},
+     * plus RESTEasy's {@link GZIPEncodingInterceptor}, which compresses
+     * responses with a {@code Content-Encoding: gzip} header (eg TMX
+     * exports).
      * @return resource and provider classes
      */
     private static Set<Class<?>> buildClassesSet() {
@@ -46,7 +50,8 @@ public class Application extends javax.ws.rs.core.Application {
         log.debug("Indexed @Provider classes: {}", providerClasses);
         ImmutableSet<Class<?>> classes = concat(stream(resourceClasses), concat(
                 stream(pathClasses),
-                stream(providerClasses)))
+                concat(stream(providerClasses),
+                        Stream.<Class<?>> of(GZIPEncodingInterceptor.class))))
                 .filter(clazz ->
                         !clazz.getName().startsWith("org.zanata.rest.client.") &&
                         !clazz.getName().startsWith("org.zanata.rest.enunciate."))
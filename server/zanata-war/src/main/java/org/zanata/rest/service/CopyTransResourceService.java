@@ -55,7 +55,7 @@ public class CopyTransResourceService implements CopyTransResource {
 
     @Override
     public CopyTransStatus startCopyTrans(String projectSlug,
-            String iterationSlug, String docId) {
+            String iterationSlug, String docId, boolean incremental) {
         HDocument document =
                 documentDAO.getByProjectIterationAndDocId(projectSlug,
                         iterationSlug, docId);
@@ -68,7 +68,7 @@ public class CopyTransResourceService implements CopyTransResource {
 
         // TODO allow options from the Rest endpoint
         try {
-            copyTransManager.startCopyTrans(document, null);
+            copyTransManager.startCopyTrans(document, null, incremental);
             return this.getCopyTransStatus(projectSlug, iterationSlug, docId);
         } catch (Exception e) {
             throw Throwables.propagate(e);
@@ -156,9 +156,6 @@ public class StatisticsServiceImpl implements StatisticsResource {
         Map<String, TransUnitCount> transUnitIterationStats =
                 projectIterationDAO.getAllStatisticsForContainer(iteration
                         .getId());
-        Map<String, TransUnitWords> wordIterationStats =
-                projectIterationDAO
-                        .getAllWordStatsStatistics(iteration.getId());
 
         ContainerTranslationStatistics iterationStats =
                 new ContainerTranslationStatistics();
@@ -169,9 +166,6 @@ public class StatisticsServiceImpl implements StatisticsResource {
         long iterationTotalMssgs =
                 projectIterationDAO
                         .getTotalMessageCountForIteration(iteration.getId());
-        long iterationTotalWords =
-                projectIterationDAO.getTotalWordCountForIteration(iteration
-                        .getId());
 
         for (LocaleId locId : localeIds) {
             // trans unit level stats
@@ -197,10 +191,8 @@ public class StatisticsServiceImpl implements StatisticsResource {
                 }
             }
 
-            TransUnitWords wordCount = wordIterationStats.get(locId.getId());
-            if (wordCount == null) {
-                wordCount = new TransUnitWords(0, 0, (int) iterationTotalWords);
-            }
+            TransUnitWords wordCount = projectIterationDAO
+                    .getWordStatsForContainer(iteration.getId(), locId);
 
             TranslationStatistics transUnitStats =
                     getMessageStats(count, locId, lastModifiedDate,
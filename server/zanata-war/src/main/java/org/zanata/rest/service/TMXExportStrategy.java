@@ -21,13 +21,9 @@
 
 package org.zanata.rest.service;
 
-import java.io.IOException;
-
 import javax.annotation.ParametersAreNonnullByDefault;
-
-import com.google.common.base.Optional;
-
-import nu.xom.Element;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 /**
  * A strategy for exporting translation units to TMX
@@ -41,24 +37,29 @@ import nu.xom.Element;
 @ParametersAreNonnullByDefault
 public interface TMXExportStrategy<T> {
     /**
-     * Builds a {@code <header>} element.
+     * Writes a {@code <header>} element.
      *
-     * @return
-     * @throws IOException
+     * @param writer
+     * @throws XMLStreamException
      */
-    public abstract Element buildHeader() throws IOException;
+    public abstract void writeHeader(XMLStreamWriter writer)
+            throws XMLStreamException;
 
     /**
-     * Builds a {@code <tu>} element for the specified T and one or all of its
-     * translations.
+     * Writes a {@code <tu>} element for the specified T and one or all of its
+     * translations, unless the TU is invalid or incomplete.
+     * <p>
+     * From the TMX spec: "Logically, a complete translation-memory database
+     * will contain at least two {@code <tuv>} elements in each translation
+     * unit." Implementations must not write anything for a TU which would
+     * have fewer than two.
      *
+     * @param writer
      * @param tu
      *            the T whose contents and translations are to be exported
-     * @param tuidPrefix
-     *            String to be prepended to all resIds when generating tuids
-     * @return a TU Element, or absent() if the TU is invalid
-     * @throws IOException
-     * @throws Exception
+     * @return true if the TU was written, false if it was skipped
+     * @throws XMLStreamException
      */
-    public abstract Optional<Element> buildTU(T tu) throws IOException;
+    public abstract boolean writeTU(XMLStreamWriter writer, T tu)
+            throws XMLStreamException;
 }
@@ -25,29 +25,29 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Iterator;
+import java.util.zip.GZIPOutputStream;
 
 import javax.annotation.Nonnull;
 import javax.annotation.ParametersAreNonnullByDefault;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.StreamingOutput;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 import lombok.extern.slf4j.Slf4j;
 
-import nu.xom.Attribute;
-import nu.xom.DocType;
-import nu.xom.Element;
-import nu.xom.Text;
-
 import org.zanata.util.CloseableIterator;
 import org.zanata.util.NullCloseable;
-import org.zanata.xml.StreamSerializer;
 
-import com.google.common.base.Optional;
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.PeekingIterator;
 
 /**
  * Exports a series of translation units (T) to an OutputStream in TMX format.
+ * Each TU is written straight to an XMLStreamWriter, without building a tree
+ * of elements.
  *
  * @author Sean Flanigan <a
  *         href="mailto:sflaniga@redhat.com">sflaniga@redhat.com</a>
@@ -56,20 +56,28 @@ import com.google.common.collect.PeekingIterator;
 @ParametersAreNonnullByDefault
 @Slf4j
 public class TMXStreamingOutput<T> implements StreamingOutput, Closeable {
+    private static final XMLOutputFactory XML_OUTPUT_FACTORY =
+            XMLOutputFactory.newInstance();
+    private static final String ENCODING = "UTF-8";
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
     private final @Nonnull
     Iterator<T> tuIter;
     private final TMXExportStrategy<T> exportStrategy;
     private final Closeable closeable;
     private final String jobName;
+    private final boolean gzip;
 
     private TMXStreamingOutput(String jobName, Iterator<T> tuIter,
-            TMXExportStrategy<T> exportTUStrategy, Closeable closeable) {
+            TMXExportStrategy<T> exportTUStrategy, Closeable closeable,
+            boolean gzip) {
         this.jobName = jobName;
         this.tuIter = tuIter;
         this.exportStrategy = exportTUStrategy;
         this.closeable =
                 (Closeable) (tuIter instanceof Closeable ? tuIter
                         : NullCloseable.INSTANCE);
+        this.gzip = gzip;
     }
 
     /**
@@ -86,7 +94,27 @@ public class TMXStreamingOutput<T> implements StreamingOutput, Closeable {
      */
     public TMXStreamingOutput(String jobName, CloseableIterator<T> tuIter,
             TMXExportStrategy<T> exportTUStrategy) {
-        this(jobName, tuIter, exportTUStrategy, tuIter);
+        this(jobName, tuIter, exportTUStrategy, false);
+    }
+
+    /**
+     * Constructs an instance which will write the translation units using the
+     * specified export strategy, optionally gzip-compressing the TMX as it is
+     * written.
+     *
+     * @param tuIter
+     *            an iterator over translation units to be exported. It will be
+     *            closed after write() is called, or call close() to close it
+     *            earlier.
+     * @param exportTUStrategy
+     *            strategy to use when converting from translation units into
+     *            TMX.
+     * @param gzip
+     *            whether to write the TMX in gzip format
+     */
+    public TMXStreamingOutput(String jobName, CloseableIterator<T> tuIter,
+            TMXExportStrategy<T> exportTUStrategy, boolean gzip) {
+        this(jobName, tuIter, exportTUStrategy, tuIter, gzip);
     }
 
     /**
@@ -105,8 +133,17 @@ public class TMXStreamingOutput<T> implements StreamingOutput, Closeable {
      */
     public static <T> TMXStreamingOutput<T> testInstance(Iterator<T> tuIter,
             TMXExportStrategy<T> exportTUStrategy) {
+        return testInstance(tuIter, exportTUStrategy, false);
+    }
+
+    /**
+     * As {@link #testInstance(Iterator, TMXExportStrategy)}, optionally
+     * writing the TMX in gzip format.
+     */
+    public static <T> TMXStreamingOutput<T> testInstance(Iterator<T> tuIter,
+            TMXExportStrategy<T> exportTUStrategy, boolean gzip) {
         return new TMXStreamingOutput<T>("test", tuIter, exportTUStrategy,
-                NullCloseable.INSTANCE);
+                NullCloseable.INSTANCE, gzip);
     }
 
     @Override
@@ -126,6 +163,8 @@ public class TMXStreamingOutput<T> implements StreamingOutput, Closeable {
     public void write(OutputStream output) throws IOException,
             WebApplicationException {
         int tuCount = 0;
+        int skippedCount = 0;
+        Stopwatch stopwatch = Stopwatch.createStarted();
         try {
             log.info("streaming output started for: {}", jobName);
             @SuppressWarnings("null")
@@ -136,72 +175,77 @@ public class TMXStreamingOutput<T> implements StreamingOutput, Closeable {
             if (iter.hasNext())
                 iter.peek();
 
-            StreamSerializer stream = new StreamSerializer(output);
-            stream.writeXMLDeclaration();
-            stream.write(new DocType("tmx", "http://www.lisa.org/tmx/tmx14.dtd"));
-            stream.writeNewLine();
-
-            Element tmx = new Element("tmx");
-            tmx.addAttribute(new Attribute("version", "1.4"));
-            startElem(stream, tmx);
-
-            indent(stream);
-            writeElem(stream, exportStrategy.buildHeader());
-
-            indent(stream);
-            Element body = new Element("body");
-            startElem(stream, body);
-
-            while (iter.hasNext()) {
-                T tu = iter.next();
-                writeIfComplete(stream, tu);
-                ++tuCount;
+            GZIPOutputStream gzipStream = null;
+            OutputStream out = output;
+            if (gzip) {
+                gzipStream = new GZIPOutputStream(output, GZIP_BUFFER_SIZE);
+                out = gzipStream;
+            }
+            XMLStreamWriter writer =
+                    XML_OUTPUT_FACTORY.createXMLStreamWriter(out, ENCODING);
+            try {
+                writer.writeStartDocument(ENCODING, "1.0");
+                newLine(writer);
+                writer.writeDTD(
+                        "<!DOCTYPE tmx SYSTEM \"http://www.lisa.org/tmx/tmx14.dtd\">");
+                newLine(writer);
+
+                writer.writeStartElement("tmx");
+                writer.writeAttribute("version", "1.4");
+                newLine(writer);
+
+                indent(writer);
+                exportStrategy.writeHeader(writer);
+                newLine(writer);
+
+                indent(writer);
+                writer.writeStartElement("body");
+                newLine(writer);
+
+                while (iter.hasNext()) {
+                    T tu = iter.next();
+                    // If there aren't any translations for this TU, the
+                    // strategy won't include it.
+                    if (exportStrategy.writeTU(writer, tu)) {
+                        newLine(writer);
+                        ++tuCount;
+                    } else {
+                        ++skippedCount;
+                    }
+                }
+                indent(writer);
+                writer.writeEndElement();
+                newLine(writer);
+                writer.writeEndElement();
+                newLine(writer);
+                writer.writeEndDocument();
+                writer.flush();
+            } finally {
+                // does not close the underlying stream
+                writer.close();
             }
-            indent(stream);
-            endElem(stream, body);
-            endElem(stream, tmx);
-            stream.flush();
+            if (gzipStream != null) {
+                gzipStream.finish();
+            }
+            output.flush();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
         } finally {
             close();
-            log.info("streaming output stopped for: {}, TU count={}", jobName,
-                    tuCount);
+            log.info(
+                    "streaming output stopped for: {}, TU count={}, skipped={}, elapsed={}",
+                    jobName, tuCount, skippedCount, stopwatch);
         }
     }
 
-    private void indent(StreamSerializer stream) throws IOException {
-        stream.write(new Text("  "));
-    }
-
-    private void startElem(StreamSerializer stream, Element elem)
-            throws IOException {
-        stream.writeStartTag(elem);
-        stream.writeNewLine();
-    }
-
-    private void endElem(StreamSerializer stream, Element elem)
-            throws IOException {
-        stream.writeEndTag(elem);
-        stream.writeNewLine();
-    }
-
-    private void writeElem(StreamSerializer stream, Element elem)
-            throws IOException {
-        stream.write(elem);
-        stream.writeNewLine();
+    private static void indent(XMLStreamWriter writer)
+            throws XMLStreamException {
+        writer.writeCharacters("  ");
     }
 
-    private void writeIfComplete(StreamSerializer stream, T tu)
-            throws IOException {
-        Optional<Element> textUnit = exportStrategy.buildTU(tu);
-        // If there aren't any translations for this TU, we shouldn't include
-        // it.
-        // From the TMX spec: "Logically, a complete translation-memory
-        // database will contain at least two <tuv> elements in each translation
-        // unit."
-        if (textUnit.isPresent()
-                && textUnit.get().getChildElements("tuv").size() >= 2) {
-            writeElem(stream, textUnit.get());
-        }
+    private static void newLine(XMLStreamWriter writer)
+            throws XMLStreamException {
+        writer.writeCharacters("\n");
     }
 
 }
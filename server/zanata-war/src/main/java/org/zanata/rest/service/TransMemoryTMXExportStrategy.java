@@ -21,15 +21,19 @@
 
 package org.zanata.rest.service;
 
-import java.io.IOException;
+import java.util.Collection;
 import java.util.Map;
 
 import javax.annotation.Nonnull;
 import javax.annotation.ParametersAreNonnullByDefault;
 import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 import nu.xom.Attribute;
 import nu.xom.Element;
+import nu.xom.Node;
+import nu.xom.Text;
 
 import org.zanata.common.LocaleId;
 import org.zanata.model.tm.HasTMMetadata;
@@ -41,7 +45,6 @@ import org.zanata.util.TMXConstants;
 import org.zanata.util.VersionUtility;
 
 import com.google.common.base.Optional;
-import com.google.common.collect.ImmutableMap;
 
 /**
  * Writes one or more variations for a single TransMemoryUnit as a TMX
@@ -58,6 +61,7 @@ public class TransMemoryTMXExportStrategy implements
             + TransMemoryTMXExportStrategy.class.getSimpleName();
     private static final String creationToolVersion = VersionUtility
             .getVersionInfo(TransMemoryTMXExportStrategy.class).getVersionNo();
+    private static final String XML_LANG = "xml:lang";
     private TransMemory tm;
 
     public TransMemoryTMXExportStrategy(TransMemory tm) {
@@ -66,39 +70,53 @@ public class TransMemoryTMXExportStrategy implements
     }
 
     @Override
-    public Element buildHeader() throws IOException {
-        Element header = new Element("header");
-        addAttributes(header, TMXMetadataHelper.getAttributes(tm));
-        addChildren(header, tm);
-        header.addAttribute(new Attribute("creationtool", creationTool));
-        header.addAttribute(new Attribute("creationtoolversion",
-                creationToolVersion));
-        return header;
+    public void writeHeader(XMLStreamWriter writer)
+            throws XMLStreamException {
+        writer.writeStartElement("header");
+        for (Map.Entry<String, String> attr : TMXMetadataHelper
+                .getAttributes(tm).entrySet()) {
+            String name = attr.getKey();
+            // these always describe this export, not the original file
+            if (!name.equals("creationtool")
+                    && !name.equals("creationtoolversion")) {
+                writeAttribute(writer, name, attr.getValue());
+            }
+        }
+        writer.writeAttribute("creationtool", creationTool);
+        writer.writeAttribute("creationtoolversion", creationToolVersion);
+        writeChildren(writer, tm);
+        writer.writeEndElement();
     }
 
     @Override
-    public Optional<Element> buildTU(TransMemoryUnit transUnit)
-            throws IOException {
-        Element tu = new Element("tu");
+    public boolean writeTU(XMLStreamWriter writer, TransMemoryUnit transUnit)
+            throws XMLStreamException {
+        Collection<TransMemoryUnitVariant> variants =
+                transUnit.getTransUnitVariants().values();
+        if (variants.size() < 2) {
+            return false;
+        }
+        writer.writeStartElement("tu");
 
         Optional<LocaleId> sourceLocaleId = getSourceLocale(transUnit);
         String srcLang =
                 sourceLocaleId.isPresent() ? sourceLocaleId.get().getId()
                         : TMXConstants.ALL_LOCALE;
-        tu.addAttribute(new Attribute(TMXConstants.SRCLANG, srcLang));
-
-        String tuid = transUnit.getTransUnitId();
-        if (tuid != null) {
-            tu.addAttribute(new Attribute("tuid", tuid));
+        writer.writeAttribute(TMXConstants.SRCLANG, srcLang);
+        // includes tuid, if there is one
+        for (Map.Entry<String, String> attr : TMXMetadataHelper
+                .getAttributes(transUnit).entrySet()) {
+            if (!attr.getKey().equals(TMXConstants.SRCLANG)) {
+                writeAttribute(writer, attr.getKey(), attr.getValue());
+            }
         }
-        addAttributes(tu, TMXMetadataHelper.getAttributes(transUnit));
-        addChildren(tu, transUnit);
+        writeChildren(writer, transUnit);
 
-        for (TransMemoryUnitVariant tuv : transUnit.getTransUnitVariants()
-                .values()) {
-            tu.appendChild(buildTUV(tuv));
+        for (TransMemoryUnitVariant tuv : variants) {
+            writeTUV(writer, tuv);
         }
-        return Optional.of(tu);
+        writer.writeEndElement();
+        return true;
     }
 
     private static Optional<LocaleId> getSourceLocale(TransMemoryUnit tu) {
@@ -109,39 +127,59 @@ public class TransMemoryTMXExportStrategy implements
         return Optional.absent();
     }
 
-    private static void addAttributes(Element toElem,
-            ImmutableMap<String, String> attributes) {
-        for (Map.Entry<String, String> attr : attributes.entrySet()) {
-            toElem.addAttribute(toAttribute(attr));
+    private static void writeAttribute(XMLStreamWriter writer, String name,
+            String value) throws XMLStreamException {
+        if (name.equals(XML_LANG)) {
+            writer.writeAttribute(XMLConstants.XML_NS_PREFIX,
+                    XMLConstants.XML_NS_URI, "lang", value);
+        } else {
+            writer.writeAttribute(name, value);
         }
     }
 
-    private static void addChildren(Element toHeader,
-            HasTMMetadata fromTransMemory) {
-        for (Element child : TMXMetadataHelper.getChildren(fromTransMemory)) {
-            toHeader.appendChild(child);
+    private static void writeChildren(XMLStreamWriter writer,
+            HasTMMetadata fromEntity) throws XMLStreamException {
+        for (Element child : TMXMetadataHelper.getChildren(fromEntity)) {
+            writeElement(writer, child);
         }
     }
 
-    private static Attribute toAttribute(Map.Entry<String, String> attr) {
-        String name = attr.getKey();
-        if (name.equals("xml:lang")) {
-            return new Attribute(name, XMLConstants.XML_NS_URI, attr.getValue());
-        } else {
-            return new Attribute(name, attr.getValue());
+    /**
+     * Writes a {@code <prop>} or {@code <note>} element which was stored as
+     * metadata.
+     */
+    private static void writeElement(XMLStreamWriter writer, Element elem)
+            throws XMLStreamException {
+        writer.writeStartElement(elem.getLocalName());
+        for (int i = 0; i < elem.getAttributeCount(); i++) {
+            Attribute attr = elem.getAttribute(i);
+            writeAttribute(writer, attr.getQualifiedName(), attr.getValue());
+        }
+        for (int i = 0; i < elem.getChildCount(); i++) {
+            Node child = elem.getChild(i);
+            if (child instanceof Element) {
+                writeElement(writer, (Element) child);
+            } else if (child instanceof Text) {
+                writer.writeCharacters(child.getValue());
+            }
         }
+        writer.writeEndElement();
     }
 
-    private static Element buildTUV(TransMemoryUnitVariant fromVariant) {
-        Element tuv = new Element("tuv");
-        addAttributes(tuv, TMXMetadataHelper.getAttributes(fromVariant));
-        addChildren(tuv, fromVariant);
-        Element seg = new Element("seg");
+    private static void writeTUV(XMLStreamWriter writer,
+            TransMemoryUnitVariant fromVariant) throws XMLStreamException {
+        writer.writeStartElement("tuv");
+        for (Map.Entry<String, String> attr : TMXMetadataHelper
+                .getAttributes(fromVariant).entrySet()) {
+            writeAttribute(writer, attr.getKey(), attr.getValue());
+        }
+        writeChildren(writer, fromVariant);
+        writer.writeStartElement("seg");
         @Nonnull
         String trgContent = fromVariant.getPlainTextSegment();
-        seg.appendChild(trgContent);
-        tuv.appendChild(seg);
-        return tuv;
+        writer.writeCharacters(trgContent);
+        writer.writeEndElement();
+        writer.writeEndElement();
     }
 
 }
@@ -21,6 +21,7 @@
 package org.zanata.rest.service;
 
 import java.io.InputStream;
+import java.util.List;
 import java.util.concurrent.Future;
 
 import javax.annotation.Nonnull;
@@ -28,8 +29,11 @@ import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import javax.enterprise.context.RequestScoped;
 import javax.ws.rs.Path;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -41,6 +45,7 @@ import org.zanata.security.annotations.CheckLoggedIn;
 import org.zanata.security.annotations.CheckPermission;
 import org.zanata.security.annotations.CheckRole;
 import org.zanata.async.Async;
+import org.zanata.async.AsyncTaskClass;
 import org.zanata.async.AsyncTaskHandle;
 import org.zanata.async.AsyncTaskResult;
 import org.zanata.common.LocaleId;
@@ -52,17 +57,19 @@ import org.zanata.exception.ZanataServiceException;
 import org.zanata.lock.Lock;
 import org.zanata.model.HProject;
 import org.zanata.model.HProjectIteration;
-import org.zanata.model.HTextFlow;
 import org.zanata.model.ITextFlow;
 import org.zanata.model.tm.TransMemory;
 import org.zanata.model.tm.TransMemoryUnit;
 import org.zanata.security.ZanataIdentity;
 import org.zanata.service.LocaleService;
 import org.zanata.service.LockManagerService;
+import org.zanata.service.impl.TransMemoryResultCache;
 import org.zanata.tmx.TMXParser;
 import org.zanata.util.CloseableIterator;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
+import com.google.common.base.Splitter;
 
 @RequestScoped
 @Named("translationMemoryResource")
@@ -73,6 +80,13 @@ import com.google.common.base.Optional;
 // TODO options to export obsolete docs and textflows to TMX?
 public class TranslationMemoryResourceService implements
         TranslationMemoryResource {
+    /**
+     * Query parameter which can be set to "gzip" to download a TMX export as
+     * a gzipped file (.tmx.gz).
+     */
+    static final String COMPRESS_PARAM = "compress";
+    private static final String GZIP = "gzip";
+    private static final String GZIP_MEDIA_TYPE = "application/x-gzip";
 
     @Inject
     private LocaleService localeServiceImpl;
@@ -90,6 +104,12 @@ public class TranslationMemoryResourceService implements
     private TMXParser tmxParser;
     @Inject
     private ZanataIdentity identity;
+    @Inject
+    private TransMemoryResultCache transMemoryResultCache;
+    @Context
+    private HttpHeaders headers;
+    @Context
+    private UriInfo uriInfo;
 
     @Override
     @CheckRole("admin")
@@ -97,10 +117,10 @@ public class TranslationMemoryResourceService implements
         log.debug("exporting TMX for all projects, locale {}", locale);
         if (locale != null) {
             localeServiceImpl.validateSourceLocale(locale);
-            // TODO findTextFlowsByLocale
         }
         String filename = makeTMXFilename(null, null, locale);
-        CloseableIterator<HTextFlow> iter = textFlowStreamDAO.findTextFlows();
+        CloseableIterator<ITextFlow> iter =
+                textFlowStreamDAO.findTranslations(locale);
         return buildTMX("getAllTranslationMemory", iter, locale, filename);
     }
 
@@ -114,11 +134,10 @@ public class TranslationMemoryResourceService implements
                 restSlugValidator.retrieveAndCheckProject(projectSlug, false);
         if (locale != null) {
             restSlugValidator.validateTargetLocale(locale, projectSlug);
-            // TODO findTextFlowsByProjectAndLocale
         }
         String filename = makeTMXFilename(projectSlug, null, locale);
-        CloseableIterator<HTextFlow> iter =
-                textFlowStreamDAO.findTextFlowsByProject(hProject);
+        CloseableIterator<ITextFlow> iter =
+                textFlowStreamDAO.findTranslationsByProject(hProject, locale);
         return buildTMX("getProjectTranslationMemory-" + filename, iter,
                 locale, filename);
     }
@@ -136,12 +155,11 @@ public class TranslationMemoryResourceService implements
         if (locale != null) {
             restSlugValidator.validateTargetLocale(locale, projectSlug,
                     iterationSlug);
-            // TODO findTextFlowsByProjectIterationAndLocale
         }
         String filename = makeTMXFilename(projectSlug, iterationSlug, locale);
-        CloseableIterator<HTextFlow> iter =
-                textFlowStreamDAO
-                        .findTextFlowsByProjectIteration(hProjectIteration);
+        CloseableIterator<ITextFlow> iter =
+                textFlowStreamDAO.findTranslationsByProjectIteration(
+                        hProjectIteration, locale);
         return buildTMX("getProjectIterationTranslationMemory-" + filename,
                 iter, locale, filename);
     }
@@ -167,6 +185,7 @@ public class TranslationMemoryResourceService implements
             tmxParser.parseAndSaveTMX(input, getTM(tm, slug));
             return Response.ok().build();
         } finally {
+            transMemoryResultCache.invalidateAll();
             lockManagerServiceImpl.release(tmLock);
         }
     }
@@ -192,6 +211,7 @@ public class TranslationMemoryResourceService implements
                 throw new EntityMissingException(slug);
             }
         } finally {
+            transMemoryResultCache.invalidateAll();
             lockManagerServiceImpl.release(tmLock);
         }
     }
@@ -215,6 +235,7 @@ public class TranslationMemoryResourceService implements
             int numDeleted = transMemoryDAO.deleteTransMemoryContents(slug);
             return numDeleted + " translation units deleted";
         } finally {
+            transMemoryResultCache.invalidateAll();
             lockManagerServiceImpl.release(tmLock);
         }
     }
@@ -225,7 +246,7 @@ public class TranslationMemoryResourceService implements
      * @param slug
      * @return
      */
-    @Async
+    @Async(AsyncTaskClass.MAINTENANCE)
     public Future<Object> deleteTranslationUnitsUnguardedAsync(String slug,
             AsyncTaskHandle handle) {
         // TODO the handle is not being used for progress tracking in the
@@ -245,28 +266,86 @@ public class TranslationMemoryResourceService implements
     }
 
     private Response buildTMX(String jobName,
-            @Nonnull CloseableIterator<? extends ITextFlow> iter,
+            @Nonnull CloseableIterator<ITextFlow> iter,
             @Nullable LocaleId locale, @Nonnull String filename) {
-        TMXStreamingOutput<HTextFlow> output =
-                new TMXStreamingOutput(jobName, iter,
-                        new TranslationsTMXExportStrategy(locale));
-        return okResponse(filename, output);
+        boolean gzipFile = isGzipFileRequested();
+        TMXStreamingOutput<ITextFlow> output =
+                new TMXStreamingOutput<ITextFlow>(jobName, iter,
+                        new TranslationsTMXExportStrategy(locale), gzipFile);
+        return okResponse(filename, output, gzipFile);
     }
 
     private Response buildTMX(String jobName, TransMemory tm,
             CloseableIterator<TransMemoryUnit> iter, String filename) {
+        boolean gzipFile = isGzipFileRequested();
         TMXStreamingOutput<TransMemoryUnit> output =
                 new TMXStreamingOutput<TransMemoryUnit>(jobName, iter,
-                        new TransMemoryTMXExportStrategy(tm));
-        return okResponse(filename, output);
+                        new TransMemoryTMXExportStrategy(tm), gzipFile);
+        return okResponse(filename, output, gzipFile);
     }
 
-    private Response okResponse(String filename, StreamingOutput output) {
-        return Response
+    private Response okResponse(String filename, StreamingOutput output,
+            boolean gzipFile) {
+        if (gzipFile) {
+            return Response
+                    .ok()
+                    .header("Content-Disposition",
+                            "attachment; filename=\"" + filename + ".gz\"")
+                    .type(GZIP_MEDIA_TYPE).entity(output).build();
+        }
+        Response.ResponseBuilder response = Response
                 .ok()
                 .header("Content-Disposition",
                         "attachment; filename=\"" + filename + "\"")
-                .type(PREFERRED_MEDIA_TYPE).entity(output).build();
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .type(PREFERRED_MEDIA_TYPE).entity(output);
+        if (headers != null && acceptsGzip(
+                headers.getHeaderString(HttpHeaders.ACCEPT_ENCODING))) {
+            // RESTEasy's GZIPEncodingInterceptor compresses the output as it
+            // is written when this header is present
+            response.header(HttpHeaders.CONTENT_ENCODING, GZIP);
+        }
+        return response.build();
+    }
+
+    /**
+     * Whether the client asked for a .tmx.gz file with "?compress=gzip".
+     */
+    private boolean isGzipFileRequested() {
+        return uriInfo != null && GZIP.equalsIgnoreCase(
+                uriInfo.getQueryParameters().getFirst(COMPRESS_PARAM));
+    }
+
+    /**
+     * Whether an Accept-Encoding header value allows gzip content encoding.
+     */
+    @VisibleForTesting
+    static boolean acceptsGzip(@Nullable String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : Splitter.on(',').trimResults().omitEmptyStrings()
+                .split(acceptEncoding)) {
+            List<String> params =
+                    Splitter.on(';').trimResults().splitToList(coding);
+            if (params.get(0).equalsIgnoreCase(GZIP)) {
+                return !isZeroQValue(params);
+            }
+        }
+        return false;
+    }
+
+    private static boolean isZeroQValue(List<String> params) {
+        for (String param : params.subList(1, params.size())) {
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2)) == 0;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
     }
 
     private static @Nonnull
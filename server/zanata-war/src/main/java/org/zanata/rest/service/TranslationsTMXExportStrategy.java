@@ -21,16 +21,15 @@
 
 package org.zanata.rest.service;
 
-import java.io.IOException;
-import java.util.Set;
+import java.util.List;
 
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 import lombok.extern.slf4j.Slf4j;
-import nu.xom.Attribute;
-import nu.xom.Element;
 
 import org.zanata.common.LocaleId;
 import org.zanata.model.ITextFlow;
@@ -38,8 +37,7 @@ import org.zanata.model.ITextFlowTarget;
 import org.zanata.util.TMXConstants;
 import org.zanata.util.VersionUtility;
 
-import com.google.common.base.Optional;
-import com.google.common.collect.Sets;
+import com.google.common.collect.Lists;
 
 /**
  * Writes translations for Zanata Projects/TextFlows as TMX.
@@ -52,14 +50,6 @@ import com.google.common.collect.Sets;
 @Slf4j
 public class TranslationsTMXExportStrategy implements
         TMXExportStrategy<ITextFlow> {
-    private static class InvalidContentsException extends Exception {
-        private static final long serialVersionUID = 1L;
-
-        public InvalidContentsException(String msg) {
-            super(msg);
-        }
-    }
-
     private static final String creationTool = "Zanata "
             + TranslationsTMXExportStrategy.class.getSimpleName();
     private static final String creationToolVersion = VersionUtility
@@ -80,104 +70,89 @@ public class TranslationsTMXExportStrategy implements
     }
 
     @Override
-    public Element buildHeader() throws IOException {
-        Element header = new Element("header");
-        header.addAttribute(new Attribute("creationtool", creationTool));
-        header.addAttribute(new Attribute("creationtoolversion",
-                creationToolVersion));
-        header.addAttribute(new Attribute("segtype", "block"));
-        header.addAttribute(new Attribute("o-tmf", "unknown"));
-        header.addAttribute(new Attribute("adminlang", "en"));
-        header.addAttribute(new Attribute("srclang", TMXConstants.ALL_LOCALE));
-        header.addAttribute(new Attribute("datatype", "unknown"));
-        return header;
+    public void writeHeader(XMLStreamWriter writer)
+            throws XMLStreamException {
+        writer.writeStartElement("header");
+        writer.writeAttribute("creationtool", creationTool);
+        writer.writeAttribute("creationtoolversion", creationToolVersion);
+        writer.writeAttribute("segtype", "block");
+        writer.writeAttribute("o-tmf", "unknown");
+        writer.writeAttribute("adminlang", "en");
+        writer.writeAttribute("srclang", TMXConstants.ALL_LOCALE);
+        writer.writeAttribute("datatype", "unknown");
+        writer.writeEndElement();
     }
 
-    public Optional<Element> buildTU(ITextFlow tf) throws IOException {
-        try {
-            Element tu = new Element("tu");
-            setAttributes(tu, tf);
-            for (Element tuv : buildTUVs(tf)) {
-                tu.appendChild(tuv);
-            }
-            return Optional.of(tu);
-        } catch (InvalidContentsException e) {
-            log.warn(e.getMessage());
-            return Optional.absent();
+    @Override
+    public boolean writeTU(XMLStreamWriter writer, ITextFlow tf)
+            throws XMLStreamException {
+        String srcContent = tf.getContents().get(0);
+        if (srcContent.contains("\0")) {
+            // this should be very rare, so we can afford to log each one
+            log.warn(
+                    "illegal null character; discarding SourceContents with id={}",
+                    tf.getQualifiedId());
+            return false;
         }
+        List<ITextFlowTarget> targets = getExportableTargets(tf);
+        if (targets.isEmpty()) {
+            return false;
+        }
+        writer.writeStartElement("tu");
+        writer.writeAttribute(TMXConstants.SRCLANG, tf.getLocale().getId());
+        writer.writeAttribute("tuid", tf.getQualifiedId());
+        writeTUV(writer, tf.getLocale(), srcContent);
+        for (ITextFlowTarget target : targets) {
+            writeTUV(writer, target.getLocaleId(),
+                    target.getContents().get(0));
+        }
+        writer.writeEndElement();
+        return true;
     }
 
-    private void setAttributes(Element tu, ITextFlow tf) {
-        LocaleId sourceLocaleId = tf.getLocale();
-        String tuid = tf.getQualifiedId();
-        String srcLang = sourceLocaleId.getId();
-        tu.addAttribute(new Attribute(TMXConstants.SRCLANG, srcLang));
-        tu.addAttribute(new Attribute("tuid", tuid));
-    }
-
-    private Set<Element> buildTUVs(ITextFlow tf)
-            throws InvalidContentsException {
-        Set<Element> tuvSet = Sets.newLinkedHashSet();
-        tuvSet.add(buildSourceTUV(tf));
+    private List<ITextFlowTarget> getExportableTargets(ITextFlow tf) {
+        List<ITextFlowTarget> targets = Lists.newArrayList();
         if (exportAllLocales()) {
-            Iterable<ITextFlowTarget> allTargets = tf.getAllTargetContents();
-            for (ITextFlowTarget target : allTargets) {
-                Optional<Element> tuv = buildTargetTUV(target);
-                tuvSet.addAll(tuv.asSet());
+            for (ITextFlowTarget target : tf.getAllTargetContents()) {
+                addIfExportable(targets, target);
             }
         } else {
             ITextFlowTarget target = tf.getTargetContents(this.localeId);
             if (target != null) {
-                Optional<Element> tuv = buildTargetTUV(target);
-                tuvSet.addAll(tuv.asSet());
+                addIfExportable(targets, target);
             }
         }
-        return tuvSet;
+        return targets;
     }
 
-    private boolean exportAllLocales() {
-        return this.localeId == null;
+    private static void addIfExportable(List<ITextFlowTarget> targets,
+            ITextFlowTarget target) {
+        if (!target.getState().isTranslated()) {
+            return;
+        }
+        String trgContent = target.getContents().get(0);
+        if (trgContent.contains("\0")) {
+            log.warn(
+                    "illegal null character; discarding TargetContents with locale={}, contents={}",
+                    target.getLocaleId(), trgContent);
+            return;
+        }
+        targets.add(target);
     }
 
-    private Element buildSourceTUV(ITextFlow tf)
-            throws InvalidContentsException {
-        Element sourceTuv = new Element("tuv");
-        sourceTuv.addAttribute(new Attribute("xml:lang",
-                XMLConstants.XML_NS_URI, tf.getLocale().getId()));
-        Element seg = new Element("seg");
-        String srcContent = tf.getContents().get(0);
-        if (srcContent.contains("\0")) {
-            // this should be very rare, so we can afford to use an exception
-            String msg =
-                    "illegal null character; discarding SourceContents with id="
-                            + tf.getQualifiedId();
-            throw new InvalidContentsException(msg);
-        }
-        seg.appendChild(srcContent);
-        sourceTuv.appendChild(seg);
-        return sourceTuv;
+    private boolean exportAllLocales() {
+        return this.localeId == null;
     }
 
-    private Optional<Element> buildTargetTUV(ITextFlowTarget target) {
-        if (target.getState().isTranslated()) {
-            LocaleId locId = target.getLocaleId();
-            String trgContent = target.getContents().get(0);
-            if (trgContent.contains("\0")) {
-                String msg =
-                        "illegal null character; discarding TargetContents with locale="
-                                + locId + ", contents=" + trgContent;
-                log.warn(msg);
-                return Optional.absent();
-            }
-            Element tuv = new Element("tuv");
-            tuv.addAttribute(new Attribute("xml:lang", XMLConstants.XML_NS_URI,
-                    locId.getId()));
-            Element seg = new Element("seg");
-            seg.appendChild(trgContent);
-            tuv.appendChild(seg);
-            return Optional.of(tuv);
-        }
-        return Optional.absent();
+    private static void writeTUV(XMLStreamWriter writer, LocaleId locale,
+            String content) throws XMLStreamException {
+        writer.writeStartElement("tuv");
+        writer.writeAttribute(XMLConstants.XML_NS_PREFIX,
+                XMLConstants.XML_NS_URI, "lang", locale.getId());
+        writer.writeStartElement("seg");
+        writer.writeCharacters(content);
+        writer.writeEndElement();
+        writer.writeEndElement();
     }
 
 }
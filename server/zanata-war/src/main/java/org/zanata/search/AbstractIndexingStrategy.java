@@ -1,5 +1,10 @@
 package org.zanata.search;
 
+import java.util.Date;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
 import org.hibernate.ScrollableResults;
 import org.hibernate.search.FullTextSession;
 
@@ -29,7 +34,8 @@ public abstract class AbstractIndexingStrategy<T> {
     /**
      * Performs the indexing.
      */
-    public void invoke(AsyncTaskHandle handle, FullTextSession session) {
+    public void invoke(AsyncTaskHandle handle, FullTextSession session,
+            IndexingStats stats) {
         int rowNum = 0;
         scrollableResults = queryResults(rowNum, session);
         try {
@@ -40,6 +46,7 @@ public abstract class AbstractIndexingStrategy<T> {
                 rowNum++;
                 T entity = (T) scrollableResults.get(0);
                 session.index(entity);
+                stats.entityIndexed();
 
                 if (handle != null) {
                     handle.increaseProgress(1);
@@ -59,6 +66,117 @@ public abstract class AbstractIndexingStrategy<T> {
         }
     }
 
+    /**
+     * Indexes the entities with ids in the range [fromId, toId). Several
+     * ranges may be indexed at the same time, each with its own session.
+     *
+     * @return false if indexing was cancelled
+     */
+    public boolean invokeForIdRange(AsyncTaskHandle handle,
+            FullTextSession session, IndexingStats stats, long fromId,
+            long toId) {
+        return indexResults(handle, session, stats,
+                queryIdRange(fromId, toId, session));
+    }
+
+    /**
+     * Indexes the entities whose index documents include fields of other
+     * entities which were changed at or after the given time. Their own
+     * lastChanged dates don't move when that happens, so
+     * {@link #invokeChangedSince} doesn't see them.
+     *
+     * @return false if indexing was cancelled
+     */
+    public boolean invokeDependantsChangedSince(AsyncTaskHandle handle,
+            FullTextSession session, IndexingStats stats, Date since) {
+        ScrollableResults results = queryDependantsChangedSince(since, session);
+        if (results == null) {
+            return true;
+        }
+        return indexResults(handle, session, stats, results);
+    }
+
+    /**
+     * Indexes the entity in the first column of each row, then closes the
+     * results.
+     *
+     * @return false if indexing was cancelled
+     */
+    private boolean indexResults(AsyncTaskHandle handle,
+            FullTextSession session, IndexingStats stats,
+            ScrollableResults results) {
+        int rowNum = 0;
+        try {
+            while (results.next()) {
+                if (handle != null && handle.isCancelled()) {
+                    return false;
+                }
+                rowNum++;
+                session.index(results.get(0));
+                stats.entityIndexed();
+
+                if (handle != null) {
+                    handle.increaseProgress(1);
+                }
+                if (rowNum % sessionClearBatchSize == 0) {
+                    session.flushToIndexes(); // apply changes to indexes
+                    session.clear(); // clear since the queue is processed
+                }
+            }
+        } finally {
+            results.close();
+        }
+        session.flushToIndexes();
+        session.clear();
+        return true;
+    }
+
+    /**
+     * Indexes the entities which were changed at or after the given time, in
+     * order of their lastChanged date. Each time a batch is flushed to the
+     * index, the lastChanged date of its last entity is passed to the
+     * checkpoint, so that an interrupted run can resume from there.
+     *
+     * @return false if indexing was cancelled
+     */
+    public boolean invokeChangedSince(AsyncTaskHandle handle,
+            FullTextSession session, IndexingStats stats, Date since,
+            Consumer<Date> checkpoint) {
+        int rowNum = 0;
+        Date lastChanged = null;
+        boolean cancelled = false;
+        ScrollableResults results = queryChangedSince(since, session);
+        try {
+            while (results.next()) {
+                if (handle != null && handle.isCancelled()) {
+                    cancelled = true;
+                    break;
+                }
+                rowNum++;
+                session.index(results.get(0));
+                lastChanged = (Date) results.get(1);
+                stats.entityIndexed();
+
+                if (handle != null) {
+                    handle.increaseProgress(1);
+                }
+                if (rowNum % sessionClearBatchSize == 0) {
+                    session.flushToIndexes(); // apply changes to indexes
+                    session.clear(); // clear since the queue is processed
+                    checkpoint.accept(lastChanged);
+                }
+            }
+        } finally {
+            results.close();
+        }
+        session.flushToIndexes();
+        session.clear();
+        if (lastChanged != null) {
+            checkpoint.accept(lastChanged);
+        }
+        return !cancelled;
+    }
+
     /**
      * Callback method that is called every time an entity is indexed.
      *
@@ -75,6 +193,41 @@ public abstract class AbstractIndexingStrategy<T> {
      */
     protected abstract ScrollableResults queryResults(int offset, FullTextSession session);
 
+    /**
+     * Returns the Scrollable results for instances of clazz with ids in the
+     * range [fromId, toId)
+     */
+    protected abstract ScrollableResults queryIdRange(long fromId, long toId,
+            FullTextSession session);
+
+    /**
+     * Returns the Scrollable results of (entity, lastChanged) for instances
+     * of clazz changed at or after the given time, ordered by lastChanged
+     */
+    protected abstract ScrollableResults queryChangedSince(Date since,
+            FullTextSession session);
+
+    /**
+     * Counts the entities which {@link #queryDependantsChangedSince} would
+     * return.
+     */
+    protected long countDependantsChangedSince(Date since,
+            FullTextSession session) {
+        return 0;
+    }
+
+    /**
+     * Returns the Scrollable results of instances of clazz which weren't
+     * changed themselves since the given time, but whose index documents
+     * include fields of other entities changed at or after that time. Returns
+     * null (the default) if the index documents only depend on the entity's
+     * own row.
+     */
+    protected @Nullable ScrollableResults queryDependantsChangedSince(
+            Date since, FullTextSession session) {
+        return null;
+    }
+
     Class<T> getEntityType() {
         return entityType;
     }
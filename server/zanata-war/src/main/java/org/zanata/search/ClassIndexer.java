@@ -21,14 +21,33 @@
 
 package org.zanata.search;
 
+import java.io.Serializable;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
+import org.apache.lucene.search.MatchAllDocsQuery;
 import org.hibernate.CacheMode;
 import org.hibernate.FlushMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.criterion.Projections;
 import org.hibernate.search.FullTextSession;
+import org.hibernate.search.ProjectionConstants;
 import org.zanata.async.AsyncTaskHandle;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 /**
  * @author Sean Flanigan <a
  *         href="mailto:sflaniga@redhat.com">sflaniga@redhat.com</a>
@@ -37,15 +56,35 @@ import org.zanata.async.AsyncTaskHandle;
 @Slf4j
 public class ClassIndexer<T> {
 
+    /**
+     * Number of ids in each range handed to an indexing thread.
+     */
+    static final int ID_RANGE_SIZE = 5000;
+
+    /**
+     * Number of indexed ids checked against the database at a time when
+     * purging deleted entities.
+     */
+    private static final int PURGE_BATCH_SIZE = 1000;
+
     private final AbstractIndexingStrategy<T> indexingStrategy;
     private AsyncTaskHandle handle;
     private Class<?> entityType;
+    @Getter
+    private final IndexingStats stats;
 
     public ClassIndexer(AsyncTaskHandle handle,
             Class<?> entityType, AbstractIndexingStrategy<T> indexingStrategy) {
+        this(handle, entityType, indexingStrategy, new IndexingStats());
+    }
+
+    public ClassIndexer(AsyncTaskHandle handle, Class<?> entityType,
+            AbstractIndexingStrategy<T> indexingStrategy,
+            IndexingStats stats) {
         this.handle = handle;
         this.entityType = entityType;
         this.indexingStrategy = indexingStrategy;
+        this.stats = stats;
     }
 
     public AbstractIndexingStrategy<T> getIndexingStrategy() {
@@ -59,13 +98,196 @@ public class ClassIndexer<T> {
         return result.intValue();
     }
 
+    /**
+     * Counts the entities which {@link #indexChangedSince} would index.
+     */
+    public int getChangedEntityCount(FullTextSession session, Date since) {
+        Long result = (Long) session
+                .createQuery("select count(*) from " + entityType.getName()
+                        + " e where e.lastChanged >= :since")
+                .setParameter("since", since).uniqueResult();
+        return result.intValue() + (int) indexingStrategy
+                .countDependantsChangedSince(since, session);
+    }
+
+    /**
+     * Indexes the entities which were changed at or after the given time,
+     * and those whose index documents include fields of other entities which
+     * were.
+     *
+     * @param checkpoint
+     *            receives the lastChanged date up to which entities have been
+     *            indexed, each time a batch is flushed to the index
+     * @return false if indexing was cancelled
+     */
+    public boolean indexChangedSince(FullTextSession session, Date since,
+            Consumer<Date> checkpoint) {
+        session.setFlushMode(FlushMode.MANUAL);
+        session.setCacheMode(CacheMode.IGNORE);
+        boolean completed;
+        stats.start();
+        try {
+            // before the checkpoints start moving the watermark past the
+            // changes which this depends on
+            completed = indexingStrategy.invokeDependantsChangedSince(handle,
+                    session, stats, since)
+                    && indexingStrategy.invokeChangedSince(handle, session,
+                            stats, since, checkpoint);
+        } finally {
+            stats.finish();
+        }
+        log.info("indexed {} {} changed since {} at {} rows/s",
+                stats.getIndexedCount(), entityType.getSimpleName(), since,
+                stats.getRowsPerSecond());
+        return completed;
+    }
+
+    /**
+     * Removes the index documents of entities which no longer exist. Rows
+     * removed by bulk deletes (eg the contents of a translation memory), or
+     * while the server was down, are not seen by Hibernate Search.
+     *
+     * @return the number of index documents removed
+     */
+    public int purgeDeleted(FullTextSession session) {
+        int purged = 0;
+        List<Serializable> ids = Lists.newArrayList();
+        ScrollableResults results = session
+                .createFullTextQuery(new MatchAllDocsQuery(), entityType)
+                .setProjection(ProjectionConstants.ID).scroll();
+        try {
+            while (results.next()) {
+                ids.add((Serializable) results.get(0));
+                if (ids.size() == PURGE_BATCH_SIZE) {
+                    purged += purgeMissing(session, ids);
+                    ids.clear();
+                }
+            }
+        } finally {
+            results.close();
+        }
+        purged += purgeMissing(session, ids);
+        session.flushToIndexes();
+        log.info("purged {} deleted {} from the index", purged,
+                entityType.getSimpleName());
+        return purged;
+    }
+
+    private int purgeMissing(FullTextSession session, List<Serializable> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        @SuppressWarnings("unchecked")
+        List<Serializable> existing = session
+                .createQuery("select e.id from " + entityType.getName()
+                        + " e where e.id in (:ids)")
+                .setParameterList("ids", ids).list();
+        Set<Serializable> existingIds = Sets.newHashSet(existing);
+        int purged = 0;
+        for (Serializable id : ids) {
+            if (!existingIds.contains(id)) {
+                session.purge(entityType, id);
+                purged++;
+            }
+        }
+        return purged;
+    }
+
     public void index(FullTextSession session) throws Exception {
         log.info("Setting manual-flush and ignore-cache for {}", entityType);
         session.setFlushMode(FlushMode.MANUAL);
         session.setCacheMode(CacheMode.IGNORE);
-        indexingStrategy.invoke(handle, session);
-        session.flushToIndexes(); // apply changes to indexes
-        session.clear(); // clear since the queue is processed
+        stats.start();
+        try {
+            indexingStrategy.invoke(handle, session, stats);
+            session.flushToIndexes(); // apply changes to indexes
+            session.clear(); // clear since the queue is processed
+        } finally {
+            stats.finish();
+        }
+        log.info("indexed {} {} at {} rows/s", stats.getIndexedCount(),
+                entityType.getSimpleName(), stats.getRowsPerSecond());
+    }
+
+    /**
+     * Splits the entities into ranges of ids, and indexes the ranges on
+     * several threads, each with its own session.
+     *
+     * @param sessionSupplier
+     *            opens a new session (which will be closed after use)
+     * @param threads
+     *            number of indexing threads
+     */
+    public void index(Supplier<FullTextSession> sessionSupplier, int threads)
+            throws Exception {
+        long minId;
+        long maxId;
+        FullTextSession session = sessionSupplier.get();
+        try {
+            Object[] bounds = (Object[]) session
+                    .createQuery("select min(e.id), max(e.id) from "
+                            + entityType.getName() + " e")
+                    .uniqueResult();
+            if (bounds == null || bounds[0] == null) {
+                log.info("nothing to index for {}", entityType);
+                return;
+            }
+            minId = ((Number) bounds[0]).longValue();
+            maxId = ((Number) bounds[1]).longValue();
+        } finally {
+            session.close();
+        }
+        log.info("indexing {} (ids {} to {}) with {} threads", entityType,
+                minId, maxId, threads);
+
+        AtomicLong nextId = new AtomicLong(minId);
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder()
+                        .setNameFormat("indexer-" + entityType.getSimpleName()
+                                + "-%d")
+                        .setDaemon(true).build());
+        stats.start();
+        try {
+            List<Future<Void>> workers = Lists.newArrayList();
+            for (int i = 0; i < threads; i++) {
+                workers.add(executor.submit(() -> {
+                    indexIdRanges(sessionSupplier, nextId, maxId);
+                    return null;
+                }));
+            }
+            for (Future<Void> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            // interrupts the workers if we were cancelled or one failed
+            executor.shutdownNow();
+            stats.finish();
+        }
+        log.info("indexed {} {} at {} rows/s", stats.getIndexedCount(),
+                entityType.getSimpleName(), stats.getRowsPerSecond());
+    }
+
+    private void indexIdRanges(Supplier<FullTextSession> sessionSupplier,
+            AtomicLong nextId, long maxId) {
+        FullTextSession session = sessionSupplier.get();
+        try {
+            session.setFlushMode(FlushMode.MANUAL);
+            session.setCacheMode(CacheMode.IGNORE);
+            long fromId;
+            while (!isCancelled()
+                    && (fromId = nextId.getAndAdd(ID_RANGE_SIZE)) <= maxId) {
+                if (!indexingStrategy.invokeForIdRange(handle, session, stats,
+                        fromId, fromId + ID_RANGE_SIZE)) {
+                    break;
+                }
+            }
+        } finally {
+            session.close();
+        }
+    }
+
+    private boolean isCancelled() {
+        return handle != null && handle.isCancelled();
     }
 
 }
@@ -20,6 +20,8 @@
  */
 package org.zanata.search;
 
+import java.util.Date;
+
 import org.hibernate.CacheMode;
 import org.hibernate.FlushMode;
 import org.hibernate.Query;
@@ -53,18 +55,71 @@ public class HTextFlowTargetIndexingStrategy extends
         // Nothing to do
     }
 
+    // TODO move these queries into something like HTextFlowTargetStreamingDAO
+    private static final String EAGER_FETCH_QUERY = "from HTextFlowTarget tft "
+            + "join fetch tft.locale "
+            + "join fetch tft.textFlow "
+            + "join fetch tft.textFlow.document "
+            + "join fetch tft.textFlow.document.locale "
+            + "join fetch tft.textFlow.document.projectIteration "
+            + "join fetch tft.textFlow.document.projectIteration.project";
+
     @Override
     protected ScrollableResults queryResults(int ignoredOffset, FullTextSession session) {
-        // TODO move this query into something like HTextFlowTargetStreamingDAO
-        Query query =
-                session.createQuery(
-                                "from HTextFlowTarget tft "
-                                        + "join fetch tft.locale "
-                                        + "join fetch tft.textFlow "
-                                        + "join fetch tft.textFlow.document "
-                                        + "join fetch tft.textFlow.document.locale "
-                                        + "join fetch tft.textFlow.document.projectIteration "
-                                        + "join fetch tft.textFlow.document.projectIteration.project");
+        Query query = session.createQuery(EAGER_FETCH_QUERY);
+        query.setFetchSize(Integer.MIN_VALUE);
+        return query.scroll(ScrollMode.FORWARD_ONLY);
+    }
+
+    @Override
+    protected ScrollableResults queryIdRange(long fromId, long toId,
+            FullTextSession session) {
+        Query query = session.createQuery(EAGER_FETCH_QUERY
+                + " where tft.id >= :fromId and tft.id < :toId");
+        query.setParameter("fromId", fromId);
+        query.setParameter("toId", toId);
+        query.setFetchSize(Integer.MIN_VALUE);
+        return query.scroll(ScrollMode.FORWARD_ONLY);
+    }
+
+    @Override
+    protected ScrollableResults queryChangedSince(Date since,
+            FullTextSession session) {
+        Query query = session.createQuery("select tft, tft.lastChanged "
+                + EAGER_FETCH_QUERY + " where tft.lastChanged >= :since"
+                + " order by tft.lastChanged, tft.id");
+        query.setParameter("since", since);
+        query.setFetchSize(Integer.MIN_VALUE);
+        return query.scroll(ScrollMode.FORWARD_ONLY);
+    }
+
+    // Text flows have no lastChanged, but changing their contents or making
+    // them obsolete changes their document. Also covers renamed or obsolete
+    // documents, versions and projects.
+    private static final String DEPENDANTS_CHANGED_CONDITION =
+            " where tft.lastChanged < :since"
+                    + " and (tft.textFlow.document.lastChanged >= :since"
+                    + " or tft.textFlow.document.projectIteration"
+                    + ".lastChanged >= :since"
+                    + " or tft.textFlow.document.projectIteration.project"
+                    + ".lastChanged >= :since)";
+
+    @Override
+    protected long countDependantsChangedSince(Date since,
+            FullTextSession session) {
+        Query query = session.createQuery(
+                "select count(*) from HTextFlowTarget tft"
+                        + DEPENDANTS_CHANGED_CONDITION);
+        query.setParameter("since", since);
+        return (Long) query.uniqueResult();
+    }
+
+    @Override
+    protected ScrollableResults queryDependantsChangedSince(Date since,
+            FullTextSession session) {
+        Query query = session.createQuery(EAGER_FETCH_QUERY
+                + DEPENDANTS_CHANGED_CONDITION);
+        query.setParameter("since", since);
         query.setFetchSize(Integer.MIN_VALUE);
         return query.scroll(ScrollMode.FORWARD_ONLY);
     }
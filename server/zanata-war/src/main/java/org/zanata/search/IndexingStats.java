@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.search;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Number of entities indexed for one class, and the indexing rate. Safe to
+ * update from several indexing threads while it is being displayed.
+ */
+public class IndexingStats implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final AtomicLong indexedCount = new AtomicLong();
+    private volatile boolean started;
+    private volatile boolean finished;
+    private volatile long startNanos;
+    private volatile long finishNanos;
+
+    void start() {
+        startNanos = System.nanoTime();
+        started = true;
+    }
+
+    void finish() {
+        finishNanos = System.nanoTime();
+        finished = true;
+    }
+
+    void entityIndexed() {
+        indexedCount.incrementAndGet();
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public long getIndexedCount() {
+        return indexedCount.get();
+    }
+
+    /**
+     * @return entities indexed per second, since indexing started (until it
+     *         finished)
+     */
+    public long getRowsPerSecond() {
+        if (!isStarted()) {
+            return 0;
+        }
+        long end = isFinished() ? finishNanos : System.nanoTime();
+        long elapsedMillis =
+                TimeUnit.NANOSECONDS.toMillis(end - startNanos);
+        if (elapsedMillis <= 0) {
+            return 0;
+        }
+        return indexedCount.get() * 1000 / elapsedMillis;
+    }
+}
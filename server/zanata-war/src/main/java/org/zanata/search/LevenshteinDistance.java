@@ -0,0 +1,394 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.search;
+
+/**
+ * Threshold-bounded Levenshtein distance engine used for TM fuzzy scoring.
+ *
+ * Both the character and the token variants accept a maximum distance. If the
+ * real distance is greater than that maximum, {@code maxDistance + 1} is
+ * returned as soon as this is known, without filling in the rest of the
+ * matrix.
+ *
+ * For characters, strings whose shorter side fits in a machine word (64
+ * chars) use the bit-parallel algorithm of Myers, in the formulation of
+ * Hyyro ("Explaining and extending the bit-parallel approximate string
+ * matching algorithm of Myers", 2001). Longer strings, and token arrays, use
+ * Ukkonen's banded dynamic programming, which only computes cells within
+ * {@code maxDistance} of the diagonal.
+ *
+ * Working buffers are kept per thread, so repeated calls do not allocate.
+ */
+public final class LevenshteinDistance {
+
+    /**
+     * Maximum pattern length handled by the bit-parallel algorithm.
+     */
+    private static final int WORD_SIZE = Long.SIZE;
+
+    /**
+     * Characters below this value have their match masks in a direct lookup
+     * table; other characters use a small linear-probe table.
+     */
+    private static final int DIRECT_TABLE_SIZE = 256;
+
+    private static final ThreadLocal<Scratch> SCRATCH =
+            new ThreadLocal<Scratch>() {
+                @Override
+                protected Scratch initialValue() {
+                    return new Scratch();
+                }
+            };
+
+    private LevenshteinDistance() {
+    }
+
+    /**
+     * Compute the Levenshtein distance between two strings, giving up once it
+     * is known to exceed maxDistance.
+     *
+     * @param s
+     *            first string
+     * @param t
+     *            second string
+     * @param maxDistance
+     *            largest distance of interest (must not be negative)
+     * @return the distance, or maxDistance + 1 if the distance is greater than
+     *         maxDistance
+     */
+    public static int distance(CharSequence s, CharSequence t,
+            int maxDistance) {
+        if (s == null || t == null) {
+            throw new IllegalArgumentException("Strings must not be null");
+        }
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException(
+                    "maxDistance must not be negative: " + maxDistance);
+        }
+        int sLen = s.length();
+        int tLen = t.length();
+
+        // strip common prefix and suffix, they never contribute
+        int start = 0;
+        while (start < sLen && start < tLen
+                && s.charAt(start) == t.charAt(start)) {
+            start++;
+        }
+        int sEnd = sLen;
+        int tEnd = tLen;
+        while (sEnd > start && tEnd > start
+                && s.charAt(sEnd - 1) == t.charAt(tEnd - 1)) {
+            sEnd--;
+            tEnd--;
+        }
+        int n = sEnd - start;
+        int m = tEnd - start;
+
+        // make s the shorter one
+        if (n > m) {
+            CharSequence tmp = s;
+            s = t;
+            t = tmp;
+            int tmpLen = n;
+            n = m;
+            m = tmpLen;
+        }
+        int k = Math.min(maxDistance, m);
+        if (m - n > k) {
+            return maxDistance + 1;
+        }
+        if (n == 0) {
+            return m;
+        }
+        int result;
+        if (n <= WORD_SIZE) {
+            result = myers(s, start, n, t, start, m, k);
+        } else {
+            result = bandedChars(s, start, n, t, start, m, k);
+        }
+        return result > k ? maxDistance + 1 : result;
+    }
+
+    /**
+     * Compute the Levenshtein distance between two arrays of tokens (compared
+     * with {@link String#equals(Object)}), giving up once it is known to
+     * exceed maxDistance.
+     *
+     * @param s
+     *            first token array
+     * @param t
+     *            second token array
+     * @param maxDistance
+     *            largest distance of interest (must not be negative)
+     * @return the distance, or maxDistance + 1 if the distance is greater than
+     *         maxDistance
+     */
+    public static int distance(String[] s, String[] t, int maxDistance) {
+        if (s == null || t == null) {
+            throw new IllegalArgumentException("Strings must not be null");
+        }
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException(
+                    "maxDistance must not be negative: " + maxDistance);
+        }
+        int start = 0;
+        while (start < s.length && start < t.length
+                && s[start].equals(t[start])) {
+            start++;
+        }
+        int sEnd = s.length;
+        int tEnd = t.length;
+        while (sEnd > start && tEnd > start
+                && s[sEnd - 1].equals(t[tEnd - 1])) {
+            sEnd--;
+            tEnd--;
+        }
+        int n = sEnd - start;
+        int m = tEnd - start;
+        if (n > m) {
+            String[] tmp = s;
+            s = t;
+            t = tmp;
+            int tmpLen = n;
+            n = m;
+            m = tmpLen;
+        }
+        int k = Math.min(maxDistance, m);
+        if (m - n > k) {
+            return maxDistance + 1;
+        }
+        if (n == 0) {
+            return m;
+        }
+        int result = bandedTokens(s, start, n, t, start, m, k);
+        return result > k ? maxDistance + 1 : result;
+    }
+
+    /**
+     * Convert a minimum similarity (0.0 to 1.0) into the largest edit distance
+     * which still reaches it, for strings whose longer side has the given
+     * length. Errs on the generous side, so that rounding never excludes a
+     * qualifying match.
+     */
+    static int maxDistanceForSimilarity(int maxLength, double minSimilarity) {
+        if (minSimilarity <= 0.0) {
+            return maxLength;
+        }
+        if (minSimilarity >= 1.0) {
+            return 0;
+        }
+        double allowed = maxLength * (1.0 - minSimilarity);
+        return (int) Math.min(maxLength, Math.floor(allowed + 1e-9));
+    }
+
+    /**
+     * Bit-parallel global edit distance. Pattern s[sOff, sOff+n) must have
+     * 1 &lt;= n &lt;= 64 and n &lt;= m.
+     */
+    private static int myers(CharSequence s, int sOff, int n,
+            CharSequence t, int tOff, int m, int k) {
+        Scratch scratch = SCRATCH.get();
+        scratch.clearPeq();
+        for (int i = 0; i < n; i++) {
+            scratch.addPeq(s.charAt(sOff + i), 1L << i);
+        }
+        long pv = -1L;
+        long mv = 0L;
+        long last = 1L << (n - 1);
+        int score = n;
+        for (int j = 0; j < m; j++) {
+            long eq = scratch.peq(t.charAt(tOff + j));
+            long xv = eq | mv;
+            long xh = (((eq & pv) + pv) ^ pv) | eq;
+            long ph = mv | ~(xh | pv);
+            long mh = pv & xh;
+            if ((ph & last) != 0) {
+                score++;
+            } else if ((mh & last) != 0) {
+                score--;
+            }
+            // the top row of the matrix grows by one per column
+            ph = (ph << 1) | 1L;
+            mh = mh << 1;
+            pv = mh | ~(xv | ph);
+            mv = ph & xv;
+
+            // each remaining column can lower the score by at most one
+            if (score - (m - j - 1) > k) {
+                return k + 1;
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Ukkonen's banded dynamic programming over characters. Requires
+     * 1 &lt;= n &lt;= m and m - n &lt;= k.
+     */
+    private static int bandedChars(CharSequence s, int sOff, int n,
+            CharSequence t, int tOff, int m, int k) {
+        Scratch scratch = SCRATCH.get();
+        int[] p = scratch.row(0, n + 2);
+        int[] d = scratch.row(1, n + 2);
+        int big = k + 1;
+        initRow(p, n, k);
+        for (int j = 1; j <= m; j++) {
+            char tj = t.charAt(tOff + j - 1);
+            int lo = Math.max(1, j - k);
+            int hi = Math.min(n, j + k);
+            d[lo - 1] = lo == 1 ? Math.min(j, big) : big;
+            int rowMin = d[lo - 1];
+            for (int i = lo; i <= hi; i++) {
+                int cost = s.charAt(sOff + i - 1) == tj ? 0 : 1;
+                int v = Math.min(Math.min(d[i - 1] + 1, p[i] + 1),
+                        p[i - 1] + cost);
+                if (v > big) {
+                    v = big;
+                }
+                d[i] = v;
+                if (v < rowMin) {
+                    rowMin = v;
+                }
+            }
+            d[hi + 1] = big;
+            if (rowMin > k) {
+                return big;
+            }
+            int[] tmp = p;
+            p = d;
+            d = tmp;
+        }
+        return p[n];
+    }
+
+    /**
+     * Ukkonen's banded dynamic programming over tokens. Requires
+     * 1 &lt;= n &lt;= m and m - n &lt;= k.
+     */
+    private static int bandedTokens(String[] s, int sOff, int n, String[] t,
+            int tOff, int m, int k) {
+        Scratch scratch = SCRATCH.get();
+        int[] p = scratch.row(0, n + 2);
+        int[] d = scratch.row(1, n + 2);
+        int big = k + 1;
+        initRow(p, n, k);
+        for (int j = 1; j <= m; j++) {
+            String tj = t[tOff + j - 1];
+            int lo = Math.max(1, j - k);
+            int hi = Math.min(n, j + k);
+            d[lo - 1] = lo == 1 ? Math.min(j, big) : big;
+            int rowMin = d[lo - 1];
+            for (int i = lo; i <= hi; i++) {
+                int cost = s[sOff + i - 1].equals(tj) ? 0 : 1;
+                int v = Math.min(Math.min(d[i - 1] + 1, p[i] + 1),
+                        p[i - 1] + cost);
+                if (v > big) {
+                    v = big;
+                }
+                d[i] = v;
+                if (v < rowMin) {
+                    rowMin = v;
+                }
+            }
+            d[hi + 1] = big;
+            if (rowMin > k) {
+                return big;
+            }
+            int[] tmp = p;
+            p = d;
+            d = tmp;
+        }
+        return p[n];
+    }
+
+    private static void initRow(int[] row, int n, int k) {
+        int big = k + 1;
+        int limit = Math.min(n, k);
+        for (int i = 0; i <= limit; i++) {
+            row[i] = i;
+        }
+        for (int i = limit + 1; i <= n + 1; i++) {
+            row[i] = big;
+        }
+    }
+
+    /**
+     * Per-thread working buffers.
+     */
+    private static final class Scratch {
+        private final long[] directPeq = new long[DIRECT_TABLE_SIZE];
+        private final char[] otherChars = new char[WORD_SIZE];
+        private final long[] otherPeq = new long[WORD_SIZE];
+        private int otherCount;
+        // chars set in directPeq, so that clearing is O(pattern)
+        private final char[] directUsed = new char[WORD_SIZE];
+        private int directUsedCount;
+        private final int[][] rows = new int[2][64];
+
+        void clearPeq() {
+            for (int i = 0; i < directUsedCount; i++) {
+                directPeq[directUsed[i]] = 0L;
+            }
+            directUsedCount = 0;
+            otherCount = 0;
+        }
+
+        void addPeq(char c, long bit) {
+            if (c < DIRECT_TABLE_SIZE) {
+                if (directPeq[c] == 0L) {
+                    directUsed[directUsedCount++] = c;
+                }
+                directPeq[c] |= bit;
+                return;
+            }
+            for (int i = 0; i < otherCount; i++) {
+                if (otherChars[i] == c) {
+                    otherPeq[i] |= bit;
+                    return;
+                }
+            }
+            otherChars[otherCount] = c;
+            otherPeq[otherCount] = bit;
+            otherCount++;
+        }
+
+        long peq(char c) {
+            if (c < DIRECT_TABLE_SIZE) {
+                return directPeq[c];
+            }
+            for (int i = 0; i < otherCount; i++) {
+                if (otherChars[i] == c) {
+                    return otherPeq[i];
+                }
+            }
+            return 0L;
+        }
+
+        int[] row(int index, int minLength) {
+            int[] row = rows[index];
+            if (row.length < minLength) {
+                row = new int[Math.max(minLength, row.length * 2)];
+                rows[index] = row;
+            }
+            return row;
+        }
+    }
+}
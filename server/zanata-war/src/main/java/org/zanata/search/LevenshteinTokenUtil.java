@@ -38,82 +38,16 @@ public class LevenshteinTokenUtil {
     }
 
     /**
-     * Compute Levenshtein distance. Taken from
-     * http://web.archive.org/web/20110720093554
-     * /http://www.merriampark.com/ldjava.htm (public domain)
+     * Compute Levenshtein distance in words.
+     *
+     * @see LevenshteinDistance#distance(String[], String[], int)
      */
     public static int getLevenshteinDistanceInWords(String[] s, String[] t) {
         if (s == null || t == null) {
             throw new IllegalArgumentException("Strings must not be null");
         }
-
-        /*
-         * The difference between this impl. and the previous is that, rather
-         * than creating and retaining a matrix of size s.length()+1 by
-         * t.length()+1, we maintain two single-dimensional arrays of length
-         * s.length()+1. The first, d, is the 'current working' distance array
-         * that maintains the newest distance cost counts as we iterate through
-         * the characters of String s. Each time we increment the index of
-         * String t we are comparing, d is copied to p, the second int[]. Doing
-         * so allows us to retain the previous cost counts as required by the
-         * algorithm (taking the minimum of the cost count to the left, up one,
-         * and diagonally up and to the left of the current cost count being
-         * calculated). (Note that the arrays aren't really copied anymore, just
-         * switched...this is clearly much better than cloning an array or doing
-         * a System.arraycopy() each time through the outer loop.)
-         *
-         * Effectively, the difference between the two implementations is this
-         * one does not cause an out of memory condition when calculating the LD
-         * over two very large strings.
-         */
-
-        int n = s.length; // length of s
-        int m = t.length; // length of t
-
-        if (n == 0) {
-            return m;
-        } else if (m == 0) {
-            return n;
-        }
-
-        int p[] = new int[n + 1]; // 'previous' cost array, horizontally
-        int d[] = new int[n + 1]; // cost array, horizontally
-        int _d[]; // placeholder to assist in swapping p and d
-
-        // indexes into strings s and t
-        int i; // iterates through s
-        int j; // iterates through t
-
-        String t_j; // jth token of t
-
-        int cost; // cost
-
-        for (i = 0; i <= n; i++) {
-            p[i] = i;
-        }
-
-        for (j = 1; j <= m; j++) {
-            t_j = t[j - 1];
-            d[0] = j;
-
-            for (i = 1; i <= n; i++) {
-                cost = s[i - 1].equals(t_j) ? 0 : 1;
-                // minimum of cell to the left+1, to the top+1, diagonally left
-                // and up +cost
-                d[i] =
-                        Math.min(Math.min(d[i - 1] + 1, p[i] + 1), p[i - 1]
-                                + cost);
-            }
-
-            // copy current distance counts to 'previous row' distance counts
-            _d = p;
-            p = d;
-            d = _d;
-        }
-
-        // our last action in the above loop was to switch d and p, so p now
-        // actually has the most recent cost counts
-        return p[n];
+        return LevenshteinDistance.distance(s, t,
+                Math.max(s.length, t.length));
     }
 
     public static double getSimilarity(final String s1, final String s2) {
@@ -127,6 +61,34 @@ public class LevenshteinTokenUtil {
         return similarity;
     }
 
+    /**
+     * Like {@link #getSimilarity(String, String)}, but stops computing as soon
+     * as the similarity is known to be below minSimilarity.
+     *
+     * @param minSimilarity
+     *            minimum similarity of interest (0.0 to 1.0)
+     * @return the similarity, or {@link LevenshteinUtil#BELOW_THRESHOLD} if it
+     *         is less than minSimilarity
+     */
+    public static double getSimilarity(final String s1, final String s2,
+            double minSimilarity) {
+        String[] s1s = tokenise(s1);
+        String[] s2s = tokenise(s2);
+
+        int maxDistance = Math.max(s1s.length, s2s.length);
+        if (maxDistance == 0) {
+            // keep the behaviour of getSimilarity(String, String)
+            return getSimilarity(s1, s2);
+        }
+        int allowed = LevenshteinDistance.maxDistanceForSimilarity(
+                maxDistance, minSimilarity);
+        int levDistance = LevenshteinDistance.distance(s1s, s2s, allowed);
+        if (levDistance > allowed) {
+            return LevenshteinUtil.BELOW_THRESHOLD;
+        }
+        return (maxDistance - levDistance) / (double) maxDistance;
+    }
+
     /**
      * Splits into tokens (lower-case).
      *
@@ -173,6 +135,36 @@ public class LevenshteinTokenUtil {
         return totalSimilarity / strings2.size();
     }
 
+    /**
+     * Like {@link #getSimilarity(String, List)}, but stops computing as soon
+     * as the mean similarity is known to be below minSimilarity.
+     *
+     * @param s1 string to compare against each other string
+     * @param strings2 other strings to compare s1 against
+     * @param minSimilarity minimum similarity of interest (0.0 to 1.0)
+     * @return mean similarity between s1 and each of strings2, or
+     *         {@link LevenshteinUtil#BELOW_THRESHOLD} if it is less than
+     *         minSimilarity
+     */
+    public static double getSimilarity(final String s1,
+            final List<String> strings2, double minSimilarity) {
+        double totalSimilarity = 0.0;
+        int stringCount = strings2.size();
+        for (int i = 0; i < stringCount; i++) {
+            // assume every remaining string is a perfect match, and work out
+            // what this one needs to keep the mean reachable
+            int remaining = stringCount - i - 1;
+            double needed =
+                    minSimilarity * stringCount - totalSimilarity - remaining;
+            double similarity = getSimilarity(s1, strings2.get(i), needed);
+            if (needed > 0.0 && similarity < needed) {
+                return LevenshteinUtil.BELOW_THRESHOLD;
+            }
+            totalSimilarity += similarity;
+        }
+        return totalSimilarity / stringCount;
+    }
+
     /**
      * Calculate the word-based case-insensitive similarity of two lists of
      * strings (range 0.0 to 1.0).
@@ -194,6 +186,22 @@ public class LevenshteinTokenUtil {
      */
     public static double getSimilarity(final List<String> strings1,
             final List<String> strings2) {
+        return getSimilarity(strings1, strings2, 0.0);
+    }
+
+    /**
+     * Like {@link #getSimilarity(List, List)}, but stops computing as soon as
+     * the similarity is known to be below minSimilarity.
+     *
+     * @param strings1 a list of strings to compare
+     * @param strings2 the other list of strings to compare
+     * @param minSimilarity minimum similarity of interest (0.0 to 1.0)
+     * @return average similarity between the strings, between 0.0 and 1.0, or
+     *         {@link LevenshteinUtil#BELOW_THRESHOLD} if it is less than
+     *         minSimilarity
+     */
+    public static double getSimilarity(final List<String> strings1,
+            final List<String> strings2, double minSimilarity) {
         // all empty lists are identical
         if (strings1.isEmpty() && strings2.isEmpty()) {
             return 1.0;
@@ -208,30 +216,44 @@ public class LevenshteinTokenUtil {
         final int extraStringLengths =
                 countExtraStringLengths(longestList, minListSize);
 
-        // running total of Levenshtein distance between corresponding strings
-        // in the two lists
-        int cumulativeLevDistance = 0;
+        // tokenise first, so that the total max distance (and therefore the
+        // largest distance which can still reach minSimilarity) is known
+        // before any distances are computed
+        final String[][] tokens1 = new String[minListSize][];
+        final String[][] tokens2 = new String[minListSize][];
 
         // running total of max editing distance between all the corresponding
         // strings.
         int cumulativeMaxDistance = 0;
-
-        // count the strings which correspond between both lists
         for (int i = 0; i < minListSize; i++) {
-            final String string1 = strings1.get(i);
-            final String string2 = strings2.get(i);
-            String[] tokens1 = tokenise(string1);
-            String[] tokens2 = tokenise(string2);
-            final int levenshteinDistance =
-                    getLevenshteinDistanceInWords(tokens1, tokens2);
-            cumulativeLevDistance += levenshteinDistance;
+            tokens1[i] = tokenise(strings1.get(i));
+            tokens2[i] = tokenise(strings2.get(i));
 
             // When a string contains only stop words, tokenise returns an empty
             // array, so this value can remain at 0.
-            cumulativeMaxDistance += Math.max(tokens1.length, tokens2.length);
+            cumulativeMaxDistance +=
+                    Math.max(tokens1[i].length, tokens2[i].length);
         }
-        final int totalLevDistance = cumulativeLevDistance + extraStringLengths;
         final int totalMaxDistance = cumulativeMaxDistance + extraStringLengths;
+        final int allowed = LevenshteinDistance.maxDistanceForSimilarity(
+                totalMaxDistance, minSimilarity);
+
+        // running total of Levenshtein distance between corresponding strings
+        // in the two lists
+        int totalLevDistance = extraStringLengths;
+
+        // count the strings which correspond between both lists
+        for (int i = 0; i < minListSize; i++) {
+            int budget = allowed - totalLevDistance;
+            if (budget < 0) {
+                return LevenshteinUtil.BELOW_THRESHOLD;
+            }
+            totalLevDistance +=
+                    LevenshteinDistance.distance(tokens1[i], tokens2[i], budget);
+        }
+        if (totalLevDistance > allowed) {
+            return LevenshteinUtil.BELOW_THRESHOLD;
+        }
 
         // if there would be a divide-by-zero situation due to all strings being
         // only stop-words, return 0 instead.
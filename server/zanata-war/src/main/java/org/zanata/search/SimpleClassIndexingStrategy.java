@@ -20,6 +20,8 @@
  */
 package org.zanata.search;
 
+import java.util.Date;
+
 import org.hibernate.Query;
 import org.hibernate.ScrollMode;
 import org.hibernate.ScrollableResults;
@@ -62,4 +64,27 @@ public class SimpleClassIndexingStrategy<T> extends AbstractIndexingStrategy<T>
         return query.scroll(ScrollMode.FORWARD_ONLY);
     }
 
+    @Override
+    protected ScrollableResults queryIdRange(long fromId, long toId,
+            FullTextSession session) {
+        Query query =
+                session.createQuery("from " + getEntityType().getName()
+                        + " e where e.id >= :fromId and e.id < :toId");
+        query.setParameter("fromId", fromId);
+        query.setParameter("toId", toId);
+        return query.scroll(ScrollMode.FORWARD_ONLY);
+    }
+
+    @Override
+    protected ScrollableResults queryChangedSince(Date since,
+            FullTextSession session) {
+        Query query =
+                session.createQuery("select e, e.lastChanged from "
+                        + getEntityType().getName()
+                        + " e where e.lastChanged >= :since"
+                        + " order by e.lastChanged, e.id");
+        query.setParameter("since", since);
+        return query.scroll(ScrollMode.FORWARD_ONLY);
+    }
+
 }
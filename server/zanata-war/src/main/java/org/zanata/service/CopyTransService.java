@@ -51,11 +51,19 @@ public interface CopyTransService {
      *            the document to copy translations into
      * @param copyTransOptions
      *            The copy Trans options to use.
+     * @param incremental
+     *            If true, only text flows which were added or changed since
+     *            the last completed Copy Trans for each locale are
+     *            considered. Locales without a completed Copy Trans are
+     *            copied in full. Translations which have become available
+     *            elsewhere since then are not copied into unchanged text
+     *            flows, so a full Copy Trans is still needed for those.
      * @param handle
      *            Optional Task handle to track progress for the operation.
      */
     Future<Void> startCopyTransForDocument(HDocument document,
-            HCopyTransOptions copyTransOptions, CopyTransTaskHandle handle);
+            HCopyTransOptions copyTransOptions, boolean incremental,
+            CopyTransTaskHandle handle);
 
     /**
      *
@@ -64,10 +72,14 @@ public interface CopyTransService {
      *            The project iteration to copy translations into
      * @param copyTransOptions
      *            The copy Trans options to use.
+     * @param incremental
+     *            If true, only text flows which were added or changed since
+     *            the last completed Copy Trans are considered (see
+     *            {@link #startCopyTransForDocument}).
      * @param handle Task handle to track progress for the operation.
      */
     Future<Void> startCopyTransForIteration(HProjectIteration iteration,
-            HCopyTransOptions copyTransOptions,
+            HCopyTransOptions copyTransOptions, boolean incremental,
             @Nonnull CopyTransTaskHandle handle);
 
 }
@@ -26,8 +26,6 @@ import org.zanata.async.handle.CopyVersionTaskHandle;
 import org.zanata.model.HDocument;
 import org.zanata.model.HProjectIteration;
 import org.zanata.model.HRawDocument;
-import org.zanata.model.HTextFlow;
-import org.zanata.model.HTextFlowTarget;
 
 import java.util.concurrent.Future;
 
@@ -106,24 +104,4 @@ public interface CopyVersionService {
      */
     HRawDocument copyRawDocument(HDocument newDocument,
             @Nonnull HRawDocument rawDocument) throws Exception;
-
-    /**
-     * Create copy of HTextFlow. Excludes properties: "document", "targets",
-     * "history", "potEntryData"
-     *
-     * @param newDocument
-     * @param textFlow
-     */
-    HTextFlow copyTextFlow(HDocument newDocument, HTextFlow textFlow)
-            throws Exception;
-
-    /**
-     * Create copy of HTextFlowTarget with all histories. Excludes properties:
-     * "textFlow", "reviewComments", "history"
-     *
-     * @param textFlow
-     * @param tft
-     */
-    HTextFlowTarget copyTextFlowTarget(HTextFlow textFlow,
-            HTextFlowTarget tft) throws Exception;
 }
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.service;
+
+import java.util.concurrent.Future;
+
+import org.zanata.async.Async;
+import org.zanata.async.AsyncTaskClass;
+import org.zanata.async.AsyncTaskHandle;
+import org.zanata.events.DocStatsEvent;
+
+/**
+ * Maintains the stored per-document word statistics
+ * ({@link org.zanata.model.HDocumentStatistic}).
+ */
+public interface DocumentStatisticService {
+
+    /**
+     * Applies the word deltas of the event to the stored statistics, or
+     * stores statistics for the document and locale if it has none yet. This
+     * must run in the transaction which changed the targets.
+     */
+    void docStatsUpdated(DocStatsEvent event);
+
+    /**
+     * Recalculates the stored statistics of every document from its text
+     * flows and targets.
+     */
+    @Async(AsyncTaskClass.MAINTENANCE)
+    Future<Void> rebuildStatistics(AsyncTaskHandle<Void> handle)
+            throws Exception;
+}
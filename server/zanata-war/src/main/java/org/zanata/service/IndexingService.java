@@ -22,8 +22,11 @@ package org.zanata.service;
 
 import org.zanata.action.ReindexClassOptions;
 import org.zanata.async.Async;
+import org.zanata.async.AsyncTaskClass;
 import org.zanata.async.AsyncTaskHandle;
+import org.zanata.async.handle.IncrementalReindexTaskHandle;
 import org.zanata.model.HProject;
+import org.zanata.model.HProjectIteration;
 import org.zanata.model.SlugEntityBase;
 
 import java.util.Map;
@@ -33,17 +36,40 @@ import java.util.concurrent.Future;
  * @author Carlos Munoz <a href="mailto:camunoz@redhat.com">camunoz@redhat.com</a>
  */
 public interface IndexingService {
-    @Async
+    @Async(AsyncTaskClass.MAINTENANCE)
     Future<Void> startIndexing(
             Map<Class<?>, ReindexClassOptions> indexingOptions,
             AsyncTaskHandle<Void> handle)
             throws Exception;
 
+    /**
+     * Reindexes the entities of each class selected for reindexing which have
+     * changed since that class's stored watermark (or since
+     * {@link IncrementalReindexTaskHandle#getChangedSince()}, if set). The
+     * watermark is moved forward as batches are indexed, so that a cancelled
+     * or failed run resumes where it stopped. Classes without a watermark are
+     * reindexed in full. A successful full reindex also stores a watermark.
+     */
+    @Async(AsyncTaskClass.MAINTENANCE)
+    Future<Void> startIncrementalIndexing(
+            Map<Class<?>, ReindexClassOptions> indexingOptions,
+            IncrementalReindexTaskHandle handle)
+            throws Exception;
+
     /**
      * This will re-index all HTextFlowTargets under a given project.
      */
-    @Async
+    @Async(AsyncTaskClass.MAINTENANCE)
     Future<Void> reindexHTextFlowTargetsForProject(HProject hProject,
             AsyncTaskHandle<Void> handle)
             throws Exception;
+
+    /**
+     * This will re-index all HTextFlowTargets under a given project version,
+     * eg after they have been inserted without going through Hibernate.
+     */
+    @Async(AsyncTaskClass.MAINTENANCE)
+    Future<Void> reindexHTextFlowTargetsForProjectIteration(
+            HProjectIteration projectIteration, AsyncTaskHandle<Void> handle)
+            throws Exception;
 }
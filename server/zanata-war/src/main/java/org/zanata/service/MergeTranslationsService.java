@@ -44,11 +44,15 @@ public interface MergeTranslationsService {
         MergeTranslationsTaskHandle handle);
 
     /**
-     * Return total count of translations to be processed.
+     * Return total count of translations to be processed, ie translated
+     * source translations whose text flow matches one in the target version
+     * and which may replace the target translation.
      *
-     * @param sourceVersionId - source HProjectIteration id
-     * @param targetVersionId - target HProjectIteration id
+     * @param sourceVersion - source HProjectIteration
+     * @param targetVersion - target HProjectIteration
+     * @param useNewerTranslation - whether newer source translations may
+     *        override translated/approved target translations
      */
     int getTotalProgressCount(HProjectIteration sourceVersion,
-        HProjectIteration targetVersion);
+        HProjectIteration targetVersion, boolean useNewerTranslation);
 }
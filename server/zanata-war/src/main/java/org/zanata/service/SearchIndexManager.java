@@ -2,6 +2,7 @@ package org.zanata.service;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.List;
 
@@ -16,6 +17,7 @@ import org.zanata.ServerConstants;
 import org.zanata.action.ReindexClassOptions;
 import org.zanata.async.AsyncTaskHandle;
 import org.zanata.async.AsyncTaskHandleManager;
+import org.zanata.async.handle.IncrementalReindexTaskHandle;
 import org.zanata.model.HAccount;
 import org.zanata.model.HGlossaryEntry;
 import org.zanata.model.HGlossaryTerm;
@@ -131,6 +133,31 @@ public class SearchIndexManager implements Serializable {
         }
     }
 
+    /**
+     * Starts reindexing only the entities (of the classes selected for
+     * reindexing) which have changed since the last reindex, resuming a
+     * previous incremental reindex if it was interrupted.
+     *
+     * @param changedSince
+     *            reindex entities changed since this time instead of since
+     *            the stored watermarks, or null
+     */
+    public void startIncrementalProcess(Date changedSince) {
+        assert handle == null || handle.isDone();
+        IncrementalReindexTaskHandle incrementalHandle =
+                new IncrementalReindexTaskHandle(changedSince);
+        this.handle = incrementalHandle;
+        asyncTaskHandleManager.registerTaskHandle(incrementalHandle);
+        try {
+            indexingServiceImpl.startIncrementalIndexing(indexingOptions,
+                    incrementalHandle);
+        } catch (Exception e) {
+            // If this happens, it's because of a problem with the async
+            // framework
+            throw new RuntimeException(e);
+        }
+    }
+
     public void reindex(boolean purge, boolean reindex, boolean optimize)
             throws Exception {
         setOptions(purge, reindex, optimize);
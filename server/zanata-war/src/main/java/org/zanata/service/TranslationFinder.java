@@ -20,6 +20,9 @@
  */
 package org.zanata.service;
 
+import java.util.List;
+import java.util.Map;
+
 import com.google.common.base.Optional;
 import org.zanata.common.LocaleId;
 import org.zanata.model.HLocale;
@@ -34,4 +37,21 @@ public interface TranslationFinder {
     Optional<HTextFlowTarget> searchBestMatchTransMemory(HTextFlow textFlow,
             LocaleId targetLocaleId, LocaleId sourceLocaleId,
             boolean checkContext, boolean checkDocument, boolean checkProject);
+
+    /**
+     * Bulk version of
+     * {@link #searchBestMatchTransMemory(HTextFlow, LocaleId, LocaleId, boolean, boolean, boolean)}
+     * for a batch of text flows and a single target locale. Implementations
+     * should look up all the content hashes at once instead of running one
+     * query per text flow.
+     *
+     * @param textFlows
+     *            text flows (with ids) for which to find matching translations
+     * @return the best match for each text flow, keyed by text flow id. Text
+     *         flows without a match are not present in the map.
+     */
+    Map<Long, HTextFlowTarget> searchBestMatchTransMemory(
+            List<HTextFlow> textFlows, LocaleId targetLocaleId,
+            LocaleId sourceLocaleId, boolean checkContext,
+            boolean checkDocument, boolean checkProject);
 }
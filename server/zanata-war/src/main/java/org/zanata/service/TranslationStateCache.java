@@ -64,6 +64,24 @@ public interface TranslationStateCache {
     Boolean textFlowTargetHasWarningOrError(Long textFlowTargetId,
         ValidationId validationId);
 
+    /**
+     * Same as
+     * {@link #textFlowTargetHasWarningOrError(Long, ValidationId)}, but
+     * never loads the target to validate it.
+     *
+     * @return null if the target has not been validated since it last
+     *         changed
+     */
+    Boolean getCachedTargetValidation(Long textFlowTargetId,
+        ValidationId validationId);
+
+    /**
+     * Stores the result of validating a text flow target, eg when its
+     * contents have already been loaded and validated.
+     */
+    void cacheTargetValidation(Long textFlowTargetId,
+        ValidationId validationId, boolean hasWarningOrError);
+
     /**
      * Return document wordStatistic in given localeId
      *
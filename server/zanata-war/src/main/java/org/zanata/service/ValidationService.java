@@ -66,6 +66,22 @@ public interface ValidationService {
             List<ValidationId> validationIds, LocaleId localeId,
             int startIndex, int maxSize);
 
+    /**
+     * Find a page of the text flows in a document whose targets have
+     * validation errors. Targets are loaded and validated a chunk at a time,
+     * and only until the page is filled.
+     *
+     * @param documentId
+     *            document id (NOT the String type docId)
+     * @param startIndex
+     *            index of the first matching text flow to return
+     * @param maxSize
+     *            page size
+     */
+    List<HTextFlow> filterHasWarningOrErrorTextFlow(Long documentId,
+            List<ValidationId> validationIds, LocaleId localeId,
+            int startIndex, int maxSize);
+
     /**
      * Run validation check on HTextFlow and HTextFlowTarget with specific
      * locale from HDocument against validations rules defined in version
@@ -20,6 +20,8 @@
  */
 package org.zanata.service.impl;
 
+import static org.zanata.transaction.TransactionUtil.runInTransaction;
+
 import java.util.List;
 import java.util.concurrent.Future;
 
@@ -34,13 +36,17 @@ import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import org.zanata.async.Async;
+import org.zanata.async.AsyncTaskClass;
 import org.zanata.async.AsyncTaskResult;
 import org.zanata.async.handle.CopyTransTaskHandle;
+import org.zanata.common.LocaleId;
+import org.zanata.dao.CopyTransWatermarkDAO;
 import org.zanata.dao.DocumentDAO;
 import org.zanata.dao.ProjectDAO;
 import org.zanata.dao.TextFlowDAO;
 import org.zanata.dao.TextFlowTargetDAO;
 import org.zanata.model.HCopyTransOptions;
+import org.zanata.model.HCopyTransWatermark;
 import org.zanata.model.HDocument;
 import org.zanata.model.HLocale;
 import org.zanata.model.HProjectIteration;
@@ -51,6 +57,7 @@ import org.zanata.service.TranslationStateCache;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
 
 @RequestScoped
 @Slf4j
@@ -75,6 +82,10 @@ public class CopyTransServiceImpl implements CopyTransService {
     private TranslationStateCache translationStateCacheImpl;
     @Inject
     private TextFlowDAO textFlowDAO;
+    @Inject
+    private CopyTransWatermarkDAO copyTransWatermarkDAO;
+    @Inject
+    private TransMemoryResultCache transMemoryResultCache;
 
     /**
      * Copies previous matching translations for the given locale into a
@@ -88,21 +99,35 @@ public class CopyTransServiceImpl implements CopyTransService {
      *            the document to copy translations into
      * @param targetLocale
      *            the locale of translations to copy
+     * @param incremental
+     *            whether to copy only into the text flows which changed since
+     *            the last completed run for the document and locale
      */
     private void copyTransForDocumentLocale(HDocument document,
             final HLocale targetLocale, final HCopyTransOptions options,
-            Optional<CopyTransTaskHandle> taskHandleOpt) throws Exception {
+            Optional<CopyTransTaskHandle> taskHandleOpt, boolean incremental)
+            throws Exception {
 
         int numCopied = 0;
         int start = 0;
 
         // need to reload HDocument because of different hibernate session
         document = documentDAO.findById(document.getId());
+        // text flows changed after this are left for the next run
+        int documentRevision = document.getRevision();
+        if (taskHandleOpt.isPresent() && taskHandleOpt.get().isCancelled()) {
+            return;
+        }
+        Optional<List<Long>> changedTextFlowIds = incremental
+                ? getChangedTextFlowIds(document, targetLocale)
+                : Optional.absent();
 
         // heuristic optimization
         Stopwatch stopwatch = Stopwatch.createStarted();
-        boolean hasTranslationToCopy = true;
-        if (options.getDocIdMismatchAction() ==
+        // nothing to do if no text flows have changed since the last run
+        boolean hasTranslationToCopy = !changedTextFlowIds.isPresent()
+                || !changedTextFlowIds.get().isEmpty();
+        if (hasTranslationToCopy && options.getDocIdMismatchAction() ==
                 HCopyTransOptions.ConditionRuleAction.REJECT) {
             long translationCandidate =
                     textFlowTargetDAO
@@ -127,13 +152,22 @@ public class CopyTransServiceImpl implements CopyTransService {
             boolean requireTranslationReview =
                     document.getProjectIteration().getRequireTranslationReview();
 
-            while (start < document.getTextFlows().size()) {
-                numCopied +=
-                        copyTransForBatch(document, start, COPY_TRANS_BATCH_SIZE,
-                                targetLocale, options, taskHandleOpt,
-                                requireTranslationReview);
-                start += COPY_TRANS_BATCH_SIZE;
-                documentDAO.clear();
+            if (changedTextFlowIds.isPresent()) {
+                numCopied += copyTransForChangedTextFlows(document,
+                        changedTextFlowIds.get(), targetLocale, options,
+                        taskHandleOpt, requireTranslationReview);
+            } else {
+                while (start < document.getTextFlows().size()) {
+                    if (taskHandleOpt.isPresent()
+                            && taskHandleOpt.get().isCancelled()) {
+                        break;
+                    }
+                    numCopied += copyTransForBatch(document, start,
+                            COPY_TRANS_BATCH_SIZE, targetLocale, options,
+                            taskHandleOpt, requireTranslationReview);
+                    start += COPY_TRANS_BATCH_SIZE;
+                    documentDAO.clear();
+                }
             }
         } else if (taskHandleOpt.isPresent()) {
             int totalActiveTextFlows = textFlowDAO
@@ -147,6 +181,11 @@ public class CopyTransServiceImpl implements CopyTransService {
         if (numCopied > 0) {
             translationStateCacheImpl.clearDocumentStatistics(document.getId(),
                     targetLocale.getLocaleId());
+            transMemoryResultCache.invalidateLocale(targetLocale.getLocaleId());
+        }
+
+        if (!taskHandleOpt.isPresent() || !taskHandleOpt.get().isCancelled()) {
+            saveWatermark(document.getId(), targetLocale, documentRevision);
         }
 
         stopwatch.stop();
@@ -156,6 +195,76 @@ public class CopyTransServiceImpl implements CopyTransService {
                 document.getName(), stopwatch);
     }
 
+    /**
+     * Finds the text flows of a document which were added or changed since
+     * the last completed CopyTrans run for the locale.
+     *
+     * @return the text flow ids, or absent if CopyTrans has never completed
+     *         for the document and locale
+     */
+    private Optional<List<Long>> getChangedTextFlowIds(HDocument document,
+            HLocale targetLocale) {
+        HCopyTransWatermark watermark = copyTransWatermarkDAO
+                .getWatermark(document.getId(), targetLocale.getId());
+        if (watermark == null) {
+            log.debug("no CopyTrans watermark for document {} locale {}",
+                    document.getId(), targetLocale.getLocaleId());
+            return Optional.absent();
+        }
+        return Optional.of(textFlowDAO.getActiveIdsChangedSince(
+                document.getId(), watermark.getDocumentRevision()));
+    }
+
+    /**
+     * Performs copy trans on the given text flows of a document, in batches.
+     * Progress for the document's other text flows is counted as done.
+     *
+     * @return The number of actual copied translations.
+     */
+    private int copyTransForChangedTextFlows(HDocument document,
+            List<Long> textFlowIds, final HLocale targetLocale,
+            final HCopyTransOptions options,
+            Optional<CopyTransTaskHandle> taskHandleOpt,
+            boolean requireTranslationReview) throws Exception {
+        if (taskHandleOpt.isPresent()) {
+            int unchanged = textFlowDAO.countActiveTextFlowsInDocument(
+                    document.getId()) - textFlowIds.size();
+            taskHandleOpt.get().increaseProgress(Math.max(unchanged, 0));
+        }
+        int numCopied = 0;
+        for (List<Long> batch : Lists.partition(textFlowIds,
+                COPY_TRANS_BATCH_SIZE)) {
+            if (taskHandleOpt.isPresent()
+                    && taskHandleOpt.get().isCancelled()) {
+                break;
+            }
+            List<HTextFlow> copyTargets = textFlowDAO.findByIdList(batch);
+            numCopied += copyTransWorkFactory.runCopyTransInNewTx(targetLocale,
+                    options, document, requireTranslationReview, copyTargets);
+            if (taskHandleOpt.isPresent()) {
+                taskHandleOpt.get().increaseProgress(batch.size());
+            }
+            documentDAO.clear();
+        }
+        return numCopied;
+    }
+
+    /**
+     * Records that CopyTrans has completed for the document and locale, as of
+     * the given document revision. This is best effort: without a watermark,
+     * the next incremental run just copies into the whole document.
+     */
+    private void saveWatermark(Long documentId, HLocale targetLocale,
+            int documentRevision) {
+        try {
+            runInTransaction(() -> copyTransWatermarkDAO.saveWatermark(
+                    documentId, targetLocale.getId(), documentRevision));
+        } catch (Exception e) {
+            log.warn("unable to save CopyTrans watermark for document {} "
+                    + "locale {}", documentId, targetLocale.getLocaleId(), e);
+        }
+    }
+
     /**
      * Perform copy trans on a batch of text flows for a document.
      *
@@ -211,6 +320,22 @@ public class CopyTransServiceImpl implements CopyTransService {
     @VisibleForTesting
     void copyTransForDocument(HDocument document,
             HCopyTransOptions copyTransOpts, CopyTransTaskHandle handle) {
+        copyTransForDocument(document, copyTransOpts, handle,
+                Optional.absent(), false);
+    }
+
+    /**
+     * @param workers
+     *            if present, each locale is copied in a subtask, otherwise
+     *            locales are copied one after another in this thread
+     * @param incremental
+     *            whether to copy only into the text flows which changed since
+     *            the last completed run (ignored if workers are present,
+     *            since they have their own setting)
+     */
+    private void copyTransForDocument(HDocument document,
+            HCopyTransOptions copyTransOpts, CopyTransTaskHandle handle,
+            Optional<CopyTransWorkers> workers, boolean incremental) {
 
         Optional<CopyTransTaskHandle> taskHandleOpt =
                 Optional.fromNullable(handle);
@@ -243,29 +368,58 @@ public class CopyTransServiceImpl implements CopyTransService {
             if (taskHandleOpt.isPresent() && taskHandleOpt.get().isCancelled()) {
                 return;
             }
+            if (workers.isPresent()) {
+                workers.get().submit(document.getId(),
+                        targetLocale.getLocaleId(), copyTransOpts, handle);
+                continue;
+            }
             try {
                 copyTransForDocumentLocale(document, targetLocale, copyTransOpts,
-                        taskHandleOpt);
+                        taskHandleOpt, incremental);
             } catch (Exception e) {
                 Throwables.propagate(e);
             }
         }
-        log.info("copyTrans finished: document \"{}\"", document.getDocId());
+        if (!workers.isPresent()) {
+            log.info("copyTrans finished: document \"{}\"",
+                    document.getDocId());
+        }
+    }
+
+    /**
+     * Copies translations for one document and locale, in a subtask started
+     * by {@link CopyTransWorkers}.
+     */
+    void copyTransForDocumentLocale(Long documentId, LocaleId localeId,
+            HCopyTransOptions options, boolean incremental,
+            CopyTransTaskHandle handle) throws Exception {
+        copyTransForDocumentLocale(documentDAO.findById(documentId),
+                localeServiceImpl.getByLocaleId(localeId), options,
+                Optional.fromNullable(handle), incremental);
     }
 
     @Override
-    @Async
+    @Async(AsyncTaskClass.BULK)
     public Future<Void> startCopyTransForDocument(HDocument document,
-            HCopyTransOptions copyTransOptions, CopyTransTaskHandle handle) {
-        copyTransForDocument(document, copyTransOptions, handle);
+            HCopyTransOptions copyTransOptions, boolean incremental,
+            CopyTransTaskHandle handle) {
+        CopyTransWorkers workers = new CopyTransWorkers(incremental);
+        copyTransForDocument(document, copyTransOptions, handle,
+                Optional.of(workers), incremental);
+        workers.awaitAll();
+        log.info("copyTrans finished: document \"{}\"", document.getDocId());
         return AsyncTaskResult.taskResult();
     }
 
     @Override
-    @Async
+    @Async(AsyncTaskClass.BULK)
     public Future<Void> startCopyTransForIteration(HProjectIteration iteration,
-            HCopyTransOptions copyTransOptions, CopyTransTaskHandle handle) {
-        copyTransForIteration(iteration, copyTransOptions, handle);
+            HCopyTransOptions copyTransOptions, boolean incremental,
+            CopyTransTaskHandle handle) {
+        CopyTransWorkers workers = new CopyTransWorkers(incremental);
+        copyTransForIteration(iteration, copyTransOptions, handle,
+                Optional.of(workers), incremental);
+        workers.awaitAll();
         return AsyncTaskResult.taskResult();
     }
 
@@ -289,6 +443,14 @@ public class CopyTransServiceImpl implements CopyTransService {
     void copyTransForIteration(HProjectIteration iteration,
             HCopyTransOptions copyTransOptions,
             @Nonnull CopyTransTaskHandle handle) {
+        copyTransForIteration(iteration, copyTransOptions, handle,
+                Optional.absent(), false);
+    }
+
+    private void copyTransForIteration(HProjectIteration iteration,
+            HCopyTransOptions copyTransOptions,
+            @Nonnull CopyTransTaskHandle handle,
+            Optional<CopyTransWorkers> workers, boolean incremental) {
         Optional<CopyTransTaskHandle> taskHandleOpt =
                 Optional.fromNullable(handle);
 
@@ -314,7 +476,8 @@ public class CopyTransServiceImpl implements CopyTransService {
                     return;
                 }
             }
-            this.copyTransForDocument(doc, copyTransOptions, handle);
+            this.copyTransForDocument(doc, copyTransOptions, handle, workers,
+                    incremental);
         }
     }
 
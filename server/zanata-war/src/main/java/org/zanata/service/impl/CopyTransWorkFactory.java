@@ -30,6 +30,7 @@ import static org.zanata.transaction.TransactionUtil.runInTransaction;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -38,6 +39,7 @@ import lombok.extern.slf4j.Slf4j;
 import javax.inject.Inject;
 import javax.inject.Named;
 import org.zanata.common.ContentState;
+import org.zanata.dao.TextFlowDAO;
 import org.zanata.dao.TextFlowTargetDAO;
 import org.zanata.events.DocStatsEvent;
 import org.zanata.events.DocumentLocaleKey;
@@ -51,15 +53,17 @@ import org.zanata.model.HTextFlow;
 import org.zanata.model.HTextFlowTarget;
 import org.zanata.model.type.TranslationSourceType;
 import org.zanata.security.annotations.Authenticated;
+import org.zanata.service.DocumentStatisticService;
 import org.zanata.service.ValidationService;
 import org.zanata.service.VersionStateCache;
 import org.zanata.util.TranslationUtil;
 import org.zanata.webtrans.shared.model.ValidationAction;
 
-import com.google.common.base.Optional;
 import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 /**
  * @author Sean Flanigan <a href="mailto:sflaniga@redhat.com">sflaniga@redhat.com</a>
@@ -77,12 +81,18 @@ public class CopyTransWorkFactory {
     @Inject
     private TextFlowTargetDAO textFlowTargetDAO;
 
+    @Inject
+    private TextFlowDAO textFlowDAO;
+
     @Inject
     private ValidationService validationServiceImpl;
 
     @Inject
     private VersionStateCache versionStateCacheImpl;
 
+    @Inject
+    private DocumentStatisticService documentStatisticServiceImpl;
+
     @Inject @Authenticated
     private HAccount authenticatedAccount;
 
@@ -113,22 +123,27 @@ public class CopyTransWorkFactory {
         }
 
         Long actorId = authenticatedAccount.getPerson().getId();
-        for (HTextFlow textFlow : copyTargets) {
-            if (shouldFindMatch(textFlow, targetLocale,
-                    requireTranslationReview)) {
+        List<HTextFlow> textFlowsToMatch =
+                findTextFlowsToMatch(copyTargets, targetLocale,
+                        requireTranslationReview);
+        if (textFlowsToMatch.isEmpty()) {
+            return numCopied;
+        }
 
-                Optional<HTextFlowTarget> bestMatch =
-                        translationFinder.searchBestMatchTransMemory(textFlow,
-                                targetLocale.getLocaleId(), document
-                                        .getLocale().getLocaleId(),
-                                checkContext, checkDocument, checkProject);
-                if (bestMatch.isPresent()) {
-                    numCopied++;
+        // look up the whole batch at once rather than one query per text flow
+        Map<Long, HTextFlowTarget> bestMatches =
+                translationFinder.searchBestMatchTransMemory(textFlowsToMatch,
+                        targetLocale.getLocaleId(), document.getLocale()
+                                .getLocaleId(), checkContext, checkDocument,
+                        checkProject);
+        for (HTextFlow textFlow : textFlowsToMatch) {
+            HTextFlowTarget bestMatch = bestMatches.get(textFlow.getId());
+            if (bestMatch != null) {
+                numCopied++;
 
-                    saveCopyTransMatch(actorId, bestMatch.get(), textFlow,
-                        options, requireTranslationReview);
+                saveCopyTransMatch(actorId, bestMatch, textFlow,
+                    options, requireTranslationReview);
 
-                }
             }
         }
         return numCopied;
@@ -338,30 +353,29 @@ public class CopyTransWorkFactory {
     }
 
     /**
-     * Indicates if a given text flow should have a match found for a given
-     * target locale, or if it is already good enough.
+     * Finds the text flows which should have a match found for a given target
+     * locale, ie those which don't have a target which is already good enough
+     * (Approved if the project requires review, otherwise Translated). This
+     * uses one query for the batch, without loading the text flows' targets.
      */
-    private boolean shouldFindMatch(HTextFlow textFlow, HLocale locale,
-            boolean requireTranslationReview) {
-        // TODO getTargets will fill up Hibernate cache for large textflows
-        // and locales. Check which one is more efficient
-        HTextFlowTarget targetForLocale =
-                textFlow.getTargets().get(locale.getId());
-//        HTextFlowTarget targetForLocale = textFlowTargetDAO.getTextFlowTarget(
-//                textFlow, locale);
-
-        if (targetForLocale == null
-                || targetForLocale.getState() == ContentState.NeedReview) {
-            return true;
-        } else if (requireTranslationReview
-                && targetForLocale.getState() != ContentState.Approved) {
-            return true;
-        } else if (!requireTranslationReview
-                && targetForLocale.getState() != ContentState.Translated) {
-            return true;
-        } else {
-            return false;
+    private List<HTextFlow> findTextFlowsToMatch(List<HTextFlow> copyTargets,
+            HLocale locale, boolean requireTranslationReview) {
+        List<Long> ids = Lists.newArrayListWithCapacity(copyTargets.size());
+        for (HTextFlow textFlow : copyTargets) {
+            ids.add(textFlow.getId());
+        }
+        ContentState acceptableState =
+                requireTranslationReview ? Approved : Translated;
+        Set<Long> idsToMatch = Sets.newHashSet(textFlowDAO
+                .getIdsWithoutTargetInState(ids, locale.getId(),
+                        acceptableState));
+        List<HTextFlow> textFlowsToMatch = Lists.newArrayList();
+        for (HTextFlow textFlow : copyTargets) {
+            if (idsToMatch.contains(textFlow.getId())) {
+                textFlowsToMatch.add(textFlow);
+            }
         }
+        return textFlowsToMatch;
     }
 
     /**
@@ -428,6 +442,7 @@ public class CopyTransWorkFactory {
                         contentStates, target.getId());
 
         versionStateCacheImpl.docStatsUpdated(docEvent);
+        documentStatisticServiceImpl.docStatsUpdated(docEvent);
     }
 
     /**
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.service.impl;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+
+import org.zanata.async.AsyncTaskManager;
+import org.zanata.async.handle.CopyTransTaskHandle;
+import org.zanata.common.LocaleId;
+import org.zanata.model.HCopyTransOptions;
+import org.zanata.util.ServiceLocator;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Runs the CopyTrans units (a document and a locale) of one CopyTrans task
+ * on the async worker pool.
+ *
+ * Each unit copies its text flows batch by batch, each batch in its own
+ * transaction, as CopyTrans always has. Units run in parallel, but the
+ * batches of a unit stay in order on one thread, since they all update the
+ * statistics of the same document and locale.
+ *
+ * No more units than there are worker threads are queued or running for
+ * each task, so that CopyTrans tasks which run at the same time share the
+ * workers. After a unit fails, no more units are started.
+ */
+class CopyTransWorkers {
+
+    interface Unit {
+        void run(Long documentId, LocaleId localeId,
+                HCopyTransOptions options, CopyTransTaskHandle handle)
+                throws Exception;
+    }
+
+    private final AsyncTaskManager asyncTaskManager;
+    private final Unit unit;
+    private final Semaphore permits;
+    private final List<ListenableFuture<Void>> started = Lists.newArrayList();
+    private volatile Throwable failure;
+
+    /**
+     * @param incremental
+     *            whether each unit only copies into the text flows which
+     *            changed since the last completed CopyTrans run
+     */
+    CopyTransWorkers(boolean incremental) {
+        this(ServiceLocator.instance().getInstance(AsyncTaskManager.class),
+                (documentId, localeId, options, handle) -> ServiceLocator
+                        .instance().getInstance(CopyTransServiceImpl.class)
+                        .copyTransForDocumentLocale(documentId, localeId,
+                                options, incremental, handle));
+    }
+
+    @VisibleForTesting
+    CopyTransWorkers(AsyncTaskManager asyncTaskManager, Unit unit) {
+        this.asyncTaskManager = asyncTaskManager;
+        this.unit = unit;
+        this.permits = new Semaphore(asyncTaskManager.getWorkerThreads());
+    }
+
+    /**
+     * Starts a unit once a worker is available for this task.
+     */
+    void submit(Long documentId, LocaleId localeId,
+            HCopyTransOptions options, CopyTransTaskHandle handle) {
+        permits.acquireUninterruptibly();
+        if (failure != null) {
+            permits.release();
+            throw Throwables.propagate(failure);
+        }
+        ListenableFuture<Void> future;
+        try {
+            future = asyncTaskManager.startSubtask(() -> {
+                unit.run(documentId, localeId, options, handle);
+                return null;
+            });
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        Futures.addCallback(future, new FutureCallback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                permits.release();
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                failure = t;
+                permits.release();
+            }
+        }, MoreExecutors.directExecutor());
+        started.add(future);
+    }
+
+    /**
+     * Waits for all the started units to finish, and rethrows the first
+     * failure, if any.
+     */
+    void awaitAll() {
+        try {
+            Futures.successfulAsList(started).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+        if (failure != null) {
+            throw Throwables.propagate(failure);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package org.zanata.service.impl;
 
 import static org.zanata.transaction.TransactionUtil.runInTransaction;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -16,36 +17,34 @@ import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
 import javax.inject.Named;
 import org.zanata.async.Async;
+import org.zanata.async.AsyncTaskClass;
+import org.zanata.async.AsyncTaskHandle;
+import org.zanata.async.AsyncTaskHandleManager;
 import org.zanata.async.AsyncTaskResult;
 import org.zanata.async.handle.CopyVersionTaskHandle;
 import org.zanata.common.EntityStatus;
+import org.zanata.dao.CopyVersionDAO;
 import org.zanata.dao.DocumentDAO;
+import org.zanata.dao.DocumentStatisticDAO;
 import org.zanata.dao.ProjectIterationDAO;
-import org.zanata.dao.TextFlowDAO;
-import org.zanata.dao.TextFlowTargetDAO;
 import org.zanata.file.FilePersistService;
 import org.zanata.model.HDocument;
 import org.zanata.model.HLocale;
 import org.zanata.model.HProjectIteration;
 import org.zanata.model.HRawDocument;
-import org.zanata.model.HSimpleComment;
 import org.zanata.model.HTextFlow;
 import org.zanata.model.HTextFlowTarget;
-import org.zanata.model.HTextFlowTargetHistory;
-import org.zanata.model.HTextFlowTargetReviewComment;
 import org.zanata.model.po.HPoHeader;
 import org.zanata.model.po.HPoTargetHeader;
-import org.zanata.model.po.HPotEntryData;
-import org.zanata.model.type.TranslationSourceType;
 import org.zanata.security.ZanataIdentity;
 import org.zanata.service.CopyVersionService;
+import org.zanata.service.IndexingService;
 import org.zanata.service.VersionStateCache;
 import org.zanata.util.JPACopier;
 import org.zanata.util.TranslationUtil;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Stopwatch;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 /**
@@ -57,14 +56,10 @@ import com.google.common.collect.Maps;
 // Not @Transactional, because we use runInTransaction
 public class CopyVersionServiceImpl implements CopyVersionService {
 
-    // Document batch size
-    protected final static int DOC_BATCH_SIZE = 2;
-
-    // TextFlow batch size
-    protected final static int TF_BATCH_SIZE = 20;
-
-    // TextFlowTarget batch size
-    protected final static int TFT_BATCH_SIZE = 20;
+    // Document batch size. The text flows of each batch of documents are
+    // copied in one transaction, and their targets in one transaction per
+    // locale.
+    protected final static int DOC_BATCH_SIZE = 10;
 
     @Inject
     private ProjectIterationDAO projectIterationDAO;
@@ -73,13 +68,13 @@ public class CopyVersionServiceImpl implements CopyVersionService {
     private DocumentDAO documentDAO;
 
     @Inject
-    private TextFlowDAO textFlowDAO;
+    private CopyVersionDAO copyVersionDAO;
 
     @Inject
-    private TextFlowTargetDAO textFlowTargetDAO;
+    private VersionStateCache versionStateCacheImpl;
 
     @Inject
-    private VersionStateCache versionStateCacheImpl;
+    private DocumentStatisticDAO documentStatisticDAO;
 
     @Inject
     private FilePersistService filePersistService;
@@ -87,6 +82,15 @@ public class CopyVersionServiceImpl implements CopyVersionService {
     @Inject
     private ZanataIdentity identity;
 
+    @Inject
+    private IndexingService indexingServiceImpl;
+
+    @Inject
+    private AsyncTaskHandleManager asyncTaskHandleManager;
+
+    @Inject
+    private TransMemoryResultCache transMemoryResultCache;
+
     // Stop watch for textFlow and target copy process
     private Stopwatch copyTfAndTftStopWatch = Stopwatch.createUnstarted();
 
@@ -108,6 +112,8 @@ public class CopyVersionServiceImpl implements CopyVersionService {
         if (taskHandleOpt.isPresent()) {
             prepareCopyVersionHandle(version, taskHandleOpt.get());
         }
+        String messagePrefix = TranslationUtil.getCopyVersionMessagePrefix(
+                version.getProject().getName(), versionSlug);
 
         Stopwatch overallStopwatch = Stopwatch.createStarted();
         log.info("copy version start: copy {} to {}",
@@ -136,14 +142,16 @@ public class CopyVersionServiceImpl implements CopyVersionService {
                         docStart, DOC_BATCH_SIZE);
                 docStart += DOC_BATCH_SIZE;
 
-                for (Map.Entry<Long, Long> entry : docMap.entrySet()) {
+                if (!docMap.isEmpty()) {
                     // Copy of HTextFlow and HTextFlowTarget
-                    copyTextFlowAndTarget(entry.getKey(), entry.getValue());
-
-                    if (taskHandleOpt.isPresent()) {
+                    copyTextFlowsAndTargets(docMap.keySet(),
+                            newVersion.getId(), messagePrefix);
+                }
+                if (taskHandleOpt.isPresent()) {
+                    for (int i = 0; i < docMap.size(); i++) {
                         taskHandleOpt.get().incrementDocumentProcessed();
-                        taskHandleOpt.get().increaseProgress(1);
                     }
+                    taskHandleOpt.get().increaseProgress(docMap.size());
                 }
             }
         } catch (Exception e) {
@@ -160,6 +168,11 @@ public class CopyVersionServiceImpl implements CopyVersionService {
             // clear any cache that has been loaded in this new version before copy
             // completed
             versionStateCacheImpl.clearVersionStatsCache(newVersion.getId());
+            clearDocumentStatistics(newVersion.getId());
+            // the copied targets were inserted without Hibernate Search
+            reindexTargets(newVersion);
+            // TM results list the versions which contain each match
+            transMemoryResultCache.invalidateAll();
             log.info("copy version end: copy {} to {}, {}", projectSlug
                     + ":" + versionSlug, projectSlug + ":" + newVersionSlug,
                 overallStopwatch);
@@ -168,7 +181,7 @@ public class CopyVersionServiceImpl implements CopyVersionService {
 
 
     @Override
-    @Async
+    @Async(AsyncTaskClass.BULK)
     public Future<Void> startCopyVersion(@Nonnull String projectSlug,
             @Nonnull String versionSlug,
             @Nonnull String newVersionSlug, CopyVersionTaskHandle handle) {
@@ -176,6 +189,30 @@ public class CopyVersionServiceImpl implements CopyVersionService {
         return AsyncTaskResult.taskResult();
     }
 
+    /**
+     * Remove any document statistics calculated while translations were still
+     * being copied.
+     */
+    private void clearDocumentStatistics(Long versionId) {
+        try {
+            runInTransaction(
+                    () -> documentStatisticDAO.deleteForIteration(versionId));
+        } catch (Exception e) {
+            log.warn("exception while clearing document statistics", e);
+        }
+    }
+
+    private void reindexTargets(HProjectIteration newVersion) {
+        AsyncTaskHandle<Void> handle = new AsyncTaskHandle<>();
+        asyncTaskHandleManager.registerTaskHandle(handle);
+        try {
+            indexingServiceImpl.reindexHTextFlowTargetsForProjectIteration(
+                    newVersion, handle);
+        } catch (Exception e) {
+            log.error("exception while reindexing copied translations", e);
+        }
+    }
+
     private void prepareCopyVersionHandle(@Nonnull HProjectIteration originalVersion,
             @Nonnull CopyVersionTaskHandle handle) {
         handle.setTriggeredBy(identity.getAccountUsername());
@@ -254,142 +291,73 @@ public class CopyVersionServiceImpl implements CopyVersionService {
     }
 
     /**
-     * Copy text flows and targets of document with id=documentId to document
-     * with id=newDocumentId
+     * Copy the text flows and targets of the given documents to the documents
+     * with the same docIds in the new version.
      *
-     * @param documentId
-     * @param newDocumentId
+     * @param documentIds
+     *            ids of the original documents
+     * @param newVersionId
+     * @param messagePrefix
+     *            start of the revision comment of the copied targets
      */
-    private void copyTextFlowAndTarget(Long documentId, Long newDocumentId) {
+    private void copyTextFlowsAndTargets(Collection<Long> documentIds,
+            Long newVersionId, String messagePrefix) {
         copyTfAndTftStopWatch.start();
-        int tfStart = 0, tftStart = 0, totalTftCount = 0;
-        int tfCount = textFlowDAO.countActiveTextFlowsInDocument(documentId);
-
-        while (tfStart < tfCount) {
-            Map<Long, Long> tfMap =
-                    copyTextFlowBatch(documentId, newDocumentId, tfStart,
-                            TF_BATCH_SIZE);
-            tfStart += TF_BATCH_SIZE;
-            textFlowDAO.clear();
-            documentDAO.clear();
-
-            for (Map.Entry<Long, Long> entry : tfMap.entrySet()) {
-                tftStart = 0;
-                int tftCount =
-                        textFlowTargetDAO.countTextFlowTargetsInTextFlow(
-                                entry.getKey());
-
-                while (tftStart < tftCount) {
-                    totalTftCount +=
-                            copyTextFlowTargetBatch(entry.getKey(),
-                                    entry.getValue(), tftStart, TFT_BATCH_SIZE);
-                    tftStart += TFT_BATCH_SIZE;
-                    textFlowDAO.clear();
-                    textFlowTargetDAO.clear();
-                }
+        int tfCount = copyTextFlowBatch(documentIds, newVersionId);
+        int totalTftCount = 0;
+        if (tfCount > 0) {
+            for (Long localeId : copyVersionDAO
+                    .getTargetLocaleIds(documentIds)) {
+                totalTftCount += copyTextFlowTargetBatch(documentIds,
+                        newVersionId, localeId, messagePrefix);
             }
         }
+        // don't keep the new documents (with their text flows unloaded)
+        documentDAO.clear();
         copyTfAndTftStopWatch.stop();
         log.info(
-                "copy document- textFlow:{}, textFlowTarget:{} copied for document:{} - {}",
-                tfCount, totalTftCount, newDocumentId, copyTfAndTftStopWatch);
+                "copy documents- textFlow:{}, textFlowTarget:{} copied for {} documents - {}",
+                tfCount, totalTftCount, documentIds.size(),
+                copyTfAndTftStopWatch);
         copyTfAndTftStopWatch.reset();
     }
 
     /**
-     * Return map of old HTextFlow id, new HTextFlow id copied
+     * Return number of HTextFlow copied
      *
-     * @param documentId
-     * @param newDocumentId
-     * @param batchStart
-     * @param batchLength
+     * @param documentIds
+     * @param newVersionId
      */
-    protected Map<Long, Long> copyTextFlowBatch(Long documentId,
-            Long newDocumentId, int batchStart, int batchLength) {
+    protected int copyTextFlowBatch(Collection<Long> documentIds,
+            Long newVersionId) {
         try {
-            return runInTransaction(() -> this.copyTextFlows(documentId,
-                    newDocumentId, batchStart, batchLength));
+            return runInTransaction(() -> copyVersionDAO
+                    .copyTextFlows(documentIds, newVersionId));
         } catch (Exception e) {
             log.warn("exception during copy text flow", e);
-            return Collections.EMPTY_MAP;
-        }
-    }
-
-    private Map<Long, Long> copyTextFlows(
-            final Long documentId,
-            final Long newDocumentId,
-            final int batchStart,
-            final int batchLength) throws Exception {
-
-        Map<Long, HTextFlow> tfMap = Maps.newHashMap();
-
-        List<HTextFlow> textFlows = textFlowDAO.getTextFlowsByDocumentId(
-                documentId, batchStart, batchLength);
-
-        HDocument newDocument = documentDAO.getById(newDocumentId);
-        for (HTextFlow textFlow : textFlows) {
-            HTextFlow newTextFlow =
-                    copyTextFlow(newDocument, textFlow);
-
-            newDocument.getTextFlows().add(newTextFlow);
-            newDocument.getAllTextFlows()
-                    .put(newTextFlow.getResId(), newTextFlow);
-            tfMap.put(textFlow.getId(), newTextFlow);
+            return 0;
         }
-        documentDAO.makePersistent(newDocument);
-        documentDAO.flush();
-
-        return Maps.transformEntries(tfMap, (key, value) -> value.getId());
     }
 
     /**
      * Return number of HTextFlowTarget copied
      *
-     * @param tfId
-     * @param newTfId
-     * @param batchStart
-     * @param batchLength
+     * @param documentIds
+     * @param newVersionId
+     * @param localeId
+     * @param messagePrefix
      */
-    protected int copyTextFlowTargetBatch(Long tfId, Long newTfId,
-            int batchStart, int batchLength) {
+    protected int copyTextFlowTargetBatch(Collection<Long> documentIds,
+            Long newVersionId, Long localeId, String messagePrefix) {
         try {
-            return runInTransaction(() -> this.copyTextFlowTargets(tfId,
-                    newTfId, batchStart, batchLength));
+            return runInTransaction(() -> copyVersionDAO.copyTextFlowTargets(
+                    documentIds, newVersionId, localeId, messagePrefix));
         } catch (Exception e) {
             log.warn("exception during copy text flow target", e);
             return 0;
         }
     }
 
-    /**
-     * Copy HTextFlowTarget from HTextFlow(id=tfId) in batches(batchStart,
-     * batchLength) into HTextFlow(id=newTfId).
-     * @return Number of text flow targets copied.
-     * @throws Exception
-     */
-    private Integer copyTextFlowTargets(final Long tfId,
-            final Long newTfId,
-            final int batchStart,
-            final int batchLength) throws Exception {
-        HTextFlow newTextFlow = textFlowDAO.findById(newTfId);
-
-        List<HTextFlowTarget> copyTargets =
-                textFlowTargetDAO
-                        .getByTextFlowId(tfId, batchStart, batchLength);
-
-        for (HTextFlowTarget tft : copyTargets) {
-            HTextFlowTarget newTextFlowTarget =
-                    copyTextFlowTarget(newTextFlow, tft);
-
-            newTextFlow.getTargets()
-                    .put(newTextFlowTarget.getLocale().getId(),
-                            newTextFlowTarget);
-        }
-        textFlowDAO.makePersistent(newTextFlow);
-        textFlowDAO.flush();
-        return copyTargets.size();
-    }
-
     @Override
     public HProjectIteration copyVersionSettings(
             HProjectIteration version, HProjectIteration newVersion) {
@@ -436,56 +404,4 @@ public class CopyVersionServiceImpl implements CopyVersionService {
         copy.setDocument(newDocument);
         return copy;
     }
-
-    @Override
-    public HTextFlow copyTextFlow(HDocument newDocument, HTextFlow textFlow)
-            throws Exception {
-        HTextFlow copy =
-                JPACopier.<HTextFlow> copyBean(textFlow, "document", "content",
-                        "targets", "history", "potEntryData");
-        copy.setDocument(newDocument);
-
-        // copy PotEntryData
-        if (textFlow.getPotEntryData() != null) {
-            HPotEntryData potEntryData = JPACopier.<HPotEntryData> copyBean(
-                    textFlow.getPotEntryData(), "textFlow");
-            copy.setPotEntryData(potEntryData);
-        }
-        return copy;
-    }
-
-    @Override
-    public HTextFlowTarget copyTextFlowTarget(HTextFlow newTf,
-            HTextFlowTarget tft) throws Exception {
-        HTextFlowTarget copy =
-                JPACopier.<HTextFlowTarget> copyBean(tft, "textFlow",
-                        "reviewComments", "history");
-        copy.setTextFlow(newTf);
-        copy.setTextFlowRevision(newTf.getRevision());
-        if(tft.getComment() != null) {
-            copy.setComment(new HSimpleComment(tft.getComment().getComment()));
-        }
-        copy.setRevisionComment(TranslationUtil.getCopyVersionMessage(tft));
-        copy.setSourceType(TranslationSourceType.COPY_VERSION);
-        TranslationUtil.copyEntity(tft, copy);
-
-        // copy review comment
-        copy.setReviewComments(Lists
-                .<HTextFlowTargetReviewComment> newArrayList());
-        for (HTextFlowTargetReviewComment comment : tft.getReviewComments()) {
-            copy.addReviewComment(comment.getComment(), comment.getCommenter());
-        }
-
-        // copy history
-        for (HTextFlowTargetHistory history : tft.getHistory().values()) {
-            HTextFlowTargetHistory newHistory =
-                    JPACopier.<HTextFlowTargetHistory> copyBean(history,
-                            "textFlowTarget", "content");
-            newHistory.setTextFlowTarget(copy);
-            newHistory.setSourceType(TranslationSourceType.COPY_VERSION);
-            TranslationUtil.copyEntity(history, newHistory);
-            copy.getHistory().put(newHistory.getVersionNum(), newHistory);
-        }
-        return copy;
-    }
 }
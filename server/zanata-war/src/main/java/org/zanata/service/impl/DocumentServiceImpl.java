@@ -41,6 +41,7 @@ import org.zanata.async.AsyncTaskResult;
 import org.zanata.common.ContentState;
 import org.zanata.common.LocaleId;
 import org.zanata.dao.DocumentDAO;
+import org.zanata.dao.DocumentStatisticDAO;
 import org.zanata.dao.ProjectIterationDAO;
 import org.zanata.events.DocStatsEvent;
 import org.zanata.events.DocumentLocaleKey;
@@ -96,6 +97,9 @@ public class DocumentServiceImpl implements DocumentService {
     @Inject
     private DocumentDAO documentDAO;
 
+    @Inject
+    private DocumentStatisticDAO documentStatisticDAO;
+
     @Inject
     private LocaleService localeServiceImpl;
 
@@ -376,6 +380,8 @@ public class DocumentServiceImpl implements DocumentService {
     }
 
     private void clearStatsCacheForUpdatedDocument(HDocument document) {
+        // text flows may have changed, so recalculate from scratch when needed
+        documentStatisticDAO.deleteForDocument(document.getId());
         versionStateCacheImpl.clearVersionStatsCache(document
                 .getProjectIteration()
                 .getId());
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.service.impl;
+
+import static org.zanata.transaction.TransactionUtil.runInTransaction;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+
+import javax.enterprise.context.RequestScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.zanata.async.Async;
+import org.zanata.async.AsyncTaskClass;
+import org.zanata.async.AsyncTaskHandle;
+import org.zanata.async.AsyncTaskResult;
+import org.zanata.common.LocaleId;
+import org.zanata.dao.DocumentStatisticDAO;
+import org.zanata.events.DocStatsEvent;
+import org.zanata.service.DocumentStatisticService;
+import org.zanata.service.TranslationStateCache;
+import org.zanata.service.VersionStateCache;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Named("documentStatisticServiceImpl")
+@RequestScoped
+@Slf4j
+// Not @Transactional: events are handled in the caller's transaction, and
+// the rebuild uses runInTransaction
+public class DocumentStatisticServiceImpl implements DocumentStatisticService {
+
+    // number of documents recalculated in each transaction
+    private static final int REBUILD_BATCH_SIZE = 100;
+
+    @Inject
+    private DocumentStatisticDAO documentStatisticDAO;
+
+    @Inject
+    private TranslationStateCache translationStateCacheImpl;
+
+    @Inject
+    private VersionStateCache versionStateCacheImpl;
+
+    @Override
+    public void docStatsUpdated(@Observes DocStatsEvent event) {
+        documentStatisticDAO.applyOrCreateStatistics(
+                event.getKey().getDocumentId(), event.getKey().getLocaleId(),
+                event.getWordDeltasByState());
+    }
+
+    @Override
+    @Async(AsyncTaskClass.MAINTENANCE)
+    public Future<Void> rebuildStatistics(AsyncTaskHandle<Void> handle)
+            throws Exception {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        Map<Long, Long> versionIdByDocId = runInTransaction(
+                () -> documentStatisticDAO.getAllDocumentVersionIds());
+        handle.setMaxProgress(versionIdByDocId.size());
+
+        List<Long> docIds = ImmutableList.copyOf(versionIdByDocId.keySet());
+        for (List<Long> batch : Lists.partition(docIds, REBUILD_BATCH_SIZE)) {
+            if (handle.isCancelled()) {
+                log.info("document statistics rebuild cancelled");
+                break;
+            }
+            runInTransaction(() -> rebuildBatch(batch));
+            for (Long docId : batch) {
+                translationStateCacheImpl.clearDocumentStatistics(docId);
+            }
+            handle.increaseProgress(batch.size());
+        }
+
+        Set<Long> versionIds = Sets.newHashSet(versionIdByDocId.values());
+        for (Long versionId : versionIds) {
+            versionStateCacheImpl.clearVersionStatsCache(versionId);
+        }
+        log.info("rebuilt document statistics for {} documents in {}",
+                handle.getCurrentProgress(), stopwatch);
+        return AsyncTaskResult.taskResult();
+    }
+
+    private void rebuildBatch(List<Long> docIds) {
+        // keeps translation changes from creating or updating these rows
+        // until the transaction ends
+        documentStatisticDAO.lockDocuments(docIds);
+        documentStatisticDAO.deleteForDocuments(docIds);
+        // statistics for locales without targets are created when first read
+        for (LocaleId localeId : documentStatisticDAO
+                .getTargetLocales(docIds)) {
+            documentStatisticDAO.createStatistics(docIds, localeId);
+        }
+        documentStatisticDAO.clear();
+    }
+}
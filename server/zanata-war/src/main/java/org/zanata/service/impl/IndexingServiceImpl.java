@@ -20,8 +20,12 @@
  */
 package org.zanata.service.impl;
 
+import static org.zanata.transaction.TransactionUtil.runInTransaction;
+
+import java.util.Date;
 import java.util.Map;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import javax.enterprise.context.RequestScoped;
 import javax.persistence.EntityManagerFactory;
@@ -36,18 +40,27 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import org.zanata.action.ReindexClassOptions;
 import org.zanata.async.Async;
+import org.zanata.async.AsyncTaskClass;
 import org.zanata.async.AsyncTaskHandle;
 import org.zanata.async.AsyncTaskResult;
+import org.zanata.async.handle.IncrementalReindexTaskHandle;
+import org.zanata.dao.ApplicationConfigurationDAO;
 import org.zanata.dao.HTextFlowTargetStreamingDAO;
+import org.zanata.model.HApplicationConfiguration;
 import org.zanata.model.HProject;
+import org.zanata.model.HProjectIteration;
 import org.zanata.model.HTextFlowTarget;
 import org.zanata.search.AbstractIndexingStrategy;
 import org.zanata.search.ClassIndexer;
 import org.zanata.search.HTextFlowTargetIndexingStrategy;
+import org.zanata.search.IndexingStats;
 import org.zanata.search.SimpleClassIndexingStrategy;
 import org.zanata.service.IndexingService;
+import org.zanata.util.SysProperties;
 import org.zanata.util.Zanata;
 
+import com.google.common.collect.Maps;
+
 /**
  * @author Carlos Munoz <a
  *         href="mailto:camunoz@redhat.com">camunoz@redhat.com</a>
@@ -58,14 +71,36 @@ import org.zanata.util.Zanata;
 // Not @Transactional, because we manage EntityManager directly
 public class IndexingServiceImpl implements IndexingService {
 
+    private static final int REINDEX_THREADS = SysProperties.getInt(
+            SysProperties.REINDEX_THREADS,
+            Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * Prefix of the HApplicationConfiguration keys which hold the time up to
+     * which each class is known to be indexed.
+     */
+    private static final String WATERMARK_KEY_PREFIX = "index.watermark.";
+
+    /**
+     * How far before a stored watermark incremental reindexing starts. A
+     * transaction commits some time after it sets lastChanged, so rows which
+     * were still uncommitted when a watermark was saved can carry an earlier
+     * timestamp; clock skew between cluster nodes has the same effect.
+     * Reindexing a few rows twice is harmless.
+     */
+    static final long WATERMARK_MARGIN_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
     @Inject @Zanata
     private EntityManagerFactory entityManagerFactory;
 
     @Inject
     private HTextFlowTargetStreamingDAO hTextFlowTargetStreamingDAO;
 
+    @Inject
+    private ApplicationConfigurationDAO applicationConfigurationDAO;
+
     @Override
-    @Async
+    @Async(AsyncTaskClass.MAINTENANCE)
     public Future<Void> startIndexing(
             Map<Class<?>, ReindexClassOptions> indexingOptions,
             AsyncTaskHandle<Void> handle)
@@ -86,6 +121,7 @@ public class IndexingServiceImpl implements IndexingService {
                 if (!handle.isCancelled()
                         && indexingOptions.get(clazz).isPurge()) {
                     log.info("purging index for {}", clazz);
+                    clearWatermark(clazz);
                     session.purgeAll(clazz);
                     handle.increaseProgress(1);
                 }
@@ -93,7 +129,19 @@ public class IndexingServiceImpl implements IndexingService {
                         && indexingOptions.get(clazz).isReindex()) {
                     log.info("reindexing {}", clazz);
                     // currentClass = clazz;
-                    getIndexer(clazz, handle).index(session);
+                    Date started = new Date();
+                    IndexingStats stats = new IndexingStats();
+                    indexingOptions.get(clazz).setStats(stats);
+                    ClassIndexer<?> indexer = getIndexer(clazz, handle, stats);
+                    if (REINDEX_THREADS > 1) {
+                        indexer.index(this::openFullTextSession,
+                                REINDEX_THREADS);
+                    } else {
+                        indexer.index(session);
+                    }
+                    if (!handle.isCancelled()) {
+                        saveWatermark(clazz, started);
+                    }
                 }
                 if (!handle.isCancelled()
                         && indexingOptions.get(clazz).isOptimize()) {
@@ -130,6 +178,128 @@ public class IndexingServiceImpl implements IndexingService {
         return AsyncTaskResult.taskResult();
     }
 
+    @Override
+    @Async(AsyncTaskClass.MAINTENANCE)
+    public Future<Void> startIncrementalIndexing(
+            Map<Class<?>, ReindexClassOptions> indexingOptions,
+            IncrementalReindexTaskHandle handle)
+            throws Exception {
+        FullTextSession session = openFullTextSession();
+        try {
+            Map<Class<?>, Date> changedSince = Maps.newLinkedHashMap();
+            int totalOperations = 0;
+            for (Class<?> clazz : indexingOptions.keySet()) {
+                if (indexingOptions.get(clazz).isReindex()) {
+                    Date since = getChangedSince(clazz, handle);
+                    changedSince.put(clazz, since);
+                    // one more operation for the purge of deleted entities
+                    totalOperations += getIndexer(clazz, handle)
+                            .getChangedEntityCount(session, since) + 1;
+                }
+            }
+            handle.setMaxProgress(totalOperations);
+            // TODO this is necessary because isInProgress checks number of
+            // operations, which may be 0
+            if (handle.getMaxProgress() == 0) {
+                log.info("Incremental reindexing aborted because no class "
+                        + "was selected for reindexing");
+                return AsyncTaskResult.taskResult();
+            }
+            for (Map.Entry<Class<?>, Date> entry : changedSince.entrySet()) {
+                if (handle.isCancelled()) {
+                    break;
+                }
+                Class<?> clazz = entry.getKey();
+                log.info("reindexing {} changed since {}", clazz,
+                        entry.getValue());
+                Date started = new Date();
+                IndexingStats stats = new IndexingStats();
+                indexingOptions.get(clazz).setStats(stats);
+                ClassIndexer<?> indexer = getIndexer(clazz, handle, stats);
+                boolean completed = indexer.indexChangedSince(session,
+                        entry.getValue(),
+                        watermark -> saveWatermark(clazz, watermark));
+                if (completed && !handle.isCancelled()) {
+                    indexer.purgeDeleted(session);
+                    handle.increaseProgress(1);
+                    saveWatermark(clazz, started);
+                }
+            }
+
+            if (handle.isCancelled()) {
+                log.info("incremental index operation canceled by user; "
+                        + "it will resume from the last indexed change");
+            } else {
+                log.info("Incremental re-indexing finished");
+            }
+        } finally {
+            session.close();
+        }
+        return AsyncTaskResult.taskResult();
+    }
+
+    /**
+     * Returns the time from which entities of the class need to be
+     * reindexed: the time given by the task, the stored watermark less
+     * {@link #WATERMARK_MARGIN_MILLIS}, or the beginning of time if the class
+     * has no watermark.
+     */
+    private Date getChangedSince(Class<?> clazz,
+            IncrementalReindexTaskHandle handle) throws Exception {
+        if (handle.getChangedSince() != null) {
+            return handle.getChangedSince();
+        }
+        Date watermark = runInTransaction(() -> {
+            HApplicationConfiguration config =
+                    applicationConfigurationDAO.findByKey(watermarkKey(clazz));
+            return config == null ? null
+                    : new Date(Long.parseLong(config.getValue()));
+        });
+        if (watermark == null) {
+            log.warn("no index watermark for {}; reindexing all rows", clazz);
+            return new Date(0);
+        }
+        return new Date(Math.max(0L,
+                watermark.getTime() - WATERMARK_MARGIN_MILLIS));
+    }
+
+    private void saveWatermark(Class<?> clazz, Date watermark) {
+        String key = watermarkKey(clazz);
+        String value = String.valueOf(watermark.getTime());
+        try {
+            runInTransaction(() -> {
+                HApplicationConfiguration config =
+                        applicationConfigurationDAO.findByKey(key);
+                if (config == null) {
+                    config = new HApplicationConfiguration(key, value);
+                } else {
+                    config.setValue(value);
+                }
+                applicationConfigurationDAO.makePersistent(config);
+                applicationConfigurationDAO.flush();
+                return null;
+            });
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void clearWatermark(Class<?> clazz) throws Exception {
+        runInTransaction(() -> {
+            HApplicationConfiguration config =
+                    applicationConfigurationDAO.findByKey(watermarkKey(clazz));
+            if (config != null) {
+                applicationConfigurationDAO.makeTransient(config);
+                applicationConfigurationDAO.flush();
+            }
+            return null;
+        });
+    }
+
+    private static String watermarkKey(Class<?> clazz) {
+        return WATERMARK_KEY_PREFIX + clazz.getSimpleName();
+    }
+
     private FullTextSession openFullTextSession() {
         return Search.getFullTextSession(entityManagerFactory
                 .createEntityManager().unwrap(Session.class));
@@ -163,6 +333,11 @@ public class IndexingServiceImpl implements IndexingService {
 
     private <T> ClassIndexer<T> getIndexer(Class<T> clazz,
             AsyncTaskHandle handle) {
+        return getIndexer(clazz, handle, new IndexingStats());
+    }
+
+    private <T> ClassIndexer<T> getIndexer(Class<T> clazz,
+            AsyncTaskHandle handle, IndexingStats stats) {
         AbstractIndexingStrategy<T> strategy;
         // TODO add a strategy which uses TransMemoryStreamingDAO
         if (clazz.equals(HTextFlowTarget.class)) {
@@ -171,11 +346,11 @@ public class IndexingServiceImpl implements IndexingService {
         } else {
             strategy = new SimpleClassIndexingStrategy<T>(clazz);
         }
-        return new ClassIndexer<T>(handle, clazz, strategy);
+        return new ClassIndexer<T>(handle, clazz, strategy, stats);
     }
 
     @Override
-    @Async
+    @Async(AsyncTaskClass.MAINTENANCE)
     public Future<Void> reindexHTextFlowTargetsForProject(HProject hProject,
             AsyncTaskHandle<Void> handle)
             throws Exception {
@@ -221,6 +396,35 @@ public class IndexingServiceImpl implements IndexingService {
         return AsyncTaskResult.taskResult();
     }
 
+    @Override
+    @Async(AsyncTaskClass.MAINTENANCE)
+    public Future<Void> reindexHTextFlowTargetsForProjectIteration(
+            HProjectIteration projectIteration, AsyncTaskHandle<Void> handle)
+            throws Exception {
+        FullTextSession session = openFullTextSession();
+        try {
+            Long entityCount = (Long) session
+                    .createQuery("select count(*) from HTextFlowTarget tft "
+                            + "where tft.textFlow.document.projectIteration = :iteration")
+                    .setParameter("iteration", projectIteration)
+                    .uniqueResult();
+            handle.setMaxProgress(entityCount.intValue());
+            if (handle.getMaxProgress() == 0) {
+                log.info("Reindexing aborted because there are no actions "
+                        + "to perform (may be indexing an empty table)");
+                return AsyncTaskResult.taskResult();
+            }
+
+            new HTextFlowTargetIndexingStrategy().reindexForProjectVersion(
+                    projectIteration, session, handle);
+            log.info("Re-indexing HTextFlowTarget for version [{}] finished",
+                    projectIteration);
+        } finally {
+            session.close();
+        }
+        return AsyncTaskResult.taskResult();
+    }
+
     private static Long getHTextFlowTargetCountForProject(HProject hProject,
             FullTextSession session) {
         return (Long) session
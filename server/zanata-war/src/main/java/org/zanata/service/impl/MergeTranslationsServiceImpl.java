@@ -23,7 +23,9 @@ package org.zanata.service.impl;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nonnull;
 
@@ -37,11 +39,15 @@ import javax.enterprise.event.Event;
 import javax.inject.Inject;
 import javax.inject.Named;
 import org.zanata.async.Async;
+import org.zanata.async.AsyncTaskClass;
 import org.zanata.async.AsyncTaskResult;
 import org.zanata.async.handle.MergeTranslationsTaskHandle;
 import org.zanata.common.ContentState;
+import org.zanata.common.LocaleId;
+import org.zanata.dao.LocaleDAO;
+import org.zanata.dao.MergeTranslationsDAO;
+import org.zanata.dao.MergeTranslationsDAO.MergeCandidate;
 import org.zanata.dao.ProjectIterationDAO;
-import org.zanata.dao.TextFlowDAO;
 import org.zanata.events.DocStatsEvent;
 import org.zanata.events.DocumentLocaleKey;
 import org.zanata.events.TextFlowTargetStateEvent;
@@ -62,7 +68,9 @@ import org.zanata.util.TranslationUtil;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 import static org.zanata.events.TextFlowTargetStateEvent.TextFlowTargetStateChange;
 import static org.zanata.transaction.TransactionUtil.runInTransaction;
@@ -84,7 +92,10 @@ public class MergeTranslationsServiceImpl implements MergeTranslationsService {
     private ProjectIterationDAO projectIterationDAO;
 
     @Inject
-    private TextFlowDAO textFlowDAO;
+    private MergeTranslationsDAO mergeTranslationsDAO;
+
+    @Inject
+    private LocaleDAO localeDAO;
 
     @Inject
     private ZanataIdentity identity;
@@ -108,17 +119,17 @@ public class MergeTranslationsServiceImpl implements MergeTranslationsService {
     private HAccount authenticatedAccount;
 
     /**
-     * Batch size for find matching HTextFlow to process merging of translations.
-     * Each TextFlow may lead to changes in multiple TextFlowTargets (up to one per locale)
+     * Number of source translations (matched text flow and locale pairs)
+     * merged in each transaction.
      *
-     * This will determine how many DocStatsEvent will be trigger as part of webhook event.
-     * The larger the number, the less DocStatsEvent will be triggered as it aggregates
-     * related translated states.
+     * This will also determine how many DocStatsEvent will be trigger as part
+     * of webhook event. The larger the number, the less DocStatsEvent will be
+     * triggered as it aggregates related translated states.
      */
-    private final static int TEXTFLOWS_PER_BATCH = 20;
+    private final static int TRANSLATIONS_PER_BATCH = 500;
 
     @Override
-    @Async
+    @Async(AsyncTaskClass.BULK)
     public Future<Void> startMergeTranslations(String sourceProjectSlug,
             String sourceVersionSlug, String targetProjectSlug,
             String targetVersionSlug, boolean useNewerTranslation,
@@ -148,7 +159,9 @@ public class MergeTranslationsServiceImpl implements MergeTranslationsService {
             return AsyncTaskResult.taskResult();
         }
 
-        if (getSupportedLocales(targetProjectSlug, targetVersionSlug).isEmpty()) {
+        List<HLocale> supportedLocales =
+                getSupportedLocales(targetProjectSlug, targetVersionSlug);
+        if (supportedLocales.isEmpty()) {
             log.error("No locales enabled in target version of {} [{}]",
                     targetProjectSlug, targetVersionSlug);
             return AsyncTaskResult.taskResult();
@@ -159,7 +172,7 @@ public class MergeTranslationsServiceImpl implements MergeTranslationsService {
 
         if (taskHandleOpt.isPresent()) {
             prepareMergeTranslationsHandle(sourceVersion, targetVersion,
-                    taskHandleOpt.get());
+                    useNewerTranslation, taskHandleOpt.get());
         }
 
         Stopwatch overallStopwatch = Stopwatch.createStarted();
@@ -167,62 +180,144 @@ public class MergeTranslationsServiceImpl implements MergeTranslationsService {
                 + ":" + sourceVersionSlug, targetProjectSlug + ":"
                 + targetVersionSlug);
 
-        int startCount = 0;
-        int totalCount = getTotalMatchCount(sourceVersion.getId(),
-                targetVersion.getId());
-
-        List<HLocale> supportedLocales = getSupportedLocales(targetVersion
-                .getProject().getSlug(), targetVersion.getSlug());
+        Long sourceVersionId = sourceVersion.getId();
+        Long targetVersionId = targetVersion.getId();
+        Map<Long, LocaleId> localeIds = Maps.newHashMap();
+        for (HLocale locale : supportedLocales) {
+            localeIds.put(locale.getId(), locale.getLocaleId());
+        }
 
-        while (startCount < totalCount) {
-            int processedCount =
-                    mergeTranslationBatch(sourceVersion, targetVersion,
-                            supportedLocales, useNewerTranslation, startCount,
-                            TEXTFLOWS_PER_BATCH);
+        long afterSourceId = 0;
+        int candidateCount = 0;
+        int mergedCount = 0;
+        while (true) {
+            if (taskHandleOpt.isPresent()
+                    && taskHandleOpt.get().isCancelled()) {
+                log.info("merge translations cancelled");
+                break;
+            }
+            List<MergeCandidate> candidates = findMergeCandidates(
+                    sourceVersionId, targetVersionId, localeIds.keySet(),
+                    useNewerTranslation, afterSourceId);
+            if (candidates.isEmpty()) {
+                break;
+            }
+            afterSourceId =
+                    candidates.get(candidates.size() - 1).getSourceId();
+            mergedCount += mergeTranslationBatch(targetVersionId, candidates,
+                    localeIds, useNewerTranslation);
+            candidateCount += candidates.size();
             if (taskHandleOpt.isPresent()) {
-                taskHandleOpt.get().increaseProgress(processedCount);
+                taskHandleOpt.get().increaseProgress(candidates.size());
             }
-
-            startCount += TEXTFLOWS_PER_BATCH;
-            textFlowDAO.clear();
+            mergeTranslationsDAO.clear();
+            log.info("merge translations: {} merged of {} checked, {}/s",
+                    mergedCount, candidateCount,
+                    rowsPerSecond(candidateCount, overallStopwatch));
         }
-        versionStateCacheImpl.clearVersionStatsCache(targetVersion.getId());
-        log.info("merge translation end: from {} to {}, {}", sourceProjectSlug
-                + ":" + sourceVersionSlug, targetProjectSlug + ":"
-                + targetVersionSlug, overallStopwatch);
+        versionStateCacheImpl.clearVersionStatsCache(targetVersionId);
+        log.info(
+                "merge translation end: from {} to {}, {} of {} translations merged in {} ({}/s)",
+                sourceProjectSlug + ":" + sourceVersionSlug,
+                targetProjectSlug + ":" + targetVersionSlug, mergedCount,
+                candidateCount, overallStopwatch,
+                rowsPerSecond(candidateCount, overallStopwatch));
 
         return AsyncTaskResult.taskResult();
     }
 
-    protected int mergeTranslationBatch(HProjectIteration sourceVersion,
-            HProjectIteration targetVersion, List<HLocale> supportedLocales,
-            boolean useNewerTranslation, int offset, int batchSize) {
+    private List<MergeCandidate> findMergeCandidates(Long sourceVersionId,
+            Long targetVersionId, Collection<Long> localeIds,
+            boolean useNewerTranslation, long afterSourceId) {
+        try {
+            return runInTransaction(() -> mergeTranslationsDAO
+                    .findMergeCandidates(sourceVersionId, targetVersionId,
+                            localeIds, useNewerTranslation, afterSourceId,
+                            TRANSLATIONS_PER_BATCH));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    protected int mergeTranslationBatch(Long targetVersionId,
+            List<MergeCandidate> candidates, Map<Long, LocaleId> localeIds,
+            boolean useNewerTranslation) {
         try {
             return runInTransaction(
-                    () -> this.mergeTranslations(sourceVersion.getId(),
-                            targetVersion.getId(), offset, batchSize,
-                            useNewerTranslation, supportedLocales));
+                    () -> this.mergeTranslations(targetVersionId, candidates,
+                            localeIds, useNewerTranslation));
         } catch (Exception e) {
-            log.warn("exception during copy text flow target", e);
+            log.warn("exception during merge text flow target", e);
             return 0;
         }
     }
 
     private Integer mergeTranslations(
-            final Long sourceVersionId,
             final Long targetVersionId,
-            final int batchStart,
-            final int batchLength,
-            final boolean useNewerTranslation,
-            final List<HLocale> supportedLocales) throws Exception {
-
-        final Stopwatch stopwatch = Stopwatch.createUnstarted();
-        stopwatch.start();
-
-        List<HTextFlow[]> matches =
-                textFlowDAO.getSourceByMatchedContext(
-                        sourceVersionId, targetVersionId, batchStart,
-                        batchLength);
+            final List<MergeCandidate> candidates,
+            final Map<Long, LocaleId> localeIds,
+            final boolean useNewerTranslation) throws Exception {
+
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+
+        List<Long> sourceIds = Lists.newArrayList();
+        List<Long> targetIds = Lists.newArrayList();
+        List<Long> untranslatedTextFlowIds = Lists.newArrayList();
+        for (MergeCandidate candidate : candidates) {
+            sourceIds.add(candidate.getSourceId());
+            if (candidate.getTargetId() == null) {
+                untranslatedTextFlowIds.add(candidate.getTextFlowId());
+            } else {
+                targetIds.add(candidate.getTargetId());
+            }
+        }
+        Map<Long, HTextFlowTarget> sourceTargets =
+                mergeTranslationsDAO.getTargetsWithContext(sourceIds);
+        Map<Long, HTextFlowTarget> existingTargets =
+                mergeTranslationsDAO.getTargetsWithContext(targetIds);
+        Map<Long, HTextFlow> untranslatedTextFlows =
+                mergeTranslationsDAO.getTextFlows(untranslatedTextFlowIds);
+
+        Map<MergeCandidate, HTextFlowTarget> mergedTargets =
+                Maps.newLinkedHashMap();
+        Map<Long, HLocale> locales = Maps.newHashMap();
+        for (MergeCandidate candidate : candidates) {
+            HTextFlowTarget sourceTft =
+                    sourceTargets.get(candidate.getSourceId());
+            HTextFlowTarget targetTft;
+            if (candidate.getTargetId() == null) {
+                HTextFlow targetTf = untranslatedTextFlows
+                        .get(candidate.getTextFlowId());
+                if (sourceTft == null || targetTf == null) {
+                    // deleted since the candidates were found
+                    continue;
+                }
+                HLocale locale = locales.computeIfAbsent(
+                        candidate.getLocaleId(), localeDAO::findById);
+                // HTextFlow.targets is the inverse side, so persisting the
+                // new target is enough; adding it to the map would load
+                // every target of the text flow
+                targetTft = new HTextFlowTarget(targetTf, locale);
+                targetTft.setVersionNum(0);
+            } else {
+                targetTft = existingTargets.get(candidate.getTargetId());
+                if (sourceTft == null || targetTft == null) {
+                    // deleted since the candidates were found
+                    continue;
+                }
+            }
+            // the query has already applied the rest of these rules
+            if (MergeTranslationsServiceImpl.shouldMerge(sourceTft,
+                    targetTft, useNewerTranslation)) {
+                mergeTextFlowTarget(sourceTft, targetTft);
+                if (targetTft.getId() == null) {
+                    mergeTranslationsDAO.makePersistent(targetTft);
+                }
+                mergedTargets.put(candidate, targetTft);
+            }
+        }
+        // updates are sent in JDBC batches (hibernate.jdbc.batch_size)
+        mergeTranslationsDAO.flush();
 
         Multimap<DocumentLocaleKey, TextFlowTargetStateChange> eventMap =
             HashMultimap.create();
@@ -231,71 +326,38 @@ public class MergeTranslationsServiceImpl implements MergeTranslationsService {
             Maps.newHashMap();
 
         Map<DocumentLocaleKey, Long> lastUpdatedTargetId =
-            Maps.newHashMap();;
-
-        for (HTextFlow[] results : matches) {
-            HTextFlow sourceTf = results[0];
-            HTextFlow targetTf = results[1];
-            boolean foundChange = false;
-            Map<Long, ContentState> localeContentStateMap = Maps.newHashMap();
-
-            for (HLocale hLocale : supportedLocales) {
-                HTextFlowTarget sourceTft =
-                        sourceTf.getTargets().get(hLocale.getId());
-                // only process translated state
-                if (sourceTft == null || !sourceTft.getState().isTranslated()) {
-                    continue;
-                }
-
-                HTextFlowTarget targetTft =
-                        targetTf.getTargets().get(hLocale.getId());
-                if (targetTft == null) {
-                    targetTft = new HTextFlowTarget(targetTf, hLocale);
-                    targetTft.setVersionNum(0);
-                    targetTf.getTargets().put(hLocale.getId(), targetTft);
-                }
-
-                if (MergeTranslationsServiceImpl.shouldMerge(sourceTft,
-                        targetTft, useNewerTranslation)) {
-                    foundChange = true;
+            Maps.newHashMap();
 
-                    ContentState oldState = targetTft.getState();
-                    localeContentStateMap.put(hLocale.getId(), oldState);
-                    mergeTextFlowTarget(sourceTft, targetTft);
-                }
-            }
-            if (foundChange) {
-                translationStateCacheImpl.clearDocumentStatistics(targetTf
-                        .getDocument().getId());
-                textFlowDAO.makePersistent(targetTf);
-                textFlowDAO.flush();
+        Set<Long> documentIds = Sets.newHashSet();
 
-                for (Map.Entry<Long, ContentState> entry : localeContentStateMap
-                        .entrySet()) {
-                    HTextFlowTarget updatedTarget =
-                            targetTf.getTargets().get(entry.getKey());
+        for (Map.Entry<MergeCandidate, HTextFlowTarget> entry : mergedTargets
+                .entrySet()) {
+            MergeCandidate candidate = entry.getKey();
+            HTextFlowTarget updatedTarget = entry.getValue();
+            documentIds.add(candidate.getDocumentId());
 
-                    DocumentLocaleKey key = new DocumentLocaleKey(
-                            targetTf.getDocument().getId(),
-                            updatedTarget.getLocale().getLocaleId());
+            DocumentLocaleKey key = new DocumentLocaleKey(
+                    candidate.getDocumentId(),
+                    localeIds.get(candidate.getLocaleId()));
 
-                    eventMap.put(key, new TextFlowTargetStateEvent.TextFlowTargetStateChange(targetTf.getId(),
-                            updatedTarget.getId(), updatedTarget.getState(),
-                            entry.getValue()));
+            eventMap.put(key, new TextFlowTargetStateChange(
+                    candidate.getTextFlowId(), updatedTarget.getId(),
+                    updatedTarget.getState(), candidate.getTargetState()));
 
-                    lastUpdatedTargetId.put(key, updatedTarget.getId());
+            lastUpdatedTargetId.put(key, updatedTarget.getId());
 
-                    Map<ContentState, Long> contentStateDeltas =
-                            docStatsMap.get(key) == null ? Maps.newHashMap()
-                                    : docStatsMap.get(key);
+            Map<ContentState, Long> contentStateDeltas =
+                    docStatsMap.get(key) == null ? Maps.newHashMap()
+                            : docStatsMap.get(key);
 
-                    DocStatsEvent.updateContentStateDeltas(contentStateDeltas,
-                            updatedTarget.getState(), entry.getValue(),
-                            targetTf.getWordCount());
+            DocStatsEvent.updateContentStateDeltas(contentStateDeltas,
+                    updatedTarget.getState(), candidate.getTargetState(),
+                    candidate.getWordCount());
 
-                    docStatsMap.put(key, contentStateDeltas);
-                }
-            }
+            docStatsMap.put(key, contentStateDeltas);
+        }
+        for (Long documentId : documentIds) {
+            translationStateCacheImpl.clearDocumentStatistics(documentId);
         }
         Long actorId = authenticatedAccount.getPerson().getId();
         for (Map.Entry<DocumentLocaleKey, Collection<TextFlowTargetStateChange>> entry : eventMap
@@ -314,9 +376,14 @@ public class MergeTranslationsServiceImpl implements MergeTranslationsService {
             docStatsEvent.fire(docEvent);
         }
         stopwatch.stop();
-        log.info("Complete merge translations of {} in {}", matches.size()
-                * supportedLocales.size(), stopwatch);
-        return matches.size() * supportedLocales.size();
+        log.debug("Complete merge translations of {} (of {} candidates) in {}",
+                mergedTargets.size(), candidates.size(), stopwatch);
+        return mergedTargets.size();
+    }
+
+    private static long rowsPerSecond(int rows, Stopwatch stopwatch) {
+        long elapsedMillis = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+        return elapsedMillis <= 0 ? 0 : rows * 1000L / elapsedMillis;
     }
 
     private void mergeTextFlowTarget(HTextFlowTarget sourceTft,
@@ -367,30 +434,32 @@ public class MergeTranslationsServiceImpl implements MergeTranslationsService {
     private void prepareMergeTranslationsHandle(
             @Nonnull HProjectIteration sourceVersion,
             @Nonnull HProjectIteration targetVersion,
+            boolean useNewerTranslation,
             @Nonnull MergeTranslationsTaskHandle handle) {
         handle.setTriggeredBy(identity.getAccountUsername());
 
-        int total = getTotalProgressCount(sourceVersion, targetVersion);
+        int total = getTotalProgressCount(sourceVersion, targetVersion,
+                useNewerTranslation);
         handle.setMaxProgress(total);
         handle.setTotalTranslations(total);
     }
 
     @Override
     public int getTotalProgressCount(HProjectIteration sourceVersion,
-            HProjectIteration targetVersion) {
-        int matchCount = getTotalMatchCount(sourceVersion.getId(),
-            targetVersion.getId());
-
+            HProjectIteration targetVersion, boolean useNewerTranslation) {
         List<HLocale> locales =
                 getSupportedLocales(targetVersion.getProject().getSlug(),
                         targetVersion.getSlug());
-
-        return matchCount * locales.size();
-    }
-
-    private int getTotalMatchCount(Long sourceVersionId, Long targetVersionId) {
-        return textFlowDAO.getSourceByMatchedContextCount(
-            sourceVersionId, targetVersionId);
+        if (locales.isEmpty()) {
+            return 0;
+        }
+        List<Long> localeIds = Lists.newArrayList();
+        for (HLocale locale : locales) {
+            localeIds.add(locale.getId());
+        }
+        return mergeTranslationsDAO.countMergeCandidates(
+                sourceVersion.getId(), targetVersion.getId(), localeIds,
+                useNewerTranslation);
     }
 
     public List<HLocale> getSupportedLocales(String projectSlug,
@@ -418,7 +487,7 @@ public class MergeTranslationsServiceImpl implements MergeTranslationsService {
      *
      * @param sourceTft - matched documentId, source text,
      *                    translated/approved HTextFlowTarget.
-     *     @see org.zanata.dao.TextFlowDAO#getSourceByMatchedContext
+     *     @see org.zanata.dao.MergeTranslationsDAO#findMergeCandidates
      * @param targetTft - HTextFlowTarget from target version
      */
     // @formatter:on
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.service.impl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.inject.Named;
+
+import org.zanata.common.LocaleId;
+import org.zanata.events.TextFlowTargetStateEvent;
+import org.zanata.rest.dto.DTOUtil;
+import org.zanata.util.Introspectable;
+import org.zanata.util.SysProperties;
+import org.zanata.webtrans.shared.model.TransMemoryQuery;
+import org.zanata.webtrans.shared.model.TransMemoryResultItem;
+import org.zanata.webtrans.shared.rpc.HasSearchType.SearchType;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Caches the results of TM searches, keyed by the contents of the
+ * TransMemoryQuery, the locale pair and the minimum similarity.
+ *
+ * Instead of searching for the keys to remove, every key includes a
+ * generation number for its target locale, and a global generation number.
+ * A translation change in a locale moves that locale to a new generation,
+ * and TM imports and deletes move everything to a new generation, so that
+ * old entries are never found again (and are soon evicted, since nothing
+ * reads them). This also means that a search which was already running when
+ * the generation changed can only cache its (possibly stale) result under
+ * the old generation.
+ *
+ * Bulk operations which don't fire TextFlowTargetStateEvent (CopyTrans, copy
+ * version, TMX import) call {@link #invalidateLocale(LocaleId)} or
+ * {@link #invalidateAll()} themselves. Anything else which changes the
+ * indexed translations (eg an index rebuild) is only picked up when entries
+ * expire (see {@link SysProperties#TM_CACHE_TTL_SECONDS}).
+ *
+ * The cache is bounded by the approximate number of characters in the
+ * cached results (see {@link SysProperties#TM_CACHE_MAX_CHARS}).
+ */
+@Named("transMemoryResultCache")
+@javax.enterprise.context.ApplicationScoped
+@Slf4j
+public class TransMemoryResultCache implements Introspectable {
+
+    private static final int DEFAULT_MAX_CHARS = 10_000_000;
+
+    private static final long DEFAULT_TTL_SECONDS = 600;
+
+    // rough allowance for the fields of each item other than its contents
+    private static final int ITEM_OVERHEAD_CHARS = 64;
+
+    private final Cache<Key, ImmutableList<TransMemoryResultItem>> cache;
+
+    private final ConcurrentMap<LocaleId, AtomicLong> localeGenerations =
+            Maps.newConcurrentMap();
+
+    private final AtomicLong globalGeneration = new AtomicLong();
+
+    public TransMemoryResultCache() {
+        this(SysProperties.getInt(SysProperties.TM_CACHE_MAX_CHARS,
+                DEFAULT_MAX_CHARS),
+                SysProperties.getLong(SysProperties.TM_CACHE_TTL_SECONDS,
+                        DEFAULT_TTL_SECONDS),
+                Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    TransMemoryResultCache(long maxChars, long ttlSeconds, Ticker ticker) {
+        cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxChars)
+                .weigher(TransMemoryResultCache::weigh)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns copies of the cached results for the query, running the search
+     * and caching its results if there are none. Callers may modify the
+     * returned items without affecting the cache.
+     *
+     * @param search
+     *            performs the actual TM search
+     */
+    public List<TransMemoryResultItem> getResults(LocaleId targetLocaleId,
+            LocaleId sourceLocaleId, TransMemoryQuery query,
+            double minSimilarityPercent,
+            Callable<List<TransMemoryResultItem>> search) {
+        Key key = new Key(query, sourceLocaleId, targetLocaleId,
+                minSimilarityPercent, globalGeneration.get(),
+                generationOf(targetLocaleId).get());
+        try {
+            return Lists.newArrayList(
+                    copyOf(cache.get(key, () -> copyOf(search.call()))));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Discards the cached results for a target locale after its translations
+     * have changed.
+     */
+    public void textFlowStateUpdated(
+            @Observes(during = TransactionPhase.AFTER_SUCCESS)
+            TextFlowTargetStateEvent event) {
+        invalidateLocale(event.getKey().getLocaleId());
+    }
+
+    /**
+     * Discards the cached results for a target locale, eg after CopyTrans has
+     * copied translations into it.
+     */
+    public void invalidateLocale(LocaleId localeId) {
+        generationOf(localeId).incrementAndGet();
+    }
+
+    /**
+     * Discards all cached results, eg after a TMX import, a version copy or a
+     * translation memory is deleted.
+     */
+    public void invalidateAll() {
+        globalGeneration.incrementAndGet();
+        cache.invalidateAll();
+        log.debug("TM search cache cleared");
+    }
+
+    @VisibleForTesting
+    CacheStats getStats() {
+        return cache.stats();
+    }
+
+    private AtomicLong generationOf(LocaleId localeId) {
+        return localeGenerations.computeIfAbsent(localeId,
+                id -> new AtomicLong());
+    }
+
+    private static ImmutableList<TransMemoryResultItem> copyOf(
+            List<TransMemoryResultItem> items) {
+        ImmutableList.Builder<TransMemoryResultItem> copies =
+                ImmutableList.builder();
+        for (TransMemoryResultItem item : items) {
+            copies.add(new TransMemoryResultItem(item));
+        }
+        return copies.build();
+    }
+
+    private static int weigh(Key key,
+            ImmutableList<TransMemoryResultItem> items) {
+        long weight = ITEM_OVERHEAD_CHARS;
+        for (String query : key.queries) {
+            weight += query.length();
+        }
+        for (TransMemoryResultItem item : items) {
+            weight += ITEM_OVERHEAD_CHARS;
+            for (String content : item.getSourceContents()) {
+                weight += content.length();
+            }
+            for (String content : item.getTargetContents()) {
+                weight += content.length();
+            }
+        }
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+
+    // below are all monitoring stuff
+    @Override
+    public String getIntrospectableId() {
+        return getClass().getCanonicalName();
+    }
+
+    @Override
+    public String getFieldValuesAsJSON() {
+        CacheStats stats = cache.stats();
+        Map<String, String> values = ImmutableMap.<String, String> builder()
+                .put("size", String.valueOf(cache.size()))
+                .put("hitCount", String.valueOf(stats.hitCount()))
+                .put("missCount", String.valueOf(stats.missCount()))
+                .put("hitRate", String.valueOf(stats.hitRate()))
+                .put("evictionCount", String.valueOf(stats.evictionCount()))
+                .put("averageSearchMillis", String.valueOf(
+                        stats.averageLoadPenalty() / 1_000_000))
+                .build();
+        return DTOUtil.toJSON(values);
+    }
+
+    /**
+     * Query fingerprint. TransMemoryQuery is mutable and its equals() ignores
+     * includeOwnTranslation, so the relevant fields are copied here.
+     */
+    @EqualsAndHashCode
+    private static final class Key {
+        private final SearchType searchType;
+        private final ImmutableList<String> queries;
+        private final TransMemoryQuery.Condition project;
+        private final TransMemoryQuery.Condition document;
+        private final TransMemoryQuery.Condition res;
+        private final TransMemoryQuery.Condition includeOwnTranslation;
+        private final LocaleId sourceLocaleId;
+        private final LocaleId targetLocaleId;
+        private final double minSimilarityPercent;
+        private final long globalGeneration;
+        private final long localeGeneration;
+
+        private Key(TransMemoryQuery query, LocaleId sourceLocaleId,
+                LocaleId targetLocaleId, double minSimilarityPercent,
+                long globalGeneration, long localeGeneration) {
+            this.searchType = query.getSearchType();
+            this.queries = ImmutableList.copyOf(query.getQueries());
+            this.project = query.getProject();
+            this.document = query.getDocument();
+            this.res = query.getRes();
+            this.includeOwnTranslation = query.getIncludeOwnTranslation();
+            this.sourceLocaleId = sourceLocaleId;
+            this.targetLocaleId = targetLocaleId;
+            this.minSimilarityPercent = minSimilarityPercent;
+            this.globalGeneration = globalGeneration;
+            this.localeGeneration = localeGeneration;
+        }
+    }
+}
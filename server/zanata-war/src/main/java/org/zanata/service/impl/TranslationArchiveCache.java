@@ -0,0 +1,145 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.service.impl;
+
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Named;
+
+import org.zanata.common.LocaleId;
+import org.zanata.rest.dto.DTOUtil;
+import org.zanata.util.Introspectable;
+import org.zanata.util.SysProperties;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableMap;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * Caches the translation files (eg PO) generated for "download all"
+ * archives, so that repeated downloads of a version only regenerate the
+ * documents which have changed.
+ *
+ * Entries are keyed by the document revision and a summary of the state of
+ * the document's translations in the locale (see
+ * {@link org.zanata.dao.TextFlowTargetDAO#getTranslationStateByDocument}),
+ * so a changed document or translation simply misses the cache, and the
+ * stale entry is evicted once nothing reads it.
+ *
+ * The cache is bounded by the total size of the cached files (see
+ * {@link SysProperties#ARCHIVE_CACHE_MAX_BYTES}).
+ */
+@Named("translationArchiveCache")
+@ApplicationScoped
+public class TranslationArchiveCache implements Introspectable {
+
+    private static final int DEFAULT_MAX_BYTES = 64 * 1024 * 1024;
+
+    private final Cache<Key, byte[]> cache;
+
+    public TranslationArchiveCache() {
+        this(SysProperties.getInt(SysProperties.ARCHIVE_CACHE_MAX_BYTES,
+                DEFAULT_MAX_BYTES));
+    }
+
+    @VisibleForTesting
+    TranslationArchiveCache(long maxBytes) {
+        cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Key key, byte[] file) -> file.length)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the cached file for the document, if it is still current.
+     */
+    @Nullable
+    public byte[] getIfPresent(Key key) {
+        return cache.getIfPresent(key);
+    }
+
+    public void put(Key key, byte[] file) {
+        cache.put(key, file);
+    }
+
+    @VisibleForTesting
+    CacheStats getStats() {
+        return cache.stats();
+    }
+
+    // below are all monitoring stuff
+    @Override
+    public String getIntrospectableId() {
+        return getClass().getCanonicalName();
+    }
+
+    @Override
+    public String getFieldValuesAsJSON() {
+        CacheStats stats = cache.stats();
+        Map<String, String> values = ImmutableMap.<String, String> builder()
+                .put("size", String.valueOf(cache.size()))
+                .put("hitCount", String.valueOf(stats.hitCount()))
+                .put("missCount", String.valueOf(stats.missCount()))
+                .put("hitRate", String.valueOf(stats.hitRate()))
+                .put("evictionCount", String.valueOf(stats.evictionCount()))
+                .build();
+        return DTOUtil.toJSON(values);
+    }
+
+    /**
+     * Identifies one version of a generated translation file.
+     */
+    @EqualsAndHashCode
+    public static final class Key {
+        @Getter
+        private final Long documentId;
+        private final Integer revision;
+        @Getter
+        private final LocaleId localeId;
+        private final @Nullable String translationState;
+        // options which change the generated file
+        private final String format;
+
+        /**
+         * @param translationState
+         *            summary of the document's translations in the locale,
+         *            or null if it has none
+         * @param format
+         *            file type and any options which affect its contents
+         */
+        public Key(Long documentId, Integer revision, LocaleId localeId,
+                @Nullable String translationState, String format) {
+            this.documentId = documentId;
+            this.revision = revision;
+            this.localeId = localeId;
+            this.translationState = translationState;
+            this.format = format;
+        }
+    }
+}
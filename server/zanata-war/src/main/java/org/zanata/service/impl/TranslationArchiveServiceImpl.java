@@ -21,6 +21,10 @@
 package org.zanata.service.impl;
 
 import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.enterprise.context.RequestScoped;
@@ -30,7 +34,9 @@ import javax.inject.Named;
 import org.apache.deltaspike.jpa.api.transaction.Transactional;
 import org.zanata.adapter.po.PoWriter2;
 import org.zanata.async.Async;
+import org.zanata.async.AsyncTaskClass;
 import org.zanata.async.AsyncTaskHandle;
+import org.zanata.async.AsyncTaskManager;
 import org.zanata.async.AsyncTaskResult;
 import org.zanata.common.LocaleId;
 import org.zanata.common.ProjectType;
@@ -48,12 +54,18 @@ import org.zanata.rest.service.ResourceUtils;
 import org.zanata.service.ConfigurationService;
 import org.zanata.service.FileSystemService;
 import org.zanata.service.TranslationArchiveService;
+import org.zanata.util.ServiceLocator;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
-import java.util.HashSet;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -61,6 +73,15 @@ import java.util.zip.ZipOutputStream;
 import static org.zanata.common.ProjectType.*;
 
 /**
+ * Builds a zip of the translation files of a project version for one
+ * locale.
+ * <p>
+ * The PO file for each document is generated on the async worker pool (see
+ * {@link AsyncTaskManager#startSubtask}), with a few documents in progress
+ * at a time, and the files are added to the zip in document order. Files
+ * are cached in {@link TranslationArchiveCache}, so only documents which
+ * changed since the last download are generated again.
+ *
  * @author Carlos Munoz <a
  *         href="mailto:camunoz@redhat.com">camunoz@redhat.com</a>
  */
@@ -71,6 +92,9 @@ import static org.zanata.common.ProjectType.*;
 public class TranslationArchiveServiceImpl implements
         TranslationArchiveService {
 
+    private static final Set<String> EXTENSIONS =
+            ImmutableSet.of("gettext", "comment");
+
     @Inject
     private DocumentDAO documentDAO;
 
@@ -92,6 +116,12 @@ public class TranslationArchiveServiceImpl implements
     @Inject
     private ConfigurationService configurationServiceImpl;
 
+    @Inject
+    private AsyncTaskManager asyncTaskManager;
+
+    @Inject
+    private TranslationArchiveCache translationArchiveCache;
+
     @Override
     public String buildTranslationFileArchive(String projectSlug,
             String iterationSlug, String localeId, String userName,
@@ -104,7 +134,9 @@ public class TranslationArchiveServiceImpl implements
         if (handleOpt.isPresent()) {
             prepareHandle(handleOpt.get(), projectSlug, iterationSlug);
         }
-        boolean isPoProject = isPoProject(projectSlug, iterationSlug);
+        HProjectIteration projectIteration =
+                projectIterationDAO.getBySlug(projectSlug, iterationSlug);
+        boolean isPoProject = isPoProject(projectIteration);
         final String projectDirectory = projectSlug + "-" + iterationSlug + "/";
         final HLocale hLocale =
                 localeDAO.findByLocaleId(new LocaleId(localeId));
@@ -116,11 +148,6 @@ public class TranslationArchiveServiceImpl implements
         final FileOutputStream output = new FileOutputStream(downloadFile);
         final ZipOutputStream zipOutput = new ZipOutputStream(output);
         zipOutput.setMethod(ZipOutputStream.DEFLATED);
-        final PoWriter2 poWriter = new PoWriter2(false, !isPoProject);
-        final Set<String> extensions = new HashSet<String>();
-
-        extensions.add("gettext");
-        extensions.add("comment");
 
         // Generate the download descriptor file
         String downloadId =
@@ -128,56 +155,130 @@ public class TranslationArchiveServiceImpl implements
                         projectSlug + "_" + iterationSlug + "_" + localeId
                                 + ".zip", userName);
 
-        // Add the config file at the root of the project directory
-        String configFilename =
-                projectDirectory
-                        + configurationServiceImpl.getConfigurationFileName();
-        zipOutput.putNextEntry(new ZipEntry(configFilename));
-        zipOutput.write(configurationServiceImpl.getConfigForOfflineTranslation(
-                projectSlug, iterationSlug, hLocale).getBytes());
-        zipOutput.closeEntry();
-        handle.increaseProgress(1);
+        try {
+            // Add the config file at the root of the project directory
+            String configFilename =
+                    projectDirectory
+                            + configurationServiceImpl
+                                    .getConfigurationFileName();
+            zipOutput.putNextEntry(new ZipEntry(configFilename));
+            zipOutput.write(configurationServiceImpl
+                    .getConfigForOfflineTranslation(projectSlug,
+                            iterationSlug, hLocale).getBytes());
+            zipOutput.closeEntry();
+            if (handleOpt.isPresent()) {
+                handleOpt.get().increaseProgress(1);
+            }
 
-        final List<HDocument> allIterationDocs =
-                documentDAO
-                        .getAllByProjectIteration(projectSlug, iterationSlug);
-        for (HDocument document : allIterationDocs) {
-            // Stop the process if signaled to do so
-            if (handleOpt.isPresent() && handleOpt.get().isCancelled()) {
-                zipOutput.close();
-                downloadFile.delete();
-                fileSystemServiceImpl.deleteDownloadDescriptorFile(downloadId);
-                return null;
+            final List<HDocument> allIterationDocs =
+                    documentDAO.getAllByProjectIteration(projectSlug,
+                            iterationSlug);
+            Map<Long, String> translationStateByDoc = textFlowTargetDAO
+                    .getTranslationStateByDocument(projectIteration, hLocale);
+            // the files being generated, in document order
+            Deque<PendingFile> pendingFiles = new ArrayDeque<>();
+            for (HDocument document : allIterationDocs) {
+                // Stop the process if signaled to do so
+                if (handleOpt.isPresent() && handleOpt.get().isCancelled()) {
+                    zipOutput.close();
+                    downloadFile.delete();
+                    fileSystemServiceImpl
+                            .deleteDownloadDescriptorFile(downloadId);
+                    return null;
+                }
+
+                TranslationArchiveCache.Key key =
+                        new TranslationArchiveCache.Key(document.getId(),
+                                document.getRevision(), hLocale.getLocaleId(),
+                                translationStateByDoc.get(document.getId()),
+                                isPoProject ? "po" : "po-from-pot");
+                String filename =
+                        localeDirectory + document.getDocId() + ".po";
+                pendingFiles.add(new PendingFile(filename,
+                        getPoFile(key, isPoProject)));
+
+                if (pendingFiles.size() > asyncTaskManager
+                        .getWorkerThreads()) {
+                    writeEntry(zipOutput, pendingFiles.remove(), handleOpt);
+                }
             }
+            while (!pendingFiles.isEmpty()) {
+                writeEntry(zipOutput, pendingFiles.remove(), handleOpt);
+            }
+            zipOutput.flush();
+        } finally {
+            zipOutput.close();
+        }
 
-            TranslationsResource translationResource =
-                    new TranslationsResource();
-            List<HTextFlowTarget> hTargets =
-                    textFlowTargetDAO.findTranslations(document, hLocale);
-            resourceUtils.transferToTranslationsResource(translationResource,
-                    document, hLocale, extensions, hTargets,
-                    Optional.<String> absent());
+        return downloadId;
+    }
 
-            Resource res = resourceUtils.buildResource(document);
+    /**
+     * Returns the cached PO file for a document, or starts generating it.
+     */
+    private ListenableFuture<byte[]> getPoFile(TranslationArchiveCache.Key key,
+            boolean isPoProject) {
+        byte[] cached = translationArchiveCache.getIfPresent(key);
+        if (cached != null) {
+            return Futures.immediateFuture(cached);
+        }
+        TranslationArchiveCache cache = translationArchiveCache;
+        return asyncTaskManager.startSubtask(() -> {
+            byte[] poFile = ServiceLocator.instance()
+                    .getInstance(TranslationArchiveServiceImpl.class)
+                    .generatePoFile(key.getDocumentId(), key.getLocaleId(),
+                            isPoProject);
+            cache.put(key, poFile);
+            return poFile;
+        });
+    }
 
-            String filename = localeDirectory + document.getDocId() + ".po";
-            zipOutput.putNextEntry(new ZipEntry(filename));
-            poWriter.writePo(zipOutput, "UTF-8", res, translationResource);
-            zipOutput.closeEntry();
+    private static void writeEntry(ZipOutputStream zipOutput,
+            PendingFile file, Optional<AsyncTaskHandle<String>> handleOpt)
+            throws Exception {
+        byte[] contents;
+        try {
+            contents = file.contents.get();
+        } catch (ExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause(), Exception.class);
+            throw e;
+        }
+        zipOutput.putNextEntry(new ZipEntry(file.filename));
+        zipOutput.write(contents);
+        zipOutput.closeEntry();
 
-            if (handleOpt.isPresent()) {
-                handleOpt.get().increaseProgress(1);
-            }
+        if (handleOpt.isPresent()) {
+            handleOpt.get().increaseProgress(1);
         }
+    }
 
-        zipOutput.flush();
-        zipOutput.close();
+    /**
+     * Generates the PO file for a document in a locale. This is usually
+     * called on a worker thread, through a separate instance of this bean
+     * which reads with the worker's own persistence context (see
+     * {@link AsyncTaskManager#startSubtask}).
+     */
+    public byte[] generatePoFile(Long documentId, LocaleId localeId,
+            boolean isPoProject) throws IOException {
+        HDocument document = documentDAO.findById(documentId);
+        HLocale hLocale = localeDAO.findByLocaleId(localeId);
+        TranslationsResource translationResource = new TranslationsResource();
+        List<HTextFlowTarget> hTargets =
+                textFlowTargetDAO.findTranslations(document, hLocale);
+        resourceUtils.transferToTranslationsResource(translationResource,
+                document, hLocale, EXTENSIONS, hTargets,
+                Optional.<String> absent());
 
-        return downloadId;
+        Resource res = resourceUtils.buildResource(document);
+
+        ByteArrayOutputStream poFile = new ByteArrayOutputStream();
+        PoWriter2 poWriter = new PoWriter2(false, !isPoProject);
+        poWriter.writePo(poFile, "UTF-8", res, translationResource);
+        return poFile.toByteArray();
     }
 
     @Override
-    @Async
+    @Async(AsyncTaskClass.BULK)
     public Future<String> startBuildingTranslationFileArchive(String projectSlug,
             String iterationSlug, String localeId, String userName,
             AsyncTaskHandle<String> handle) throws Exception {
@@ -198,13 +299,22 @@ public class TranslationArchiveServiceImpl implements
         // file
     }
 
-    private boolean isPoProject(String projectSlug, String versionSlug) {
-        HProjectIteration projectIteration =
-                projectIterationDAO.getBySlug(projectSlug, versionSlug);
+    private boolean isPoProject(HProjectIteration projectIteration) {
         ProjectType type = projectIteration.getProjectType();
         if (type == null) {
             type = projectIteration.getProject().getDefaultProjectType();
         }
         return type == Gettext || type == Podir;
     }
+
+    private static final class PendingFile {
+        private final String filename;
+        private final ListenableFuture<byte[]> contents;
+
+        private PendingFile(String filename,
+                ListenableFuture<byte[]> contents) {
+            this.filename = filename;
+            this.contents = contents;
+        }
+    }
 }
@@ -24,10 +24,12 @@ package org.zanata.service.impl;
 import static com.google.common.collect.Collections2.filter;
 
 import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
 import org.apache.lucene.queryparser.classic.ParseException;
@@ -60,6 +62,7 @@ import org.zanata.model.HSimpleComment;
 import org.zanata.model.HTextFlow;
 import org.zanata.model.HTextFlowTarget;
 import org.zanata.model.tm.TransMemoryUnit;
+import org.zanata.model.tm.TransMemoryUnitVariant;
 import org.zanata.rest.editor.dto.suggestion.Suggestion;
 import org.zanata.rest.editor.dto.suggestion.SuggestionDetail;
 import org.zanata.rest.editor.dto.suggestion.TextFlowSuggestionDetail;
@@ -80,7 +83,11 @@ import com.google.common.base.Objects;
 import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -90,8 +97,10 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * @author Alex Eng <a href="mailto:aeng@redhat.com">aeng@redhat.com</a>
@@ -127,14 +136,27 @@ public class TranslationMemoryServiceImpl implements TranslationMemoryService {
 
     private static final double MINIMUM_SIMILARITY = 1.0;
 
+    /**
+     * Maximum number of text flows in one bulk CopyTrans query. Each text flow
+     * can add a content hash clause and a resId clause, so this must stay
+     * below BooleanQuery.getMaxClauseCount().
+     */
+    private static final int BULK_SEARCH_BATCH_SIZE = 500;
+
     private static final String LUCENE_KEY_WORDS = "(\\s*)(AND|OR|NOT)(\\s+)";
 
+    private static final String[] ENTITY_PROJECTION =
+            { FullTextQuery.SCORE, FullTextQuery.THIS };
+
     @Inject @FullText
     private FullTextEntityManager entityManager;
 
     @Inject
     private UrlUtil urlUtil;
 
+    @Inject
+    private TransMemoryResultCache transMemoryResultCache;
+
     // sort desc by lastChanged of HTextFlowTarget
     private final Sort lastChangedSort = new Sort(
             SortField.FIELD_SCORE,
@@ -211,6 +233,147 @@ public class TranslationMemoryServiceImpl implements TranslationMemoryService {
         return Optional.of((HTextFlowTarget) matches.iterator().next()[1]);
     }
 
+    /**
+     * Bulk version of the CopyTrans search. For each document, content hashes
+     * are combined into one Lucene query per {@value #BULK_SEARCH_BATCH_SIZE}
+     * text flows, and the matches are ranked for each text flow by context,
+     * document id and project match, then by HTextFlowTarget.lastChanged DESC.
+     */
+    @Override
+    public Map<Long, HTextFlowTarget> searchBestMatchTransMemory(
+            List<HTextFlow> textFlows, LocaleId targetLocaleId,
+            LocaleId sourceLocaleId, boolean checkContext,
+            boolean checkDocument, boolean checkProject) {
+        Map<HDocument, List<HTextFlow>> textFlowsByDoc = new LinkedHashMap<>();
+        for (HTextFlow textFlow : textFlows) {
+            List<HTextFlow> docTextFlows =
+                    textFlowsByDoc.get(textFlow.getDocument());
+            if (docTextFlows == null) {
+                docTextFlows = Lists.newArrayList();
+                textFlowsByDoc.put(textFlow.getDocument(), docTextFlows);
+            }
+            docTextFlows.add(textFlow);
+        }
+
+        Map<Long, HTextFlowTarget> results = Maps.newHashMap();
+        for (List<HTextFlow> docTextFlows : textFlowsByDoc.values()) {
+            Multimap<String, HTextFlow> docTextFlowsByHash =
+                    ArrayListMultimap.create();
+            for (HTextFlow textFlow : docTextFlows) {
+                docTextFlowsByHash.put(textFlow.getContentHash(), textFlow);
+            }
+            // values() keeps text flows with the same hash together, so a hash
+            // is only queried again if it spans two batches
+            for (List<HTextFlow> batch : Lists.partition(
+                    Lists.newArrayList(docTextFlowsByHash.values()),
+                    BULK_SEARCH_BATCH_SIZE)) {
+                Multimap<String, HTextFlow> textFlowsByHash =
+                        ArrayListMultimap.create();
+                for (HTextFlow textFlow : batch) {
+                    textFlowsByHash.put(textFlow.getContentHash(), textFlow);
+                }
+                try {
+                    Collection<Object[]> matches =
+                            findBulkContentHashMatches(
+                                    Lists.newArrayList(
+                                            textFlowsByHash.keySet()),
+                                    textFlowsByHash, targetLocaleId,
+                                    checkContext, checkDocument,
+                                    checkProject);
+                    collectBestBulkMatches(matches, textFlowsByHash,
+                            checkContext, results);
+                } catch (RuntimeException e) {
+                    log.error("Bulk CopyTrans search failed for {} text flows",
+                            batch.size(), e);
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Run one Lucene query for all the given content hashes.
+     *
+     * @return collection of [float, HTextFlowTarget]
+     */
+    private Collection<Object[]> findBulkContentHashMatches(
+            List<String> contentHashes,
+            Multimap<String, HTextFlow> textFlowsByHash,
+            LocaleId targetLocaleId, boolean checkContext,
+            boolean checkDocument, boolean checkProject) {
+        HTextFlow example = textFlowsByHash.get(contentHashes.get(0))
+                .iterator().next();
+        HDocument document = example.getDocument();
+
+        BooleanQuery hashQuery = new BooleanQuery();
+        BooleanQuery resIdQuery = new BooleanQuery();
+        for (String hash : contentHashes) {
+            hashQuery.add(new TermQuery(new Term(
+                    IndexFieldLabels.TF_CONTENT_HASH, hash)),
+                    BooleanClause.Occur.SHOULD);
+            for (HTextFlow textFlow : textFlowsByHash.get(hash)) {
+                resIdQuery.add(new TermQuery(new Term(
+                        IndexFieldLabels.TF_RES_ID, textFlow.getResId())),
+                        BooleanClause.Occur.SHOULD);
+            }
+        }
+
+        BooleanQuery query = new BooleanQuery();
+        query.add(hashQuery, BooleanClause.Occur.MUST);
+        query.add(new TermQuery(new Term(IndexFieldLabels.LOCALE_ID_FIELD,
+                targetLocaleId.getId())), BooleanClause.Occur.MUST);
+        if (checkContext) {
+            query.add(resIdQuery, BooleanClause.Occur.MUST);
+        }
+        if (checkDocument) {
+            query.add(new TermQuery(new Term(
+                    IndexFieldLabels.DOCUMENT_ID_FIELD, document.getDocId())),
+                    BooleanClause.Occur.MUST);
+        }
+        if (checkProject) {
+            query.add(new TermQuery(new Term(IndexFieldLabels.PROJECT_FIELD,
+                    document.getProjectIteration().getProject().getSlug())),
+                    BooleanClause.Occur.MUST);
+        }
+        query.add(newStateQuery, BooleanClause.Occur.MUST_NOT);
+        query.add(needReviewStateQuery, BooleanClause.Occur.MUST_NOT);
+        query.add(rejectedStateQuery, BooleanClause.Occur.MUST_NOT);
+
+        log.debug("Executing bulk Lucene query: {}", query);
+        FullTextQuery ftQuery =
+                entityManager.createFullTextQuery(query, HTextFlowTarget.class);
+        ftQuery.setProjection(FullTextQuery.SCORE, FullTextQuery.THIS);
+        @SuppressWarnings("unchecked")
+        List<Object[]> resultList = (List<Object[]>) ftQuery.getResultList();
+        return Collections2.filter(resultList,
+                new ValidTargetFilterPredicate(targetLocaleId));
+    }
+
+    private static void collectBestBulkMatches(Collection<Object[]> matches,
+            Multimap<String, HTextFlow> textFlowsByHash, boolean checkContext,
+            Map<Long, HTextFlowTarget> results) {
+        for (Object[] match : matches) {
+            HTextFlowTarget target = (HTextFlowTarget) match[1];
+            HTextFlow matchTextFlow = target.getTextFlow();
+            for (HTextFlow textFlow : textFlowsByHash
+                    .get(matchTextFlow.getContentHash())) {
+                if (textFlow.getId().equals(matchTextFlow.getId())) {
+                    // exclude own translation
+                    continue;
+                }
+                if (checkContext && !textFlow.getResId()
+                        .equals(matchTextFlow.getResId())) {
+                    continue;
+                }
+                HTextFlowTarget best = results.get(textFlow.getId());
+                if (best == null || new CopyTransMatchComparator(textFlow)
+                        .compare(target, best) < 0) {
+                    results.put(textFlow.getId(), target);
+                }
+            }
+        }
+    }
+
     /**
      * This is used by TMMerge. Returns first entry of the matches which sort by
      * similarityPercent, sourceContents, and contents size.
@@ -233,8 +396,11 @@ public class TranslationMemoryServiceImpl implements TranslationMemoryService {
                 buildTMQuery(textFlow, HasSearchType.SearchType.FUZZY_PLURAL,
                         checkContext, checkDocument, checkProject, true);
 
+        // results below the threshold will be discarded anyway, so there is
+        // no need to compute their exact similarity
         List<TransMemoryResultItem> tmResults =
-                searchTransMemory(targetLocaleId, sourceLocaleId, query);
+                searchTransMemory(targetLocaleId, sourceLocaleId, query,
+                        Math.max(MINIMUM_SIMILARITY, thresholdPercent));
 
         // findTMAboveThreshold
         Collection<TransMemoryResultItem> aboveThreshold =
@@ -252,21 +418,46 @@ public class TranslationMemoryServiceImpl implements TranslationMemoryService {
     public List<TransMemoryResultItem> searchTransMemory(
             LocaleId targetLocaleId, LocaleId sourceLocaleId,
             TransMemoryQuery transMemoryQuery) {
+        return searchTransMemory(targetLocaleId, sourceLocaleId,
+                transMemoryQuery, MINIMUM_SIMILARITY);
+    }
+
+    /**
+     * Search TM, ignoring matches whose similarity is below
+     * minSimilarityPercent. Results of repeated searches come from
+     * {@link TransMemoryResultCache}.
+     */
+    private List<TransMemoryResultItem> searchTransMemory(
+            LocaleId targetLocaleId, LocaleId sourceLocaleId,
+            TransMemoryQuery transMemoryQuery, double minSimilarityPercent) {
+        return transMemoryResultCache.getResults(targetLocaleId,
+                sourceLocaleId, transMemoryQuery, minSimilarityPercent,
+                () -> searchTransMemoryUncached(targetLocaleId,
+                        sourceLocaleId, transMemoryQuery,
+                        minSimilarityPercent));
+    }
+
+    private List<TransMemoryResultItem> searchTransMemoryUncached(
+            LocaleId targetLocaleId, LocaleId sourceLocaleId,
+            TransMemoryQuery transMemoryQuery, double minSimilarityPercent) {
         // NB: If we want to, we could pass the TFT id from the editor
         // via GWT-RPC(TransMemoryQuery), allowing Lucene to rank results
         // by metadata too.
         Optional<Long> textFlowTargetId = Optional.absent();
-        Collection<Object[]> matches =
-                findMatchingTranslation(targetLocaleId, sourceLocaleId,
+        List<Object[]> rows =
+                searchIndex(targetLocaleId, sourceLocaleId,
                         transMemoryQuery, SEARCH_MAX_RESULTS,
                         textFlowTargetId,
+                        IndexMatch.PROJECTION,
                         HTextFlowTarget.class, TransMemoryUnit.class);
+        List<IndexMatch> matches =
+                toIndexMatches(rows, sourceLocaleId, targetLocaleId);
 
         Map<TMKey, TransMemoryResultItem> matchesMap =
                 new LinkedHashMap<TMKey, TransMemoryResultItem>(matches.size());
-        for (Object[] match : matches) {
+        for (IndexMatch match : matches) {
             processIndexMatch(transMemoryQuery, matchesMap, match,
-                    sourceLocaleId, targetLocaleId);
+                    minSimilarityPercent);
         }
         List<TransMemoryResultItem> results =
                 Lists.newArrayList(matchesMap.values());
@@ -328,20 +519,34 @@ public class TranslationMemoryServiceImpl implements TranslationMemoryService {
             TransMemoryQuery transMemoryQuery, int maxResults,
             Optional<Long> textFlowTargetId,
             @Nonnull Class<?>... entityTypes) {
+        List<Object[]> matches =
+                searchIndex(targetLocaleId, sourceLocaleId, transMemoryQuery,
+                        maxResults, textFlowTargetId, ENTITY_PROJECTION,
+                        entityTypes);
+
+        // filter out invalid target
+        // TODO filter by entityTypes as well
+        // TODO returning a filtered collection might be overkill
+        return Collections2.filter(matches,
+                new ValidTargetFilterPredicate(targetLocaleId));
+    }
+
+    /**
+     * Runs the TM query against the index, returning the given projection of
+     * each match. Returns an empty list if the query can't be parsed.
+     */
+    private List<Object[]> searchIndex(LocaleId targetLocaleId,
+            LocaleId sourceLocaleId, TransMemoryQuery transMemoryQuery,
+            int maxResults, Optional<Long> textFlowTargetId,
+            String[] projection, @Nonnull Class<?>... entityTypes) {
         try {
             if (entityTypes.length == 0) {
                 throw new RuntimeException(
                         "Need entity type (HTextFlowTarget.class or TransMemoryUnit.class) for TM search");
             }
-            List<Object[]> matches =
-                    getSearchResult(transMemoryQuery, sourceLocaleId,
-                            targetLocaleId, maxResults, textFlowTargetId, entityTypes);
-
-            // filter out invalid target
-            // TODO filter by entityTypes as well
-            // TODO returning a filtered collection might be overkill
-            return Collections2.filter(matches,
-                    new ValidTargetFilterPredicate(targetLocaleId));
+            return getSearchResult(transMemoryQuery, sourceLocaleId,
+                    targetLocaleId, maxResults, textFlowTargetId, projection,
+                    entityTypes);
 
         } catch (ParseException e) {
             if (e.getCause() instanceof BooleanQuery.TooManyClauses) {
@@ -366,83 +571,192 @@ public class TranslationMemoryServiceImpl implements TranslationMemoryService {
         return Lists.newArrayList();
     }
 
-    private void processIndexMatch(TransMemoryQuery transMemoryQuery,
-            Map<TMKey, TransMemoryResultItem> matchesMap, Object[] match,
+    /**
+     * Converts projected index matches to {@link IndexMatch}es, loading the
+     * entity only for documents which were indexed before the contents were
+     * stored in the index. Translation matches in the wrong locale or in
+     * obsolete projects and versions are discarded.
+     */
+    private List<IndexMatch> toIndexMatches(List<Object[]> rows,
             LocaleId sourceLocaleId, LocaleId targetLocaleId) {
-        Object entity = match[1];
-        if (entity instanceof HTextFlowTarget) {
-            HTextFlowTarget textFlowTarget = (HTextFlowTarget) entity;
+        List<IndexMatch> matches = Lists.newArrayListWithCapacity(rows.size());
+        for (Object[] row : rows) {
+            IndexMatch match = IndexMatch.fromProjection(row, sourceLocaleId,
+                    targetLocaleId);
+            if (match == null) {
+                match = loadIndexMatch(row, sourceLocaleId, targetLocaleId);
+            }
+            if (match != null) {
+                matches.add(match);
+            }
+        }
+        discardInvalidTargetMatches(matches, targetLocaleId);
+        loadTransMemorySlugs(matches);
+        return matches;
+    }
 
-            ArrayList<String> textFlowContents =
-                    Lists.newArrayList(textFlowTarget.getTextFlow()
-                            .getContents());
-            ArrayList<String> targetContents =
-                    Lists.newArrayList(textFlowTarget.getContents());
-            TransMemoryResultItem.MatchType matchType =
-                    fromContentState(textFlowTarget.getState());
+    private @Nullable IndexMatch loadIndexMatch(Object[] row,
+            LocaleId sourceLocaleId, LocaleId targetLocaleId) {
+        Class<?> entityType = (Class<?>) row[IndexMatch.CLASS];
+        log.debug("{} {} has no stored contents. You may need to re-index.",
+                entityType.getSimpleName(), row[IndexMatch.ID]);
+        Object entity = entityManager.find(entityType, row[IndexMatch.ID]);
+        float score = (Float) row[IndexMatch.SCORE];
+        if (entity instanceof HTextFlowTarget) {
+            return IndexMatch.fromTarget(score, (HTextFlowTarget) entity);
+        } else if (entity instanceof TransMemoryUnit) {
+            return IndexMatch.fromTransUnit(score, (TransMemoryUnit) entity,
+                    sourceLocaleId, targetLocaleId);
+        }
+        log.error("Query results include missing entity {} {}. " +
+                "You may need to re-index.", entityType, row[IndexMatch.ID]);
+        return null;
+    }
 
-            double percent =
-                calculateSimilarityPercentage(transMemoryQuery,
-                    textFlowContents);
-            if (percent < MINIMUM_SIMILARITY) {
-                log.debug("Ignoring TM - {} with less than {}% matching.",
-                    textFlowContents, MINIMUM_SIMILARITY);
-                return;
+    /**
+     * Fills in the text flow of translation matches, and removes those which
+     * are in the wrong locale (the index is out of date) or whose project or
+     * version is obsolete, with one query for all the matches.
+     */
+    @VisibleForTesting
+    void discardInvalidTargetMatches(List<IndexMatch> matches,
+            LocaleId targetLocaleId) {
+        Map<Long, IndexMatch> matchesByTargetId = Maps.newHashMap();
+        for (IndexMatch match : matches) {
+            if (!match.isTransUnit()) {
+                matchesByTargetId.put(match.getId(), match);
             }
-            TransMemoryResultItem item = createOrGetResultItem(
-                    matchesMap, match, matchType,
-                    textFlowContents, targetContents, percent);
-            addTextFlowTargetToResultMatches(textFlowTarget, item);
-        } else if (entity instanceof TransMemoryUnit) {
-            TransMemoryUnit transUnit = (TransMemoryUnit) entity;
-            ArrayList<String> sourceContents =
-                    Lists.newArrayList(transUnit.getTransUnitVariants()
-                            .get(sourceLocaleId.getId()).getPlainTextSegment());
-            ArrayList<String> targetContents =
-                    Lists.newArrayList(transUnit.getTransUnitVariants()
-                            .get(targetLocaleId.getId()).getPlainTextSegment());
-            double percent =
-                calculateSimilarityPercentage(transMemoryQuery, sourceContents);
-            if (percent < MINIMUM_SIMILARITY) {
-                log.debug("Ignoring TM - {} with less than {}% matching.",
-                        sourceContents, MINIMUM_SIMILARITY);
-                return;
+        }
+        if (matchesByTargetId.isEmpty()) {
+            return;
+        }
+        List<Object[]> targets = entityManager
+                .createQuery("select t.id, t.textFlow.id, t.locale.localeId, " +
+                        "t.textFlow.document.projectIteration.status, " +
+                        "t.textFlow.document.projectIteration.project.status " +
+                        "from HTextFlowTarget t where t.id in (:targetIds)",
+                        Object[].class)
+                .setParameter("targetIds", matchesByTargetId.keySet())
+                .getResultList();
+        for (Object[] target : targets) {
+            IndexMatch match = matchesByTargetId.get(target[0]);
+            LocaleId localeId = (LocaleId) target[2];
+            if (!localeId.equals(targetLocaleId)) {
+                log.error("Unexpected TextFlowTarget (locale {}): {}. " +
+                        "You may need to re-index.", localeId, target[0]);
+            } else if (target[3] == EntityStatus.OBSOLETE
+                    || target[4] == EntityStatus.OBSOLETE) {
+                log.debug("Discarding TextFlowTarget (obsolete project " +
+                        "or version): {}", target[0]);
+            } else {
+                match.setTextFlowId((Long) target[1]);
+            }
+        }
+        // targets which are invalid, or were deleted since they were indexed
+        matches.removeIf(match -> !match.isTransUnit()
+                && match.getTextFlowId() == null);
+    }
+
+    /**
+     * Fills in the translation memory slug of imported matches, with one
+     * query for all the matches.
+     */
+    private void loadTransMemorySlugs(List<IndexMatch> matches) {
+        Map<Long, IndexMatch> matchesByUnitId = Maps.newHashMap();
+        for (IndexMatch match : matches) {
+            if (match.isTransUnit() && match.getOrigin() == null) {
+                matchesByUnitId.put(match.getId(), match);
             }
+        }
+        if (matchesByUnitId.isEmpty()) {
+            return;
+        }
+        List<Object[]> slugs = entityManager
+                .createQuery("select tu.id, tu.translationMemory.slug " +
+                        "from TransMemoryUnit tu where tu.id in (:unitIds)",
+                        Object[].class)
+                .setParameter("unitIds", matchesByUnitId.keySet())
+                .getResultList();
+        for (Object[] slug : slugs) {
+            matchesByUnitId.get(slug[0]).setOrigin((String) slug[1]);
+        }
+        // units deleted since they were indexed
+        matches.removeIf(match -> match.isTransUnit()
+                && match.getOrigin() == null);
+    }
+
+    private void processIndexMatch(TransMemoryQuery transMemoryQuery,
+            Map<TMKey, TransMemoryResultItem> matchesMap, IndexMatch match,
+            double minSimilarityPercent) {
+        if (!match.isTransUnit() && !match.getState().isTranslated()) {
+            log.error(
+                    "Unexpected TextFlowTarget (state {}): {}. You may need to re-index.",
+                    match.getState(), match.getId());
+            return;
+        }
+        double percent =
+                calculateSimilarityPercentage(transMemoryQuery,
+                        match.getSourceContents(), minSimilarityPercent);
+        if (percent < minSimilarityPercent) {
+            log.debug("Ignoring TM - {} with less than {}% matching.",
+                    match.getSourceContents(), minSimilarityPercent);
+            return;
+        }
+        if (match.isTransUnit()) {
             TransMemoryResultItem item =
-                createOrGetResultItem(matchesMap, match,
+                createOrGetResultItem(matchesMap, match.getScore(),
                     TransMemoryResultItem.MatchType.Imported,
-                    sourceContents, targetContents, percent);
-            addTransMemoryUnitToResultMatches(item, transUnit);
+                    match.getSourceContents(), match.getTargetContents(),
+                    percent);
+            addTransMemoryUnitToResultMatches(item, match);
+        } else {
+            TransMemoryResultItem item = createOrGetResultItem(
+                    matchesMap, match.getScore(),
+                    fromContentState(match.getState()),
+                    match.getSourceContents(), match.getTargetContents(),
+                    percent);
+            addTextFlowTargetToResultMatches(match, item);
         }
     }
 
     private static double calculateSimilarityPercentage(TransMemoryQuery query,
             List<String> sourceContents) {
+        return calculateSimilarityPercentage(query, sourceContents, 0.0);
+    }
+
+    /**
+     * Calculate the similarity of sourceContents to the query. If the result
+     * would be below minPercent, the Levenshtein engine is allowed to give up
+     * early and some value below minPercent is returned instead.
+     */
+    private static double calculateSimilarityPercentage(TransMemoryQuery query,
+            List<String> sourceContents, double minPercent) {
         double percent;
+        double minSimilarity = minPercent / 100;
         if (query.getSearchType() == HasSearchType.SearchType.CONTENT_HASH) {
             return 100;
         } else if (query.getSearchType() == HasSearchType.SearchType.FUZZY_PLURAL) {
             percent =
                     100 * LevenshteinTokenUtil.getSimilarity(
-                            query.getQueries(), sourceContents);
+                            query.getQueries(), sourceContents, minSimilarity);
             if (percent > 99.99) {
                 // make sure we only get 100% similarity if every character
                 // matches
                 percent =
                         100 * LevenshteinUtil.getSimilarity(query.getQueries(),
-                                sourceContents);
+                                sourceContents, minSimilarity);
             }
         } else {
             final String searchText = query.getQueries().get(0);
             percent =
                     100 * LevenshteinTokenUtil.getSimilarity(searchText,
-                            sourceContents);
+                            sourceContents, minSimilarity);
             if (percent > 99.99) {
                 // make sure we only get 100% similarity if every character
                 // matches
                 percent =
                         100 * LevenshteinUtil.getSimilarity(searchText,
-                                sourceContents);
+                                sourceContents, minSimilarity);
             }
         }
         return percent;
@@ -471,14 +785,13 @@ public class TranslationMemoryServiceImpl implements TranslationMemoryService {
      * @return the item for the given source and target contents, which may be newly created.
      */
     private TransMemoryResultItem createOrGetResultItem(
-            Map<TMKey, TransMemoryResultItem> matchesMap, Object[] match,
+            Map<TMKey, TransMemoryResultItem> matchesMap, float score,
             TransMemoryResultItem.MatchType matchType,
             ArrayList<String> sourceContents, ArrayList<String> targetContents,
             double percent) {
         TMKey key = new TMKey(sourceContents, targetContents);
         TransMemoryResultItem item = matchesMap.get(key);
         if (item == null) {
-            float score = (Float) match[0];
             item =
                     new TransMemoryResultItem(sourceContents, targetContents,
                             matchType, score, percent);
@@ -487,16 +800,16 @@ public class TranslationMemoryServiceImpl implements TranslationMemoryService {
         return item;
     }
 
-    private void addTransMemoryUnitToResultMatches(TransMemoryResultItem item, TransMemoryUnit transMemoryUnit) {
+    private void addTransMemoryUnitToResultMatches(TransMemoryResultItem item, IndexMatch transMemoryUnit) {
         item.incMatchCount();
-        item.addOrigin(transMemoryUnit.getTranslationMemory().getSlug());
+        item.addOrigin(transMemoryUnit.getOrigin());
     }
 
-    private void addTextFlowTargetToResultMatches(HTextFlowTarget textFlowTarget, TransMemoryResultItem item) {
+    private void addTextFlowTargetToResultMatches(IndexMatch textFlowTarget, TransMemoryResultItem item) {
         item.incMatchCount();
 
         // TODO change sourceId to include type, then include the id of imported matches
-        item.addSourceId(textFlowTarget.getTextFlow().getId());
+        item.addSourceId(textFlowTarget.getTextFlowId());
 
         // Workaround: since Imported does not have a details view in the current editor,
         //             I am treating it as the lowest priority, so will be overwritten by
@@ -548,6 +861,168 @@ public class TranslationMemoryServiceImpl implements TranslationMemoryService {
         }
     }
 
+    /**
+     * Orders CopyTrans matches for a text flow: matching context first, then
+     * matching document id, then matching project, then most recent.
+     */
+    private static final class CopyTransMatchComparator implements
+            Comparator<HTextFlowTarget> {
+        private final HTextFlow textFlow;
+
+        private CopyTransMatchComparator(HTextFlow textFlow) {
+            this.textFlow = textFlow;
+        }
+
+        @Override
+        public int compare(HTextFlowTarget t1, HTextFlowTarget t2) {
+            int result = Integer.compare(rank(t1), rank(t2));
+            if (result != 0) {
+                return result;
+            }
+            // sort most recent first
+            return t2.getLastChanged().compareTo(t1.getLastChanged());
+        }
+
+        private int rank(HTextFlowTarget target) {
+            HTextFlow matchTextFlow = target.getTextFlow();
+            HDocument matchDoc = matchTextFlow.getDocument();
+            HDocument doc = textFlow.getDocument();
+            boolean resIdMatches =
+                    textFlow.getResId().equals(matchTextFlow.getResId());
+            boolean docIdMatches = doc.getDocId().equals(matchDoc.getDocId());
+            boolean projectMatches = doc.getProjectIteration().getProject()
+                    .getSlug().equals(matchDoc.getProjectIteration()
+                            .getProject().getSlug());
+            return (resIdMatches ? 0 : 4) + (docIdMatches ? 0 : 2)
+                    + (projectMatches ? 0 : 1);
+        }
+    }
+
+    /**
+     * A TM search match read from the stored fields of the index (or from the
+     * entity, for documents indexed before the fields were stored), with just
+     * what is needed for scoring and building the result item.
+     * <p>
+     * The stored fields are read from the Lucene document, because most of
+     * them are written by one-way field bridges, which Hibernate Search
+     * cannot project.
+     */
+    @Getter
+    @VisibleForTesting
+    static final class IndexMatch {
+        static final String[] PROJECTION = { FullTextQuery.SCORE,
+                FullTextQuery.OBJECT_CLASS, FullTextQuery.ID,
+                FullTextQuery.DOCUMENT };
+        // positions in the projection
+        private static final int SCORE = 0;
+        private static final int CLASS = 1;
+        private static final int ID = 2;
+        private static final int DOCUMENT = 3;
+
+        private final float score;
+        private final Long id;
+        private final boolean transUnit;
+        // null for TransMemoryUnit matches
+        private final @Nullable ContentState state;
+        private final ArrayList<String> sourceContents;
+        private final ArrayList<String> targetContents;
+        // text flow of HTextFlowTarget matches, once they have been checked
+        @Setter
+        private @Nullable Long textFlowId;
+        // translation memory slug, for TransMemoryUnit matches
+        @Setter
+        private @Nullable String origin;
+
+        private IndexMatch(float score, Long id, boolean transUnit,
+                @Nullable ContentState state, ArrayList<String> sourceContents,
+                ArrayList<String> targetContents) {
+            this.score = score;
+            this.id = id;
+            this.transUnit = transUnit;
+            this.state = state;
+            this.sourceContents = sourceContents;
+            this.targetContents = targetContents;
+        }
+
+        /**
+         * @return the match, or null if the contents are not stored in the
+         *         index
+         */
+        static @Nullable IndexMatch fromProjection(Object[] row,
+                LocaleId sourceLocaleId, LocaleId targetLocaleId) {
+            float score = (Float) row[SCORE];
+            Long id = ((Number) row[ID]).longValue();
+            Document document = (Document) row[DOCUMENT];
+            if (HTextFlowTarget.class.equals(row[CLASS])) {
+                String state =
+                        document.get(IndexFieldLabels.CONTENT_STATE_FIELD);
+                ArrayList<String> targetContents = storedContents(document,
+                        IndexFieldLabels.CONTENT_FIELDS);
+                ArrayList<String> sourceContents = storedContents(document,
+                        IndexFieldLabels.TF_CONTENT_FIELDS);
+                if (state == null || targetContents.isEmpty()
+                        || sourceContents.isEmpty()) {
+                    return null;
+                }
+                return new IndexMatch(score, id, false,
+                        ContentState.valueOf(state), sourceContents,
+                        targetContents);
+            } else if (TransMemoryUnit.class.equals(row[CLASS])) {
+                String source = document.get(IndexFieldLabels
+                        .TRANS_UNIT_VARIANT_FIELD + sourceLocaleId.getId());
+                String target = document.get(IndexFieldLabels
+                        .TRANS_UNIT_VARIANT_FIELD + targetLocaleId.getId());
+                if (source == null || target == null) {
+                    return null;
+                }
+                return new IndexMatch(score, id, true, null,
+                        Lists.newArrayList(source),
+                        Lists.newArrayList(target));
+            }
+            return null;
+        }
+
+        static IndexMatch fromTarget(float score, HTextFlowTarget target) {
+            return new IndexMatch(score, target.getId(), false,
+                    target.getState(),
+                    Lists.newArrayList(target.getTextFlow().getContents()),
+                    Lists.newArrayList(target.getContents()));
+        }
+
+        static @Nullable IndexMatch fromTransUnit(float score,
+                TransMemoryUnit transUnit, LocaleId sourceLocaleId,
+                LocaleId targetLocaleId) {
+            TransMemoryUnitVariant source = transUnit.getTransUnitVariants()
+                    .get(sourceLocaleId.getId());
+            TransMemoryUnitVariant target = transUnit.getTransUnitVariants()
+                    .get(targetLocaleId.getId());
+            if (source == null || target == null) {
+                log.error(
+                        "Unexpected TransMemoryUnit (no TUV in locale {} or {}): {}. You may need to re-index.",
+                        sourceLocaleId, targetLocaleId, transUnit);
+                return null;
+            }
+            IndexMatch match = new IndexMatch(score, transUnit.getId(), true,
+                    null, Lists.newArrayList(source.getPlainTextSegment()),
+                    Lists.newArrayList(target.getPlainTextSegment()));
+            match.setOrigin(transUnit.getTranslationMemory().getSlug());
+            return match;
+        }
+
+        private static ArrayList<String> storedContents(Document document,
+                String[] fieldNames) {
+            ArrayList<String> contents = Lists.newArrayList();
+            for (String fieldName : fieldNames) {
+                String content = document.get(fieldName);
+                if (content == null) {
+                    break;
+                }
+                contents.add(content);
+            }
+            return contents;
+        }
+    }
+
     private static class TMKey {
         private final List<String> textFlowContents;
         private final List<String> targetContents;
@@ -583,7 +1058,7 @@ public class TranslationMemoryServiceImpl implements TranslationMemoryService {
 
     private List<Object[]> getSearchResult(TransMemoryQuery query,
             LocaleId sourceLocale, LocaleId targetLocale, int maxResult,
-            Optional<Long> textFlowTargetId,
+            Optional<Long> textFlowTargetId, String[] projection,
             Class<?>... entities) throws ParseException {
         String queryText = null;
         String[] multiQueryText = null;
@@ -651,7 +1126,7 @@ public class TranslationMemoryServiceImpl implements TranslationMemoryService {
         FullTextQuery ftQuery =
                 entityManager.createFullTextQuery(textQuery, entities);
 
-        ftQuery.setProjection(FullTextQuery.SCORE, FullTextQuery.THIS);
+        ftQuery.setProjection(projection);
 
         if (maxResult > 0) {
             ftQuery.setMaxResults(maxResult);
@@ -177,6 +177,29 @@ public class TranslationStateCacheImpl implements TranslationStateCache {
         }
     }
 
+    @Override
+    public Boolean getCachedTargetValidation(Long targetId,
+            ValidationId validationId) {
+        Map<ValidationId, Boolean> cacheEntry =
+                targetValidationCache.get(targetId);
+        if (cacheEntry == null) {
+            return null;
+        }
+        synchronized (cacheEntry) {
+            return cacheEntry.get(validationId);
+        }
+    }
+
+    @Override
+    public void cacheTargetValidation(Long targetId,
+            ValidationId validationId, boolean hasWarningOrError) {
+        Map<ValidationId, Boolean> cacheEntry =
+                targetValidationCache.getWithLoader(targetId);
+        synchronized (cacheEntry) {
+            cacheEntry.put(validationId, hasWarningOrError);
+        }
+    }
+
     /**
      * This method contains all logic to be run immediately after a Text Flow
      * Target has been successfully translated.
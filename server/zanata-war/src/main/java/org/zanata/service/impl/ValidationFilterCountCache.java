@@ -0,0 +1,132 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.service.impl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.inject.Named;
+
+import org.zanata.common.LocaleId;
+import org.zanata.events.DocumentLocaleKey;
+import org.zanata.events.DocumentUploadedEvent;
+import org.zanata.events.TextFlowTargetStateEvent;
+import org.zanata.rest.dto.DTOUtil;
+import org.zanata.util.Introspectable;
+import org.zanata.webtrans.shared.model.ValidationId;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import lombok.EqualsAndHashCode;
+
+/**
+ * Caches the number of text flows in a document which have validation
+ * warnings or errors in a locale, as counted by the validation filter in the
+ * editor when it goes through the whole document, so that the document's
+ * validation status can be reported without validating it again.
+ *
+ * Counts are discarded when translations in the document and locale change,
+ * or when the document is uploaded. Since a count may still be stored by a
+ * search which was running when the translations changed, counts also expire
+ * after a few minutes. They are only used for document totals, never to
+ * limit a search for matching text flows.
+ */
+@Named("validationFilterCountCache")
+@javax.enterprise.context.ApplicationScoped
+public class ValidationFilterCountCache implements Introspectable {
+
+    private static final int MAX_SIZE = 10_000;
+    private static final int EXPIRE_MINUTES = 10;
+
+    private final Cache<Key, Integer> cache = CacheBuilder.newBuilder()
+            .maximumSize(MAX_SIZE)
+            .expireAfterWrite(EXPIRE_MINUTES, TimeUnit.MINUTES)
+            .recordStats()
+            .build();
+
+    /**
+     * @return number of text flows with warnings or errors, or null if not
+     *         known
+     */
+    public Integer getCount(Long documentId, LocaleId localeId,
+            List<ValidationId> validationIds) {
+        return cache.getIfPresent(new Key(documentId, localeId, validationIds));
+    }
+
+    public void putCount(Long documentId, LocaleId localeId,
+            List<ValidationId> validationIds, int count) {
+        cache.put(new Key(documentId, localeId, validationIds), count);
+    }
+
+    public void textFlowStateUpdated(
+            @Observes(during = TransactionPhase.AFTER_SUCCESS)
+            TextFlowTargetStateEvent event) {
+        DocumentLocaleKey key = event.getKey();
+        cache.asMap().keySet().removeIf(k ->
+                k.documentId.equals(key.getDocumentId())
+                        && k.localeId.equals(key.getLocaleId()));
+    }
+
+    public void documentUploaded(
+            @Observes(during = TransactionPhase.AFTER_SUCCESS)
+            DocumentUploadedEvent event) {
+        cache.asMap().keySet().removeIf(k ->
+                k.documentId.equals(event.getDocumentId()));
+    }
+
+    // below are all monitoring stuff
+    @Override
+    public String getIntrospectableId() {
+        return getClass().getCanonicalName();
+    }
+
+    @Override
+    public String getFieldValuesAsJSON() {
+        CacheStats stats = cache.stats();
+        Map<String, String> values = ImmutableMap.<String, String> builder()
+                .put("size", String.valueOf(cache.size()))
+                .put("hitCount", String.valueOf(stats.hitCount()))
+                .put("missCount", String.valueOf(stats.missCount()))
+                .build();
+        return DTOUtil.toJSON(values);
+    }
+
+    @EqualsAndHashCode
+    private static final class Key {
+        private final Long documentId;
+        private final LocaleId localeId;
+        private final ImmutableSet<ValidationId> validationIds;
+
+        private Key(Long documentId, LocaleId localeId,
+                List<ValidationId> validationIds) {
+            this.documentId = documentId;
+            this.localeId = localeId;
+            this.validationIds = ImmutableSet.copyOf(validationIds);
+        }
+    }
+}
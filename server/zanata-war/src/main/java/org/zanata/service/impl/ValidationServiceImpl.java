@@ -3,9 +3,9 @@
  */
 package org.zanata.service.impl;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -37,7 +37,10 @@ import org.zanata.webtrans.shared.model.ValidationId;
 import org.zanata.webtrans.shared.validation.ValidationFactory;
 
 import com.google.common.base.Stopwatch;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 /**
  *
@@ -49,6 +52,10 @@ import com.google.common.collect.Lists;
 @Slf4j
 @Transactional
 public class ValidationServiceImpl implements ValidationService {
+    // number of targets loaded and validated at a time by the validation
+    // filter
+    private static final int FILTER_CHUNK_SIZE = 200;
+
     @Inject
     private ProjectDAO projectDAO;
 
@@ -64,6 +71,9 @@ public class ValidationServiceImpl implements ValidationService {
     @Inject
     private TranslationStateCache translationStateCacheImpl;
 
+    @Inject
+    private ValidationFilterCountCache validationFilterCountCache;
+
     private ValidationFactory validationFactory;
 
     private ValidationFactory getValidationFactory() {
@@ -190,6 +200,11 @@ public class ValidationServiceImpl implements ValidationService {
         log.debug("Start runDocValidations {}", hDocId);
         Stopwatch stopwatch = Stopwatch.createStarted();
 
+        Integer knownCount = validationFilterCountCache.getCount(hDocId,
+                localeId, validationIds);
+        if (knownCount != null) {
+            return knownCount > 0;
+        }
         HDocument hDoc = documentDAO.findById(hDocId, false);
         boolean hasError = documentHasWarningOrError(hDoc, validationIds, localeId);
         log.debug("Finished runDocValidations in " + stopwatch);
@@ -232,31 +247,133 @@ public class ValidationServiceImpl implements ValidationService {
             List<HTextFlow> textFlows, List<ValidationId> validationIds,
             LocaleId localeId, int startIndex, int maxSize) {
         log.debug("Start filter {} textFlows", textFlows.size());
-        Stopwatch stopwatch = Stopwatch.createStarted();
+        Iterator<List<HTextFlowTarget>> chunks =
+                Iterators.transform(
+                        Lists.partition(textFlows, FILTER_CHUNK_SIZE)
+                                .iterator(),
+                        chunk -> getTargetsInOrder(chunk, localeId));
+        List<HTextFlow> matches =
+                findMatches(chunks, validationIds, startIndex + maxSize);
+        return getPage(matches, startIndex, maxSize);
+    }
 
-        List<HTextFlow> result = new ArrayList<HTextFlow>();
+    @Override
+    public List<HTextFlow> filterHasWarningOrErrorTextFlow(Long documentId,
+            List<ValidationId> validationIds, LocaleId localeId,
+            int startIndex, int maxSize) {
+        // the cached count may be stale, so it can't limit the search
+        int wanted = startIndex + maxSize;
+        List<HTextFlow> matches = findMatches(
+                getDocumentTargetChunks(documentId, localeId), validationIds,
+                wanted);
+        if (matches.size() < wanted) {
+            // went through the whole document
+            validationFilterCountCache.putCount(documentId, localeId,
+                    validationIds, matches.size());
+        }
+        return getPage(matches, startIndex, maxSize);
+    }
 
-        for (HTextFlow textFlow : textFlows) {
-            boolean hasWarningOrError =
-                    textFlowTargetHasWarningOrError(textFlow.getId(),
-                            validationIds, localeId);
-            if (hasWarningOrError) {
-                result.add(textFlow);
+    /**
+     * Validates the targets a chunk at a time, until the wanted number of
+     * text flows with warnings or errors have been found.
+     *
+     * @return text flows with warnings or errors, in order. May contain more
+     *         than the wanted number.
+     */
+    private List<HTextFlow> findMatches(
+            Iterator<List<HTextFlowTarget>> chunks,
+            List<ValidationId> validationIds, int wanted) {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        ValidationFactory factory = getValidationFactory();
+        List<HTextFlow> matches = Lists.newArrayList();
+        int validatedCount = 0;
+        while (matches.size() < wanted && chunks.hasNext()) {
+            List<HTextFlowTarget> chunk = chunks.next();
+            List<TargetValidation> validations =
+                    Lists.newArrayListWithCapacity(chunk.size());
+            // cached results are read and written on this thread, so only
+            // the validation itself runs in parallel
+            for (HTextFlowTarget target : chunk) {
+                validations.add(new TargetValidation(target, validationIds));
             }
+            validations.parallelStream()
+                    .forEach(validation -> validation.run(factory));
+            for (TargetValidation validation : validations) {
+                validation.cacheResults();
+                if (validation.hasWarningOrError()) {
+                    matches.add(validation.textFlow);
+                }
+            }
+            validatedCount += chunk.size();
         }
-        log.debug("Finished filter textFlows in " + stopwatch);
+        log.debug("Found {} textFlows with warning or error in {} targets in {}",
+                matches.size(), validatedCount, stopwatch);
+        return matches;
+    }
 
-        if (result.size() <= maxSize) {
-            return result;
+    private static List<HTextFlow> getPage(List<HTextFlow> matches,
+            int startIndex, int maxSize) {
+        if (matches.size() <= maxSize) {
+            return matches;
         }
 
         int toIndex = startIndex + maxSize;
 
-        toIndex = toIndex > result.size() ? result.size() : toIndex;
+        toIndex = toIndex > matches.size() ? matches.size() : toIndex;
         startIndex = startIndex > toIndex ? toIndex - maxSize : startIndex;
         startIndex = startIndex < 0 ? 0 : startIndex;
 
-        return result.subList(startIndex, toIndex);
+        return matches.subList(startIndex, toIndex);
+    }
+
+    /**
+     * @return targets of the text flows which have one, in the same order
+     */
+    private List<HTextFlowTarget> getTargetsInOrder(List<HTextFlow> textFlows,
+            LocaleId localeId) {
+        List<Long> ids = Lists.newArrayListWithCapacity(textFlows.size());
+        for (HTextFlow textFlow : textFlows) {
+            ids.add(textFlow.getId());
+        }
+        Map<Long, HTextFlowTarget> targetsByTextFlowId = Maps.newHashMap();
+        for (HTextFlowTarget target : textFlowTargetDAO.findByTextFlowIdList(
+                ids, localeId)) {
+            targetsByTextFlowId.put(target.getTextFlow().getId(), target);
+        }
+        List<HTextFlowTarget> targets = Lists.newArrayList();
+        for (Long id : ids) {
+            HTextFlowTarget target = targetsByTextFlowId.get(id);
+            if (target != null) {
+                targets.add(target);
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * Targets of a document's text flows in position order, loaded a chunk at
+     * a time as they are needed.
+     */
+    private Iterator<List<HTextFlowTarget>> getDocumentTargetChunks(
+            Long documentId, LocaleId localeId) {
+        return new AbstractIterator<List<HTextFlowTarget>>() {
+            private int nextPos = 0;
+
+            @Override
+            protected List<HTextFlowTarget> computeNext() {
+                List<HTextFlowTarget> chunk =
+                        textFlowTargetDAO.getTargetsByDocumentPosition(
+                                documentId, localeId, nextPos,
+                                FILTER_CHUNK_SIZE);
+                if (chunk.isEmpty()) {
+                    return endOfData();
+                }
+                nextPos = chunk.get(chunk.size() - 1).getTextFlow().getPos()
+                        + 1;
+                return chunk;
+            }
+        };
     }
 
     private boolean textFlowTargetHasWarningOrError(Long textFlowId,
@@ -277,6 +394,61 @@ public class ValidationServiceImpl implements ValidationService {
         return false;
     }
 
+    /**
+     * Validates the contents of one target, using cached results if there are
+     * any. Only {@link #run} may be called from another thread.
+     */
+    private final class TargetValidation {
+        private final HTextFlow textFlow;
+        private final Long targetId;
+        private final String sourceContent;
+        private final String targetContent;
+        private final List<ValidationId> uncachedIds = Lists.newArrayList();
+        private final Map<ValidationId, Boolean> results =
+                Maps.newEnumMap(ValidationId.class);
+        private boolean hasWarningOrError;
+
+        private TargetValidation(HTextFlowTarget target,
+                List<ValidationId> validationIds) {
+            this.textFlow = target.getTextFlow();
+            this.targetId = target.getId();
+            this.sourceContent = textFlow.getContents().get(0);
+            this.targetContent = target.getContents().get(0);
+            for (ValidationId validationId : validationIds) {
+                Boolean cached = translationStateCacheImpl
+                        .getCachedTargetValidation(targetId, validationId);
+                if (cached == null) {
+                    uncachedIds.add(validationId);
+                } else if (cached) {
+                    hasWarningOrError = true;
+                }
+            }
+        }
+
+        private void run(ValidationFactory factory) {
+            for (ValidationId validationId : uncachedIds) {
+                if (hasWarningOrError) {
+                    return;
+                }
+                boolean result = !factory.getValidationAction(validationId)
+                        .validate(sourceContent, targetContent).isEmpty();
+                results.put(validationId, result);
+                hasWarningOrError = result;
+            }
+        }
+
+        private void cacheResults() {
+            for (Map.Entry<ValidationId, Boolean> entry : results.entrySet()) {
+                translationStateCacheImpl.cacheTargetValidation(targetId,
+                        entry.getKey(), entry.getValue());
+            }
+        }
+
+        private boolean hasWarningOrError() {
+            return hasWarningOrError;
+        }
+    }
+
     @Override
     public List<String> validateWithServerRules(
             HProjectIteration projectVersion, List<String> sources,
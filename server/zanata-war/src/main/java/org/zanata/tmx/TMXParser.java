@@ -21,6 +21,16 @@
 package org.zanata.tmx;
 
 import java.io.InputStream;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import javax.enterprise.context.Dependent;
 import javax.persistence.EntityExistsException;
@@ -38,24 +48,38 @@ import javax.xml.stream.XMLStreamReader;
 import lombok.AllArgsConstructor;
 import lombok.Cleanup;
 import lombok.extern.slf4j.Slf4j;
-import nu.xom.Element;
 
 import org.hibernate.CacheMode;
 import org.hibernate.FlushMode;
 import org.hibernate.Session;
+import org.hibernate.exception.ConstraintViolationException;
 import javax.inject.Inject;
 import javax.inject.Named;
 import org.zanata.common.util.ElementBuilder;
 import org.zanata.model.tm.TransMemory;
+import org.zanata.model.tm.TransMemoryUnit;
+import org.zanata.service.impl.TransMemoryResultCache;
 import org.zanata.transaction.TransactionUtil;
 import org.zanata.util.RunnableEx;
+import org.zanata.util.SysProperties;
 import org.zanata.util.TMXParseException;
 import org.zanata.xml.TmxDtdResolver;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
 import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * Parses TMX input.
  *
+ * Parsing and saving are pipelined: a parser thread reads the translation
+ * units with StAX and hands them to the calling thread in batches through a
+ * bounded queue, while the calling thread saves the previous batch. Each
+ * batch is saved in its own transaction (see
+ * {@link TransMemoryAdapter#saveTransUnits(TransMemory, List)}).
+ *
  * @author Carlos Munoz <a
  *         href="mailto:camunoz@redhat.com">camunoz@redhat.com</a>
  */
@@ -63,96 +87,204 @@ import com.google.common.base.Throwables;
 @Dependent
 @Slf4j
 public class TMXParser {
-    // Batch size to commit in a new transaction for long files
-    private static final int BATCH_SIZE = 100;
+    // Default number of translation units to commit in each transaction
+    private static final int DEFAULT_BATCH_SIZE = 500;
+
+    // Number of parsed batches which may wait to be saved
+    private static final int QUEUED_BATCHES = 2;
+
+    // Marks the end of the parsed batches
+    private static final UnitBatch END =
+            new UnitBatch(false, Collections.emptyList());
+
+    private static final QName TMX = new QName("tmx");
+    private static final QName HEADER = new QName("header");
+    private static final QName TU = new QName("tu");
 
     @Inject
     private Session session;
     @Inject
     private TransMemoryAdapter transMemoryAdapter;
+    @Inject
+    private TransMemoryResultCache transMemoryResultCache;
+
+    private int batchSize = SysProperties.getInt(
+            SysProperties.TMX_IMPORT_BATCH_SIZE, DEFAULT_BATCH_SIZE);
+
+    @VisibleForTesting
+    void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
 
     public void parseAndSaveTMX(InputStream input, TransMemory transMemory)
             throws TMXParseException, SecurityException, IllegalStateException,
             RollbackException, HeuristicMixedException,
             HeuristicRollbackException, SystemException, NotSupportedException {
         int handledTUs = 0;
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        ExecutorService parserExecutor = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat("tmx-parser-%d")
+                        .setDaemon(true).build());
         try {
             log.info("parsing started for: {}", transMemory.getSlug());
             session.setFlushMode(FlushMode.MANUAL);
             session.setCacheMode(CacheMode.IGNORE);
-            XMLInputFactory factory = XMLInputFactory.newInstance();
-            factory.setProperty(XMLInputFactory.SUPPORT_DTD, true);
-            factory.setProperty(XMLInputFactory.IS_VALIDATING, true);
-            factory.setXMLResolver(new TmxDtdResolver());
-            @Cleanup
-            XMLStreamReader reader = factory.createXMLStreamReader(input);
+            BlockingQueue<UnitBatch> queue =
+                    new ArrayBlockingQueue<>(QUEUED_BATCHES);
+            Future<Void> parser = parserExecutor
+                    .submit(() -> parse(input, transMemory, queue));
 
-            QName tmx = new QName("tmx");
-
-            while (reader.hasNext()
-                    && reader.next() != XMLStreamConstants.START_ELEMENT) {
-            }
-            if (!reader.hasNext())
-                throw new TMXParseException("No root element");
-            if (!reader.getName().equals(tmx))
-                throw new TMXParseException("Wrong root element: expected tmx");
-
-            // At this point, event = START_ELEMENT and name = tmx
-            while (reader.hasNext()) {
-                CommitBatch commitBatch =
-                        new CommitBatch(reader, 0, transMemory);
-                TransactionUtil.get().runEx(commitBatch);
-                handledTUs += commitBatch.handledTUs;
+            UnitBatch batch;
+            while ((batch = nextBatch(queue, parser)) != END) {
+                TransactionUtil.get().runEx(
+                        new CommitBatch(transMemory, batch));
+                session.clear();
+                // don't serve cached searches which missed the new units
+                transMemoryResultCache.invalidateAll();
+                handledTUs += batch.units.size();
             }
-        } catch (EntityExistsException e) {
-            String msg =
-                    "Possible duplicate TU (duplicate tuid or duplicate"
-                            + "src content without tuid)";
-            throw new TMXParseException(msg, e);
+            // the parser has finished, but may have failed after the end
+            parser.get();
         } catch (Exception e) {
-            Throwable rootCause = Throwables.getRootCause(e);
-            if (rootCause instanceof TMXParseException) {
-                throw (TMXParseException) e;
+            Throwable cause =
+                    e instanceof ExecutionException ? e.getCause() : e;
+            Throwable rootCause = Throwables.getRootCause(cause);
+            if (cause instanceof TMXParseException) {
+                throw (TMXParseException) cause;
+            } else if (rootCause instanceof TMXParseException) {
+                throw (TMXParseException) rootCause;
             } else if (rootCause instanceof XMLStreamException) {
                 throw new TMXParseException(rootCause);
+            } else if (isConstraintViolation(cause)) {
+                // eg another import of the same TM inserted the unique id
+                // after this batch looked for existing units
+                throw new TMXParseException(
+                        "Possible duplicate TU (duplicate tuid or duplicate "
+                                + "src content without tuid)", cause);
             } else {
-                throw Throwables.propagate(e);
+                throw Throwables.propagate(cause);
             }
         } finally {
-            log.info("parsing stopped for: {}, TU count={}",
-                    transMemory.getSlug(), handledTUs);
+            // stops the parser if saving failed
+            parserExecutor.shutdownNow();
+            // new units are inserted with JDBC, so cached counts are stale
+            session.getSessionFactory().getCache().evictDefaultQueryRegion();
+            long elapsedMillis = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+            log.info("parsing stopped for: {}, TU count={}, {} TUs/s",
+                    transMemory.getSlug(), handledTUs, elapsedMillis <= 0 ? 0
+                            : handledTUs * 1000L / elapsedMillis);
+        }
+    }
+
+    /**
+     * Whether saving a batch failed because it violated a database
+     * constraint. Units are inserted in JDBC batches, so this surfaces as a
+     * Hibernate ConstraintViolationException or (depending on the driver) a
+     * SQLIntegrityConstraintViolationException.
+     */
+    private static boolean isConstraintViolation(Throwable e) {
+        for (Throwable t : Throwables.getCausalChain(e)) {
+            if (t instanceof ConstraintViolationException
+                    || t instanceof SQLIntegrityConstraintViolationException
+                    || t instanceof EntityExistsException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Waits for the next batch from the parser, rethrowing the parser's
+     * exception if it fails.
+     */
+    private static UnitBatch nextBatch(BlockingQueue<UnitBatch> queue,
+            Future<Void> parser) throws Exception {
+        while (true) {
+            UnitBatch batch = queue.poll(1, TimeUnit.SECONDS);
+            if (batch != null) {
+                return batch;
+            }
+            if (parser.isDone()) {
+                parser.get();
+                // the parser always queues END before finishing normally
+                return queue.take();
+            }
         }
     }
 
+    /**
+     * Runs on the parser thread. Must not use the database.
+     */
+    private Void parse(InputStream input, TransMemory transMemory,
+            BlockingQueue<UnitBatch> queue) throws Exception {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, true);
+        factory.setProperty(XMLInputFactory.IS_VALIDATING, true);
+        factory.setXMLResolver(new TmxDtdResolver());
+        @Cleanup
+        XMLStreamReader reader = factory.createXMLStreamReader(input);
 
+        while (reader.hasNext()
+                && reader.next() != XMLStreamConstants.START_ELEMENT) {
+        }
+        if (!reader.hasNext())
+            throw new TMXParseException("No root element");
+        if (!reader.getName().equals(TMX))
+            throw new TMXParseException("Wrong root element: expected tmx");
+
+        // At this point, event = START_ELEMENT and name = tmx
+        boolean headerRead = false;
+        List<TransMemoryUnit> units = Lists.newArrayList();
+        while (reader.hasNext()) {
+            int eventType = reader.next();
+            if (eventType == XMLStreamConstants.START_ELEMENT) {
+                QName elemName = reader.getName();
+                if (elemName.equals(TU)) {
+                    units.add(transMemoryAdapter.readTransUnit(transMemory,
+                            reader));
+                    if (units.size() >= batchSize) {
+                        queue.put(new UnitBatch(headerRead, units));
+                        headerRead = false;
+                        units = Lists.newArrayList();
+                    }
+                } else if (elemName.equals(HEADER)) {
+                    transMemoryAdapter.readHeader(transMemory,
+                            ElementBuilder.buildElement(reader));
+                    headerRead = true;
+                }
+            }
+        }
+        if (headerRead || !units.isEmpty()) {
+            queue.put(new UnitBatch(headerRead, units));
+        }
+        queue.put(END);
+        return null;
+    }
+
+    /**
+     * Translation units parsed from the input, to be saved together.
+     */
+    @AllArgsConstructor
+    private static class UnitBatch {
+        // whether the header was read since the previous batch
+        private final boolean headerRead;
+        private final List<TransMemoryUnit> units;
+    }
 
     @AllArgsConstructor
     private class CommitBatch implements RunnableEx {
-        private XMLStreamReader reader;
-        private int handledTUs;
-        private TransMemory transMemory;
-        private final QName header = new QName("header");
-        private final QName tu = new QName("tu");
+        private final TransMemory transMemory;
+        private final UnitBatch batch;
 
         @Override
         public void run() throws Exception {
-            while (reader.hasNext() && handledTUs < BATCH_SIZE) {
-                int eventType = reader.next();
-                if (eventType == XMLStreamConstants.START_ELEMENT) {
-                    QName elemName = reader.getName();
-                    if (elemName.equals(tu)) {
-                        Element tuElem = ElementBuilder.buildElement(reader);
-                        transMemoryAdapter
-                                .processTransUnit(transMemory, tuElem);
-                        handledTUs++;
-                    } else if (elemName.equals(header)) {
-                        Element headerElem =
-                                ElementBuilder.buildElement(reader);
-                        transMemoryAdapter.processHeader(transMemory,
-                                headerElem);
-                    }
-                }
+            if (batch.headerRead) {
+                transMemoryAdapter.saveHeader(transMemory);
+            }
+            if (!batch.units.isEmpty()) {
+                transMemoryAdapter.saveTransUnits(transMemory, batch.units);
             }
+            session.flush();
         }
     }
 
@@ -21,12 +21,23 @@
 
 package org.zanata.tmx;
 
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
 import javax.enterprise.context.Dependent;
 import javax.persistence.EntityManager;
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 
 import lombok.NoArgsConstructor;
 import nu.xom.Element;
-import nu.xom.Elements;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -35,8 +46,14 @@ import org.zanata.model.tm.TransMemoryUnitVariant;
 import org.zanata.model.tm.TransMemoryUnit;
 import org.zanata.model.tm.TMXMetadataHelper;
 import org.zanata.model.tm.TransMemory;
+import org.zanata.util.TMXConstants;
 import org.zanata.util.TMXParseException;
 
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
 /**
  * Translation Memory Adapter for the TMX parser. Provides callback effects
  * (functions) to be used when the parser encounters certain specific events.
@@ -49,6 +66,9 @@ import org.zanata.util.TMXParseException;
 @Dependent
 @NoArgsConstructor
 public class TransMemoryAdapter {
+    private static final XMLOutputFactory XML_OUTPUT_FACTORY =
+            XMLOutputFactory.newInstance();
+
     @Inject
     private EntityManager entityManager;
 
@@ -56,37 +76,87 @@ public class TransMemoryAdapter {
     private TransMemoryDAO transMemoryDAO;
 
     /**
-     * Persists the header elements when encountered while parsing. This
-     * modifies the translation memory fields and metadata.
+     * Reads the header elements when encountered while parsing. This modifies
+     * the translation memory fields and metadata, but does not save them.
      *
      * @throws TMXParseException
      */
-    public void processHeader(TransMemory tm, Element headerElem)
+    public void readHeader(TransMemory tm, Element headerElem)
             throws TMXParseException {
         TMXMetadataHelper.setMetadata(tm, headerElem);
+    }
+
+    /**
+     * Persists the translation memory fields and metadata read by
+     * {@link #readHeader(TransMemory, Element)}.
+     */
+    public void saveHeader(TransMemory tm) {
         entityManager.merge(tm);
     }
 
     /**
-     * Persists a translation unit when a tu element is encountered while
-     * parsing.
+     * Builds a translation unit (without saving it) when a tu element is
+     * encountered while parsing. Does not use the database, so it may be
+     * called while another thread is saving earlier units.
+     * <p>
+     * The unit is read directly from the StAX reader, without building an
+     * element tree.
      *
+     * @param reader
+     *            positioned at the start of the tu element; it is left at
+     *            the end of the element
      * @throws TMXParseException
      */
-    public void processTransUnit(TransMemory tm, Element tuElem)
-            throws TMXParseException {
+    public TransMemoryUnit readTransUnit(TransMemory tm, XMLStreamReader reader)
+            throws TMXParseException, XMLStreamException {
         TransMemoryUnit tu = new TransMemoryUnit();
         tu.setTranslationMemory(tm);
-
-        TMXMetadataHelper.setMetadata(tu, tuElem, tm.getSourceLanguage());
         tu.setVersionNum(0);
 
-        addTUVs(tu, tuElem.getChildElements("tuv"));
+        Map<String, String> attributes = readAttributes(reader);
+        List<String> childrenXml = Lists.newArrayList();
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            String uri = reader.getNamespaceURI();
+            String name = reader.getLocalName();
+            if (isTmxElement(uri, name, "tuv")) {
+                addVariant(tu, reader);
+            } else if (TMXMetadataHelper.isSupportedChild(uri, name)) {
+                childrenXml.add(toXML(reader, false));
+            } else {
+                skipElement(reader);
+            }
+        }
+        TMXMetadataHelper.setMetadata(tu, attributes, childrenXml,
+                tm.getSourceLanguage());
 
         tu.setUniqueId(determineUniqueId(tu));
+        return tu;
+    }
 
-        tu = mergeWithExistingTUIfAny(tu);
-        entityManager.merge(tu);
+    /**
+     * Persists translation units built by
+     * {@link #readTransUnit(TransMemory, XMLStreamReader)}. Units with the same unique
+     * id as an existing unit replace its contents, and if several units have
+     * the same unique id, the last one wins. Existing units are looked up
+     * with a single query, and new units are inserted in JDBC batches.
+     */
+    public void saveTransUnits(TransMemory tm, List<TransMemoryUnit> units) {
+        Set<String> uniqueIds = Sets.newHashSet();
+        for (TransMemoryUnit tu : units) {
+            uniqueIds.add(tu.getUniqueId());
+        }
+        Map<String, TransMemoryUnit> existingUnits =
+                transMemoryDAO.findTranslationUnits(tm, uniqueIds);
+        Map<String, TransMemoryUnit> newUnits = Maps.newLinkedHashMap();
+        for (TransMemoryUnit tu : units) {
+            TransMemoryUnit existingTu = existingUnits.get(tu.getUniqueId());
+            if (existingTu != null) {
+                mergeIntoExistingTU(existingTu, tu);
+            } else {
+                newUnits.put(tu.getUniqueId(), tu);
+            }
+        }
+        transMemoryDAO.insertTranslationUnits(tm, newUnits.values());
     }
 
     private String determineUniqueId(TransMemoryUnit tu)
@@ -113,42 +183,174 @@ public class TransMemoryAdapter {
         }
     }
 
-    private void addTUVs(TransMemoryUnit tu, Elements tuvElems)
-            throws TMXParseException {
-        for (int i = 0; i < tuvElems.size(); i++) {
-            Element tuvElem = tuvElems.get(i);
-            addVariant(tu, tuvElem);
+    private void addVariant(TransMemoryUnit tu, XMLStreamReader reader)
+            throws TMXParseException, XMLStreamException {
+        Map<String, String> attributes = readAttributes(reader);
+        List<String> childrenXml = Lists.newArrayList();
+        String taggedSegment = null;
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            String uri = reader.getNamespaceURI();
+            String name = reader.getLocalName();
+            if (taggedSegment == null && isTmxElement(uri, name, "seg")) {
+                // the segment keeps its namespace, as its inline markup is
+                // stored verbatim
+                taggedSegment = toXML(reader, true);
+            } else if (TMXMetadataHelper.isSupportedChild(uri, name)) {
+                childrenXml.add(toXML(reader, false));
+            } else {
+                skipElement(reader);
+            }
+        }
+        if (taggedSegment == null) {
+            throw new TMXParseException("missing seg in tuv with attributes "
+                    + attributes);
         }
-    }
-
-    private void addVariant(TransMemoryUnit tu, Element tuvElem)
-            throws TMXParseException {
-        String taggedSegment = tuvElem.getFirstChildElement("seg").toXML();
 
         TransMemoryUnitVariant tuv = new TransMemoryUnitVariant();
         tuv.setTaggedSegment(taggedSegment);
-        TMXMetadataHelper.setMetadata(tuv, tuvElem);
+        TMXMetadataHelper.setMetadata(tuv, attributes, childrenXml);
         tu.getTransUnitVariants().put(tuv.getLanguage(), tuv);
     }
 
-    private TransMemoryUnit mergeWithExistingTUIfAny(TransMemoryUnit newTU) {
-        TransMemoryUnit existingTu =
-                transMemoryDAO.findTranslationUnit(newTU.getTranslationMemory()
-                        .getSlug(), newTU.getUniqueId());
-        if (existingTu != null) {
-            existingTu
-                    .setMetadata(newTU.getMetadataType(), newTU.getMetadata());
-            existingTu.setPosition(newTU.getPosition());
-            existingTu.setSourceLanguage(newTU.getSourceLanguage());
-            existingTu.setTransUnitId(newTU.getTransUnitId());
-            existingTu.getTransUnitVariants().clear();
-            existingTu.getTransUnitVariants().putAll(
-                    newTU.getTransUnitVariants());
-            // No need to set the unique id or parent Trans Memory, it should be
-            // the same
-            return existingTu;
+    private static boolean isTmxElement(@Nullable String namespaceUri,
+            String localName, String expectedName) {
+        return localName.equals(expectedName)
+                && (Strings.isNullOrEmpty(namespaceUri) || namespaceUri
+                        .equals(TMXConstants.TMX14_NAMESPACE));
+    }
+
+    private static Map<String, String> readAttributes(XMLStreamReader reader) {
+        Map<String, String> attributes = Maps.newHashMap();
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            String key = TMXMetadataHelper.getAttributeKey(
+                    reader.getAttributeNamespace(i),
+                    reader.getAttributeLocalName(i));
+            if (key != null) {
+                attributes.put(key, reader.getAttributeValue(i));
+            }
+        }
+        return attributes;
+    }
+
+    /**
+     * Serialises the element at the reader's position, leaving the reader at
+     * the end of the element.
+     *
+     * @param keepNamespace
+     *            whether to declare the element's namespace (if any), or to
+     *            write the element and its descendants without one
+     */
+    private static String toXML(XMLStreamReader reader, boolean keepNamespace)
+            throws XMLStreamException {
+        String rootNamespace = Strings.nullToEmpty(reader.getNamespaceURI());
+        StringWriter out = new StringWriter();
+        XMLStreamWriter writer = XML_OUTPUT_FACTORY.createXMLStreamWriter(out);
+        try {
+            int depth = 0;
+            while (true) {
+                switch (reader.getEventType()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    writeStartElement(reader, writer, rootNamespace,
+                            keepNamespace, depth == 0);
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    writer.writeEndElement();
+                    depth--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    writer.writeCharacters(reader.getText());
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    writer.writeComment(reader.getText());
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    writer.writeProcessingInstruction(reader.getPITarget(),
+                            reader.getPIData());
+                    break;
+                default:
+                    break;
+                }
+                if (depth == 0) {
+                    break;
+                }
+                reader.next();
+            }
+            writer.flush();
+        } finally {
+            writer.close();
+        }
+        return out.toString();
+    }
+
+    private static void writeStartElement(XMLStreamReader reader,
+            XMLStreamWriter writer, String rootNamespace,
+            boolean keepNamespace, boolean isRoot) throws XMLStreamException {
+        String namespace = Strings.nullToEmpty(reader.getNamespaceURI());
+        if (namespace.equals(rootNamespace)) {
+            writer.writeStartElement(reader.getLocalName());
+            if (isRoot && keepNamespace && !namespace.isEmpty()) {
+                writer.writeDefaultNamespace(namespace);
+            }
+        } else {
+            // foreign markup keeps its own prefix and namespace
+            String prefix = Strings.nullToEmpty(reader.getPrefix());
+            writer.writeStartElement(prefix, reader.getLocalName(), namespace);
+            if (prefix.isEmpty()) {
+                writer.writeDefaultNamespace(namespace);
+            } else {
+                writer.writeNamespace(prefix, namespace);
+            }
+        }
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            String attrNamespace =
+                    Strings.nullToEmpty(reader.getAttributeNamespace(i));
+            if (attrNamespace.isEmpty()) {
+                writer.writeAttribute(reader.getAttributeLocalName(i),
+                        reader.getAttributeValue(i));
+            } else if (attrNamespace.equals(XMLConstants.XML_NS_URI)) {
+                writer.writeAttribute(XMLConstants.XML_NS_PREFIX,
+                        attrNamespace, reader.getAttributeLocalName(i),
+                        reader.getAttributeValue(i));
+            } else {
+                String attrPrefix = reader.getAttributePrefix(i);
+                writer.writeNamespace(attrPrefix, attrNamespace);
+                writer.writeAttribute(attrPrefix, attrNamespace,
+                        reader.getAttributeLocalName(i),
+                        reader.getAttributeValue(i));
+            }
+        }
+    }
+
+    /**
+     * Skips the element at the reader's position, leaving the reader at the
+     * end of the element.
+     */
+    private static void skipElement(XMLStreamReader reader)
+            throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int eventType = reader.next();
+            if (eventType == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (eventType == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
         }
-        return newTU;
+    }
+
+    private void mergeIntoExistingTU(TransMemoryUnit existingTu,
+            TransMemoryUnit newTU) {
+        existingTu.setMetadata(newTU.getMetadataType(), newTU.getMetadata());
+        existingTu.setPosition(newTU.getPosition());
+        existingTu.setSourceLanguage(newTU.getSourceLanguage());
+        existingTu.setTransUnitId(newTU.getTransUnitId());
+        existingTu.getTransUnitVariants().clear();
+        existingTu.getTransUnitVariants().putAll(newTU.getTransUnitVariants());
+        // No need to set the unique id or parent Trans Memory, it should be
+        // the same
     }
 
 }
@@ -55,6 +55,40 @@ public class SysProperties {
      * Override Lucene value for project iteration (slug)
      */
     public static final String TM_BOOST_ITERATION = "zanata.tm.boost.iteration";
+    /**
+     * Approximate number of characters of TM search results to keep in the
+     * TM search cache (0 disables caching)
+     */
+    public static final String TM_CACHE_MAX_CHARS = "zanata.tm.cache.max.chars";
+    /**
+     * Number of seconds to keep TM search results in the TM search cache, as
+     * an upper bound on staleness from changes the cache isn't told about
+     */
+    public static final String TM_CACHE_TTL_SECONDS =
+            "zanata.tm.cache.ttl.seconds";
+    /**
+     * Approximate number of bytes of generated translation files (eg PO) to
+     * keep for "download all" archives (0 disables caching)
+     */
+    public static final String ARCHIVE_CACHE_MAX_BYTES =
+            "zanata.archive.cache.max.bytes";
+    /**
+     * Number of translation units saved in each transaction when importing
+     * a TMX file
+     */
+    public static final String TMX_IMPORT_BATCH_SIZE =
+            "zanata.tmx.import.batch.size";
+    /**
+     * Number of threads used to reindex each class (1 to reindex on a single
+     * thread, as before)
+     */
+    public static final String REINDEX_THREADS = "zanata.reindex.threads";
+    /**
+     * Number of editor events which may wait to be sent to each WebSocket
+     * client before it is disconnected (and falls back to long polling)
+     */
+    public static final String WEBSOCKET_MAX_QUEUED_EVENTS =
+            "zanata.websocket.max.queued.events";
     /**
      * Override default lock timeout for @Synchronized beans
      */
@@ -112,6 +112,25 @@ public class TranslationUtil {
             getAuthor(tft.getLastModifiedBy()));
     }
 
+    /**
+     * Start of the revision comment generated by
+     * {@link #getCopyVersionMessage(HTextFlowTarget)} for any target of the
+     * given version, up to and including the quote before the document id.
+     * Used where the rest of the message is built in SQL.
+     *
+     * @param projectName
+     *            name of the project being copied from
+     * @param versionSlug
+     *            slug of the version being copied from
+     */
+    public static String getCopyVersionMessagePrefix(String projectName,
+        String versionSlug) {
+        String message = generateAutoCopiedMessage(PREFIX_COPY_VERSION,
+            projectName, versionSlug, "", null);
+        // drop the closing quote after the (empty) document id
+        return message.substring(0, message.length() - 1);
+    }
+
     /**
      * Create revision comment for translation that is copied by TM Merge
      * @see org.zanata.service.TransMemoryMergeService
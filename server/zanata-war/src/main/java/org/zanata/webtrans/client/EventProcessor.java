@@ -26,6 +26,7 @@ import org.zanata.webtrans.shared.rpc.PublishWorkspaceChat;
 import org.zanata.webtrans.shared.rpc.SessionEventData;
 import org.zanata.webtrans.shared.rpc.TransUnitEdit;
 import org.zanata.webtrans.shared.rpc.TransUnitUpdated;
+import org.zanata.webtrans.shared.rpc.TransUnitUpdatedBatch;
 import org.zanata.webtrans.shared.rpc.WorkspaceContextUpdate;
 
 import com.allen_sauer.gwt.log.client.Log;
@@ -145,20 +146,70 @@ public class EventProcessor implements RemoteEventListener {
     private final RemoteEventService remoteEventService;
     private final Domain domain;
     private final EventBus eventBus;
+    private final WebSocketEventChannel webSocketEventChannel;
 
     @Inject
     public EventProcessor(EventBus eventBus,
             UserWorkspaceContext userWorkspaceContext,
-            RemoteEventService remoteEventService) {
+            RemoteEventService remoteEventService,
+            WebSocketEventChannel webSocketEventChannel) {
         this.eventBus = eventBus;
         this.remoteEventService = remoteEventService;
+        this.webSocketEventChannel = webSocketEventChannel;
         this.eventRegistry = new EventRegistry();
         this.domain =
                 DomainFactory.getDomain(userWorkspaceContext
                         .getWorkspaceContext().getWorkspaceId().toString());
     }
 
+    /**
+     * Listens for workspace events through the WebSocket channel if the
+     * browser supports it, otherwise (or if the connection fails) through
+     * GWTEventService long polling.
+     */
     public void start(final StartCallback callback) {
+        if (!webSocketEventChannel.isSupported()) {
+            startLongPolling(callback);
+            return;
+        }
+        webSocketEventChannel.open(new WebSocketEventChannel.Listener() {
+            private boolean connected;
+
+            @Override
+            public void onConnected(String connectionId) {
+                connected = true;
+                Log.info("EventProcessor is now listening for events through WebSocket");
+                callback.onSuccess(connectionId);
+            }
+
+            @Override
+            public void onEvent(Event event) {
+                apply(event);
+            }
+
+            @Override
+            public void onClosed() {
+                if (connected) {
+                    Log.warn("WebSocket closed; falling back to long polling");
+                    startLongPolling(new StartCallback() {
+                        @Override
+                        public void onSuccess(String connectionId) {
+                            // the editor has already started
+                        }
+
+                        @Override
+                        public void onFailure(Throwable e) {
+                        }
+                    });
+                } else {
+                    Log.info("WebSocket unavailable; using long polling");
+                    startLongPolling(callback);
+                }
+            }
+        });
+    }
+
+    private void startLongPolling(final StartCallback callback) {
         remoteEventService.addListener(domain, this, new AsyncCallback<Void>() {
             @Override
             public void onSuccess(Void result) {
@@ -189,6 +240,14 @@ public class EventProcessor implements RemoteEventListener {
     @Override
     public void apply(Event event) {
         // Log.info("received remote event "+event);
+        if (event instanceof TransUnitUpdatedBatch) {
+            // updates committed together are published as one event
+            for (TransUnitUpdated updated : ((TransUnitUpdatedBatch) event)
+                    .getUpdates()) {
+                apply(updated);
+            }
+            return;
+        }
         if (event instanceof SessionEventData) {
             SessionEventData ed = (SessionEventData) event;
             GwtEvent<?> gwtEvent = eventRegistry.getEvent(ed);
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.webtrans.client;
+
+import org.zanata.util.CoverageIgnore;
+import org.zanata.webtrans.shared.auth.Identity;
+import org.zanata.webtrans.shared.model.UserWorkspaceContext;
+import org.zanata.webtrans.shared.model.WorkspaceId;
+
+import com.allen_sauer.gwt.log.client.Log;
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.http.client.URL;
+import com.google.gwt.user.client.rpc.SerializationException;
+import com.google.gwt.user.client.rpc.SerializationStreamFactory;
+import com.google.gwt.user.client.rpc.ServiceDefTarget;
+import com.google.inject.Inject;
+
+import de.novanic.eventservice.client.event.Event;
+import de.novanic.eventservice.client.event.service.EventService;
+
+/**
+ * Receives workspace events from the server's WebSocket endpoint
+ * (org.zanata.webtrans.server.EditorEventEndpoint). Events are GWT-RPC
+ * encoded by the server, and decoded with the serializer generated for
+ * GWTEventService.
+ */
+public class WebSocketEventChannel {
+
+    public interface Listener {
+        /**
+         * The server has accepted the connection.
+         */
+        void onConnected(String connectionId);
+
+        void onEvent(Event event);
+
+        /**
+         * The connection failed or was closed (by either side).
+         */
+        void onClosed();
+    }
+
+    private final Identity identity;
+    private final UserWorkspaceContext userWorkspaceContext;
+    private SerializationStreamFactory serializer;
+    private Listener listener;
+
+    @Inject
+    public WebSocketEventChannel(Identity identity,
+            UserWorkspaceContext userWorkspaceContext) {
+        this.identity = identity;
+        this.userWorkspaceContext = userWorkspaceContext;
+    }
+
+    @CoverageIgnore("JSNI")
+    public native boolean isSupported() /*-{
+        return !!$wnd.WebSocket;
+    }-*/;
+
+    public void open(Listener listener) {
+        this.listener = listener;
+        serializer = GWT.create(EventService.class);
+        WorkspaceId workspaceId =
+                userWorkspaceContext.getWorkspaceContext().getWorkspaceId();
+        String url =
+                GWT.getModuleBaseURL().replaceFirst("^http", "ws")
+                        + "events?project="
+                        + encode(workspaceId.getProjectIterationId()
+                                .getProjectSlug())
+                        + "&iteration="
+                        + encode(workspaceId.getProjectIterationId()
+                                .getIterationSlug())
+                        + "&locale="
+                        + encode(workspaceId.getLocaleId().getId())
+                        + "&editorClientId="
+                        + encode(identity.getEditorClientId().getValue())
+                        + "&policy="
+                        + encode(((ServiceDefTarget) serializer)
+                                .getSerializationPolicyName());
+        connect(url);
+    }
+
+    private static String encode(String value) {
+        return URL.encodeQueryString(value);
+    }
+
+    @CoverageIgnore("JSNI")
+    private native void connect(String url) /*-{
+        var self = this;
+        var socket = new $wnd.WebSocket(url);
+        socket.onmessage = $entry(function(e) {
+            self.@org.zanata.webtrans.client.WebSocketEventChannel::onMessage(Ljava/lang/String;)(e.data);
+        });
+        socket.onclose = $entry(function() {
+            self.@org.zanata.webtrans.client.WebSocketEventChannel::onClose()();
+        });
+    }-*/;
+
+    // see EditorEventSocket for the message format
+    private void onMessage(String message) {
+        String payload = message.substring(2);
+        if (message.startsWith("c:")) {
+            listener.onConnected(payload);
+        } else if (message.startsWith("e:")) {
+            try {
+                listener.onEvent((Event) serializer.createStreamReader(
+                        payload).readObject());
+            } catch (SerializationException e) {
+                Log.error("unable to decode WebSocket event", e);
+            }
+        } else {
+            Log.warn("unknown WebSocket message " + message);
+        }
+    }
+
+    private void onClose() {
+        listener.onClosed();
+    }
+}
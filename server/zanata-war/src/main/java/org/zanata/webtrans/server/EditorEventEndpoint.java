@@ -0,0 +1,169 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.webtrans.server;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpSession;
+import javax.websocket.CloseReason;
+import javax.websocket.EndpointConfig;
+import javax.websocket.HandshakeResponse;
+import javax.websocket.OnClose;
+import javax.websocket.OnError;
+import javax.websocket.OnOpen;
+import javax.websocket.Session;
+import javax.websocket.server.HandshakeRequest;
+import javax.websocket.server.ServerEndpoint;
+import javax.websocket.server.ServerEndpointConfig;
+
+import org.zanata.common.LocaleId;
+import org.zanata.util.ServiceLocator;
+import org.zanata.util.SysProperties;
+import org.zanata.webtrans.shared.auth.EditorClientId;
+import org.zanata.webtrans.shared.model.ProjectIterationId;
+import org.zanata.webtrans.shared.model.WorkspaceId;
+
+import com.google.common.base.Optional;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * WebSocket channel which pushes the events of a workspace to an editor
+ * client, as an alternative to GWTEventService long polling.
+ *
+ * The client must already have joined the workspace (through
+ * ActivateWorkspaceAction) in the same HTTP session. It identifies itself
+ * with the query parameters project, iteration, locale, editorClientId and
+ * policy (the name of its GWT-RPC serialization policy).
+ *
+ * @see EditorEventSocket for the message format
+ */
+@ServerEndpoint(value = "/webtrans/events",
+        configurator = EditorEventEndpoint.HttpSessionConfigurator.class)
+@Slf4j
+public class EditorEventEndpoint {
+    private static final String HTTP_SESSION = HttpSession.class.getName();
+    private static final int DEFAULT_MAX_QUEUED_EVENTS = 500;
+
+    private TranslationWorkspace workspace;
+    private EditorEventSocket socket;
+
+    @OnOpen
+    public void onOpen(Session session, EndpointConfig config)
+            throws IOException {
+        // Some containers share these properties between handshakes, so the
+        // session is removed once read. A session from a concurrent
+        // handshake can't match this client's EditorClientId below.
+        HttpSession httpSession =
+                (HttpSession) config.getUserProperties().remove(HTTP_SESSION);
+        Map<String, List<String>> params = session.getRequestParameterMap();
+        String project = getParam(params, "project");
+        String iteration = getParam(params, "iteration");
+        String locale = getParam(params, "locale");
+        String editorClientId = getParam(params, "editorClientId");
+        if (httpSession == null || project == null || iteration == null
+                || locale == null || editorClientId == null) {
+            reject(session, "missing parameters");
+            return;
+        }
+        // only the client number is taken from the client
+        EditorClientId clientId;
+        try {
+            clientId = new EditorClientId(httpSession.getId(),
+                    Long.parseLong(editorClientId.substring(editorClientId
+                            .lastIndexOf(':') + 1)));
+        } catch (NumberFormatException e) {
+            reject(session, "invalid editorClientId");
+            return;
+        }
+        WorkspaceId workspaceId = new WorkspaceId(
+                ProjectIterationId.of(project, iteration, null),
+                new LocaleId(locale));
+        Optional<TranslationWorkspace> workspaceOpt =
+                ServiceLocator.instance()
+                        .getInstance(TranslationWorkspaceManager.class)
+                        .tryGetWorkspace(workspaceId);
+        if (!workspaceOpt.isPresent()
+                || !workspaceOpt.get().getUsers().containsKey(clientId)) {
+            reject(session, "not a member of workspace");
+            return;
+        }
+        workspace = workspaceOpt.get();
+        socket = new EditorEventSocket(session, clientId,
+                EditorEventSerializer.getPolicy(
+                        httpSession.getServletContext(),
+                        getParam(params, "policy")),
+                SysProperties.getInt(SysProperties.WEBSOCKET_MAX_QUEUED_EVENTS,
+                        DEFAULT_MAX_QUEUED_EVENTS));
+        workspace.getEventSockets().add(socket);
+        workspace.onEventServiceConnected(clientId, socket.getConnectionId());
+        socket.sendConnected();
+        log.info("EditorClientId {} connected to WebSocket for workspace {}",
+                clientId, workspaceId);
+    }
+
+    @OnClose
+    public void onClose(Session session, CloseReason closeReason) {
+        if (socket != null) {
+            // the editor falls back to long polling, so it stays in the
+            // workspace until it exits or its HTTP session ends
+            workspace.getEventSockets().remove(socket);
+            log.info("EditorClientId {} disconnected from WebSocket: {}",
+                    socket.getEditorClientId(), closeReason);
+        }
+    }
+
+    @OnError
+    public void onError(Session session, Throwable t) {
+        log.debug("WebSocket error for {}", socket != null ? socket
+                .getEditorClientId() : session.getId(), t);
+    }
+
+    private static String getParam(Map<String, List<String>> params,
+            String name) {
+        List<String> values = params.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    private static void reject(Session session, String reason)
+            throws IOException {
+        log.debug("rejecting WebSocket connection: {}", reason);
+        session.close(new CloseReason(CloseReason.CloseCodes.VIOLATED_POLICY,
+                reason));
+    }
+
+    /**
+     * Makes the HTTP session of the handshake available to the endpoint.
+     */
+    public static class HttpSessionConfigurator extends
+            ServerEndpointConfig.Configurator {
+        @Override
+        public void modifyHandshake(ServerEndpointConfig config,
+                HandshakeRequest request, HandshakeResponse response) {
+            Object httpSession = request.getHttpSession();
+            if (httpSession != null) {
+                config.getUserProperties().put(HTTP_SESSION, httpSession);
+            }
+        }
+    }
+}
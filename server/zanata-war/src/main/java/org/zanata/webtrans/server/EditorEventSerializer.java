@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.webtrans.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+import javax.servlet.ServletContext;
+
+import org.zanata.webtrans.shared.rpc.SessionEventData;
+
+import com.google.common.collect.Maps;
+import com.google.gwt.user.client.rpc.SerializationException;
+import com.google.gwt.user.server.rpc.RPC;
+import com.google.gwt.user.server.rpc.SerializationPolicy;
+import com.google.gwt.user.server.rpc.SerializationPolicyLoader;
+import com.google.gwt.user.server.rpc.impl.ServerSerializationStreamWriter;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Encodes editor events for the WebSocket channel in the same GWT-RPC format
+ * which GWTEventService uses, so that the client can decode them with the
+ * serializer generated for the event service.
+ */
+@Slf4j
+final class EditorEventSerializer {
+    // compiled GWT module, relative to the web application
+    private static final String MODULE_PATH = "/webtrans/";
+
+    private static final Pattern POLICY_NAME = Pattern.compile("[0-9A-F]{32}");
+
+    private static final ConcurrentMap<String, SerializationPolicy> policies =
+            Maps.newConcurrentMap();
+
+    private EditorEventSerializer() {
+    }
+
+    /**
+     * Returns the serialization policy generated for the client's
+     * permutation, or the legacy policy if the name is not recognised.
+     */
+    static SerializationPolicy getPolicy(ServletContext servletContext,
+            String policyName) {
+        if (policyName == null || !POLICY_NAME.matcher(policyName).matches()) {
+            return RPC.getDefaultSerializationPolicy();
+        }
+        SerializationPolicy policy = policies.get(policyName);
+        if (policy == null) {
+            policy = loadPolicy(servletContext, policyName);
+            if (policy == null) {
+                return RPC.getDefaultSerializationPolicy();
+            }
+            policies.putIfAbsent(policyName, policy);
+        }
+        return policy;
+    }
+
+    private static SerializationPolicy loadPolicy(
+            ServletContext servletContext, String policyName) {
+        String path = MODULE_PATH + policyName + ".gwt.rpc";
+        try (InputStream in = servletContext.getResourceAsStream(path)) {
+            if (in == null) {
+                log.warn("GWT-RPC serialization policy {} not found", path);
+                return null;
+            }
+            return SerializationPolicyLoader.loadFromStream(in, null);
+        } catch (IOException | ParseException e) {
+            log.warn("unable to load GWT-RPC serialization policy {}", path,
+                    e);
+            return null;
+        }
+    }
+
+    static String encode(SessionEventData eventData,
+            SerializationPolicy policy) throws SerializationException {
+        ServerSerializationStreamWriter writer =
+                new ServerSerializationStreamWriter(policy);
+        writer.prepareToWrite();
+        writer.writeObject(eventData);
+        return writer.toString();
+    }
+}
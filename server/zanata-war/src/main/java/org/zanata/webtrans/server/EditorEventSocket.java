@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.webtrans.server;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import javax.websocket.CloseReason;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+
+import org.zanata.webtrans.shared.auth.EditorClientId;
+
+import com.google.gwt.user.server.rpc.SerializationPolicy;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * An editor client connected to the WebSocket channel.
+ *
+ * Messages are sent asynchronously, one at a time, so that a slow client
+ * never holds up the thread which publishes an event. Messages published
+ * while a send is in progress wait in a bounded queue; a client which falls
+ * further behind than that is disconnected, and the editor falls back to
+ * long polling.
+ *
+ * Each message is a one character type, a colon, and its payload:
+ * "c:connectionId" when the client is connected, then "e:event" for each
+ * GWT-RPC encoded event.
+ */
+@Slf4j
+public class EditorEventSocket {
+    static final String CONNECTED_PREFIX = "c:";
+    static final String EVENT_PREFIX = "e:";
+
+    private final Session session;
+    @Getter
+    private final EditorClientId editorClientId;
+    @Getter
+    private final SerializationPolicy serializationPolicy;
+    private final int maxQueued;
+
+    // guarded by this
+    private final Queue<String> queue = new ArrayDeque<>();
+    private boolean sending;
+    private boolean closing;
+
+    public EditorEventSocket(Session session, EditorClientId editorClientId,
+            SerializationPolicy serializationPolicy, int maxQueued) {
+        this.session = session;
+        this.editorClientId = editorClientId;
+        this.serializationPolicy = serializationPolicy;
+        this.maxQueued = maxQueued;
+    }
+
+    public String getConnectionId() {
+        return "ws-" + session.getId();
+    }
+
+    void sendConnected() {
+        send(CONNECTED_PREFIX + getConnectionId());
+    }
+
+    void sendEvent(String encodedEvent) {
+        send(EVENT_PREFIX + encodedEvent);
+    }
+
+    private void send(String message) {
+        boolean overflow = false;
+        synchronized (this) {
+            if (closing) {
+                return;
+            }
+            if (sending) {
+                if (queue.size() < maxQueued) {
+                    queue.add(message);
+                    return;
+                }
+                closing = true;
+                overflow = true;
+                queue.clear();
+            } else {
+                sending = true;
+            }
+        }
+        if (overflow) {
+            log.info("disconnecting {}: more than {} events waiting",
+                    editorClientId, maxQueued);
+            close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER,
+                    "too many events waiting"));
+        } else {
+            sendAsync(message);
+        }
+    }
+
+    private void sendAsync(String message) {
+        session.getAsyncRemote().sendText(message, this::onSent);
+    }
+
+    private void onSent(SendResult result) {
+        if (!result.isOK()) {
+            log.debug("unable to send event to {}", editorClientId,
+                    result.getException());
+            synchronized (this) {
+                closing = true;
+                queue.clear();
+            }
+            close(new CloseReason(CloseReason.CloseCodes.UNEXPECTED_CONDITION,
+                    "send failed"));
+            return;
+        }
+        String next;
+        synchronized (this) {
+            next = queue.poll();
+            if (next == null) {
+                sending = false;
+                return;
+            }
+        }
+        sendAsync(next);
+    }
+
+    synchronized int getQueuedCount() {
+        return queue.size();
+    }
+
+    private void close(CloseReason reason) {
+        try {
+            session.close(reason);
+        } catch (IOException e) {
+            log.debug("error closing WebSocket for {}", editorClientId, e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.webtrans.server;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.zanata.webtrans.shared.rpc.SessionEventData;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.gwt.user.client.rpc.SerializationException;
+import com.google.gwt.user.server.rpc.SerializationPolicy;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The WebSocket clients of one workspace. Each event is encoded once for
+ * each serialization policy in use (normally one per client build), not
+ * once per client.
+ */
+@Slf4j
+public class EditorEventSockets {
+    private final Set<EditorEventSocket> sockets =
+            Sets.newConcurrentHashSet();
+
+    public void add(EditorEventSocket socket) {
+        sockets.add(socket);
+    }
+
+    public void remove(EditorEventSocket socket) {
+        sockets.remove(socket);
+    }
+
+    public int size() {
+        return sockets.size();
+    }
+
+    public void publish(SessionEventData eventData) {
+        if (sockets.isEmpty()) {
+            return;
+        }
+        Map<SerializationPolicy, String> encodedByPolicy = Maps.newHashMap();
+        for (EditorEventSocket socket : sockets) {
+            SerializationPolicy policy = socket.getSerializationPolicy();
+            String encoded = encodedByPolicy.get(policy);
+            if (encoded == null) {
+                try {
+                    encoded = EditorEventSerializer.encode(eventData, policy);
+                } catch (SerializationException e) {
+                    log.error("unable to encode event {}", eventData, e);
+                    continue;
+                }
+                encodedByPolicy.put(policy, encoded);
+            }
+            socket.sendEvent(encoded);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.webtrans.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.zanata.common.ContentState;
+import org.zanata.webtrans.shared.model.TransUnitId;
+import org.zanata.webtrans.shared.rpc.GetTransUnitsNavigationResult;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Ids and states of the text flows in a document which match an editor
+ * filter, in document order. States are kept as ContentState ordinals in a
+ * byte array, so that the index of a large document takes much less memory
+ * than a list of TransUnitIds and a map of states.
+ *
+ * States can be updated in place after a translation changes.
+ *
+ * @see NavigationIndexCache
+ */
+public class NavigationIndex {
+    private static final ContentState[] STATES = ContentState.values();
+
+    private final long[] ids;
+    private final byte[] states;
+
+    public NavigationIndex(long[] ids, ContentState[] states) {
+        Preconditions.checkArgument(ids.length == states.length,
+                "ids and states must be the same length");
+        this.ids = ids;
+        this.states = new byte[states.length];
+        for (int i = 0; i < states.length; i++) {
+            this.states[i] = (byte) states[i].ordinal();
+        }
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Changes the state of a text flow in the index.
+     *
+     * @return false if the text flow is not in the index
+     */
+    public synchronized boolean updateState(long textFlowId,
+            ContentState state) {
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == textFlowId) {
+                states[i] = (byte) state.ordinal();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized GetTransUnitsNavigationResult toResult() {
+        List<TransUnitId> idIndexList = new ArrayList<>(ids.length);
+        Map<TransUnitId, ContentState> transIdStateMap =
+                new HashMap<>(ids.length * 4 / 3 + 1);
+        for (int i = 0; i < ids.length; i++) {
+            TransUnitId transUnitId = new TransUnitId(ids[i]);
+            idIndexList.add(transUnitId);
+            transIdStateMap.put(transUnitId, STATES[states[i]]);
+        }
+        return new GetTransUnitsNavigationResult(idIndexList, transIdStateMap);
+    }
+}
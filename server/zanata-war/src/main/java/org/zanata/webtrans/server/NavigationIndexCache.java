@@ -0,0 +1,182 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.webtrans.server;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.zanata.search.FilterConstraints;
+import org.zanata.webtrans.shared.model.ContentStateGroup;
+import org.zanata.webtrans.shared.model.TransUnit;
+import org.zanata.webtrans.shared.model.TransUnitUpdateInfo;
+
+import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Navigation indexes of the documents in a translation workspace, keyed by
+ * document and filter, and shared by all the translators in the workspace.
+ *
+ * When a translation changes, indexes for filters which only look at the
+ * source (or no filter) have the state of the text flow updated in place.
+ * Indexes for filters which look at the target (state, target content,
+ * modification details or comment) might no longer include the right text
+ * flows, so they are discarded and rebuilt when next needed.
+ *
+ * @see TranslationWorkspace#getNavigationIndexCache()
+ */
+@Slf4j
+public class NavigationIndexCache {
+    private static final int MAX_SIZE = 200;
+    private static final int EXPIRE_MINUTES = 30;
+
+    private final Cache<Key, NavigationIndex> cache = CacheBuilder
+            .newBuilder().maximumSize(MAX_SIZE)
+            .expireAfterAccess(EXPIRE_MINUTES, TimeUnit.MINUTES).build();
+
+    // incremented (while synchronized) by every change, so that an index
+    // which was being built during a change is not cached
+    private long generation;
+
+    /**
+     * Returns the cached index for the document and filter, or builds one
+     * with the loader (without holding any locks) and caches it.
+     */
+    public NavigationIndex get(Long documentId, FilterConstraints constraints,
+            Callable<NavigationIndex> loader) {
+        Key key = new Key(documentId, constraints);
+        NavigationIndex index = cache.getIfPresent(key);
+        if (index != null) {
+            return index;
+        }
+        long loadGeneration = getGeneration();
+        try {
+            index = loader.call();
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
+        }
+        synchronized (this) {
+            if (generation == loadGeneration) {
+                cache.put(key, index);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Updates or discards the indexes of a document after one of its
+     * translations has changed.
+     */
+    public synchronized void transUnitUpdated(TransUnitUpdateInfo updateInfo) {
+        generation++;
+        Long documentId = updateInfo.getDocumentId().getId();
+        TransUnit transUnit = updateInfo.getTransUnit();
+        for (Map.Entry<Key, NavigationIndex> entry : cache.asMap()
+                .entrySet()) {
+            Key key = entry.getKey();
+            if (!key.documentId.equals(documentId)) {
+                continue;
+            }
+            if (key.dependsOnTarget) {
+                cache.invalidate(key);
+            } else {
+                entry.getValue().updateState(transUnit.getId().getValue(),
+                        transUnit.getStatus());
+            }
+        }
+    }
+
+    /**
+     * Discards the indexes of a document after its text flows have changed.
+     */
+    public synchronized void documentChanged(Long documentId) {
+        generation++;
+        cache.asMap().keySet().removeIf(key ->
+                key.documentId.equals(documentId));
+        log.debug("discarded navigation indexes for document {}", documentId);
+    }
+
+    private synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Document id plus filter fingerprint. FilterConstraints has no equals(),
+     * so the relevant fields are copied here.
+     */
+    @EqualsAndHashCode(exclude = "dependsOnTarget")
+    private static final class Key {
+        private final Long documentId;
+        private final String searchString;
+        private final boolean caseSensitive;
+        private final boolean searchInSource;
+        private final boolean searchInTarget;
+        private final int includedStates;
+        private final String resId;
+        private final DateTime changedBefore;
+        private final DateTime changedAfter;
+        private final String lastModifiedByUser;
+        private final String sourceComment;
+        private final String transComment;
+        private final String msgContext;
+        private final boolean dependsOnTarget;
+
+        private Key(Long documentId, FilterConstraints constraints) {
+            this.documentId = documentId;
+            this.searchString = constraints.getSearchString();
+            this.caseSensitive = constraints.isCaseSensitive();
+            this.searchInSource = constraints.isSearchInSource();
+            this.searchInTarget = constraints.isSearchInTarget();
+            this.includedStates = statesToBits(constraints.getIncludedStates());
+            this.resId = constraints.getResId();
+            this.changedBefore = constraints.getChangedBefore();
+            this.changedAfter = constraints.getChangedAfter();
+            this.lastModifiedByUser = constraints.getLastModifiedByUser();
+            this.sourceComment = constraints.getSourceComment();
+            this.transComment = constraints.getTransComment();
+            this.msgContext = constraints.getMsgContext();
+            this.dependsOnTarget =
+                    !constraints.getIncludedStates().hasAllStates()
+                            || searchInTarget
+                            && !Strings.isNullOrEmpty(searchString)
+                            || changedBefore != null || changedAfter != null
+                            || !Strings.isNullOrEmpty(lastModifiedByUser)
+                            || !Strings.isNullOrEmpty(transComment);
+        }
+
+        private static int statesToBits(ContentStateGroup states) {
+            int bits = 0;
+            bits |= states.hasNew() ? 1 : 0;
+            bits |= states.hasFuzzy() ? 1 << 1 : 0;
+            bits |= states.hasTranslated() ? 1 << 2 : 0;
+            bits |= states.hasApproved() ? 1 << 3 : 0;
+            bits |= states.hasRejected() ? 1 << 4 : 0;
+            return bits;
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package org.zanata.webtrans.server;
 
-import static org.zanata.transaction.TransactionUtil.runInTransaction;
-
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import javax.enterprise.event.Observes;
 
@@ -10,6 +12,9 @@ import lombok.EqualsAndHashCode;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.event.spi.EventSource;
 import org.hibernate.event.spi.PostInsertEvent;
 import org.hibernate.event.spi.PostInsertEventListener;
 import org.hibernate.event.spi.PostUpdateEvent;
@@ -21,6 +26,8 @@ import org.hibernate.persister.entity.EntityPersister;
 import org.zanata.common.ContentState;
 import org.zanata.common.LocaleId;
 import org.zanata.common.ProjectType;
+import org.zanata.dao.TextFlowTargetReviewCommentsDAO;
+import org.zanata.events.DocumentLocaleKey;
 import org.zanata.events.TextFlowTargetUpdateContextEvent;
 import org.zanata.events.TextFlowTargetUpdatedEvent;
 import org.zanata.model.HDocument;
@@ -47,11 +54,16 @@ import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Maps;
 
 import javax.servlet.http.HttpSession;
 /**
  * Entity event listener for HTextFlowTarget.
  *
+ * Changed targets are collected until the end of the transaction, and
+ * published once it has committed, as a single event for each workspace.
+ *
  * @author Patrick Huang <a
  *         href="mailto:pahuang@redhat.com">pahuang@redhat.com</a>
  */
@@ -69,6 +81,10 @@ public class TranslationUpdateListener implements PostUpdateEventListener,
                     .expireAfterAccess(1, TimeUnit.SECONDS).maximumSize(1000)
                     .build();
 
+    // changed targets for each session, until its transaction completes
+    private final ConcurrentMap<EventSource, PendingUpdates> pendingUpdates =
+            new MapMaker().weakKeys().makeMap();
+
     @Inject
     private TranslationWorkspaceManager translationWorkspaceManager;
 
@@ -101,16 +117,12 @@ public class TranslationUpdateListener implements PostUpdateEventListener,
         final HTextFlowTarget target =
                 HTextFlowTarget.class.cast(event.getEntity());
         try {
-            runInTransaction(() -> {
-                ContentState oldContentState =
-                        (ContentState) Iterables.find(
-                                Lists.newArrayList(event.getOldState()),
-                                Predicates.instanceOf(ContentState.class));
-
-
-                prepareTransUnitUpdatedEvent(target.getVersionNum() - 1,
-                        oldContentState, target);
-            });
+            ContentState oldContentState =
+                    (ContentState) Iterables.find(
+                            Lists.newArrayList(event.getOldState()),
+                            Predicates.instanceOf(ContentState.class));
+            addPendingUpdate(event.getSession(), target,
+                    target.getVersionNum() - 1, oldContentState);
         } catch (Exception e) {
             log.error("fail to publish TransUnitUpdate event", e);
         }
@@ -123,65 +135,166 @@ public class TranslationUpdateListener implements PostUpdateEventListener,
         return false;
     }
 
-    private void prepareTransUnitUpdatedEvent(int previousVersionNum,
-            ContentState previousState, HTextFlowTarget target) {
-        LocaleId localeId = target.getLocaleId();
-        HTextFlow textFlow = target.getTextFlow();
-        HDocument document = textFlow.getDocument();
-        HProjectIteration projectIteration = document.getProjectIteration();
-        String iterationSlug = projectIteration.getSlug();
-        String projectSlug = projectIteration.getProject().getSlug();
-        ProjectType projectType = projectIteration.getProjectType();
-
-        WorkspaceId workspaceId =
-                new WorkspaceId(new ProjectIterationId(projectSlug,
-                        iterationSlug, projectType), localeId);
-        Optional<TranslationWorkspace> workspaceOptional =
-                translationWorkspaceManager.tryGetWorkspace(workspaceId);
-        if (!workspaceOptional.isPresent()) {
+    @Override
+    public void onPostInsert(final PostInsertEvent event) {
+        Object entity = event.getEntity();
+        if (!(entity instanceof HTextFlowTarget)) {
             return;
         }
+        final HTextFlowTarget target =
+                HTextFlowTarget.class.cast(event.getEntity());
+        try {
+            addPendingUpdate(event.getSession(), target, 0, ContentState.New);
+        } catch (Exception e) {
+            log.error("fail to publish TransUnitUpdate event", e);
+        }
 
-        TransUnitTransformer transUnitTransformer =
-                serviceLocator.getInstance(TransUnitTransformer.class);
-        TransUnit transUnit =
-                transUnitTransformer.transform(textFlow, target,
-                        target.getLocale());
-
-        DocumentId documentId =
-                new DocumentId(document.getId(), document.getDocId());
-        int wordCount = textFlow.getWordCount().intValue();
-
-        TransUnitUpdateInfo updateInfo =
-                createTransUnitUpdateInfo(transUnit, documentId, wordCount,
-                        previousVersionNum, previousState);
+    }
 
-        CacheValue context =
-                updateContext.getIfPresent(new CacheKey(transUnit.getId(),
-                        transUnit.getLocaleId()));
-        TransUnitUpdated updated;
+    /**
+     * Remembers a changed target until the session's transaction completes.
+     * The first change in each transaction registers the processes which
+     * build the TransUnitUpdated events before commit, and fire them after a
+     * successful commit.
+     */
+    private void addPendingUpdate(EventSource session, HTextFlowTarget target,
+            int previousVersionNum, ContentState previousState) {
+        PendingUpdates updates = pendingUpdates.get(session);
+        if (updates == null) {
+            PendingUpdates newUpdates = new PendingUpdates();
+            pendingUpdates.put(session, newUpdates);
+            session.getActionQueue().registerProcess(
+                    (BeforeTransactionCompletionProcess) s -> prepareUpdates(
+                            session, newUpdates));
+            session.getActionQueue().registerProcess(
+                    (AfterTransactionCompletionProcess) (success,
+                            s) -> publishUpdates(session, newUpdates,
+                                    success));
+            updates = newUpdates;
+        }
+        // the context is only available in the thread which made the change
+        TransUnitUpdated.UpdateType updateType;
+        EditorClientId editorClientId;
+        CacheValue context = updateContext.getIfPresent(new CacheKey(
+                new TransUnitId(target.getTextFlow().getId()),
+                target.getLocaleId()));
         java.util.Optional<HttpSession> sessionOpt =
                 HttpRequestAndSessionHolder.getHttpSession(false);
         if (context != null) {
-            updated =
-                    new TransUnitUpdated(updateInfo, context.editorClientId,
-                            context.updateType);
-            log.debug("about to publish trans unit updated event {}", updated);
+            editorClientId = context.editorClientId;
+            updateType = context.updateType;
         } else if (sessionOpt.isPresent()) {
             String sessionId = sessionOpt.get().getId();
-            EditorClientId editorClientId = new EditorClientId(sessionId, -1);
-            updated =
-                    new TransUnitUpdated(updateInfo, editorClientId,
-                            TransUnitUpdated.UpdateType.NonEditorSave);
+            editorClientId = new EditorClientId(sessionId, -1);
+            updateType = TransUnitUpdated.UpdateType.NonEditorSave;
         } else {
-            updated =
-                    new TransUnitUpdated(updateInfo, new EditorClientId(
-                            "unknown", -1),
-                            TransUnitUpdated.UpdateType.NonEditorSave);
+            editorClientId = new EditorClientId("unknown", -1);
+            updateType = TransUnitUpdated.UpdateType.NonEditorSave;
+        }
+        // a target changed more than once is published once, with the
+        // version and state it had before the transaction
+        updates.byTargetId.putIfAbsent(target.getId(),
+                new PendingUpdate(target, previousVersionNum, previousState,
+                        editorClientId, updateType));
+    }
+
+    /**
+     * Builds the TransUnitUpdated events while the session can still load
+     * entities, resolving the workspace once for each document and locale,
+     * and counting review comments for all targets in one query.
+     */
+    private void prepareUpdates(EventSource session, PendingUpdates updates) {
+        pendingUpdates.remove(session);
+        try {
+            Map<DocumentLocaleKey, Optional<TranslationWorkspace>> workspaces =
+                    Maps.newHashMap();
+            Map<PendingUpdate, TranslationWorkspace> updatesToPublish =
+                    Maps.newLinkedHashMap();
+            for (PendingUpdate update : updates.byTargetId.values()) {
+                LocaleId localeId = update.target.getLocaleId();
+                HDocument document = update.target.getTextFlow().getDocument();
+                Optional<TranslationWorkspace> workspaceOptional =
+                        workspaces.computeIfAbsent(
+                                new DocumentLocaleKey(document.getId(),
+                                        localeId),
+                                key -> findWorkspace(document, localeId));
+                if (workspaceOptional.isPresent()) {
+                    updatesToPublish.put(update, workspaceOptional.get());
+                }
+            }
+            if (updatesToPublish.isEmpty()) {
+                return;
+            }
+            TransUnitTransformer transUnitTransformer =
+                    serviceLocator.getInstance(TransUnitTransformer.class);
+            List<Long> targetIds = updatesToPublish.keySet().stream()
+                    .map(update -> update.target.getId())
+                    .collect(Collectors.toList());
+            Map<Long, Integer> commentCounts =
+                    new TextFlowTargetReviewCommentsDAO(session)
+                            .getCommentCounts(targetIds);
+            for (Map.Entry<PendingUpdate, TranslationWorkspace> entry : updatesToPublish
+                    .entrySet()) {
+                PendingUpdate update = entry.getKey();
+                HTextFlowTarget target = update.target;
+                HTextFlow textFlow = target.getTextFlow();
+                HDocument document = textFlow.getDocument();
+                TransUnit transUnit =
+                        transUnitTransformer.transform(textFlow, target,
+                                commentCounts.getOrDefault(target.getId(), 0),
+                                target.getLocale());
+
+                DocumentId documentId =
+                        new DocumentId(document.getId(), document.getDocId());
+                int wordCount = textFlow.getWordCount().intValue();
+
+                TransUnitUpdateInfo updateInfo =
+                        createTransUnitUpdateInfo(transUnit, documentId,
+                                wordCount, update.previousVersionNum,
+                                update.previousState);
+                TransUnitUpdated updated =
+                        new TransUnitUpdated(updateInfo,
+                                update.editorClientId, update.updateType);
+                log.debug("about to publish trans unit updated event {}",
+                        updated);
+                updates.prepared.computeIfAbsent(entry.getValue(),
+                        workspace -> Maps.newLinkedHashMap())
+                        .put(target.getId(), updated);
+            }
+        } catch (Exception e) {
+            log.error("fail to publish TransUnitUpdate event", e);
+            updates.prepared.clear();
+        }
+    }
+
+    private Optional<TranslationWorkspace> findWorkspace(HDocument document,
+            LocaleId localeId) {
+        HProjectIteration projectIteration = document.getProjectIteration();
+        String iterationSlug = projectIteration.getSlug();
+        String projectSlug = projectIteration.getProject().getSlug();
+        ProjectType projectType = projectIteration.getProjectType();
+
+        WorkspaceId workspaceId =
+                new WorkspaceId(new ProjectIterationId(projectSlug,
+                        iterationSlug, projectType), localeId);
+        return translationWorkspaceManager.tryGetWorkspace(workspaceId);
+    }
+
+    private void publishUpdates(EventSource session, PendingUpdates updates,
+            boolean success) {
+        pendingUpdates.remove(session);
+        if (!success) {
+            return;
+        }
+        for (Map.Entry<TranslationWorkspace, Map<Long, TransUnitUpdated>> entry : updates.prepared
+                .entrySet()) {
+            try {
+                textFlowTargetUpdatedEvent.fire(new TextFlowTargetUpdatedEvent(
+                        entry.getKey(), entry.getValue()));
+            } catch (Exception e) {
+                log.error("fail to publish TransUnitUpdate event", e);
+            }
         }
-        textFlowTargetUpdatedEvent.fire(
-                new TextFlowTargetUpdatedEvent(workspaceOptional.get(),
-                        target.getId(), updated));
     }
 
     private static TransUnitUpdateInfo createTransUnitUpdateInfo(
@@ -191,21 +304,24 @@ public class TranslationUpdateListener implements PostUpdateEventListener,
                 wordCount, previousVersionNum, previousState, null);
     }
 
-    @Override
-    public void onPostInsert(final PostInsertEvent event) {
-        Object entity = event.getEntity();
-        if (!(entity instanceof HTextFlowTarget)) {
-            return;
-        }
-        final HTextFlowTarget target =
-                HTextFlowTarget.class.cast(event.getEntity());
-        try {
-            runInTransaction(() -> prepareTransUnitUpdatedEvent(0,
-                    ContentState.New, target));
-        } catch (Exception e) {
-            log.error("fail to publish TransUnitUpdate event", e);
-        }
+    /**
+     * Targets changed in one transaction, and the events built from them
+     * before commit.
+     */
+    private static class PendingUpdates {
+        private final Map<Long, PendingUpdate> byTargetId =
+                Maps.newLinkedHashMap();
+        private final Map<TranslationWorkspace, Map<Long, TransUnitUpdated>> prepared =
+                Maps.newLinkedHashMap();
+    }
 
+    @RequiredArgsConstructor
+    private static class PendingUpdate {
+        private final HTextFlowTarget target;
+        private final int previousVersionNum;
+        private final ContentState previousState;
+        private final EditorClientId editorClientId;
+        private final TransUnitUpdated.UpdateType updateType;
     }
 
     @RequiredArgsConstructor
@@ -57,4 +57,12 @@ public interface TranslationWorkspace {
 
     void onEventServiceConnected(EditorClientId editorClientId,
             String connectionId);
+
+    NavigationIndexCache getNavigationIndexCache();
+
+    /**
+     * @return editor clients which receive this workspace's events through
+     *         the WebSocket channel instead of GWTEventService
+     */
+    EditorEventSockets getEventSockets();
 }
@@ -42,6 +42,9 @@ public class TranslationWorkspaceImpl implements TranslationWorkspace {
     private final Multimap<String, EditorClientId> httpSessionToEditorClientId;
     private final Map<String, EditorClientId> connectionIdToEditorClientId;
     private final EventExecutorService eventExecutorService;
+    private final NavigationIndexCache navigationIndexCache =
+            new NavigationIndexCache();
+    private final EditorEventSockets eventSockets = new EditorEventSockets();
 
     {
         ArrayListMultimap<String, EditorClientId> almm =
@@ -165,6 +168,7 @@ public class TranslationWorkspaceImpl implements TranslationWorkspace {
     @Override
     public <T extends SessionEventData> void publish(T eventData) {
         eventExecutorService.addEvent(domain, eventData);
+        eventSockets.publish(eventData);
     }
 
     @Override
@@ -208,4 +212,13 @@ public class TranslationWorkspaceImpl implements TranslationWorkspace {
         return null;
     }
 
+    @Override
+    public NavigationIndexCache getNavigationIndexCache() {
+        return navigationIndexCache;
+    }
+
+    @Override
+    public EditorEventSockets getEventSockets() {
+        return eventSockets;
+    }
 }
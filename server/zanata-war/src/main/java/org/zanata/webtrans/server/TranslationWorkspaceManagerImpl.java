@@ -18,6 +18,7 @@ import org.zanata.async.Async;
 import org.zanata.common.EntityStatus;
 import org.zanata.common.ProjectType;
 import org.zanata.dao.ProjectIterationDAO;
+import org.zanata.events.DocumentUploadedEvent;
 import org.zanata.events.LogoutEvent;
 import org.zanata.events.ProjectIterationUpdate;
 import org.zanata.events.ProjectUpdate;
@@ -44,6 +45,7 @@ import org.zanata.webtrans.shared.rpc.WorkspaceContextUpdate;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.persistence.EntityManager;
@@ -105,6 +107,23 @@ public class TranslationWorkspaceManagerImpl implements
                 firstNonNull(payload.getPersonEmail(), "<unknown>"));
     }
 
+    /**
+     * Discards the cached navigation indexes of a document whose text flows
+     * may have changed.
+     */
+    public void documentUploaded(
+            @Observes(during = TransactionPhase.AFTER_SUCCESS)
+            DocumentUploadedEvent event) {
+        if (!event.isSourceDocument()) {
+            // translation changes are handled by TransUnitUpdateHelper
+            return;
+        }
+        for (TranslationWorkspace workspace : workspaceMap.values()) {
+            workspace.getNavigationIndexCache()
+                    .documentChanged(event.getDocumentId());
+        }
+    }
+
     @VisibleForTesting
     void exitWorkspace(String username, String httpSessionId, String personName,
             String personEmail) {
@@ -21,6 +21,7 @@
 package org.zanata.webtrans.server.rpc;
 
 import java.util.List;
+import java.util.Map;
 
 import lombok.extern.slf4j.Slf4j;
 import net.customware.gwt.dispatch.server.ExecutionContext;
@@ -36,6 +37,7 @@ import org.zanata.dao.TextFlowDAO;
 import org.zanata.exception.ZanataServiceException;
 import org.zanata.model.HLocale;
 import org.zanata.model.HTextFlow;
+import org.zanata.model.HTextFlowTarget;
 import org.zanata.search.FilterConstraints;
 import org.zanata.security.ZanataIdentity;
 import org.zanata.service.LocaleService;
@@ -49,10 +51,10 @@ import org.zanata.webtrans.shared.rpc.GetTransUnitsNavigation;
 import org.zanata.webtrans.shared.rpc.GetTransUnitsNavigationResult;
 import org.zanata.webtrans.shared.util.FindByTransUnitIdPredicate;
 
-import com.google.common.base.Function;
 import com.google.common.base.Strings;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 @Named("webtrans.gwt.GetTransUnitListHandler")
 @RequestScoped
@@ -112,9 +114,9 @@ public class GetTransUnitListHandler extends
                         .includeStates(action.getFilterStates()).build();
         if (action.isNeedReloadIndex()) {
             GetTransUnitsNavigation getTransUnitsNavigation =
-                    new GetTransUnitsNavigation(action.getDocumentId(),
-                            action.getFilterStates(), action.getEditorFilter(),
-                            constraints);
+                    new GetTransUnitsNavigation(action.getWorkspaceId(),
+                            action.getDocumentId(), action.getFilterStates(),
+                            action.getEditorFilter(), constraints);
             log.debug("get trans unit navigation action: {}",
                     getTransUnitsNavigation);
             navigationResult =
@@ -139,12 +141,11 @@ public class GetTransUnitListHandler extends
             }
         }
 
-        List<HTextFlow> textFlows =
-                getTextFlows(action, hLocale, targetOffset, constraints);
+        List<TransUnit> units =
+                getTransUnits(action, hLocale, targetOffset, constraints);
 
         GetTransUnitListResult result =
-                transformToTransUnits(action, hLocale, textFlows, targetOffset,
-                        targetPageIndex);
+                toResult(action, units, targetOffset, targetPageIndex);
         result.setNavigationIndex(navigationResult);
         return result;
     }
@@ -160,31 +161,65 @@ public class GetTransUnitListHandler extends
         return totalPageNumber > 0 ? totalPageNumber - 1 : totalPageNumber;
     }
 
+    private List<TransUnit> getTransUnits(GetTransUnitList action,
+            HLocale hLocale, int offset, FilterConstraints constraints) {
+        if (!hasStatusAndSearchFilter(action) && !hasValidationFilter(action)) {
+            log.debug("Fetch TransUnits:*");
+            // text flows, targets and comment counts in one query
+            List<Object[]> rows =
+                    textFlowDAO.getTextFlowsWithTargetsByPosition(action
+                            .getDocumentId().getId(), hLocale.getId(), offset,
+                            action.getCount());
+            List<TransUnit> units = Lists.newArrayListWithCapacity(rows.size());
+            for (Object[] row : rows) {
+                units.add(transUnitTransformer.transform((HTextFlow) row[0],
+                        (HTextFlowTarget) row[1],
+                        ((Number) row[2]).intValue(), hLocale));
+            }
+            return units;
+        }
+        return transformWithTargets(
+                getTextFlows(action, hLocale, offset, constraints), hLocale);
+    }
+
+    /**
+     * Loads the targets (and their comment counts) of all the text flows in
+     * one query, instead of once per text flow.
+     */
+    private List<TransUnit> transformWithTargets(List<HTextFlow> textFlows,
+            HLocale hLocale) {
+        List<Long> textFlowIds = Lists.newArrayListWithCapacity(textFlows.size());
+        for (HTextFlow textFlow : textFlows) {
+            textFlowIds.add(textFlow.getId());
+        }
+        Map<Long, HTextFlowTarget> targets = Maps.newHashMap();
+        Map<Long, Integer> commentCounts = Maps.newHashMap();
+        for (Object[] row : textFlowDAO.getTargetsWithReviewCommentCounts(
+                textFlowIds, hLocale.getId())) {
+            HTextFlowTarget target = (HTextFlowTarget) row[0];
+            Long textFlowId = target.getTextFlow().getId();
+            targets.put(textFlowId, target);
+            commentCounts.put(textFlowId, ((Number) row[1]).intValue());
+        }
+        List<TransUnit> units = Lists.newArrayListWithCapacity(textFlows.size());
+        for (HTextFlow textFlow : textFlows) {
+            Long id = textFlow.getId();
+            units.add(transUnitTransformer.transform(textFlow, targets.get(id),
+                    commentCounts.getOrDefault(id, 0), hLocale));
+        }
+        return units;
+    }
+
     private List<HTextFlow> getTextFlows(GetTransUnitList action,
             HLocale hLocale, int offset, FilterConstraints constraints) {
         List<HTextFlow> textFlows;
         if (!hasStatusAndSearchFilter(action)) {
-            log.debug("Fetch TransUnits:*");
-            if (!hasValidationFilter(action)) {
-                // TODO debt: this should use a left join to fetch target (and
-                // possibly comments)
-                textFlows =
-                        textFlowDAO.getTextFlowsByDocumentId(action
-                                .getDocumentId().getId(), offset,
-                                action.getCount());
-            } else {
-                // TODO debt: this is not scalable. But we may not have other
-                // choice
-                // for validation filter. Maybe use scrollable result will help?
-                textFlows =
-                        textFlowDAO.getTextFlowsByDocumentId(action
-                                .getDocumentId().getId(), null, null);
-                textFlows =
-                        validationServiceImpl.filterHasWarningOrErrorTextFlow(
-                                textFlows, action.getValidationIds(),
-                                hLocale.getLocaleId(), offset,
-                                action.getCount());
-            }
+            log.debug("Fetch TransUnits filtered by validation");
+            textFlows =
+                    validationServiceImpl.filterHasWarningOrErrorTextFlow(
+                            action.getDocumentId().getId(),
+                            action.getValidationIds(), hLocale.getLocaleId(),
+                            offset, action.getCount());
         } else {
             // has status and other search field filter
             log.debug("Fetch TransUnits filtered by status and/or search: {}",
@@ -232,13 +267,8 @@ public class GetTransUnitListHandler extends
         }
     }
 
-    private GetTransUnitListResult transformToTransUnits(
-            GetTransUnitList action, HLocale hLocale,
-            List<HTextFlow> textFlows, int targetOffset, int targetPage) {
-        List<TransUnit> units =
-                Lists.transform(textFlows, new HTextFlowToTransUnitFunction(
-                        hLocale, transUnitTransformer));
-
+    private GetTransUnitListResult toResult(GetTransUnitList action,
+            List<TransUnit> units, int targetOffset, int targetPage) {
         int gotoRow = 0;
         if (action.getTargetTransUnitId() != null) {
             int row =
@@ -248,10 +278,8 @@ public class GetTransUnitListHandler extends
                 gotoRow = row;
             }
         }
-        // stupid GWT RPC can't handle
-        // com.google.common.collect.Lists$TransformingRandomAccessList
         return new GetTransUnitListResult(action.getDocumentId(),
-                Lists.newArrayList(units), gotoRow, targetOffset, targetPage);
+                units, gotoRow, targetOffset, targetPage);
     }
 
     @Override
@@ -259,21 +287,4 @@ public class GetTransUnitListHandler extends
             GetTransUnitListResult result, ExecutionContext context)
             throws ActionException {
     }
-
-    private static class HTextFlowToTransUnitFunction implements
-            Function<HTextFlow, TransUnit> {
-        private final HLocale hLocale;
-        private final TransUnitTransformer transformer;
-
-        public HTextFlowToTransUnitFunction(HLocale hLocale,
-                TransUnitTransformer transformer) {
-            this.hLocale = hLocale;
-            this.transformer = transformer;
-        }
-
-        @Override
-        public TransUnit apply(HTextFlow input) {
-            return transformer.transform(input, hLocale);
-        }
-    }
 }
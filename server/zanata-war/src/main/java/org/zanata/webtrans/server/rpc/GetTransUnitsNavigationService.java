@@ -20,10 +20,7 @@
  */
 package org.zanata.webtrans.server.rpc;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import org.hibernate.transform.ResultTransformer;
 
@@ -37,12 +34,14 @@ import org.zanata.dao.TextFlowDAO;
 import org.zanata.model.HLocale;
 import org.zanata.model.HTextFlow;
 import org.zanata.model.HTextFlowTarget;
-import org.zanata.search.FilterConstraints;
-import org.zanata.webtrans.shared.model.TransUnitId;
-import org.zanata.webtrans.shared.rpc.EditorFilter;
+import org.zanata.webtrans.server.NavigationIndex;
+import org.zanata.webtrans.server.TranslationWorkspace;
+import org.zanata.webtrans.server.TranslationWorkspaceManager;
 import org.zanata.webtrans.shared.rpc.GetTransUnitsNavigation;
 import org.zanata.webtrans.shared.rpc.GetTransUnitsNavigationResult;
 
+import com.google.common.base.Optional;
+
 import lombok.extern.slf4j.Slf4j;
 
 @Named("getTransUnitsNavigationService")
@@ -53,28 +52,50 @@ public class GetTransUnitsNavigationService {
     @Inject
     private TextFlowDAO textFlowDAO;
 
+    @Inject
+    private TranslationWorkspaceManager translationWorkspaceManager;
+
+    /**
+     * Returns the navigation index for the document and filter. The index is
+     * cached in the translation workspace (if there is one), so that it can
+     * be shared by all its translators and kept up to date as translations
+     * change.
+     */
     protected GetTransUnitsNavigationResult getNavigationIndexes(
             GetTransUnitsNavigation action, HLocale hLocale) {
-        List<TransUnitId> idIndexList = new ArrayList<TransUnitId>();
-        Map<TransUnitId, ContentState> transIdStateMap =
-                new HashMap<TransUnitId, ContentState>();
+        Optional<TranslationWorkspace> workspace =
+                action.getWorkspaceId() == null
+                        ? Optional.<TranslationWorkspace> absent()
+                        : translationWorkspaceManager
+                                .tryGetWorkspace(action.getWorkspaceId());
+        NavigationIndex index;
+        if (workspace.isPresent()) {
+            index = workspace.get().getNavigationIndexCache().get(
+                    action.getDocumentId().getId(), action.getConstraints(),
+                    () -> loadNavigationIndex(action, hLocale));
+        } else {
+            index = loadNavigationIndex(action, hLocale);
+        }
+        log.debug("for action {} returned size: {}", action, index.size());
+        return index.toResult();
+    }
 
-        List<HTextFlow> textFlows;
+    private NavigationIndex loadNavigationIndex(GetTransUnitsNavigation action,
+            HLocale hLocale) {
         TextFlowResultTransformer resultTransformer =
                 new TextFlowResultTransformer(hLocale);
 
-        textFlows =
+        List<HTextFlow> textFlows =
                 textFlowDAO.getNavigationByDocumentId(action.getDocumentId(), hLocale,
                         resultTransformer, action.getConstraints());
-        for (HTextFlow textFlow : textFlows) {
-            TransUnitId transUnitId = new TransUnitId(textFlow.getId());
-            idIndexList.add(transUnitId);
-            transIdStateMap.put(transUnitId,
-                    textFlow.getTargets().get(hLocale.getId()).getState());
+        long[] ids = new long[textFlows.size()];
+        ContentState[] states = new ContentState[textFlows.size()];
+        for (int i = 0; i < ids.length; i++) {
+            HTextFlow textFlow = textFlows.get(i);
+            ids[i] = textFlow.getId();
+            states[i] = textFlow.getTargets().get(hLocale.getId()).getState();
         }
-
-        log.debug("for action {} returned size: {}", action, idIndexList.size());
-        return new GetTransUnitsNavigationResult(idIndexList, transIdStateMap);
+        return new NavigationIndex(ids, states);
     }
 
     /**
@@ -58,6 +58,17 @@ public class TransUnitTransformer {
 
     public TransUnit transform(HTextFlow hTextFlow, HTextFlowTarget target,
             HLocale hLocale) {
+        return transform(hTextFlow, target, getCommentCount(target), hLocale);
+    }
+
+    /**
+     * Use this when the target and its review comment count have already been
+     * loaded (eg by
+     * {@link org.zanata.dao.TextFlowDAO#getTextFlowsWithTargetsByPosition}),
+     * to avoid extra database calls for each text flow.
+     */
+    public TransUnit transform(HTextFlow hTextFlow, HTextFlowTarget target,
+            int commentsCount, HLocale hLocale) {
         HPotEntryData potEntryData = hTextFlow.getPotEntryData();
         String msgContext = null, refs = null, flags = null;
         if (potEntryData != null) {
@@ -95,7 +106,7 @@ public class TransUnitTransformer {
                     .setVerNum(
                         target == null ? NULL_TARGET_VERSION_NUM
                             : target.getVersionNum())
-                    .setCommentsCount(getCommentCount(target));
+                    .setCommentsCount(commentsCount);
 
         if (target != null) {
             builder.setStatus(target.getState());
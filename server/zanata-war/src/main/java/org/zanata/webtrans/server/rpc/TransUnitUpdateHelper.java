@@ -30,6 +30,7 @@ import org.zanata.events.TextFlowTargetUpdatedEvent;
 import org.zanata.model.*;
 import org.zanata.service.*;
 import org.zanata.util.IServiceLocator;
+import org.zanata.webtrans.server.TranslationWorkspace;
 import org.zanata.webtrans.shared.model.*;
 import org.zanata.webtrans.shared.rpc.*;
 
@@ -59,12 +60,21 @@ public class TransUnitUpdateHelper {
             .softValues().maximumSize(100).build();
 
     public void onTargetUpdatedSuccessful(@Observes(during = TransactionPhase.AFTER_SUCCESS) TextFlowTargetUpdatedEvent event) {
-        TransUnitUpdated transUnitUpdated = event.getTransUnitUpdated();
-        event.getWorkspace().publish(transUnitUpdated);
-        TransUnit transUnit = transUnitUpdated.getUpdateInfo().getTransUnit();
-        cache.put(
-                new CacheKey(event.getTextFlowTargetId(), transUnit.getVerNum()),
-                transUnitUpdated.getUpdateInfo());
+        TranslationWorkspace workspace = event.getWorkspace();
+        List<TransUnitUpdated> updates = new ArrayList<>();
+        for (Map.Entry<Long, TransUnitUpdated> entry : event
+                .getTransUnitUpdates().entrySet()) {
+            TransUnitUpdateInfo updateInfo = entry.getValue().getUpdateInfo();
+            workspace.getNavigationIndexCache().transUnitUpdated(updateInfo);
+            cache.put(new CacheKey(entry.getKey(),
+                    updateInfo.getTransUnit().getVerNum()), updateInfo);
+            updates.add(entry.getValue());
+        }
+        if (updates.size() == 1) {
+            workspace.publish(updates.get(0));
+        } else if (!updates.isEmpty()) {
+            workspace.publish(new TransUnitUpdatedBatch(updates));
+        }
     }
 
     public UpdateTransUnitResult generateUpdateTransUnitResult(
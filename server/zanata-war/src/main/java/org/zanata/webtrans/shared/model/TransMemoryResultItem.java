@@ -76,6 +76,19 @@ public class TransMemoryResultItem extends SearchResultItem implements
         this.origins = new ArrayList<String>();
     }
 
+    /**
+     * Creates a copy of another item, which does not share any of its lists.
+     */
+    public TransMemoryResultItem(TransMemoryResultItem other) {
+        super(other.getRelevanceScore(), other.getSimilarityPercent());
+        this.sourceContents = new ArrayList<String>(other.sourceContents);
+        this.targetContents = new ArrayList<String>(other.targetContents);
+        this.matchCount = other.matchCount;
+        this.matchType = other.matchType;
+        this.origins = new ArrayList<String>(other.origins);
+        this.sourceIdList = new ArrayList<Long>(other.sourceIdList);
+    }
+
     public List<String> getOrigins() {
         return origins;
     }
@@ -23,10 +23,12 @@ package org.zanata.webtrans.shared.rpc;
 import org.zanata.search.FilterConstraints;
 import org.zanata.webtrans.shared.model.ContentStateGroup;
 import org.zanata.webtrans.shared.model.DocumentId;
+import org.zanata.webtrans.shared.model.WorkspaceId;
 
 import com.google.common.base.Objects;
 
 public class GetTransUnitsNavigation {
+    private WorkspaceId workspaceId;
     private DocumentId documentId;
     private ContentStateGroup activeStates;
     private EditorFilter editorFilter;
@@ -36,15 +38,20 @@ public class GetTransUnitsNavigation {
     private GetTransUnitsNavigation() {
     }
 
-    public GetTransUnitsNavigation(DocumentId documentId,
-            ContentStateGroup activeStates, EditorFilter editorFilter,
-            FilterConstraints constraints) {
+    public GetTransUnitsNavigation(WorkspaceId workspaceId,
+            DocumentId documentId, ContentStateGroup activeStates,
+            EditorFilter editorFilter, FilterConstraints constraints) {
+        this.workspaceId = workspaceId;
         this.documentId = documentId;
         this.activeStates = activeStates;
         this.editorFilter = editorFilter;
         this.constraints = constraints;
     }
 
+    public WorkspaceId getWorkspaceId() {
+        return workspaceId;
+    }
+
     public DocumentId getDocumentId() {
         return documentId;
     }
@@ -57,6 +64,7 @@ public class GetTransUnitsNavigation {
     public String toString() {
         // @formatter:off
       return Objects.toStringHelper(this).
+            add("workspaceId", workspaceId).
             add("documentId", documentId).
             add("activeStates", activeStates).
             add("editorFilter", editorFilter).
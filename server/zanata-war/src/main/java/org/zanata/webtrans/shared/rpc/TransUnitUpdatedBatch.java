@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.webtrans.shared.rpc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.base.Objects;
+
+/**
+ * Several TransUnitUpdated events for one workspace, which were committed in
+ * the same transaction. Each update is applied by the client as if it had
+ * been received on its own.
+ */
+//@ExposeEntity
+public class TransUnitUpdatedBatch implements SessionEventData {
+
+    private static final long serialVersionUID = 1L;
+    private ArrayList<TransUnitUpdated> updates;
+
+    // for ExposeEntity
+    public TransUnitUpdatedBatch() {
+    }
+
+    public TransUnitUpdatedBatch(List<TransUnitUpdated> updates) {
+        this.updates = new ArrayList<TransUnitUpdated>(updates);
+    }
+
+    public List<TransUnitUpdated> getUpdates() {
+        return updates;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("updates", updates)
+                .toString();
+    }
+}
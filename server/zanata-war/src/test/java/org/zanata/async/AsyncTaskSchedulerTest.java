@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.async;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AsyncTaskSchedulerTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final Ticker ticker = new Ticker() {
+        @Override
+        public long read() {
+            return now.get();
+        }
+    };
+    // tasks handed to the executor, which only run when the test says so
+    private final List<Runnable> started = Lists.newArrayList();
+    private final Executor executor = started::add;
+    private final List<String> ran = Lists.newArrayList();
+    private AsyncTaskScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        Map<AsyncTaskClass, Integer> maxRunning = ImmutableMap.of(
+                AsyncTaskClass.BULK, 2, AsyncTaskClass.MAINTENANCE, 1);
+        scheduler = new AsyncTaskScheduler(executor, 3, maxRunning, ticker);
+    }
+
+    private void submit(AsyncTaskClass taskClass, String owner, String name) {
+        scheduler.submit(taskClass, owner, () -> ran.add(name));
+    }
+
+    private void runStarted(int index) {
+        started.remove(index).run();
+    }
+
+    @Test
+    public void bulkTasksCannotTakeEveryThread() {
+        submit(AsyncTaskClass.BULK, "alice", "copytrans1");
+        submit(AsyncTaskClass.BULK, "alice", "copytrans2");
+        submit(AsyncTaskClass.BULK, "alice", "copytrans3");
+        assertThat(started).hasSize(2);
+        assertThat(scheduler.getQueuedCount(AsyncTaskClass.BULK)).isEqualTo(1);
+
+        submit(AsyncTaskClass.INTERACTIVE, "bob", "push");
+        assertThat(started).hasSize(3);
+        runStarted(2);
+        assertThat(ran).containsExactly("push");
+    }
+
+    @Test
+    public void higherPriorityClassRunsFirst() {
+        // fill every thread
+        submit(AsyncTaskClass.INTERACTIVE, "bob", "push1");
+        submit(AsyncTaskClass.INTERACTIVE, "bob", "push2");
+        submit(AsyncTaskClass.INTERACTIVE, "bob", "push3");
+        submit(AsyncTaskClass.MAINTENANCE, "admin", "reindex");
+        submit(AsyncTaskClass.BULK, "alice", "copytrans");
+        submit(AsyncTaskClass.INTERACTIVE, "bob", "push4");
+
+        // each time a thread is freed, run the task which took it over
+        runStarted(0);
+        runStarted(started.size() - 1);
+        runStarted(0);
+        runStarted(started.size() - 1);
+        runStarted(0);
+        runStarted(started.size() - 1);
+        assertThat(ran).containsExactly("push1", "push4", "push2",
+                "copytrans", "push3", "reindex");
+    }
+
+    @Test
+    public void ownersTakeTurns() {
+        scheduler = new AsyncTaskScheduler(executor, 1, ImmutableMap.of(),
+                ticker);
+        submit(AsyncTaskClass.BULK, "alice", "alice1");
+        submit(AsyncTaskClass.BULK, "alice", "alice2");
+        submit(AsyncTaskClass.BULK, "alice", "alice3");
+        submit(AsyncTaskClass.BULK, "bob", "bob1");
+        submit(AsyncTaskClass.BULK, null, "system1");
+
+        while (!started.isEmpty()) {
+            runStarted(0);
+        }
+        assertThat(ran).containsExactly("alice1", "alice2", "bob1",
+                "system1", "alice3");
+    }
+
+    @Test
+    public void finishedTaskFreesItsThread() {
+        submit(AsyncTaskClass.MAINTENANCE, "admin", "reindex");
+        submit(AsyncTaskClass.MAINTENANCE, "admin", "stats");
+        assertThat(scheduler.getRunningCount(AsyncTaskClass.MAINTENANCE))
+                .isEqualTo(1);
+
+        runStarted(0);
+
+        assertThat(scheduler.getRunningCount(AsyncTaskClass.MAINTENANCE))
+                .isEqualTo(1);
+        assertThat(scheduler.getQueuedCount(AsyncTaskClass.MAINTENANCE))
+                .isEqualTo(0);
+    }
+
+    @Test
+    public void failedTaskFreesItsThread() {
+        scheduler.submit(AsyncTaskClass.MAINTENANCE, "admin", () -> {
+            throw new IllegalStateException("failed");
+        });
+        submit(AsyncTaskClass.MAINTENANCE, "admin", "stats");
+        try {
+            runStarted(0);
+        } catch (IllegalStateException expected) {
+            // the executor's problem, not the scheduler's
+        }
+        runStarted(0);
+        assertThat(ran).containsExactly("stats");
+    }
+
+    @Test
+    public void reportsQueueDepthAndWaitTime() {
+        submit(AsyncTaskClass.MAINTENANCE, "admin", "reindex");
+        submit(AsyncTaskClass.MAINTENANCE, "admin", "stats");
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+
+        Map<String, String> stats = scheduler.getStatistics();
+        assertThat(stats).containsEntry("maintenance.queued", "1")
+                .containsEntry("maintenance.running", "1")
+                .containsEntry("maintenance.oldestQueuedMillis", "2000")
+                .containsEntry("bulk.maxRunning", "2");
+
+        runStarted(0);
+        assertThat(scheduler.getStatistics())
+                .containsEntry("maintenance.averageWaitMillis", "1000");
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.cache.CacheLoader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InfinispanCacheWrapperTest {
+
+    private InfinispanTestCacheContainer cacheContainer;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        cacheContainer = new InfinispanTestCacheContainer();
+        executor = Executors.newFixedThreadPool(8);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        cacheContainer.stop();
+    }
+
+    @Test
+    public void concurrentMissesForSameKeyShareOneLoad() throws Exception {
+        final AtomicInteger loadCount = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final InfinispanCacheWrapper<String, String> cache =
+                InfinispanCacheWrapper.create("sameKeyCache", cacheContainer,
+                        new CacheLoader<String, String>() {
+                            @Override
+                            public String load(String key) throws Exception {
+                                loadCount.incrementAndGet();
+                                release.await(5, TimeUnit.SECONDS);
+                                return key.toUpperCase();
+                            }
+                        });
+
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> cache.getWithLoader("key")));
+        }
+        // give the threads a chance to pile up behind the first load
+        Thread.sleep(200);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("KEY");
+        }
+        assertThat(loadCount.get()).isEqualTo(1);
+        assertThat(cache.getLoaderStats().getLoads()).isEqualTo(1);
+    }
+
+    @Test
+    public void differentKeysLoadInParallel() throws Exception {
+        // each load only finishes once both loads have started, which would
+        // time out if loads were serialised
+        final CountDownLatch bothStarted = new CountDownLatch(2);
+        final InfinispanCacheWrapper<String, Boolean> cache =
+                InfinispanCacheWrapper.create("differentKeyCache",
+                        cacheContainer, new CacheLoader<String, Boolean>() {
+                            @Override
+                            public Boolean load(String key) throws Exception {
+                                bothStarted.countDown();
+                                return bothStarted.await(5, TimeUnit.SECONDS);
+                            }
+                        });
+
+        Future<Boolean> first = executor.submit(() -> cache.getWithLoader("a"));
+        Future<Boolean> second =
+                executor.submit(() -> cache.getWithLoader("b"));
+
+        assertThat(first.get(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(second.get(10, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void removeDuringLoadDoesNotCacheStaleValue() throws Exception {
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final InfinispanCacheWrapper<String, String> cache =
+                InfinispanCacheWrapper.create("staleCache", cacheContainer,
+                        new CacheLoader<String, String>() {
+                            @Override
+                            public String load(String key) throws Exception {
+                                loading.countDown();
+                                release.await(5, TimeUnit.SECONDS);
+                                return "stale";
+                            }
+                        });
+
+        Future<String> result = executor.submit(() -> cache.getWithLoader("k"));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        cache.remove("k");
+        release.countDown();
+
+        assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("stale");
+        assertThat(cache.get("k")).isNull();
+    }
+}
@@ -62,4 +62,13 @@ public class AsyncConfigTest {
 
         assertThat(asyncConfig.getThreadPoolSize()).isEqualTo(10);
     }
+
+    @Test
+    public void testTaskClassThreadsDefault() {
+        doReturn(THREAD_POOL_SIZE_VAL)
+                .when(configStore).get(AsyncConfig.THREAD_POOL_SIZE);
+
+        assertThat(asyncConfig.getBulkMaxThreads()).isEqualTo(7);
+        assertThat(asyncConfig.getMaintenanceMaxThreads()).isEqualTo(1);
+    }
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.dao;
+
+import org.dbunit.operation.DatabaseOperation;
+import org.junit.Before;
+import org.junit.Test;
+import org.zanata.ZanataDbunitJpaTest;
+import org.zanata.model.HCopyTransWatermark;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CopyTransWatermarkDAOTest extends ZanataDbunitJpaTest {
+
+    private static final Long DOC_ID = 1L;
+    private static final Long DE_ID = 3L;
+    private static final Long FR_ID = 6L;
+
+    private CopyTransWatermarkDAO dao;
+
+    @Before
+    public void setup() {
+        dao = new CopyTransWatermarkDAO(getSession());
+    }
+
+    @Override
+    protected void prepareDBUnitOperations() {
+        beforeTestOperations.add(new DataSetOperation(
+                "org/zanata/test/model/ClearAllTables.dbunit.xml",
+                DatabaseOperation.CLEAN_INSERT));
+        beforeTestOperations.add(new DataSetOperation(
+                "org/zanata/test/model/AccountData.dbunit.xml",
+                DatabaseOperation.CLEAN_INSERT));
+        beforeTestOperations.add(new DataSetOperation(
+                "org/zanata/test/model/ProjectsData.dbunit.xml",
+                DatabaseOperation.CLEAN_INSERT));
+        beforeTestOperations.add(new DataSetOperation(
+                "org/zanata/test/model/TextFlowTestData.dbunit.xml",
+                DatabaseOperation.CLEAN_INSERT));
+        beforeTestOperations.add(new DataSetOperation(
+                "org/zanata/test/model/LocalesData.dbunit.xml",
+                DatabaseOperation.CLEAN_INSERT));
+    }
+
+    @Test
+    public void noWatermarkBeforeFirstRun() {
+        assertThat(dao.getWatermark(DOC_ID, DE_ID)).isNull();
+    }
+
+    @Test
+    public void savesAndUpdatesWatermarkPerLocale() {
+        dao.saveWatermark(DOC_ID, DE_ID, 1);
+        dao.saveWatermark(DOC_ID, FR_ID, 1);
+        dao.saveWatermark(DOC_ID, DE_ID, 3);
+        getSession().clear();
+
+        HCopyTransWatermark de = dao.getWatermark(DOC_ID, DE_ID);
+        assertThat(de.getDocumentRevision()).isEqualTo(3);
+        assertThat(de.getDocument().getId()).isEqualTo(DOC_ID);
+        assertThat(dao.getWatermark(DOC_ID, FR_ID).getDocumentRevision())
+                .isEqualTo(1);
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.dao;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.dbunit.operation.DatabaseOperation;
+import org.junit.Before;
+import org.junit.Test;
+import org.zanata.ZanataDbunitJpaTest;
+import org.zanata.common.ContentState;
+import org.zanata.common.LocaleId;
+import org.zanata.events.DocStatsEvent;
+
+import com.google.common.collect.Maps;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DocumentStatisticDAOTest extends ZanataDbunitJpaTest {
+
+    // document 1 has a single 11 word text flow, translated in "as"
+    private static final Long DOC_ID = 1L;
+    private static final LocaleId AS = new LocaleId("as");
+    private static final LocaleId BN = new LocaleId("bn");
+
+    private DocumentStatisticDAO dao;
+
+    @Before
+    public void setup() {
+        dao = new DocumentStatisticDAO(getSession());
+    }
+
+    @Override
+    protected void prepareDBUnitOperations() {
+        beforeTestOperations.add(new DataSetOperation(
+                "org/zanata/test/model/ClearAllTables.dbunit.xml",
+                DatabaseOperation.CLEAN_INSERT));
+        beforeTestOperations.add(new DataSetOperation(
+                "org/zanata/test/model/AccountData.dbunit.xml",
+                DatabaseOperation.CLEAN_INSERT));
+        beforeTestOperations.add(new DataSetOperation(
+                "org/zanata/test/model/ProjectsData.dbunit.xml",
+                DatabaseOperation.CLEAN_INSERT));
+        beforeTestOperations.add(new DataSetOperation(
+                "org/zanata/test/model/TextFlowTestData.dbunit.xml",
+                DatabaseOperation.CLEAN_INSERT));
+        beforeTestOperations.add(new DataSetOperation(
+                "org/zanata/test/model/LocalesData.dbunit.xml",
+                DatabaseOperation.CLEAN_INSERT));
+    }
+
+    private long countRows() {
+        return (Long) getSession()
+                .createQuery("select count(*) from HDocumentStatistic")
+                .uniqueResult();
+    }
+
+    private static Map<ContentState, Long> reviewDeltas() {
+        Map<ContentState, Long> deltas = Maps.newHashMap();
+        DocStatsEvent.updateContentStateDeltas(deltas, ContentState.NeedReview,
+                ContentState.Translated, 11L);
+        return deltas;
+    }
+
+    private void setTargetState(ContentState state) {
+        getSession()
+                .createQuery("update HTextFlowTarget set state = :state "
+                        + "where textFlow.id in (select tf.id from HTextFlow tf "
+                        + "where tf.document.id = :docId) "
+                        + "and locale.id in (select l.id from HLocale l "
+                        + "where l.localeId = :localeId)")
+                .setParameter("state", state)
+                .setParameter("docId", DOC_ID)
+                .setParameter("localeId", AS)
+                .executeUpdate();
+    }
+
+    @Test
+    public void readsCalculateWithoutStoring() {
+        Map<ContentState, Long> counts = dao.getWordCounts(DOC_ID, AS);
+
+        assertThat(counts.get(ContentState.Translated)).isEqualTo(11L);
+        assertThat(counts.get(ContentState.New)).isEqualTo(0L);
+        assertThat(dao.getWordCountsForIteration(1L, AS)
+                .get(ContentState.Translated)).isGreaterThanOrEqualTo(11L);
+        assertThat(countRows()).isEqualTo(0);
+    }
+
+    @Test
+    public void untranslatedLocaleIsAllNew() {
+        Map<ContentState, Long> counts = dao.getWordCounts(DOC_ID, BN);
+
+        assertThat(counts.get(ContentState.New)).isEqualTo(11L);
+        assertThat(counts.get(ContentState.Translated)).isEqualTo(0L);
+    }
+
+    @Test
+    public void firstDeltaStoresStatisticsIncludingTheChange() {
+        setTargetState(ContentState.NeedReview);
+
+        dao.applyOrCreateStatistics(DOC_ID, AS, reviewDeltas());
+
+        assertThat(countRows()).isEqualTo(ContentState.values().length);
+        Map<ContentState, Long> counts = dao.getWordCounts(DOC_ID, AS);
+        assertThat(counts.get(ContentState.Translated)).isEqualTo(0L);
+        assertThat(counts.get(ContentState.NeedReview)).isEqualTo(11L);
+    }
+
+    @Test
+    public void laterDeltasAreApplied() {
+        dao.createStatistics(Collections.singletonList(DOC_ID), AS);
+        setTargetState(ContentState.NeedReview);
+
+        dao.applyOrCreateStatistics(DOC_ID, AS, reviewDeltas());
+
+        assertThat(countRows()).isEqualTo(ContentState.values().length);
+        Map<ContentState, Long> counts = dao.getWordCounts(DOC_ID, AS);
+        assertThat(counts.get(ContentState.Translated)).isEqualTo(0L);
+        assertThat(counts.get(ContentState.NeedReview)).isEqualTo(11L);
+    }
+
+    @Test
+    public void zeroDeltasStoreNothing() {
+        dao.applyOrCreateStatistics(DOC_ID, AS, Maps.newHashMap());
+
+        assertThat(countRows()).isEqualTo(0);
+    }
+
+    @Test
+    public void iterationStatisticsSumStoredAndCalculatedDocuments() {
+        Map<ContentState, Long> before = dao.getWordCountsForIteration(1L, AS);
+        dao.createStatistics(Collections.singletonList(DOC_ID), AS);
+
+        assertThat(dao.getWordCountsForIteration(1L, AS)).isEqualTo(before);
+    }
+
+    @Test
+    public void deletedStatisticsAreRecalculated() {
+        dao.createStatistics(Collections.singletonList(DOC_ID), AS);
+        assertThat(dao.deleteForDocument(DOC_ID))
+                .isEqualTo(ContentState.values().length);
+        assertThat(countRows()).isEqualTo(0);
+
+        assertThat(dao.getWordCounts(DOC_ID, AS).get(ContentState.Translated))
+                .isEqualTo(11L);
+    }
+
+    @Test
+    public void lockDocumentsAcceptsBatch() {
+        dao.lockDocuments(Arrays.asList(DOC_ID, 2L));
+        dao.lockDocuments(Collections.emptyList());
+    }
+}
@@ -10,7 +10,6 @@ import java.util.Map;
 import com.google.common.collect.Lists;
 import lombok.extern.slf4j.Slf4j;
 
-import org.assertj.core.api.Assertions;
 import org.dbunit.operation.DatabaseOperation;
 import org.hamcrest.Matchers;
 import org.hibernate.Session;
@@ -20,7 +19,6 @@ import org.junit.Test;
 import org.zanata.ZanataDbunitJpaTest;
 import org.zanata.common.ContentState;
 import org.zanata.model.HLocale;
-import org.zanata.model.HProjectIteration;
 import org.zanata.model.HTextFlow;
 import org.zanata.model.HTextFlowTarget;
 import org.zanata.search.FilterConstraints;
@@ -207,75 +205,95 @@ public class TextFlowDAOTest extends ZanataDbunitJpaTest {
     }
 
     @Test
-    public void testGetTextFlowByDocumentIdWithConstraint() {
-        HLocale deLocale = getEm().find(HLocale.class, 3L);
-
-        List<HTextFlow> result =
-                dao.getTextFlowByDocumentIdWithConstraints(new DocumentId(
-                        new Long(4), ""), deLocale, FilterConstraints.builder()
-                        .filterBy("mssg").excludeTranslated().excludeFuzzy()
-                        .build(), 0, 10);
+    public void canGetPageOfTextFlowsWithTargetsByPosition() {
+        // document 2 has 3 text flows with en-US (locale 4) targets
+        List<Object[]> rows =
+                dao.getTextFlowsWithTargetsByPosition(2L, 4L, 1, 10);
+
+        assertThat(rows, Matchers.hasSize(2));
+        assertThat(((HTextFlow) rows.get(0)[0]).getId(), is(3L));
+        assertThat(((HTextFlowTarget) rows.get(0)[1]).getId(), is(6L));
+        assertThat(((HTextFlow) rows.get(1)[0]).getId(), is(4L));
+        assertThat(((Number) rows.get(1)[2]).intValue(), is(0));
+
+        // no de targets
+        rows = dao.getTextFlowsWithTargetsByPosition(2L, 3L, 0, 2);
+        assertThat(rows, Matchers.hasSize(2));
+        assertThat(rows.get(0)[1], Matchers.nullValue());
+        assertThat(((Number) rows.get(0)[2]).intValue(), is(0));
+    }
 
-        assertThat(result, Matchers.hasSize(1));
+    @Test
+    public void canGetTextFlowWithTargetAndReviewCommentCount() {
+        // text flow 5 has an en-US target with one review comment
+        List<Object[]> rows =
+                dao.getTextFlowsWithTargetsByPosition(3L, 4L, 0, 10);
+
+        assertThat(rows, Matchers.hasSize(1));
+        assertThat(((HTextFlowTarget) rows.get(0)[1]).getId(), is(8L));
+        assertThat(((Number) rows.get(0)[2]).intValue(), is(1));
     }
 
     @Test
-    public void testGetTranslationsByMatchedContext() {
-
-        List<DataSetOperation> testOperations = Lists.newArrayList();
-
-        testOperations.add(new DataSetOperation(
-            "org/zanata/test/model/ClearAllTables.dbunit.xml",
-            DatabaseOperation.CLEAN_INSERT));
-        testOperations.add(new DataSetOperation(
-            "org/zanata/test/model/AccountData.dbunit.xml",
-            DatabaseOperation.CLEAN_INSERT));
-        testOperations.add(new DataSetOperation(
-            "org/zanata/test/model/LocalesData.dbunit.xml",
-            DatabaseOperation.CLEAN_INSERT));
-        testOperations.add(new DataSetOperation(
-            "org/zanata/test/model/MergeTranslationsData.dbunit.xml",
-            DatabaseOperation.CLEAN_INSERT));
-
-        for(DataSetOperation operation: testOperations) {
-            operation.prepare(this);
+    public void canGetTargetsWithReviewCommentCounts() {
+        List<Object[]> rows = dao.getTargetsWithReviewCommentCounts(
+                Lists.newArrayList(2L, 5L, 6L), 4L);
+
+        assertThat(rows, Matchers.hasSize(2));
+        for (Object[] row : rows) {
+            HTextFlowTarget target = (HTextFlowTarget) row[0];
+            int expectedCount = target.getId().equals(8L) ? 1 : 0;
+            assertThat(((Number) row[1]).intValue(), is(expectedCount));
         }
+        assertThat(dao.getTargetsWithReviewCommentCounts(
+                Lists.<Long> newArrayList(), 4L), Matchers.empty());
+    }
 
-        executeOperations(testOperations);
-
-        String projectSlug = "sample-project";
-
-        String fromVersionSlug = "1.0";
-        String toVersionSlug = "2.0";
-
-        ProjectIterationDAO projectIterationDAO = new
-            ProjectIterationDAO((Session) getEm().getDelegate());
-
-        HProjectIteration fromVersion =
-            projectIterationDAO.getBySlug(projectSlug, fromVersionSlug);
-        Assertions.assertThat(fromVersion).isNotNull();
+    @Test
+    public void canGetIdsWithoutTargetInState() {
+        // text flow 1 has a Translated de (locale 3) target
+        assertThat(dao.getIdsWithoutTargetInState(
+                Lists.newArrayList(1L, 2L, 3L), 3L, ContentState.Translated),
+                Matchers.containsInAnyOrder(2L, 3L));
+        assertThat(dao.getIdsWithoutTargetInState(
+                Lists.newArrayList(1L, 2L, 3L), 3L, ContentState.Approved),
+                Matchers.containsInAnyOrder(1L, 2L, 3L));
+        // text flows 2 and 3 have NeedReview en-US (locale 4) targets
+        assertThat(dao.getIdsWithoutTargetInState(
+                Lists.newArrayList(2L, 3L), 4L, ContentState.Translated),
+                Matchers.containsInAnyOrder(2L, 3L));
+        assertThat(dao.getIdsWithoutTargetInState(
+                Lists.<Long> newArrayList(), 4L, ContentState.Translated),
+                Matchers.empty());
+    }
 
-        HProjectIteration toVersion =
-            projectIterationDAO.getBySlug(projectSlug, toVersionSlug);
-        Assertions.assertThat(toVersion).isNotNull();
+    @Test
+    public void canGetActiveIdsChangedSinceRevision() {
+        // document 2 has text flows 2, 3 and 4, all at revision 1
+        assertThat(dao.getActiveIdsChangedSince(2L, 0),
+                Matchers.contains(2L, 3L, 4L));
+        assertThat(dao.getActiveIdsChangedSince(2L, 1), Matchers.empty());
+
+        getEm().createQuery(
+                "update HTextFlow set revision = 2 where id = 3")
+                .executeUpdate();
+        getEm().createQuery(
+                "update HTextFlow set revision = 2, obsolete = true where id = 4")
+                .executeUpdate();
+        assertThat(dao.getActiveIdsChangedSince(2L, 1),
+                Matchers.contains(3L));
+    }
 
-        List<HTextFlow[]> results =
-            dao.getSourceByMatchedContext(
-                fromVersion.getId(), toVersion.getId(), 0, 100);
+    @Test
+    public void testGetTextFlowByDocumentIdWithConstraint() {
+        HLocale deLocale = getEm().find(HLocale.class, 3L);
 
-        Assertions.assertThat(results).isNotEmpty();
+        List<HTextFlow> result =
+                dao.getTextFlowByDocumentIdWithConstraints(new DocumentId(
+                        new Long(4), ""), deLocale, FilterConstraints.builder()
+                        .filterBy("mssg").excludeTranslated().excludeFuzzy()
+                        .build(), 0, 10);
 
-        for(HTextFlow[] result: results) {
-            Assertions.assertThat(result[0].getContentHash()).isEqualTo(
-                result[1].getContentHash());
-            Assertions
-                .assertThat(result[0].getDocument().getDocId())
-                .isEqualTo(result[1].getDocument().getDocId());
-            Assertions
-                .assertThat(result[0].getResId())
-                .isEqualTo(result[1].getResId());
-            Assertions.assertThat(result[0]).isNotEqualTo(result[1]);
-        }
+        assertThat(result, Matchers.hasSize(1));
     }
-
 }
@@ -2,6 +2,9 @@ package org.zanata.dao;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.List;
+
 import lombok.Cleanup;
 
 import org.dbunit.operation.DatabaseOperation;
@@ -11,12 +14,17 @@ import org.hibernate.ejb.HibernateEntityManagerFactory;
 import org.junit.Before;
 import org.junit.Test;
 import org.zanata.ZanataDbunitJpaTest;
+import org.zanata.common.LocaleId;
 import org.zanata.model.HProject;
 import org.zanata.model.HProjectIteration;
 import org.zanata.model.HTextFlow;
+import org.zanata.model.ITextFlow;
+import org.zanata.model.ITextFlowTarget;
 import org.zanata.util.CloseableIterator;
 
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 
 public class TextFlowStreamingDAOTest extends ZanataDbunitJpaTest {
 
@@ -98,4 +106,35 @@ public class TextFlowStreamingDAOTest extends ZanataDbunitJpaTest {
         assertThat(iter.hasNext(), Matchers.not(true));
     }
 
+    @Test
+    public void findTranslationsForProjectIter() throws Exception {
+        HProjectIteration projIter =
+                projectIterDao.getBySlug("sample-project", "1.0");
+        @Cleanup
+        CloseableIterator<ITextFlow> iter =
+                dao.findTranslationsByProjectIteration(projIter, null);
+        List<ITextFlow> textFlows = Lists.newArrayList(iter);
+        // only tf1 has Translated/Approved targets
+        assertThat(textFlows.size(), equalTo(1));
+        ITextFlow tf = textFlows.get(0);
+        assertThat(tf.getQualifiedId(),
+                equalTo("sample-project:1.0:my/path/document.txt:tf1"));
+        assertThat(Iterables.size(tf.getAllTargetContents()), equalTo(2));
+    }
+
+    @Test
+    public void findTranslationsForProjectAndLocale() throws Exception {
+        HProject proj = projectDao.getBySlug("sample-project");
+        LocaleId as = new LocaleId("as");
+        @Cleanup
+        CloseableIterator<ITextFlow> iter =
+                dao.findTranslationsByProject(proj, as);
+        List<ITextFlow> textFlows = Lists.newArrayList(iter);
+        assertThat(textFlows.size(), equalTo(1));
+        List<ITextFlowTarget> targets =
+                Lists.newArrayList(textFlows.get(0).getAllTargetContents());
+        assertThat(targets.size(), equalTo(1));
+        assertThat(targets.get(0).getLocaleId(), equalTo(as));
+    }
+
 }
@@ -27,11 +27,15 @@ import org.junit.Test;
 import org.zanata.ZanataDbunitJpaTest;
 import org.zanata.common.LocaleId;
 import org.zanata.model.HLocale;
+import org.zanata.model.HTextFlow;
 import org.zanata.model.HTextFlowTarget;
 import org.zanata.model.HTextFlowTargetHistory;
 import org.zanata.model.type.EntityType;
 import org.zanata.model.type.TranslationSourceType;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 /**
@@ -116,4 +120,36 @@ public class TextFlowTargetDAOTest extends ZanataDbunitJpaTest {
         assertThat(history1.getSourceType()).isEqualTo(sourceType1);
         assertThat(history1.getCopiedEntityId()).isEqualTo(copiedEntityId1);
     }
+
+    private static List<Long> ids(List<HTextFlowTarget> targets) {
+        return targets.stream().map(HTextFlowTarget::getId)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void getTargetsByDocumentPositionReturnsAChunkInOrder() {
+        // document 2 has text flows 2, 3 and 4 at positions 0-2, with
+        // en-US targets 5, 6 and 7
+        assertThat(ids(textFlowTargetDAO.getTargetsByDocumentPosition(2L,
+                LocaleId.EN_US, 0, 2))).containsExactly(5L, 6L);
+        assertThat(ids(textFlowTargetDAO.getTargetsByDocumentPosition(2L,
+                LocaleId.EN_US, 1, 10))).containsExactly(6L, 7L);
+        assertThat(textFlowTargetDAO.getTargetsByDocumentPosition(2L,
+                LocaleId.EN_US, 3, 10)).isEmpty();
+        assertThat(textFlowTargetDAO.getTargetsByDocumentPosition(2L,
+                de.getLocaleId(), 0, 10)).isEmpty();
+    }
+
+    @Test
+    public void getTargetsByDocumentPositionSkipsObsoleteTextFlows() {
+        HTextFlow textFlow = (HTextFlow) getSession().get(HTextFlow.class, 3L);
+        textFlow.setObsolete(true);
+        getSession().flush();
+
+        List<HTextFlowTarget> targets = textFlowTargetDAO
+                .getTargetsByDocumentPosition(2L, LocaleId.EN_US, 0, 10);
+
+        assertThat(ids(targets)).containsExactly(5L, 7L);
+        assertThat(targets.get(1).getTextFlow().getPos()).isEqualTo(2);
+    }
 }
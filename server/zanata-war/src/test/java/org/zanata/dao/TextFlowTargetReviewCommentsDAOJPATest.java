@@ -23,6 +23,7 @@ package org.zanata.dao;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import org.dbunit.operation.DatabaseOperation;
 import org.hamcrest.Matchers;
@@ -35,6 +36,8 @@ import org.zanata.model.HTextFlowTarget;
 import org.zanata.model.HTextFlowTargetReviewComment;
 import org.zanata.webtrans.shared.model.TransUnitId;
 
+import com.google.common.collect.ImmutableList;
+
 import static org.hamcrest.MatcherAssert.assertThat;
 
 /**
@@ -81,6 +84,22 @@ public class TextFlowTargetReviewCommentsDAOJPATest extends ZanataDbunitJpaTest
                 Matchers.equalTo("Sample User"));
     }
 
+    @Test
+    public void testCommentCounts() {
+        PersonDAO personDAO = new PersonDAO(getSession());
+        HPerson person = personDAO.findById(1L, false);
+        HTextFlowTarget target = textFlowTargetDAO.findById(8L, false);
+        target.addReviewComment("another comment", person);
+        getEm().persist(target);
+        getEm().flush();
+
+        Map<Long, Integer> counts =
+                reviewCommentsDAO.getCommentCounts(ImmutableList.of(1L, 8L));
+
+        assertThat(counts, Matchers.hasEntry(8L, 2));
+        assertThat(counts, Matchers.not(Matchers.hasKey(1L)));
+    }
+
     @Test
     public void testTargetUserComment() {
         PersonDAO personDAO = new PersonDAO(getSession());
@@ -26,6 +26,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.fail;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.zanata.file.DocumentUploadUtil.getInputStream;
@@ -35,26 +36,28 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.sql.Blob;
-import java.sql.SQLException;
+import java.util.Date;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.deltaspike.core.spi.scope.window.WindowContext;
 import org.hibernate.Session;
+import org.junit.After;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.mockito.ArgumentCaptor;
-import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.zanata.common.EntityStatus;
 import org.zanata.exception.ChunkUploadException;
 import org.zanata.model.HDocumentUpload;
-import org.zanata.model.HDocumentUploadPart;
 import org.zanata.rest.DocumentFileUploadForm;
 import org.zanata.service.TranslationFileService;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.io.Files;
 import org.zanata.servlet.annotations.ContextPath;
 import org.zanata.servlet.annotations.ServerPath;
@@ -69,7 +72,7 @@ import javax.inject.Inject;
 public class DocumentUploadUtilTest extends DocumentUploadTest {
 
     private static final String HASH_OF_ABCDEFGHI =
-            "d41d8cd98f00b204e9800998ecf8427e";
+            "8aa99b1f439ff71293e95357bac6fd94";
     @Produces @Mock
     Session session;
     @Produces @Mock
@@ -85,17 +88,20 @@ public class DocumentUploadUtilTest extends DocumentUploadTest {
     @Produces @ServerPath String serverPath = "";
     @Produces @ContextPath String contextPath = "";
 
-    @Mock
-    Blob partBlob0;
-    @Mock
-    Blob partBlob1;
-
-    @Captor
-    private ArgumentCaptor<InputStream> persistedInputStreamCaptor;
-
     @Inject
     private DocumentUploadUtil util;
 
+    private File combinedFile;
+    private final SortedMap<Integer, File> partFiles = new TreeMap<>();
+
+    @After
+    public void deleteFiles() {
+        partFiles.values().forEach(File::delete);
+        if (combinedFile != null) {
+            combinedFile.delete();
+        }
+    }
+
     @Test
     public void notValidIfNotLoggedIn() {
         conf = defaultUpload().build();
@@ -329,43 +335,32 @@ public class DocumentUploadUtilTest extends DocumentUploadTest {
     }
 
     @Test
-    public void canCombineUploadPartsInOrder() throws SQLException, IOException {
-        HDocumentUpload upload = mockTwoPartUploadUsingHash(HASH_OF_ABCDEFGHI);
-
-        InputStream finalPartStream =
-                new ByteArrayInputStream("ghi".getBytes());
-        File persistedFile = new File("test");
-
-        DocumentFileUploadForm uploadForm = new DocumentFileUploadForm();
-        uploadForm.setFileStream(finalPartStream);
-
-        when(
-                translationFileService
-                        .persistToTempFile(persistedInputStreamCaptor.capture()))
-                .thenReturn(persistedFile);
+    public void canCombineUploadPartsInOrder() throws IOException {
+        HDocumentUpload upload = mockThreePartUploadUsingHash(
+                HASH_OF_ABCDEFGHI, 0, 1, 2);
+        DocumentFileUploadForm uploadForm = finalPartForm();
 
-        File returnedFile =
+        combinedFile =
                 util.combineToTempFileAndDeleteUploadRecord(upload,
                         uploadForm);
 
-        assertThat(returnedFile, is(sameInstance(persistedFile)));
-        String persistedContents =
-                IOUtils.toString(persistedInputStreamCaptor.getValue(), "utf-8");
-        assertThat(persistedContents, is("abcdefghi"));
+        assertThat(Files.toString(combinedFile, UTF_8), is("abcdefghi"));
+        verify(uploadPartPersistService).persistUploadPart(upload, 2,
+                uploadForm.getFileStream());
+        verify(uploadPartPersistService).deleteUploadParts(upload);
         verify(session).delete(upload);
     }
 
     @Test
-    public void combineFailsOnHashMismatch() throws SQLException {
-        HDocumentUpload upload = mockTwoPartUploadUsingHash("incorrect hash");
-        InputStream finalPartStream =
-                new ByteArrayInputStream("ghi".getBytes());
-
-        DocumentFileUploadForm uploadForm = new DocumentFileUploadForm();
-        uploadForm.setFileStream(finalPartStream);
+    public void combineFailsOnHashMismatch() throws IOException {
+        HDocumentUpload upload = mockThreePartUploadUsingHash(
+                "incorrect hash", 0, 1, 2);
+        DocumentFileUploadForm uploadForm = finalPartForm();
 
         try {
-            util.combineToTempFileAndDeleteUploadRecord(upload, uploadForm);
+            combinedFile = util.combineToTempFileAndDeleteUploadRecord(upload,
+                    uploadForm);
+            fail("Should throw exception if the hash does not match");
         } catch (ChunkUploadException e) {
             assertThat(e.getStatusCode(), is(CONFLICT));
             assertThat(
@@ -374,39 +369,95 @@ public class DocumentUploadUtilTest extends DocumentUploadTest {
                           "not match server-generated hash. Aborted upload " +
                           "operation."));
         }
+        verify(session).delete(upload);
     }
 
     @Test
-    public void combineSetsHashWhenNoHashProvided() throws SQLException {
-        HDocumentUpload upload = mockTwoPartUploadUsingHash("");
-        InputStream finalPartStream =
-                new ByteArrayInputStream("ghi".getBytes());
-
-        DocumentFileUploadForm uploadForm = new DocumentFileUploadForm();
-        uploadForm.setFileStream(finalPartStream);
+    public void combineSetsHashWhenNoHashProvided() throws IOException {
+        HDocumentUpload upload = mockThreePartUploadUsingHash("", 0, 1, 2);
+        DocumentFileUploadForm uploadForm = finalPartForm();
 
-        util.combineToTempFileAndDeleteUploadRecord(upload, uploadForm);
+        combinedFile =
+                util.combineToTempFileAndDeleteUploadRecord(upload, uploadForm);
         assertThat(uploadForm.getHash(), is(HASH_OF_ABCDEFGHI));
     }
 
-    private HDocumentUpload mockTwoPartUploadUsingHash(String hash)
-            throws SQLException {
+    @Test
+    public void combineFailsWhenPartIsMissing() throws IOException {
+        HDocumentUpload upload = mockThreePartUploadUsingHash(
+                HASH_OF_ABCDEFGHI, 0, 2, 3);
+        DocumentFileUploadForm uploadForm = finalPartForm();
+
+        try {
+            combinedFile = util.combineToTempFileAndDeleteUploadRecord(upload,
+                    uploadForm);
+            fail("Should throw exception if a part is missing");
+        } catch (ChunkUploadException e) {
+            assertThat(e.getStatusCode(), is(PRECONDITION_FAILED));
+            assertThat(e.getMessage(), is("Upload parts [0, 2, 3] were "
+                    + "received, but parts 0 to 3 are required. Upload "
+                    + "aborted. Retry upload from first part."));
+        }
+        verify(uploadPartPersistService).deleteUploadParts(upload);
+    }
+
+    @Test
+    public void deleteExpiredUploadsKeepsUploadsStillReceivingParts() {
+        Date cutoff = new Date(100000L);
+        Date before = new Date(cutoff.getTime() - 1);
+        Date after = new Date(cutoff.getTime() + 1);
+        HDocumentUpload abandoned = new HDocumentUpload();
+        abandoned.setId(1L);
+        HDocumentUpload active = new HDocumentUpload();
+        active.setId(2L);
+        // 3 and 4 have stored parts but no upload record
+        when(uploadPartPersistService.getStoredUploads()).thenReturn(
+                ImmutableMap.of(1L, before, 2L, after, 3L, before, 4L, after));
+        when(documentUploadDAO.getExistingUploadIds(
+                ImmutableSet.of(1L, 3L))).thenReturn(ImmutableSet.of(1L));
+        when(documentUploadDAO.getUploadsLastChangedBefore(cutoff))
+                .thenReturn(ImmutableList.of(abandoned, active));
+
+        assertThat(util.deleteExpiredUploads(cutoff), is(1));
+
+        verify(uploadPartPersistService).deleteUploadParts(abandoned);
+        verify(session).delete(abandoned);
+        verify(uploadPartPersistService, never()).deleteUploadParts(active);
+        verify(session, never()).delete(active);
+        verify(uploadPartPersistService).deleteUploadParts(3L);
+        verify(uploadPartPersistService, never()).deleteUploadParts(4L);
+    }
+
+    private static DocumentFileUploadForm finalPartForm() {
+        DocumentFileUploadForm uploadForm = new DocumentFileUploadForm();
+        uploadForm.setFirst(false);
+        uploadForm.setLast(true);
+        uploadForm.setChunkIndex(2);
+        uploadForm.setFileStream(new ByteArrayInputStream("ghi".getBytes()));
+        return uploadForm;
+    }
+
+    /**
+     * Stores parts "abc", "def" and "ghi" with the given indexes, as though
+     * they had all been received.
+     */
+    private HDocumentUpload mockThreePartUploadUsingHash(String hash,
+            int abcIndex, int defIndex, int ghiIndex) throws IOException {
         HDocumentUpload upload = new HDocumentUpload();
         upload.setContentHash(hash);
-
-        HDocumentUploadPart part0 = new HDocumentUploadPart();
-        when(partBlob0.getBinaryStream()).thenReturn(
-                new ByteArrayInputStream("abc".getBytes()));
-        part0.setContent(partBlob0);
-        upload.getParts().add(part0);
-
-        HDocumentUploadPart part1 = new HDocumentUploadPart();
-        when(partBlob1.getBinaryStream()).thenReturn(
-                new ByteArrayInputStream("def".getBytes()));
-        part1.setContent(partBlob1);
-        upload.getParts().add(part1);
+        partFiles.put(abcIndex, partFile("abc"));
+        partFiles.put(defIndex, partFile("def"));
+        partFiles.put(ghiIndex, partFile("ghi"));
+        when(uploadPartPersistService.getUploadParts(upload))
+                .thenReturn(partFiles);
         return upload;
     }
 
+    private static File partFile(String content) throws IOException {
+        File file = File.createTempFile("part", ".part");
+        Files.write(content, file, UTF_8);
+        return file;
+    }
+
     // TODO damason: test mismatched hash when persisting temp file
 }
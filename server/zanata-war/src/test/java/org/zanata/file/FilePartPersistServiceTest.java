@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.file;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.Map;
+import java.util.SortedMap;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zanata.model.HDocumentUpload;
+
+import com.google.common.io.Files;
+
+public class FilePartPersistServiceTest {
+
+    private File uploadsDirectory;
+    private FilePartPersistService service;
+    private HDocumentUpload upload;
+
+    @Before
+    public void setUp() {
+        uploadsDirectory = Files.createTempDir();
+        service = new FilePartPersistService(uploadsDirectory);
+        upload = new HDocumentUpload();
+        upload.setId(1L);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(uploadsDirectory);
+    }
+
+    private void persist(int partIndex, String content) {
+        service.persistUploadPart(upload, partIndex,
+                new ByteArrayInputStream(content.getBytes(UTF_8)));
+    }
+
+    @Test
+    public void partsReceivedOutOfOrderAreReturnedInOrder()
+            throws IOException {
+        persist(2, "ghi");
+        persist(0, "abc");
+        persist(1, "def");
+
+        SortedMap<Integer, File> parts = service.getUploadParts(upload);
+
+        assertThat(parts.keySet()).containsExactly(0, 1, 2);
+        assertThat(Files.toString(parts.get(0), UTF_8)).isEqualTo("abc");
+        assertThat(Files.toString(parts.get(2), UTF_8)).isEqualTo("ghi");
+    }
+
+    @Test
+    public void resentPartReplacesEarlierContent() throws IOException {
+        persist(0, "abc");
+        persist(0, "xyz");
+
+        SortedMap<Integer, File> parts = service.getUploadParts(upload);
+
+        assertThat(parts).hasSize(1);
+        assertThat(Files.toString(parts.get(0), UTF_8)).isEqualTo("xyz");
+    }
+
+    @Test
+    public void deleteRemovesAllParts() {
+        persist(0, "abc");
+        persist(1, "def");
+
+        service.deleteUploadParts(upload);
+
+        assertThat(service.getUploadParts(upload)).isEmpty();
+        assertThat(uploadsDirectory.list()).isEmpty();
+    }
+
+    @Test
+    public void storedUploadsReportTheirLatestPart() {
+        persist(0, "abc");
+        File part = service.getUploadParts(upload).get(0);
+        long lastModified = System.currentTimeMillis() + 60000;
+        assertThat(part.setLastModified(lastModified)).isTrue();
+        new File(uploadsDirectory, "not-an-upload").mkdir();
+
+        Map<Long, Date> storedUploads = service.getStoredUploads();
+
+        assertThat(storedUploads).containsOnlyKeys(1L);
+        assertThat(storedUploads.get(1L).getTime())
+                .isEqualTo(part.lastModified());
+    }
+
+    @Test
+    public void deleteByIdRemovesAllParts() {
+        persist(0, "abc");
+
+        service.deleteUploadParts(1L);
+
+        assertThat(service.getStoredUploads()).isEmpty();
+    }
+}
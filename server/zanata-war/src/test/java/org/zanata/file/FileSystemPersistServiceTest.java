@@ -0,0 +1,228 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.file;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.enterprise.inject.Produces;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.transaction.UserTransaction;
+
+import org.apache.commons.io.FileUtils;
+import org.jglue.cdiunit.AdditionalClasses;
+import org.jglue.cdiunit.InRequestScope;
+import org.jglue.cdiunit.deltaspike.SupportDeltaspikeCore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.zanata.ApplicationConfiguration;
+import org.zanata.async.AsyncTaskHandle;
+import org.zanata.dao.DocumentDAO;
+import org.zanata.model.HDocument;
+import org.zanata.model.HProject;
+import org.zanata.model.HProjectIteration;
+import org.zanata.model.HRawDocument;
+import org.zanata.rest.service.VirusScanner;
+import org.zanata.test.CdiUnitRunner;
+import org.zanata.transaction.TransactionUtil;
+import org.zanata.util.IServiceLocator;
+
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+
+@RunWith(CdiUnitRunner.class)
+@SupportDeltaspikeCore
+@AdditionalClasses({
+        TransactionUtil.class
+})
+public class FileSystemPersistServiceTest {
+
+    // older than the garbage collector's grace period
+    private static final long OLD = System.currentTimeMillis()
+            - TimeUnit.HOURS.toMillis(2);
+
+    @Inject
+    private FileSystemPersistService service;
+
+    @Produces @Mock
+    ApplicationConfiguration appConfig;
+    @Produces @Mock
+    DocumentDAO documentDAO;
+    @Produces @Mock
+    VirusScanner virusScanner;
+    @Produces @Mock
+    EntityManager entityManager;
+    @Produces @Mock
+    IServiceLocator serviceLocator;
+    @Mock
+    UserTransaction userTransaction;
+
+    private File storageDirectory;
+    private File docsDirectory;
+    private final Set<String> referencedFileIds = Sets.newHashSet();
+
+    @Before
+    public void setUp() throws Exception {
+        storageDirectory = Files.createTempDir();
+        docsDirectory = new File(storageDirectory, "documents");
+        when(appConfig.getDocumentFileStorageLocation())
+                .thenReturn(storageDirectory.getAbsolutePath());
+        when(documentDAO.getReferencedFileIds(anyCollectionOf(String.class)))
+                .thenAnswer(invocation -> {
+                    @SuppressWarnings("unchecked")
+                    Collection<String> fileIds =
+                            (Collection<String>) invocation.getArguments()[0];
+                    return Sets.newHashSet(Sets.intersection(
+                            Sets.newHashSet(fileIds), referencedFileIds));
+                });
+        // an active transaction, so runInTransaction just joins it
+        when(serviceLocator.getJndiComponent("java:jboss/UserTransaction",
+                UserTransaction.class)).thenReturn(userTransaction);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(storageDirectory);
+    }
+
+    private HRawDocument persist(long documentId, String content)
+            throws IOException {
+        HProject project = new HProject();
+        project.setSlug("project");
+        HProjectIteration version = new HProjectIteration();
+        version.setSlug("version");
+        version.setProject(project);
+        HDocument document = new HDocument();
+        document.setId(documentId);
+        document.setDocId("doc" + documentId);
+        document.setProjectIteration(version);
+        HRawDocument rawDocument = new HRawDocument();
+        rawDocument.setDocument(document);
+
+        File upload = File.createTempFile("upload", ".txt");
+        try {
+            Files.write(content, upload, UTF_8);
+            service.persistRawDocumentContentFromFile(rawDocument, upload,
+                    "txt");
+        } finally {
+            upload.delete();
+        }
+        return rawDocument;
+    }
+
+    private File fileOf(HRawDocument rawDocument) {
+        return new File(docsDirectory, rawDocument.getFileId());
+    }
+
+    private File oldFile(String fileId) throws IOException {
+        File file = new File(docsDirectory, fileId);
+        Files.createParentDirs(file);
+        Files.write(fileId, file, UTF_8);
+        assertThat(file.setLastModified(OLD)).isTrue();
+        return file;
+    }
+
+    private void deleteUnreferencedFiles() throws Exception {
+        service.deleteUnreferencedFiles(new AsyncTaskHandle<>()).get();
+    }
+
+    @Test
+    @InRequestScope
+    public void identicalContentIsStoredOnce() throws Exception {
+        HRawDocument first = persist(1L, "same content");
+        HRawDocument second = persist(2L, "same content");
+        HRawDocument different = persist(3L, "different content");
+
+        assertThat(second.getFileId()).isEqualTo(first.getFileId());
+        assertThat(different.getFileId()).isNotEqualTo(first.getFileId());
+        assertThat(Files.toString(fileOf(second), UTF_8))
+                .isEqualTo("same content");
+    }
+
+    @Test
+    @InRequestScope
+    public void storingExistingContentTouchesTheBlob() throws Exception {
+        File blob = fileOf(persist(1L, "content"));
+        assertThat(blob.setLastModified(OLD)).isTrue();
+
+        persist(2L, "content");
+
+        assertThat(blob.lastModified()).isGreaterThan(OLD);
+    }
+
+    @Test
+    @InRequestScope
+    public void copiedDocumentSharesTheBlob() throws Exception {
+        HRawDocument original = persist(1L, "content");
+        assertThat(fileOf(original).setLastModified(OLD)).isTrue();
+        HRawDocument copy = new HRawDocument();
+
+        service.copyAndPersistRawDocument(original, copy);
+
+        assertThat(copy.getFileId()).isEqualTo(original.getFileId());
+        assertThat(fileOf(original).lastModified()).isGreaterThan(OLD);
+    }
+
+    @Test
+    @InRequestScope
+    public void garbageCollectionKeepsRecentFiles() throws Exception {
+        // not referenced yet, eg because the upload hasn't been committed
+        File blob = fileOf(persist(1L, "content"));
+
+        deleteUnreferencedFiles();
+
+        assertThat(blob).exists();
+    }
+
+    @Test
+    @InRequestScope
+    public void garbageCollectionDeletesOldUnreferencedFiles()
+            throws Exception {
+        File referencedBlob = oldFile("blobs/aa/aa01");
+        File unreferencedBlob = oldFile("blobs/bb/bb02");
+        File leftoverTempFile = oldFile("blobs/cc/.upload-123.tmp");
+        // stored before blobs were introduced
+        File referencedLegacyFile = oldFile("5.po");
+        File unreferencedLegacyFile = oldFile("6.po");
+        referencedFileIds.add("blobs/aa/aa01");
+        referencedFileIds.add("5.po");
+
+        deleteUnreferencedFiles();
+
+        assertThat(referencedBlob).exists();
+        assertThat(referencedLegacyFile).exists();
+        assertThat(unreferencedBlob).doesNotExist();
+        assertThat(leftoverTempFile).doesNotExist();
+        assertThat(unreferencedLegacyFile).doesNotExist();
+    }
+}
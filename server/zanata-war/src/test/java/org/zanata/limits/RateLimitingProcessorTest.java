@@ -1,6 +1,7 @@
 package org.zanata.limits;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 import javax.servlet.FilterChain;
 import javax.servlet.http.HttpServletResponse;
 
@@ -47,6 +48,22 @@ public class RateLimitingProcessorTest {
         processor.processForApiKey(API_KEY, response, runnable);
 
         verify(restCallLimiter).tryAcquireAndRun(runnable);
+        verify(response).setHeader("Retry-After", "1");
+        verify(response).sendError(eq(429), anyString());
+    }
+
+    @Test
+    public void tooManyRequestsPerSecondWillCauseErrorResponse()
+            throws Exception {
+        when(restCallLimiter.tryAcquireRequestPermit())
+                .thenReturn(TimeUnit.MILLISECONDS.toNanos(2500));
+        doReturn(restCallLimiter).when(rateLimitManager).getLimiter(
+                RateLimiterToken.fromApiKey(API_KEY));
+
+        processor.processForApiKey(API_KEY, response, runnable);
+
+        verify(restCallLimiter, never()).tryAcquireAndRun(runnable);
+        verify(response).setHeader("Retry-After", "3");
         verify(response).sendError(eq(429), anyString());
     }
 
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.limits;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.Lists;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TokenBucketTest {
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AtomicLong now = new AtomicLong(1234);
+    private final Ticker ticker = new Ticker() {
+        @Override
+        public long read() {
+            return now.get();
+        }
+    };
+    private TokenBucket bucket;
+
+    @Before
+    public void setUp() {
+        // one permit every 100ms
+        bucket = new TokenBucket(10, ticker);
+    }
+
+    @Test
+    public void allowsBurstUpToCapacity() {
+        for (int i = 0; i < 10; i++) {
+            assertThat(bucket.tryAcquire()).isEqualTo(0);
+        }
+        assertThat(bucket.tryAcquire()).isEqualTo(100 * MILLIS);
+        assertThat(bucket.availablePermits()).isEqualTo(0);
+    }
+
+    @Test
+    public void refillsAtConfiguredRate() {
+        for (int i = 0; i < 10; i++) {
+            bucket.tryAcquire();
+        }
+        now.addAndGet(40 * MILLIS);
+        assertThat(bucket.tryAcquire()).isEqualTo(60 * MILLIS);
+
+        now.addAndGet(60 * MILLIS);
+        assertThat(bucket.tryAcquire()).isEqualTo(0);
+        assertThat(bucket.tryAcquire()).isGreaterThan(0);
+
+        now.addAndGet(250 * MILLIS);
+        assertThat(bucket.availablePermits()).isEqualTo(2);
+    }
+
+    @Test
+    public void idleBucketDoesNotExceedCapacity() {
+        now.addAndGet(TimeUnit.HOURS.toNanos(1));
+
+        assertThat(bucket.availablePermits()).isEqualTo(10);
+        for (int i = 0; i < 10; i++) {
+            assertThat(bucket.tryAcquire()).isEqualTo(0);
+        }
+        assertThat(bucket.tryAcquire()).isGreaterThan(0);
+    }
+
+    @Test
+    public void concurrentCallersShareThePermits() throws Exception {
+        bucket = new TokenBucket(100, ticker);
+        Callable<Boolean> acquire = () -> bucket.tryAcquire() == 0;
+        List<Callable<Boolean>> callables = Lists.newArrayList();
+        for (int i = 0; i < 500; i++) {
+            callables.add(acquire);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            int granted = 0;
+            for (Future<Boolean> result : executor.invokeAll(callables)) {
+                if (result.get()) {
+                    granted++;
+                }
+            }
+            assertThat(granted).isEqualTo(100);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -23,6 +23,14 @@ public class ExportTranslationsTest extends TMXStreamingOutputTest {
         checkAllLocales(output);
     }
 
+    @Test
+    public void exportAllLocalesGzipped() throws Exception {
+        StreamingOutput output = TMXStreamingOutput.testInstance(
+                createTestData(), new TranslationsTMXExportStrategy(null),
+                true);
+        checkAllLocales(gunzip(output));
+    }
+
     @Test
     public void exportFrench() throws Exception {
         StreamingOutput output = streamSourceContents(LocaleId.FR);
@@ -26,13 +26,18 @@ import static org.custommonkey.xmlunit.XMLAssert.assertXpathNotExists;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringReader;
 import java.net.MalformedURLException;
+import java.util.zip.GZIPInputStream;
 
 import javax.ws.rs.core.StreamingOutput;
 import javax.xml.parsers.DocumentBuilder;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.output.StringBuilderWriter;
 import org.apache.commons.io.output.WriterOutputStream;
 import org.custommonkey.xmlunit.NamespaceContext;
@@ -159,6 +164,21 @@ abstract class TMXStreamingOutputTest {
         assertXpathNotExists("//tuv[@xml:lang='" + lang + "']", doc);
     }
 
+    /**
+     * Wraps a StreamingOutput which writes gzip, so that it writes the
+     * uncompressed content instead.
+     */
+    static StreamingOutput gunzip(StreamingOutput gzipOutput) {
+        return output -> {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            gzipOutput.write(compressed);
+            try (InputStream in = new GZIPInputStream(
+                    new ByteArrayInputStream(compressed.toByteArray()))) {
+                IOUtils.copy(in, output);
+            }
+        };
+    }
+
     private Document writeToXmlWithValidation(StreamingOutput output)
             throws IOException, SAXException {
         StringBuilderWriter sbWriter = new StringBuilderWriter();
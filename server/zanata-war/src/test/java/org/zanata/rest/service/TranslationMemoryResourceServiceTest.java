@@ -0,0 +1,162 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.rest.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.zanata.dao.TextFlowStreamingDAO;
+import org.zanata.model.HProjectIteration;
+import org.zanata.model.ITextFlow;
+import org.zanata.security.ZanataIdentity;
+import org.zanata.util.CloseableIterator;
+
+public class TranslationMemoryResourceServiceTest {
+    @InjectMocks
+    private TranslationMemoryResourceService service;
+    @Mock
+    private ZanataIdentity identity;
+    @Mock
+    private RestSlugValidator restSlugValidator;
+    @Mock
+    private TextFlowStreamingDAO textFlowStreamDAO;
+    @Mock
+    private CloseableIterator<ITextFlow> textFlows;
+    @Mock
+    private HttpHeaders headers;
+    @Mock
+    private UriInfo uriInfo;
+
+    private MultivaluedMap<String, String> queryParameters;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        queryParameters = new MultivaluedHashMap<>();
+        when(uriInfo.getQueryParameters()).thenReturn(queryParameters);
+        when(textFlowStreamDAO.findTranslationsByProjectIteration(
+                any(HProjectIteration.class), any())).thenReturn(textFlows);
+    }
+
+    @Test
+    public void acceptsGzip() {
+        assertThat(TranslationMemoryResourceService.acceptsGzip("gzip"))
+                .isTrue();
+        assertThat(TranslationMemoryResourceService
+                .acceptsGzip("deflate, GZIP;q=0.5")).isTrue();
+        assertThat(TranslationMemoryResourceService.acceptsGzip("gzip;q=0"))
+                .isFalse();
+        assertThat(TranslationMemoryResourceService
+                .acceptsGzip("gzip; q=0.0, deflate")).isFalse();
+        assertThat(TranslationMemoryResourceService.acceptsGzip("deflate"))
+                .isFalse();
+        assertThat(TranslationMemoryResourceService.acceptsGzip(""))
+                .isFalse();
+        assertThat(TranslationMemoryResourceService.acceptsGzip(null))
+                .isFalse();
+    }
+
+    @Test
+    public void exportsPlainTMX() throws Exception {
+        Response response = service.getProjectIterationTranslationMemory(
+                "proj", "ver", null);
+
+        assertThat(response.getMediaType().toString())
+                .isEqualTo(TranslationMemoryResource.PREFERRED_MEDIA_TYPE);
+        assertThat(response.getMetadata()
+                .getFirst(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(String.valueOf(
+                response.getMetadata().getFirst("Content-Disposition")))
+                .endsWith("zanata-proj-ver-allLocales.tmx\"");
+        assertThat(new String(write(response), StandardCharsets.UTF_8))
+                .contains("<tmx");
+    }
+
+    @Test
+    public void exportsGzipFileWhenRequested() throws Exception {
+        queryParameters.putSingle(
+                TranslationMemoryResourceService.COMPRESS_PARAM, "gzip");
+
+        Response response = service.getProjectIterationTranslationMemory(
+                "proj", "ver", null);
+
+        assertThat(response.getMediaType().toString())
+                .isEqualTo("application/x-gzip");
+        assertThat(response.getMetadata()
+                .getFirst(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(String.valueOf(
+                response.getMetadata().getFirst("Content-Disposition")))
+                .endsWith("zanata-proj-ver-allLocales.tmx.gz\"");
+        assertThat(gunzip(write(response))).contains("<tmx");
+    }
+
+    @Test
+    public void setsContentEncodingWhenClientAcceptsGzip() throws Exception {
+        when(headers.getHeaderString(HttpHeaders.ACCEPT_ENCODING))
+                .thenReturn("gzip, deflate");
+
+        Response response = service.getProjectIterationTranslationMemory(
+                "proj", "ver", null);
+
+        assertThat(response.getMediaType().toString())
+                .isEqualTo(TranslationMemoryResource.PREFERRED_MEDIA_TYPE);
+        assertThat(String.valueOf(response.getMetadata()
+                .getFirst(HttpHeaders.CONTENT_ENCODING))).isEqualTo("gzip");
+        assertThat(String.valueOf(
+                response.getMetadata().getFirst(HttpHeaders.VARY)))
+                .isEqualTo(HttpHeaders.ACCEPT_ENCODING);
+        // the entity is left for GZIPEncodingInterceptor to compress
+        assertThat(new String(write(response), StandardCharsets.UTF_8))
+                .contains("<tmx");
+    }
+
+    private static byte[] write(Response response) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(out);
+        return out.toByteArray();
+    }
+
+    private static String gunzip(byte[] bytes) throws Exception {
+        try (GZIPInputStream in =
+                new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return IOUtils.toString(in, StandardCharsets.UTF_8.name());
+        }
+    }
+}
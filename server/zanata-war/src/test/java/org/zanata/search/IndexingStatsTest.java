@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.search;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IndexingStatsTest {
+
+    @Test
+    public void noRateBeforeStart() {
+        IndexingStats stats = new IndexingStats();
+        assertThat(stats.isStarted()).isFalse();
+        assertThat(stats.getRowsPerSecond()).isEqualTo(0);
+    }
+
+    @Test
+    public void countsEntitiesFromSeveralThreads() throws Exception {
+        IndexingStats stats = new IndexingStats();
+        stats.start();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 4; i++) {
+            executor.submit(() -> {
+                for (int n = 0; n < 1000; n++) {
+                    stats.entityIndexed();
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(10);
+        stats.finish();
+
+        assertThat(stats.getIndexedCount()).isEqualTo(4000);
+        assertThat(stats.isFinished()).isTrue();
+        assertThat(stats.getRowsPerSecond()).isGreaterThan(0);
+    }
+}
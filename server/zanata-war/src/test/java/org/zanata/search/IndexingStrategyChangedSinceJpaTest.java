@@ -0,0 +1,157 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.search;
+
+import java.util.Date;
+import java.util.List;
+
+import org.dbunit.operation.DatabaseOperation;
+import org.hibernate.ScrollableResults;
+import org.hibernate.search.FullTextSession;
+import org.hibernate.search.Search;
+import org.junit.Before;
+import org.junit.Test;
+import org.zanata.ZanataDbunitJpaTest;
+import org.zanata.model.HProject;
+import org.zanata.model.HTextFlowTarget;
+
+import com.google.common.collect.Lists;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IndexingStrategyChangedSinceJpaTest extends ZanataDbunitJpaTest {
+
+    // all projects in the test data were last changed in 2009
+    private static final Date SINCE = new Date(1262304000000L); // 2010-01-01
+    private static final Date CHANGED = new Date(1262390400000L); // 2010-01-02
+    // all text flow targets in the test data were last changed in 2010
+    private static final Date DOC_SINCE = new Date(1293840000000L); // 2011-01-01
+    private static final Date DOC_CHANGED = new Date(1293926400000L); // 2011-01-02
+
+    private FullTextSession session;
+    private SimpleClassIndexingStrategy<HProject> strategy;
+
+    @Override
+    protected void prepareDBUnitOperations() {
+        beforeTestOperations.add(new DataSetOperation(
+                "org/zanata/test/model/ClearAllTables.dbunit.xml",
+                DatabaseOperation.CLEAN_INSERT));
+        beforeTestOperations.add(new DataSetOperation(
+                "org/zanata/test/model/AccountData.dbunit.xml",
+                DatabaseOperation.CLEAN_INSERT));
+        beforeTestOperations.add(new DataSetOperation(
+                "org/zanata/test/model/ProjectsData.dbunit.xml",
+                DatabaseOperation.CLEAN_INSERT));
+        beforeTestOperations.add(new DataSetOperation(
+                "org/zanata/test/model/TextFlowTestData.dbunit.xml",
+                DatabaseOperation.CLEAN_INSERT));
+        beforeTestOperations.add(new DataSetOperation(
+                "org/zanata/test/model/LocalesData.dbunit.xml",
+                DatabaseOperation.CLEAN_INSERT));
+    }
+
+    @Before
+    public void setUp() {
+        session = Search.getFullTextSession(getSession());
+        strategy = new SimpleClassIndexingStrategy<>(HProject.class);
+        getSession()
+                .createQuery("update HProject set lastChanged = :changed "
+                        + "where id = 2")
+                .setParameter("changed", CHANGED).executeUpdate();
+        getSession()
+                .createQuery("update HDocument set lastChanged = :changed "
+                        + "where id = 2")
+                .setParameter("changed", DOC_CHANGED).executeUpdate();
+    }
+
+    @Test
+    public void queriesOnlyChangedEntities() {
+        List<Long> ids = Lists.newArrayList();
+        ScrollableResults results = strategy.queryChangedSince(SINCE, session);
+        try {
+            while (results.next()) {
+                ids.add(((HProject) results.get(0)).getId());
+                assertThat(((Date) results.get(1)).getTime())
+                        .isEqualTo(CHANGED.getTime());
+            }
+        } finally {
+            results.close();
+        }
+        assertThat(ids).containsExactly(2L);
+    }
+
+    @Test
+    public void checkpointsLastChangedOfIndexedEntities() {
+        IndexingStats stats = new IndexingStats();
+        List<Date> checkpoints = Lists.newArrayList();
+
+        boolean completed = strategy.invokeChangedSince(null, session, stats,
+                SINCE, checkpoints::add);
+
+        assertThat(completed).isTrue();
+        assertThat(stats.getIndexedCount()).isEqualTo(1);
+        assertThat(checkpoints).hasSize(1);
+        assertThat(checkpoints.get(0).getTime()).isEqualTo(CHANGED.getTime());
+    }
+
+    @Test
+    public void nothingChanged() {
+        IndexingStats stats = new IndexingStats();
+        List<Date> checkpoints = Lists.newArrayList();
+
+        boolean completed = strategy.invokeChangedSince(null, session, stats,
+                new Date(CHANGED.getTime() + 1000), checkpoints::add);
+
+        assertThat(completed).isTrue();
+        assertThat(stats.getIndexedCount()).isEqualTo(0);
+        assertThat(checkpoints).isEmpty();
+    }
+
+    @Test
+    public void queriesTargetsOfChangedDocuments() {
+        HTextFlowTargetIndexingStrategy targetStrategy =
+                new HTextFlowTargetIndexingStrategy();
+        List<Long> ids = Lists.newArrayList();
+        ScrollableResults results = targetStrategy
+                .queryDependantsChangedSince(DOC_SINCE, session);
+        try {
+            while (results.next()) {
+                ids.add(((HTextFlowTarget) results.get(0)).getId());
+            }
+        } finally {
+            results.close();
+        }
+        assertThat(ids).containsOnly(5L, 6L, 7L);
+        assertThat(targetStrategy.countDependantsChangedSince(DOC_SINCE,
+                session)).isEqualTo(3L);
+    }
+
+    @Test
+    public void indexesTargetsOfChangedDocuments() {
+        IndexingStats stats = new IndexingStats();
+
+        boolean completed = new HTextFlowTargetIndexingStrategy()
+                .invokeDependantsChangedSince(null, session, stats, DOC_SINCE);
+
+        assertThat(completed).isTrue();
+        assertThat(stats.getIndexedCount()).isEqualTo(3);
+    }
+}
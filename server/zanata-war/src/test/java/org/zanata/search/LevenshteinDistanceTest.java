@@ -0,0 +1,133 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.search;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LevenshteinDistanceTest {
+
+    private static final String ALPHABET = "abcdé中";
+
+    /**
+     * Reference implementation: full matrix.
+     */
+    private static int fullMatrixDistance(String s, String t) {
+        int[][] d = new int[s.length() + 1][t.length() + 1];
+        for (int i = 0; i <= s.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= t.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= s.length(); i++) {
+            for (int j = 1; j <= t.length(); j++) {
+                int cost = s.charAt(i - 1) == t.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1),
+                        d[i - 1][j - 1] + cost);
+            }
+        }
+        return d[s.length()][t.length()];
+    }
+
+    private static String randomString(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return sb.toString();
+    }
+
+    private static String[] chars(String s) {
+        String[] tokens = new String[s.length()];
+        for (int i = 0; i < s.length(); i++) {
+            tokens[i] = String.valueOf(s.charAt(i));
+        }
+        return tokens;
+    }
+
+    @Test
+    public void simpleDistances() {
+        assertThat(LevenshteinDistance.distance("", "", 5)).isEqualTo(0);
+        assertThat(LevenshteinDistance.distance("abc", "", 5)).isEqualTo(3);
+        assertThat(LevenshteinDistance.distance("kitten", "sitting", 5))
+                .isEqualTo(3);
+        assertThat(LevenshteinDistance.distance("flaw", "lawn", 5))
+                .isEqualTo(2);
+    }
+
+    @Test
+    public void stopsAtMaxDistance() {
+        assertThat(LevenshteinDistance.distance("kitten", "sitting", 2))
+                .isEqualTo(3);
+        assertThat(LevenshteinDistance.distance("abc", "xyz", 0))
+                .isEqualTo(1);
+        assertThat(LevenshteinDistance.distance("a", "abcdef", 3))
+                .isEqualTo(4);
+    }
+
+    @Test
+    public void tokenDistances() {
+        String[] s = { "one", "two", "three" };
+        String[] t = { "one", "three", "four" };
+        assertThat(LevenshteinDistance.distance(s, t, 5)).isEqualTo(2);
+        assertThat(LevenshteinDistance.distance(s, t, 1)).isEqualTo(2);
+    }
+
+    @Test
+    public void matchesFullMatrixForShortAndLongStrings() {
+        Random random = new Random(1234);
+        for (int i = 0; i < 5000; i++) {
+            // lengths either side of the 64 char bit-parallel limit
+            int maxLen = i % 2 == 0 ? 60 : 150;
+            String s = randomString(random, random.nextInt(maxLen));
+            String t = randomString(random, random.nextInt(maxLen));
+            int expected = fullMatrixDistance(s, t);
+            int maxDistance = random.nextInt(Math.max(s.length(), t.length()) + 2);
+            int bounded = expected <= maxDistance ? expected : maxDistance + 1;
+
+            assertThat(LevenshteinDistance.distance(s, t, maxDistance))
+                    .as("distance(%s, %s, %s)", s, t, maxDistance)
+                    .isEqualTo(bounded);
+            assertThat(LevenshteinDistance.distance(chars(s), chars(t),
+                    maxDistance))
+                    .as("token distance(%s, %s, %s)", s, t, maxDistance)
+                    .isEqualTo(bounded);
+        }
+    }
+
+    @Test
+    public void thresholdSimilarityMatchesUnboundedAboveThreshold() {
+        List<String> strings1 = Arrays.asList("1234567890", "abcdefghij");
+        List<String> strings2 = Arrays.asList("123456789", "bcdefghij");
+        double exact = LevenshteinUtil.getSimilarity(strings1, strings2);
+
+        assertThat(LevenshteinUtil.getSimilarity(strings1, strings2, 0.9))
+                .isEqualTo(exact);
+        assertThat(LevenshteinUtil.getSimilarity(strings1, strings2, 0.95))
+                .isEqualTo(LevenshteinUtil.BELOW_THRESHOLD);
+    }
+}
@@ -111,6 +111,7 @@ import static org.zanata.test.rule.FunctionalTestRule.reentrant;
         LocaleServiceImpl.class,
         TranslationMemoryServiceImpl.class,
         VersionStateCacheImpl.class,
+        DocumentStatisticServiceImpl.class,
         TranslationStateCacheImpl.class,
         ValidationServiceImpl.class,
         TransactionUtil.class,
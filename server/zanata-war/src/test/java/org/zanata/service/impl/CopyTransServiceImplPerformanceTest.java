@@ -79,6 +79,7 @@ import com.google.common.collect.ImmutableMap;
 @AdditionalClasses({LocaleServiceImpl.class,
                     TranslationMemoryServiceImpl.class,
                     VersionStateCacheImpl.class,
+                    DocumentStatisticServiceImpl.class,
                     ValidationServiceImpl.class})
 public class CopyTransServiceImplPerformanceTest extends ZanataTest {
     private static final String PERSIST_NAME = "zanataDatasourcePU";
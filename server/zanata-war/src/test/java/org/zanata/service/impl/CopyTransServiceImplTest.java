@@ -82,6 +82,7 @@ import static org.zanata.model.HCopyTransOptions.ConditionRuleAction.IGNORE;
         LocaleServiceImpl.class,
         TranslationMemoryServiceImpl.class,
         VersionStateCacheImpl.class,
+        DocumentStatisticServiceImpl.class,
         TranslationStateCacheImpl.class,
         ValidationServiceImpl.class
 })
@@ -22,7 +22,11 @@ package org.zanata.service.impl;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.zanata.model.HCopyTransOptions.ConditionRuleAction.DOWNGRADE_TO_FUZZY;
@@ -38,11 +42,13 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.zanata.common.LocaleId;
+import org.zanata.dao.CopyTransWatermarkDAO;
 import org.zanata.dao.DocumentDAO;
 import org.zanata.dao.ProjectDAO;
 import org.zanata.dao.TextFlowDAO;
 import org.zanata.dao.TextFlowTargetDAO;
 import org.zanata.model.HCopyTransOptions;
+import org.zanata.model.HCopyTransWatermark;
 import org.zanata.model.HDocument;
 import org.zanata.model.HLocale;
 import org.zanata.model.HProject;
@@ -82,10 +88,20 @@ public class CopyTransServiceUnitTest {
     TranslationStateCache translationStateCacheImpl;
     @Mock
     TextFlowDAO textFlowDAO;
+    @Mock
+    CopyTransWatermarkDAO copyTransWatermarkDAO;
+    @Mock
+    TransMemoryResultCache transMemoryResultCache;
+
+    private CopyTransServiceImpl ctService;
 
     @Before
     public void initializeSeam() {
         MockitoAnnotations.initMocks(this);
+        ctService = new CopyTransServiceImpl(localeServiceImpl, projectDAO,
+                documentDAO, copyTransWorkFactory, textFlowTargetDAO,
+                translationStateCacheImpl, textFlowDAO, copyTransWatermarkDAO,
+                transMemoryResultCache);
     }
 
     @Test
@@ -99,12 +115,6 @@ public class CopyTransServiceUnitTest {
     }
 
     private void shouldUseProjectOptions(boolean useProjectOpts) throws Exception {
-        CopyTransServiceImpl ctService =
-                new CopyTransServiceImpl(
-                        localeServiceImpl, projectDAO, documentDAO,
-                        copyTransWorkFactory, textFlowTargetDAO,
-                        translationStateCacheImpl, textFlowDAO);
-
         HCopyTransOptions projOptions = new HCopyTransOptions(IGNORE, IGNORE, IGNORE);
 
         String projSlug = "projslug";
@@ -141,6 +151,65 @@ public class CopyTransServiceUnitTest {
         //verify(copyTransWork).call();
     }
 
+    @Test
+    public void incrementalCopyTransOnlyCopiesChangedTextFlows()
+            throws Exception {
+        HTextFlow unchanged = new HTextFlow();
+        HTextFlow changed = new HTextFlow();
+        changed.setId(2L);
+        HDocument doc = createDoc(createIter("iterslug",
+                createProject("projslug", 123L, null), false),
+                Arrays.asList(unchanged, changed));
+        HLocale de = new HLocale(LocaleId.DE);
+        de.setId(3L);
+        when(documentDAO.findById(doc.getId())).thenReturn(doc);
+        when(localeServiceImpl.getByLocaleId(LocaleId.DE)).thenReturn(de);
+        when(copyTransWatermarkDAO.getWatermark(doc.getId(), de.getId()))
+                .thenReturn(new HCopyTransWatermark(doc, de, 1));
+        when(textFlowDAO.getActiveIdsChangedSince(doc.getId(), 1))
+                .thenReturn(Arrays.asList(2L));
+        when(textFlowDAO.findByIdList(Arrays.asList(2L)))
+                .thenReturn(Arrays.asList(changed));
+        HCopyTransOptions options = new HCopyTransOptions(IGNORE, IGNORE,
+                IGNORE);
+        when(copyTransWorkFactory.runCopyTransInNewTx(de, options, doc,
+                false, Arrays.asList(changed))).thenReturn(1);
+
+        ctService.copyTransForDocumentLocale(doc.getId(), LocaleId.DE,
+                options, true, null);
+
+        verify(copyTransWorkFactory).runCopyTransInNewTx(eq(de),
+                eq(options), eq(doc), eq(false),
+                eq(Arrays.asList(changed)));
+        verify(transMemoryResultCache).invalidateLocale(LocaleId.DE);
+        verify(copyTransWorkFactory, never()).runCopyTransInNewTx(eq(de),
+                eq(options), eq(doc), eq(false),
+                eq(Arrays.asList(unchanged, changed)));
+    }
+
+    @Test
+    public void incrementalCopyTransWithoutWatermarkCopiesWholeDocument()
+            throws Exception {
+        List<HTextFlow> textFlows =
+                Arrays.asList(new HTextFlow(), new HTextFlow());
+        HDocument doc = createDoc(createIter("iterslug",
+                createProject("projslug", 123L, null), false), textFlows);
+        HLocale de = new HLocale(LocaleId.DE);
+        de.setId(3L);
+        when(documentDAO.findById(doc.getId())).thenReturn(doc);
+        when(localeServiceImpl.getByLocaleId(LocaleId.DE)).thenReturn(de);
+        HCopyTransOptions options = new HCopyTransOptions(IGNORE, IGNORE,
+                IGNORE);
+
+        ctService.copyTransForDocumentLocale(doc.getId(), LocaleId.DE,
+                options, true, null);
+
+        verify(copyTransWorkFactory).runCopyTransInNewTx(eq(de),
+                eq(options), eq(doc), eq(false), eq(textFlows));
+        verify(textFlowDAO, never()).getActiveIdsChangedSince(anyLong(),
+                anyInt());
+    }
+
     private HDocument createDoc(HProjectIteration iter,
             List<HTextFlow> textFlows) {
         HDocument doc = new HDocument();
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.service.impl;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.zanata.async.AsyncTaskManager;
+import org.zanata.common.LocaleId;
+import org.zanata.model.HCopyTransOptions;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.when;
+
+public class CopyTransWorkersTest {
+    @Mock
+    private AsyncTaskManager asyncTaskManager;
+
+    private final HCopyTransOptions options = new HCopyTransOptions();
+    private final List<LocaleId> copied = Lists.newArrayList();
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(asyncTaskManager.getWorkerThreads()).thenReturn(2);
+    }
+
+    private void runSubtasksImmediately() {
+        when(asyncTaskManager.startSubtask(any(Callable.class))).thenAnswer(
+                invocation -> {
+                    Callable<?> subtask =
+                            (Callable<?>) invocation.getArguments()[0];
+                    try {
+                        return Futures.immediateFuture(subtask.call());
+                    } catch (Exception e) {
+                        return Futures.immediateFailedFuture(e);
+                    }
+                });
+    }
+
+    @Test
+    public void runsEachUnitAsSubtask() {
+        runSubtasksImmediately();
+        CopyTransWorkers workers = new CopyTransWorkers(asyncTaskManager,
+                (docId, localeId, opts, handle) -> copied.add(localeId));
+
+        workers.submit(1L, LocaleId.DE, options, null);
+        workers.submit(1L, LocaleId.FR, options, null);
+        workers.awaitAll();
+
+        assertThat(copied).containsExactly(LocaleId.DE, LocaleId.FR);
+    }
+
+    @Test
+    public void stopsAfterFailedUnit() {
+        runSubtasksImmediately();
+        CopyTransWorkers workers = new CopyTransWorkers(asyncTaskManager,
+                (docId, localeId, opts, handle) -> {
+                    throw new IllegalStateException("failed");
+                });
+
+        workers.submit(1L, LocaleId.DE, options, null);
+        try {
+            workers.submit(1L, LocaleId.FR, options, null);
+            fail("expected failure");
+        } catch (IllegalStateException e) {
+            assertThat(e).hasMessage("failed");
+        }
+        try {
+            workers.awaitAll();
+            fail("expected failure");
+        } catch (IllegalStateException e) {
+            assertThat(e).hasMessage("failed");
+        }
+    }
+
+    @Test
+    public void waitsForWorkerBeforeStartingMoreUnits() throws Exception {
+        List<SettableFuture<Object>> running = Lists.newArrayList();
+        when(asyncTaskManager.startSubtask(any(Callable.class))).thenAnswer(
+                invocation -> {
+                    SettableFuture<Object> future = SettableFuture.create();
+                    running.add(future);
+                    return future;
+                });
+        CopyTransWorkers workers = new CopyTransWorkers(asyncTaskManager,
+                (docId, localeId, opts, handle) -> {
+                });
+        workers.submit(1L, LocaleId.DE, options, null);
+        workers.submit(1L, LocaleId.FR, options, null);
+
+        Thread submitter = new Thread(
+                () -> workers.submit(2L, LocaleId.DE, options, null));
+        submitter.start();
+        submitter.join(200);
+        assertThat(submitter.isAlive()).isTrue();
+        assertThat(running).hasSize(2);
+
+        running.get(0).set(null);
+        submitter.join(TimeUnit.SECONDS.toMillis(10));
+        assertThat(submitter.isAlive()).isFalse();
+        assertThat(running).hasSize(3);
+    }
+}
@@ -21,9 +21,11 @@
 package org.zanata.service.impl;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
@@ -32,6 +34,8 @@ import java.util.List;
 import java.util.Map;
 
 import com.google.common.cache.CacheLoader;
+import lombok.extern.slf4j.Slf4j;
+
 import org.dbunit.operation.DatabaseOperation;
 import org.hibernate.Session;
 import org.infinispan.manager.CacheContainer;
@@ -42,7 +46,9 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
+import org.zanata.PerformanceProfiling;
 import org.zanata.ZanataDbunitJpaTest;
+import org.zanata.async.AsyncTaskHandle;
 import org.zanata.async.handle.CopyVersionTaskHandle;
 import org.zanata.cache.InfinispanTestCacheContainer;
 import org.zanata.cdi.TestTransaction;
@@ -51,8 +57,6 @@ import org.zanata.dao.DocumentDAO;
 import org.zanata.dao.LocaleDAO;
 import org.zanata.dao.ProjectIterationDAO;
 import org.zanata.dao.RawDocumentDAO;
-import org.zanata.dao.TextFlowDAO;
-import org.zanata.dao.TextFlowTargetDAO;
 import org.zanata.events.DocumentLocaleKey;
 import org.zanata.file.FileSystemPersistService;
 import org.zanata.model.HDocument;
@@ -68,7 +72,9 @@ import org.zanata.model.po.HPoTargetHeader;
 import org.zanata.model.type.TranslationSourceType;
 import org.zanata.security.ZanataCredentials;
 import org.zanata.security.ZanataIdentity;
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.Lists;
+import org.zanata.service.IndexingService;
 import org.zanata.service.VersionLocaleKey;
 import org.zanata.test.CdiUnitRunner;
 import org.zanata.transaction.TransactionUtil;
@@ -85,6 +91,7 @@ import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.transaction.UserTransaction;
 
+@Slf4j
 @RunWith(CdiUnitRunner.class)
 @SupportDeltaspikeCore
 @AdditionalClasses({
@@ -99,12 +106,6 @@ public class CopyVersionServiceImplTest extends ZanataDbunitJpaTest {
     @Inject
     private DocumentDAO documentDAO;
 
-    @Inject
-    private TextFlowTargetDAO textFlowTargetDAO;
-
-    @Inject
-    private TextFlowDAO textFlowDAO;
-
     @Inject
     private RawDocumentDAO rawDocumentDAO;
 
@@ -120,6 +121,9 @@ public class CopyVersionServiceImplTest extends ZanataDbunitJpaTest {
     @Produces @Mock
     private FileSystemPersistService fileSystemPersistService;
 
+    @Produces @Mock
+    private IndexingService indexingService;
+
     @Produces @Mock
     private CacheLoader<VersionLocaleKey, WordStatistic> versionStatisticLoader;
 
@@ -186,7 +190,7 @@ public class CopyVersionServiceImplTest extends ZanataDbunitJpaTest {
     public void testTextFlowBatching() throws Exception {
         String newVersionSlug = "new-version";
         CopyVersionServiceImpl spyService = spy(service);
-        int tfCount = CopyVersionServiceImpl.TF_BATCH_SIZE + 1;
+        int tfCount = 21;
 
         HDocument existingDoc = getTestDocWithNoTF();
         String existingProjectSlug =
@@ -199,12 +203,13 @@ public class CopyVersionServiceImplTest extends ZanataDbunitJpaTest {
         spyService.copyVersion(existingProjectSlug, existingVersionSlug,
                 newVersionSlug, new CopyVersionTaskHandle());
 
-        int expectedTfBatchRuns =
-                (tfCount / CopyVersionServiceImpl.TF_BATCH_SIZE)
-                        + (tfCount % CopyVersionServiceImpl.TF_BATCH_SIZE == 0 ? 0 : 1);
-
-        // verify that it calls a transaction commit at least once per batch
-        verify(tx, atLeast(expectedTfBatchRuns)).commit();
+        HDocument newDoc = documentDAO.getByProjectIterationAndDocId(
+                existingProjectSlug, newVersionSlug, existingDoc.getDocId());
+        assertThat(newDoc.getTextFlows()).hasSize(tfCount);
+        // all the text flows of a document batch are copied together: verify
+        // that it calls a transaction commit for the documents and the text
+        // flows
+        verify(tx, atLeast(2)).commit();
     }
 
     @Test
@@ -219,16 +224,57 @@ public class CopyVersionServiceImplTest extends ZanataDbunitJpaTest {
         String existingVersionSlug =
                 existingDoc.getProjectIteration().getSlug();
 
-        int tftSize = insertTextFlowAndTargetToDoc(existingDoc, 1, true);
+        int localeCount = insertTextFlowAndTargetToDoc(existingDoc, 1, true);
 
         spyService.copyVersion(existingProjectSlug, existingVersionSlug,
                 newVersionSlug, new CopyVersionTaskHandle());
 
-        int expectedTftBatchRuns =
-                (tftSize / CopyVersionServiceImpl.TFT_BATCH_SIZE)
-                        + (tftSize % CopyVersionServiceImpl.TF_BATCH_SIZE == 0 ? 0 : 1);
-        // verify that it calls a transaction commit at least once per batch
-        verify(tx, atLeast(expectedTftBatchRuns)).commit();
+        HDocument newDoc = documentDAO.getByProjectIterationAndDocId(
+                existingProjectSlug, newVersionSlug, existingDoc.getDocId());
+        assertThat(newDoc.getTextFlows().get(0).getTargets())
+                .hasSize(localeCount);
+        // targets are copied in one batch per locale: verify that it calls a
+        // transaction commit at least once per batch
+        verify(tx, atLeast(2 + localeCount)).commit();
+        // and reindexes the copied targets once, at the end
+        verify(indexingService, times(1))
+                .reindexHTextFlowTargetsForProjectIteration(
+                        any(HProjectIteration.class), any(AsyncTaskHandle.class));
+    }
+
+    /**
+     * Copies a version with many translations and logs how long it takes.
+     * Raise tfCount (eg to 5000) when profiling.
+     * <p>
+     * TODO run this against the entity-by-entity copy which CopyVersionDAO
+     * replaced (it only uses copyVersion, so it runs unchanged on the older
+     * tree) and record both timings
+     */
+    @Test
+    @PerformanceProfiling
+    @InRequestScope
+    public void testCopyLargeVersion() throws Exception {
+        String newVersionSlug = "new-version";
+        HDocument existingDoc = getTestDocWithNoTF();
+        int tfCount = 200;
+        int localeCount = insertTextFlowAndTargetToDoc(existingDoc, tfCount,
+                true);
+        getEm().clear();
+
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        service.copyVersion("sample-project", "3.0", newVersionSlug,
+                new CopyVersionTaskHandle());
+        log.info("copied {} text flows and {} targets in {}", tfCount,
+                tfCount * localeCount, stopwatch);
+
+        HDocument newDoc = documentDAO.getByProjectIterationAndDocId(
+                "sample-project", newVersionSlug, existingDoc.getDocId());
+        assertThat(newDoc.getTextFlows()).hasSize(tfCount);
+        Long targetCount = (Long) getSession()
+                .createQuery("select count(*) from HTextFlowTarget tft "
+                        + "where tft.textFlow.document = :document")
+                .setParameter("document", newDoc).uniqueResult();
+        assertThat(targetCount).isEqualTo((long) tfCount * localeCount);
     }
 
     /**
@@ -396,29 +442,6 @@ public class CopyVersionServiceImplTest extends ZanataDbunitJpaTest {
         assertRawDocument(newRawDoc, existingDoc.getRawDocument());
     }
 
-    @Test
-    @InRequestScope
-    public void testCopyTextFlow() throws Exception {
-        HDocument dummyDoc = getDummyDocument();
-        HTextFlow existingTextFlow = textFlowDAO.findById(1L);
-        HTextFlow newTextFlow =
-                service.copyTextFlow(dummyDoc, existingTextFlow);
-
-        assertTextFlow(false, existingTextFlow, newTextFlow, dummyDoc);
-    }
-
-    @Test
-    @InRequestScope
-    public void testCopyTextFlowTarget() throws Exception {
-        HTextFlow dummyTextFlow = getDummyTextFlow();
-        HTextFlowTarget existingTarget = textFlowTargetDAO.findById(3L, false);
-
-        HTextFlowTarget newTarget =
-                service.copyTextFlowTarget(dummyTextFlow, existingTarget);
-
-        assertTextFlowTarget(existingTarget, newTarget, dummyTextFlow);
-    }
-
     private void assertTextFlowTargetHistoryAndReview(
             HTextFlowTargetReviewComment existingComment,
             HTextFlowTargetReviewComment newComment,
@@ -638,11 +661,4 @@ public class CopyVersionServiceImplTest extends ZanataDbunitJpaTest {
         dummyDoc.setDocId("dummy-doc");
         return dummyDoc;
     }
-
-    private HTextFlow getDummyTextFlow() {
-        HTextFlow dummyTf = new HTextFlow();
-        dummyTf.setContents(Lists.newArrayList("dummy content"));
-        dummyTf.setRevision(100);
-     return dummyTf;
-    }
 }
@@ -40,6 +40,7 @@ import org.zanata.cache.InfinispanTestCacheContainer;
 import org.zanata.cdi.TestTransaction;
 import org.zanata.common.ContentState;
 import org.zanata.dao.DocumentDAO;
+import org.zanata.dao.LocaleDAO;
 import org.zanata.dao.ProjectIterationDAO;
 import org.zanata.dao.TextFlowDAO;
 import org.zanata.dao.TextFlowTargetDAO;
@@ -103,6 +104,9 @@ public class MergeTranslationsServiceImplTest extends ZanataDbunitJpaTest {
     @Inject
     TextFlowTargetDAO textFlowTargetDAO;
 
+    @Inject
+    LocaleDAO localeDAO;
+
     @Produces @Mock
     private ZanataIdentity identity;
 
@@ -166,6 +170,37 @@ public class MergeTranslationsServiceImplTest extends ZanataDbunitJpaTest {
                 DatabaseOperation.CLEAN_INSERT));
     }
 
+    /**
+     * Returns [source text flow, target text flow] pairs with the same
+     * document id, resId and content, which are the ones merge translations
+     * should consider.
+     */
+    private List<HTextFlow[]> getMatchingTextFlows(Long sourceVersionId,
+            Long targetVersionId) {
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = getSession()
+                .createQuery("select fromTF, toTF "
+                        + "from HTextFlow fromTF, HTextFlow toTF "
+                        + "where fromTF.document.projectIteration.id = :sourceVersionId "
+                        + "and toTF.document.projectIteration.id = :targetVersionId "
+                        + "and fromTF.obsolete = false "
+                        + "and fromTF.document.obsolete = false "
+                        + "and toTF.obsolete = false "
+                        + "and toTF.document.obsolete = false "
+                        + "and fromTF <> toTF "
+                        + "and fromTF.contentHash = toTF.contentHash "
+                        + "and fromTF.resId = toTF.resId "
+                        + "and fromTF.document.docId = toTF.document.docId")
+                .setParameter("sourceVersionId", sourceVersionId)
+                .setParameter("targetVersionId", targetVersionId).list();
+        List<HTextFlow[]> results = Lists.newArrayList();
+        for (Object[] row : rows) {
+            results.add(new HTextFlow[] { (HTextFlow) row[0],
+                    (HTextFlow) row[1] });
+        }
+        return results;
+    }
+
     @Before
     public void beforeMethod() throws Exception {
         tx = new TestTransaction(getEm());
@@ -222,53 +257,72 @@ public class MergeTranslationsServiceImplTest extends ZanataDbunitJpaTest {
                 projectIterationDAO.getBySlug(projectSlug, targetVersionSlug);
         assertThat(expectedTargetVersion).isNotNull();
 
-        List<HTextFlow[]> matchingTextFlows =
-            textFlowDAO.getSourceByMatchedContext(
-                expectedSourceVersion.getId(), expectedTargetVersion.getId(), 0,
-                100);
+        List<HTextFlow[]> matchingTextFlows = getMatchingTextFlows(
+                expectedSourceVersion.getId(), expectedTargetVersion.getId());
 
         List<HLocale> locales =
                 service.getSupportedLocales(projectSlug, targetVersionSlug);
 
-        service.startMergeTranslations(projectSlug, sourceVersionSlug,
-            projectSlug, targetVersionSlug, useNewerTranslation, null);
-
-        List<HTextFlowTarget[]> expectedMergeData = Lists.newArrayList();
+        // [source target id, target text flow id, locale id]
+        List<Long[]> expectedMerges = Lists.newArrayList();
         for (HTextFlow[] data : matchingTextFlows) {
             for(HLocale locale: locales) {
                 HTextFlowTarget sourceTft =
                         data[0].getTargets().get(locale.getId());
+                if (sourceTft == null) {
+                    continue;
+                }
                 HTextFlowTarget targetTft =
                         data[1].getTargets().get(locale.getId());
 
                 if(targetTft == null) {
                     // If untranslated, create a dummy untranslated target
-                    targetTft = new HTextFlowTarget(null, sourceTft.getLocale());
+                    targetTft = new HTextFlowTarget();
                 }
                 if (MergeTranslationsServiceImpl.shouldMerge(sourceTft,
                         targetTft, useNewerTranslation)) {
-                    expectedMergeData.add(new HTextFlowTarget[] { sourceTft,
-                            targetTft });
+                    expectedMerges.add(new Long[] { sourceTft.getId(),
+                            data[1].getId(), locale.getId() });
                 }
             }
         }
+        assertThat(service.getTotalProgressCount(expectedSourceVersion,
+                expectedTargetVersion, useNewerTranslation))
+                .isEqualTo(expectedMerges.size());
+
+        service.startMergeTranslations(projectSlug, sourceVersionSlug,
+            projectSlug, targetVersionSlug, useNewerTranslation, null);
 
-        //entity in matchingTextFlows should be updated after merge process
+        // merged targets are read back from the database
+        getEm().clear();
 
         // check all results has same contents and states
         // check generated comments in [1]
         // check non translated/approved is not being used
-        // check use latest translated if enabled
-        for(HTextFlowTarget[] data: expectedMergeData) {
-            assertThat(data[0].getState()).isIn(ContentState.TRANSLATED_STATES);
-            assertThat(data[1].getState()).isEqualTo(data[0].getState());
-
-            assertThat(data[0].getContents()).isEqualTo(data[1].getContents());
-            assertThat(data[1].getRevisionComment()).contains(
+        for (Long[] ids : expectedMerges) {
+            HTextFlowTarget sourceTft = textFlowTargetDAO.findById(ids[0]);
+            HTextFlowTarget targetTft = textFlowTargetDAO.getTextFlowTarget(
+                    textFlowDAO.findById(ids[1]),
+                    localeDAO.findById(ids[2]));
+            assertThat(targetTft).isNotNull();
+            assertThat(sourceTft.getState())
+                    .isIn(ContentState.TRANSLATED_STATES);
+            assertThat(targetTft.getState()).isEqualTo(sourceTft.getState());
+
+            assertThat(targetTft.getContents())
+                    .isEqualTo(sourceTft.getContents());
+            assertThat(targetTft.getRevisionComment()).contains(
                 TranslationUtil.PREFIX_MERGE_VERSION);
-            assertThat(data[1].getSourceType()).isEqualTo(
+            assertThat(targetTft.getSourceType()).isEqualTo(
                 TranslationSourceType.MERGE_VERSION);
         }
+        // nothing is left to merge without useNewerTranslation
+        HProjectIteration sourceVersion =
+                projectIterationDAO.getBySlug(projectSlug, sourceVersionSlug);
+        HProjectIteration targetVersion =
+                projectIterationDAO.getBySlug(projectSlug, targetVersionSlug);
+        assertThat(service.getTotalProgressCount(sourceVersion,
+                targetVersion, useNewerTranslation)).isEqualTo(0);
     }
 
     @Test
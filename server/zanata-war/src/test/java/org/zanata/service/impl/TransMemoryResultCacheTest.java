@@ -0,0 +1,188 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.service.impl;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.zanata.common.ContentState;
+import org.zanata.common.LocaleId;
+import org.zanata.events.DocumentLocaleKey;
+import org.zanata.events.TextFlowTargetStateEvent;
+import org.zanata.webtrans.shared.model.TransMemoryQuery;
+import org.zanata.webtrans.shared.model.TransMemoryResultItem;
+import org.zanata.webtrans.shared.rpc.HasSearchType.SearchType;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.Lists;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TransMemoryResultCacheTest {
+    private static final LocaleId EN = LocaleId.EN_US;
+    private static final LocaleId DE = LocaleId.DE;
+    private static final LocaleId FR = LocaleId.FR;
+
+    private final AtomicLong now = new AtomicLong();
+    private final Ticker ticker = new Ticker() {
+        @Override
+        public long read() {
+            return now.get();
+        }
+    };
+    private TransMemoryResultCache cache;
+    private AtomicInteger searches;
+    private Callable<List<TransMemoryResultItem>> search;
+
+    @Before
+    public void setUp() {
+        cache = new TransMemoryResultCache(100_000, 60, ticker);
+        searches = new AtomicInteger();
+        search = () -> {
+            searches.incrementAndGet();
+            return Lists.newArrayList(new TransMemoryResultItem(
+                    Lists.newArrayList("source"),
+                    Lists.newArrayList("target"),
+                    TransMemoryResultItem.MatchType.ApprovedInternal, 1.0,
+                    100.0));
+        };
+    }
+
+    private static TransMemoryQuery query(String text) {
+        return new TransMemoryQuery(text, SearchType.FUZZY);
+    }
+
+    private List<TransMemoryResultItem> search(LocaleId target,
+            TransMemoryQuery query) {
+        return cache.getResults(target, EN, query, 1.0, search);
+    }
+
+    private static TextFlowTargetStateEvent stateEvent(LocaleId localeId) {
+        return new TextFlowTargetStateEvent(
+                new DocumentLocaleKey(1L, localeId), 1L, null,
+                new TextFlowTargetStateEvent.TextFlowTargetStateChange(1L,
+                        1L, ContentState.Translated, ContentState.New));
+    }
+
+    @Test
+    public void repeatedQueryIsServedFromCache() {
+        List<TransMemoryResultItem> first = search(DE, query("hello"));
+        List<TransMemoryResultItem> second = search(DE, query("hello"));
+
+        assertThat(searches.get()).isEqualTo(1);
+        assertThat(second).hasSameSizeAs(first);
+        assertThat(second.get(0).getTargetContents())
+                .isEqualTo(first.get(0).getTargetContents());
+        assertThat(cache.getStats().hitCount()).isEqualTo(1);
+        assertThat(cache.getStats().missCount()).isEqualTo(1);
+        assertThat(cache.getFieldValuesAsJSON()).contains("hitRate");
+    }
+
+    @Test
+    public void differentQueriesAreSearchedSeparately() {
+        search(DE, query("hello"));
+        search(DE, query("goodbye"));
+        search(FR, query("hello"));
+        cache.getResults(DE, EN, query("hello"), 80.0, search);
+        TransMemoryQuery excludeOwn = query("hello");
+        excludeOwn.setIncludeOwnTranslation(false, "1");
+        search(DE, excludeOwn);
+
+        assertThat(searches.get()).isEqualTo(5);
+    }
+
+    @Test
+    public void translationChangeInvalidatesOnlyItsLocale() {
+        search(DE, query("hello"));
+        search(FR, query("hello"));
+
+        cache.textFlowStateUpdated(stateEvent(DE));
+        search(DE, query("hello"));
+        search(FR, query("hello"));
+
+        assertThat(searches.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void invalidateAllClearsEveryLocale() {
+        search(DE, query("hello"));
+        search(FR, query("hello"));
+
+        cache.invalidateAll();
+        search(DE, query("hello"));
+        search(FR, query("hello"));
+
+        assertThat(searches.get()).isEqualTo(4);
+    }
+
+    @Test
+    public void callersCannotModifyCachedResults() {
+        search(DE, query("hello")).clear();
+
+        assertThat(search(DE, query("hello"))).hasSize(1);
+        assertThat(searches.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void callersCannotModifyCachedItems() {
+        TransMemoryResultItem item = search(DE, query("hello")).get(0);
+        item.getSourceContents().set(0, "changed");
+        item.getTargetContents().clear();
+        item.addOrigin("origin");
+        item.incMatchCount();
+
+        TransMemoryResultItem cached = search(DE, query("hello")).get(0);
+        assertThat(cached.getSourceContents()).containsExactly("source");
+        assertThat(cached.getTargetContents()).containsExactly("target");
+        assertThat(cached.getOrigins()).isEmpty();
+        assertThat(cached.getMatchCount()).isEqualTo(0);
+        assertThat(searches.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void invalidateLocaleClearsOnlyThatLocale() {
+        search(DE, query("hello"));
+        search(FR, query("hello"));
+
+        cache.invalidateLocale(DE);
+        search(DE, query("hello"));
+        search(FR, query("hello"));
+
+        assertThat(searches.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void resultsExpire() {
+        search(DE, query("hello"));
+        now.addAndGet(TimeUnit.SECONDS.toNanos(59));
+        search(DE, query("hello"));
+        assertThat(searches.get()).isEqualTo(1);
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        search(DE, query("hello"));
+        assertThat(searches.get()).isEqualTo(2);
+    }
+}
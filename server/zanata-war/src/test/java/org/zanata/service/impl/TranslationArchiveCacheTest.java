@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.service.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.zanata.common.LocaleId;
+import org.zanata.service.impl.TranslationArchiveCache.Key;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TranslationArchiveCacheTest {
+    private static final String CHANGED = "3:42:5:1:1000000";
+
+    private TranslationArchiveCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new TranslationArchiveCache(100);
+    }
+
+    private static Key key(Long docId, Integer revision, LocaleId localeId,
+            String translationState) {
+        return new Key(docId, revision, localeId, translationState, "po");
+    }
+
+    @Test
+    public void unchangedDocumentIsServedFromCache() {
+        byte[] po = "msgid \"\"".getBytes();
+        cache.put(key(1L, 1, LocaleId.DE, CHANGED), po);
+
+        assertThat(cache.getIfPresent(key(1L, 1, LocaleId.DE,
+                new String(CHANGED)))).isSameAs(po);
+    }
+
+    @Test
+    public void changesMissTheCache() {
+        cache.put(key(1L, 1, LocaleId.DE, CHANGED), new byte[1]);
+
+        assertThat(cache.getIfPresent(key(1L, 2, LocaleId.DE, CHANGED)))
+                .isNull();
+        assertThat(cache.getIfPresent(key(1L, 1, LocaleId.FR, CHANGED)))
+                .isNull();
+        assertThat(cache.getIfPresent(
+                key(1L, 1, LocaleId.DE, "3:42:6:1:1000000")))
+                .isNull();
+        assertThat(cache.getIfPresent(key(1L, 1, LocaleId.DE, null)))
+                .isNull();
+        assertThat(cache.getIfPresent(
+                new Key(1L, 1, LocaleId.DE, CHANGED, "po-from-pot")))
+                .isNull();
+    }
+
+    @Test
+    public void cacheIsBoundedBySize() {
+        for (long docId = 1; docId <= 10; docId++) {
+            cache.put(key(docId, 1, LocaleId.DE, CHANGED), new byte[40]);
+        }
+
+        assertThat(cache.getStats().evictionCount()).isGreaterThan(0);
+        assertThat(cache.getIfPresent(key(10L, 1, LocaleId.DE, CHANGED)))
+                .isNotNull();
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.enterprise.inject.Produces;
+import javax.inject.Inject;
+
+import org.apache.commons.io.IOUtils;
+import org.jglue.cdiunit.InRequestScope;
+import org.jglue.cdiunit.deltaspike.SupportDeltaspikeCore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.zanata.ZanataTest;
+import org.zanata.async.AsyncTaskManager;
+import org.zanata.common.LocaleId;
+import org.zanata.common.ProjectType;
+import org.zanata.dao.DocumentDAO;
+import org.zanata.dao.LocaleDAO;
+import org.zanata.dao.ProjectIterationDAO;
+import org.zanata.dao.TextFlowTargetDAO;
+import org.zanata.model.HDocument;
+import org.zanata.model.HLocale;
+import org.zanata.model.HProjectIteration;
+import org.zanata.rest.dto.resource.Resource;
+import org.zanata.rest.dto.resource.TextFlow;
+import org.zanata.rest.service.ResourceUtils;
+import org.zanata.service.ConfigurationService;
+import org.zanata.service.FileSystemService;
+import org.zanata.test.CdiUnitRunner;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.SettableFuture;
+
+@RunWith(CdiUnitRunner.class)
+@SupportDeltaspikeCore
+public class TranslationArchiveServiceImplTest extends ZanataTest {
+    private static final String DIR = "project-version/";
+
+    @Inject
+    private TranslationArchiveServiceImpl service;
+
+    @Produces @Mock
+    DocumentDAO documentDAO;
+    @Produces @Mock
+    LocaleDAO localeDAO;
+    @Produces @Mock
+    ProjectIterationDAO projectIterationDAO;
+    @Produces @Mock
+    ResourceUtils resourceUtils;
+    @Produces @Mock
+    TextFlowTargetDAO textFlowTargetDAO;
+    @Produces @Mock
+    FileSystemService fileSystemService;
+    @Produces @Mock
+    ConfigurationService configurationService;
+    @Produces @Mock
+    AsyncTaskManager asyncTaskManager;
+
+    private final List<File> archives = Lists.newArrayList();
+    private final ScheduledExecutorService completer =
+            Executors.newSingleThreadScheduledExecutor();
+    private int subtasks;
+
+    @Before
+    public void setUp() throws IOException {
+        HProjectIteration version = new HProjectIteration();
+        version.setProjectType(ProjectType.Gettext);
+        when(projectIterationDAO.getBySlug("project", "version"))
+                .thenReturn(version);
+        HLocale de = new HLocale(LocaleId.DE);
+        when(localeDAO.findByLocaleId(LocaleId.DE)).thenReturn(de);
+        when(configurationService.getConfigurationFileName())
+                .thenReturn("zanata.xml");
+        when(configurationService.getConfigForOfflineTranslation("project",
+                "version", de)).thenReturn("<config/>");
+        when(fileSystemService.createDownloadStagingFile("zip"))
+                .thenAnswer(invocation -> {
+                    File archive = File.createTempFile("archive", ".zip");
+                    archives.add(archive);
+                    return archive;
+                });
+        when(fileSystemService.createDownloadDescriptorFile(any(File.class),
+                anyString(), anyString())).thenReturn("download");
+        when(asyncTaskManager.getWorkerThreads()).thenReturn(2);
+
+        List<HDocument> documents = ImmutableList.of(document(1L, "a"),
+                document(2L, "b"), document(3L, "c"), document(4L, "d"));
+        when(documentDAO.getAllByProjectIteration("project", "version"))
+                .thenReturn(documents);
+        for (HDocument document : documents) {
+            when(documentDAO.findById(document.getId()))
+                    .thenReturn(document);
+            Resource resource = new Resource(document.getDocId());
+            resource.getTextFlows().add(new TextFlow("tf1", LocaleId.EN_US,
+                    "source of " + document.getDocId()));
+            when(resourceUtils.buildResource(document)).thenReturn(resource);
+        }
+        when(textFlowTargetDAO.getTranslationStateByDocument(version, de))
+                .thenReturn(ImmutableMap.of(1L, "1:1:0:0:", 3L, "1:3:0:0:"));
+    }
+
+    @After
+    public void tearDown() {
+        completer.shutdownNow();
+        archives.forEach(File::delete);
+    }
+
+    private static HDocument document(Long id, String docId) {
+        HDocument document = new HDocument();
+        document.setId(id);
+        document.setDocId(docId);
+        document.setRevision(1);
+        return document;
+    }
+
+    /**
+     * Generates each file as soon as it is requested, but completes the
+     * later subtasks first.
+     */
+    private void completeSubtasksInReverseOrder() {
+        when(asyncTaskManager.startSubtask(any(Callable.class))).thenAnswer(
+                invocation -> {
+                    Callable<?> subtask =
+                            (Callable<?>) invocation.getArguments()[0];
+                    Object result = subtask.call();
+                    SettableFuture<Object> future = SettableFuture.create();
+                    completer.schedule(() -> future.set(result),
+                            200 - 50 * subtasks++, TimeUnit.MILLISECONDS);
+                    return future;
+                });
+    }
+
+    private Map<String, String> readArchive(File archive) throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip =
+                new ZipInputStream(new FileInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                ByteArrayOutputStream contents = new ByteArrayOutputStream();
+                IOUtils.copy(zip, contents);
+                entries.put(entry.getName(), contents.toString("UTF-8"));
+            }
+        }
+        return entries;
+    }
+
+    @Test
+    @InRequestScope
+    public void filesAreWrittenInDocumentOrder() throws Exception {
+        completeSubtasksInReverseOrder();
+
+        service.buildTranslationFileArchive("project", "version", "de",
+                "admin", null);
+
+        Map<String, String> entries = readArchive(archives.get(0));
+        assertThat(entries.keySet()).containsExactly(DIR + "zanata.xml",
+                DIR + "de/a.po", DIR + "de/b.po", DIR + "de/c.po",
+                DIR + "de/d.po");
+        assertThat(entries.get(DIR + "de/a.po")).contains("source of a");
+        assertThat(entries.get(DIR + "de/d.po")).contains("source of d");
+        verify(asyncTaskManager, times(4)).startSubtask(any(Callable.class));
+    }
+
+    @Test
+    @InRequestScope
+    public void unchangedFilesAreTakenFromCache() throws Exception {
+        completeSubtasksInReverseOrder();
+        service.buildTranslationFileArchive("project", "version", "de",
+                "admin", null);
+
+        service.buildTranslationFileArchive("project", "version", "de",
+                "admin", null);
+
+        // only the first build generates files
+        verify(asyncTaskManager, times(4)).startSubtask(any(Callable.class));
+        assertThat(readArchive(archives.get(1)))
+                .isEqualTo(readArchive(archives.get(0)));
+    }
+
+    @Test
+    @InRequestScope
+    public void changedTranslationsAreRegenerated() throws Exception {
+        completeSubtasksInReverseOrder();
+        service.buildTranslationFileArchive("project", "version", "de",
+                "admin", null);
+        when(textFlowTargetDAO.getTranslationStateByDocument(
+                any(HProjectIteration.class), any(HLocale.class)))
+                .thenReturn(ImmutableMap.of(1L, "1:1:1:0:", 3L, "1:3:0:0:"));
+
+        service.buildTranslationFileArchive("project", "version", "de",
+                "admin", null);
+
+        // only document 1 is generated again
+        verify(asyncTaskManager, times(5)).startSubtask(any(Callable.class));
+        verify(documentDAO, times(2)).findById(1L);
+        verify(documentDAO, times(1)).findById(2L);
+    }
+}
@@ -44,9 +44,12 @@ import javax.inject.Inject;
 import javax.persistence.EntityManagerFactory;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static java.util.Arrays.asList;
@@ -281,7 +284,24 @@ public class TranslationFinderTest {
                 }
             }
 
+            // the bulk lookup should agree with the single lookup
+            Map<Long, HTextFlowTarget> bulkMatches =
+                    service.searchBestMatchTransMemory(
+                            Collections.singletonList(queryTextFlow),
+                            LocaleId.DE, LocaleId.EN_US,
+                            execution.isCheckContext(), execution.isCheckDocument(),
+                            execution.isCheckProject());
+
+            assertThat(bulkMatches.containsKey(queryTextFlow.getId()))
+                    .as("bulk match present").isEqualTo(execution.expectMatch());
 
+            if (matchingTarget.isPresent()) {
+                HTextFlowTarget bulkTarget =
+                        bulkMatches.get(queryTextFlow.getId());
+                assertThat(bulkTarget.getLocaleId()).isEqualTo(LocaleId.DE);
+                assertThat(bulkTarget.getTextFlow().getContents())
+                        .containsExactly(execution.getContent());
+            }
         }
 
     }
@@ -357,6 +377,57 @@ public class TranslationFinderTest {
             testMostRecentMatch(translationMemoryService);
         }
 
+        @Test
+        @InRequestScope
+        public void testTextFlowTargetDAOManyTextFlows() {
+            testManyTextFlows(textFlowTargetDAO);
+        }
+
+        @Test
+        @InRequestScope
+        public void testTranslationMemoryServiceImplManyTextFlows() {
+            testManyTextFlows(translationMemoryService);
+        }
+
+        /**
+         * Makes sure that a bulk search for more text flows than
+         * BooleanQuery.getMaxClauseCount() still finds matches.
+         */
+        private void testManyTextFlows(TranslationFinder service) {
+            HProjectIteration version =
+                    projectIterationDAO.getBySlug("same-project", "same-version");
+            assert version != null;
+
+            HDocument queryDoc = new HDocument();
+            queryDoc.setContentType(ContentType.TextPlain);
+            queryDoc.setLocale(version.getDocuments().get("/same/document0")
+                    .getLocale());
+            queryDoc.setProjectIteration(version);
+            queryDoc.setFullPath("/same/document0");
+
+            List<HTextFlow> textFlows = new ArrayList<>();
+            for (int i = 0; i < 1100; i++) {
+                HTextFlow textFlow = new HTextFlow();
+                textFlow.setId(-1000L - i);
+                textFlow.setContents("Source Content");
+                textFlow.setPlural(false);
+                textFlow.setObsolete(false);
+                textFlow.setDocument(queryDoc);
+                textFlow.setResId(i == 1099 ? "same-context" : "context" + i);
+                textFlows.add(textFlow);
+            }
+
+            Map<Long, HTextFlowTarget> contextMatches =
+                    service.searchBestMatchTransMemory(textFlows, LocaleId.DE,
+                            LocaleId.EN_US, true, false, false);
+            assertThat(contextMatches).containsOnlyKeys(-2099L);
+
+            Map<Long, HTextFlowTarget> matches =
+                    service.searchBestMatchTransMemory(textFlows, LocaleId.DE,
+                            LocaleId.EN_US, false, false, false);
+            assertThat(matches).hasSize(textFlows.size());
+        }
+
         /**
          * Makes sure that given two equal results, it will reuse the most recent
          * translation.
@@ -376,6 +447,14 @@ public class TranslationFinderTest {
                             true);
             assertTrue(match.isPresent());
             checkTargetContents(match.get(), "most recent content");
+
+            Map<Long, HTextFlowTarget> bulkMatches =
+                    service.searchBestMatchTransMemory(
+                            Collections.singletonList(textFlow), LocaleId.DE,
+                            hDoc.getSourceLocaleId(), true, true, true);
+            assertThat(bulkMatches).containsKey(textFlow.getId());
+            checkTargetContents(bulkMatches.get(textFlow.getId()),
+                    "most recent content");
         }
 
         private void checkTargetContents(HTextFlowTarget target,
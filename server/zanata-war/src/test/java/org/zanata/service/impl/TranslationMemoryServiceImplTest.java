@@ -5,6 +5,8 @@ import com.google.common.collect.Lists;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.ToString;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.StoredField;
 import org.assertj.core.api.Condition;
 import org.dbunit.operation.DatabaseOperation;
 import org.hibernate.Session;
@@ -20,9 +22,11 @@ import org.junit.experimental.runners.Enclosed;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 import org.mockito.Mock;
+import org.zanata.common.ContentState;
 import org.zanata.common.LocaleId;
 import org.zanata.dao.LocaleDAO;
 import org.zanata.dao.TextFlowDAO;
+import org.zanata.hibernate.search.IndexFieldLabels;
 import org.zanata.jpa.FullText;
 import org.zanata.model.HAccount;
 import org.zanata.model.HLocale;
@@ -33,6 +37,8 @@ import org.zanata.model.HTextFlow;
 import org.zanata.model.HTextFlowTarget;
 import org.zanata.model.TestFixture;
 import org.zanata.model.po.HPotEntryData;
+import org.zanata.model.tm.TransMemoryUnit;
+import org.zanata.service.impl.TranslationMemoryServiceImpl.IndexMatch;
 import org.zanata.test.CdiUnitRunner;
 import org.zanata.test.CdiUnitRunnerWithParameters;
 import org.zanata.test.DBUnitDataSetRunner;
@@ -52,6 +58,7 @@ import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import java.util.Date;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.zanata.test.rule.FunctionalTestRule.reentrant;
@@ -215,6 +222,85 @@ public class TranslationMemoryServiceImplTest {
             executeFindBestTMMatch(textFlow, 100, true);
         }
 
+        @Test
+        public void targetMatchIsReadFromStoredFields() {
+            Document document = new Document();
+            document.add(new StoredField(
+                    IndexFieldLabels.CONTENT_STATE_FIELD, "Approved"));
+            document.add(new StoredField(IndexFieldLabels.CONTENT_FIELDS[0],
+                    "target"));
+            document.add(new StoredField(
+                    IndexFieldLabels.TF_CONTENT_FIELDS[0], "source 0"));
+            document.add(new StoredField(
+                    IndexFieldLabels.TF_CONTENT_FIELDS[1], "source 1"));
+
+            IndexMatch match = IndexMatch.fromProjection(new Object[] { 1.5f,
+                    HTextFlowTarget.class, 60L, document }, LocaleId.EN_US,
+                    LocaleId.DE);
+
+            assertThat(match.getScore()).isEqualTo(1.5f);
+            assertThat(match.getId()).isEqualTo(60L);
+            assertThat(match.isTransUnit()).isFalse();
+            assertThat(match.getState()).isEqualTo(ContentState.Approved);
+            assertThat(match.getSourceContents())
+                    .containsExactly("source 0", "source 1");
+            assertThat(match.getTargetContents()).containsExactly("target");
+        }
+
+        @Test
+        public void transUnitMatchIsReadFromStoredFields() {
+            Document document = new Document();
+            document.add(new StoredField(
+                    IndexFieldLabels.TRANS_UNIT_VARIANT_FIELD + "en-US",
+                    "source"));
+            document.add(new StoredField(
+                    IndexFieldLabels.TRANS_UNIT_VARIANT_FIELD + "de",
+                    "target"));
+
+            IndexMatch match = IndexMatch.fromProjection(new Object[] { 1f,
+                    TransMemoryUnit.class, 5L, document }, LocaleId.EN_US,
+                    LocaleId.DE);
+
+            assertThat(match.isTransUnit()).isTrue();
+            assertThat(match.getSourceContents()).containsExactly("source");
+            assertThat(match.getTargetContents()).containsExactly("target");
+        }
+
+        @Test
+        public void matchWithoutStoredFieldsNeedsEntity() {
+            // as for documents indexed before the contents were stored
+            assertThat(IndexMatch.fromProjection(new Object[] { 1f,
+                    HTextFlowTarget.class, 60L, new Document() },
+                    LocaleId.EN_US, LocaleId.DE)).isNull();
+        }
+
+        @Test
+        @InRequestScope
+        public void targetMatchesInOtherLocalesAreDiscarded() {
+            // target 60 is de, 101 is es, and 999 does not exist
+            List<IndexMatch> matches = Lists.newArrayList(targetMatch(60L),
+                    targetMatch(101L), targetMatch(999L));
+
+            service.discardInvalidTargetMatches(matches, LocaleId.DE);
+
+            assertThat(matches.stream().map(IndexMatch::getId)
+                    .collect(Collectors.toList())).containsExactly(60L);
+            assertThat(matches.get(0).getTextFlowId()).isEqualTo(101L);
+        }
+
+        private IndexMatch targetMatch(Long targetId) {
+            Document document = new Document();
+            document.add(new StoredField(
+                    IndexFieldLabels.CONTENT_STATE_FIELD, "Translated"));
+            document.add(new StoredField(IndexFieldLabels.CONTENT_FIELDS[0],
+                    "target"));
+            document.add(new StoredField(
+                    IndexFieldLabels.TF_CONTENT_FIELDS[0], "source"));
+            return IndexMatch.fromProjection(new Object[] { 1f,
+                    HTextFlowTarget.class, targetId, document },
+                    LocaleId.EN_US, LocaleId.DE);
+        }
+
         private void executeFindBestTMMatch(HTextFlow textFlow, int threshold,
                 boolean hasMatch) {
             Optional<TransMemoryResultItem> match =
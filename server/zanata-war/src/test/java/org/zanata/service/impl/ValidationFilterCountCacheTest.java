@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.service.impl;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.zanata.common.ContentState;
+import org.zanata.common.LocaleId;
+import org.zanata.events.DocumentLocaleKey;
+import org.zanata.events.DocumentUploadedEvent;
+import org.zanata.events.TextFlowTargetStateEvent;
+import org.zanata.webtrans.shared.model.ValidationId;
+
+import com.google.common.collect.Lists;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ValidationFilterCountCacheTest {
+    private static final LocaleId DE = LocaleId.DE;
+    private static final LocaleId FR = LocaleId.FR;
+    private static final List<ValidationId> VALIDATIONS =
+            Lists.newArrayList(ValidationId.HTML_XML, ValidationId.NEW_LINE);
+
+    private ValidationFilterCountCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new ValidationFilterCountCache();
+    }
+
+    private static TextFlowTargetStateEvent stateEvent(Long documentId,
+            LocaleId localeId) {
+        return new TextFlowTargetStateEvent(
+                new DocumentLocaleKey(documentId, localeId), 1L, null,
+                new TextFlowTargetStateEvent.TextFlowTargetStateChange(1L,
+                        1L, ContentState.Translated, ContentState.New));
+    }
+
+    @Test
+    public void countIsFoundForSameValidationsInAnyOrder() {
+        cache.putCount(1L, DE, VALIDATIONS, 3);
+
+        assertThat(cache.getCount(1L, DE, Lists.reverse(VALIDATIONS)))
+                .isEqualTo(3);
+        assertThat(cache.getCount(1L, DE,
+                Lists.newArrayList(ValidationId.HTML_XML))).isNull();
+        assertThat(cache.getCount(1L, FR, VALIDATIONS)).isNull();
+        assertThat(cache.getCount(2L, DE, VALIDATIONS)).isNull();
+    }
+
+    @Test
+    public void translationChangeDiscardsCountsForItsDocumentAndLocale() {
+        cache.putCount(1L, DE, VALIDATIONS, 3);
+        cache.putCount(1L, FR, VALIDATIONS, 4);
+        cache.putCount(2L, DE, VALIDATIONS, 5);
+
+        cache.textFlowStateUpdated(stateEvent(1L, DE));
+
+        assertThat(cache.getCount(1L, DE, VALIDATIONS)).isNull();
+        assertThat(cache.getCount(1L, FR, VALIDATIONS)).isEqualTo(4);
+        assertThat(cache.getCount(2L, DE, VALIDATIONS)).isEqualTo(5);
+    }
+
+    @Test
+    public void uploadDiscardsCountsForItsDocument() {
+        cache.putCount(1L, DE, VALIDATIONS, 3);
+        cache.putCount(1L, FR, VALIDATIONS, 4);
+        cache.putCount(2L, DE, VALIDATIONS, 5);
+
+        cache.documentUploaded(new DocumentUploadedEvent(1L, 1L, true, DE));
+
+        assertThat(cache.getCount(1L, DE, VALIDATIONS)).isNull();
+        assertThat(cache.getCount(1L, FR, VALIDATIONS)).isNull();
+        assertThat(cache.getCount(2L, DE, VALIDATIONS)).isEqualTo(5);
+    }
+}
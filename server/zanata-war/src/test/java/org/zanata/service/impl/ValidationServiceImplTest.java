@@ -0,0 +1,193 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.enterprise.inject.Produces;
+import javax.inject.Inject;
+
+import org.jglue.cdiunit.InRequestScope;
+import org.jglue.cdiunit.deltaspike.SupportDeltaspikeCore;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.zanata.common.LocaleId;
+import org.zanata.dao.DocumentDAO;
+import org.zanata.dao.ProjectDAO;
+import org.zanata.dao.ProjectIterationDAO;
+import org.zanata.dao.TextFlowTargetDAO;
+import org.zanata.model.HLocale;
+import org.zanata.model.HTextFlow;
+import org.zanata.model.HTextFlowTarget;
+import org.zanata.service.TranslationStateCache;
+import org.zanata.test.CdiUnitRunner;
+import org.zanata.webtrans.shared.model.ValidationId;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+@RunWith(CdiUnitRunner.class)
+@SupportDeltaspikeCore
+public class ValidationServiceImplTest {
+    private static final Long DOC_ID = 1L;
+    private static final LocaleId LOCALE = LocaleId.DE;
+    // must match ValidationServiceImpl.FILTER_CHUNK_SIZE
+    private static final int CHUNK_SIZE = 200;
+    private static final List<ValidationId> VALIDATIONS =
+            ImmutableList.of(ValidationId.NEW_LINE);
+
+    @Inject
+    private ValidationServiceImpl service;
+
+    @Inject
+    private ValidationFilterCountCache validationFilterCountCache;
+
+    @Produces @Mock
+    ProjectDAO projectDAO;
+    @Produces @Mock
+    ProjectIterationDAO projectIterationDAO;
+    @Produces @Mock
+    TextFlowTargetDAO textFlowTargetDAO;
+    @Produces @Mock
+    DocumentDAO documentDAO;
+    @Produces @Mock
+    TranslationStateCache translationStateCacheImpl;
+
+    private final List<HTextFlowTarget> targets = Lists.newArrayList();
+
+    @Before
+    public void setUp() {
+        // nothing has been validated before
+        when(translationStateCacheImpl.getCachedTargetValidation(anyLong(),
+                any(ValidationId.class))).thenReturn(null);
+        when(textFlowTargetDAO.getTargetsByDocumentPosition(eq(DOC_ID),
+                eq(LOCALE), anyInt(), anyInt())).thenAnswer(invocation -> {
+                    int fromPos = (Integer) invocation.getArguments()[2];
+                    int maxResults = (Integer) invocation.getArguments()[3];
+                    return targets.stream()
+                            .filter(target -> target.getTextFlow()
+                                    .getPos() >= fromPos)
+                            .limit(maxResults)
+                            .collect(Collectors.toList());
+                });
+    }
+
+    /**
+     * Adds targets at the next positions of the document, which have a
+     * newline warning if hasWarning is true.
+     */
+    private void addTargets(int count, boolean hasWarning) {
+        HLocale locale = new HLocale(LOCALE);
+        for (int i = 0; i < count; i++) {
+            int pos = targets.size();
+            HTextFlow textFlow = mock(HTextFlow.class);
+            when(textFlow.getId()).thenReturn((long) pos);
+            when(textFlow.getPos()).thenReturn(pos);
+            when(textFlow.getContents())
+                    .thenReturn(ImmutableList.of("source\n"));
+            HTextFlowTarget target = new HTextFlowTarget(textFlow, locale);
+            target.setId((long) pos);
+            target.setContents(hasWarning ? "target" : "target\n");
+            targets.add(target);
+        }
+    }
+
+    private List<Long> filter(int startIndex, int maxSize) {
+        return service.filterHasWarningOrErrorTextFlow(DOC_ID, VALIDATIONS,
+                LOCALE, startIndex, maxSize).stream().map(HTextFlow::getId)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    @InRequestScope
+    public void filterStopsOnceThePageIsFull() {
+        addTargets(CHUNK_SIZE * 3, true);
+
+        assertThat(filter(0, 10)).containsExactly(0L, 1L, 2L, 3L, 4L, 5L,
+                6L, 7L, 8L, 9L);
+
+        verify(textFlowTargetDAO).getTargetsByDocumentPosition(DOC_ID,
+                LOCALE, 0, CHUNK_SIZE);
+        verify(textFlowTargetDAO, never()).getTargetsByDocumentPosition(
+                DOC_ID, LOCALE, CHUNK_SIZE, CHUNK_SIZE);
+    }
+
+    @Test
+    @InRequestScope
+    public void filterContinuesWithTheNextChunk() {
+        addTargets(CHUNK_SIZE + 5, false);
+        addTargets(3, true);
+        addTargets(CHUNK_SIZE * 2, true);
+
+        List<Long> matches = filter(2, 2);
+
+        assertThat(matches).containsExactly(CHUNK_SIZE + 7L, CHUNK_SIZE + 8L);
+        verify(textFlowTargetDAO).getTargetsByDocumentPosition(DOC_ID,
+                LOCALE, CHUNK_SIZE, CHUNK_SIZE);
+        verify(textFlowTargetDAO, never()).getTargetsByDocumentPosition(
+                DOC_ID, LOCALE, CHUNK_SIZE * 2, CHUNK_SIZE);
+    }
+
+    @Test
+    @InRequestScope
+    public void filterCountsMatchesWhenItReachesTheEnd() {
+        addTargets(2, true);
+        addTargets(CHUNK_SIZE, false);
+
+        assertThat(filter(0, 10)).containsExactly(0L, 1L);
+
+        assertThat(validationFilterCountCache.getCount(DOC_ID, LOCALE,
+                VALIDATIONS)).isEqualTo(2);
+    }
+
+    @Test
+    @InRequestScope
+    public void staleCountDoesNotLimitTheFilter() {
+        addTargets(3, true);
+        validationFilterCountCache.putCount(DOC_ID, LOCALE, VALIDATIONS, 1);
+
+        assertThat(filter(0, 10)).containsExactly(0L, 1L, 2L);
+    }
+
+    @Test
+    @InRequestScope
+    public void documentValidationUsesKnownCount() {
+        validationFilterCountCache.putCount(DOC_ID, LOCALE, VALIDATIONS, 2);
+
+        assertThat(service.runDocValidations(DOC_ID, VALIDATIONS, LOCALE))
+                .isTrue();
+        verify(documentDAO, never()).findById(anyLong(), anyBoolean());
+    }
+}
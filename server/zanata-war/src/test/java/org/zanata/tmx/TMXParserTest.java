@@ -21,6 +21,7 @@
 package org.zanata.tmx;
 
 import com.google.common.collect.Sets;
+import nu.xom.Builder;
 import nu.xom.Element;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.Predicate;
@@ -58,6 +59,7 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.persistence.EntityManager;
 import javax.transaction.UserTransaction;
+import javax.xml.XMLConstants;
 import java.io.InputStream;
 import java.util.Calendar;
 import java.util.Collection;
@@ -68,6 +70,7 @@ import java.util.Set;
 import java.util.TimeZone;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.hasEntry;
@@ -316,6 +319,38 @@ public class TMXParserTest {
         assertThat(tuv0Children.get(1).getValue(), is("Custom note on tuv"));
     }
 
+    @Test
+    @InRequestScope
+    public void parseTMXWithInlineMarkup() throws Exception {
+        TransMemory tm =
+                createTMFromFile("/tmx/valid-tm-with-inline-markup.tmx");
+
+        tm = getEm().find(TransMemory.class, tm.getId());
+        TransMemoryUnit tu =
+                findInCollection(tm.getTranslationUnits(), "doc0:resId0");
+
+        List<Element> tuChildren = TMXMetadataHelper.getChildren(tu);
+        assertThat(tuChildren.size(), is(1));
+        assertThat(tuChildren.get(0).getLocalName(), is("note"));
+        assertThat(tuChildren.get(0).getValue(), is("Tom & Jerry"));
+        assertThat(tuChildren.get(0).getAttributeValue("lang",
+                XMLConstants.XML_NS_URI), is("en"));
+
+        TransMemoryUnitVariant tuv = tu.getTransUnitVariants().get("en");
+        Element seg = new Builder().build(tuv.getTaggedSegment(), null)
+                .getRootElement();
+        assertThat(seg.getLocalName(), is("seg"));
+        assertThat(seg.getValue(), is("Click <b>here</b> & wait"));
+        assertThat(seg.getChildElements().size(), is(2));
+        Element bpt = seg.getChildElements().get(0);
+        assertThat(bpt.getLocalName(), is("bpt"));
+        assertThat(bpt.getAttributeValue("i"), is("1"));
+        assertThat(bpt.getAttributeValue("x"), is("1"));
+        assertThat(seg.getChildElements().get(1).getLocalName(), is("ept"));
+        assertThat(tu.getTransUnitVariants().get("fr").getTaggedSegment(),
+                containsString("Cliquez"));
+    }
+
     @Test(expected = TMXParseException.class)
     @InRequestScope
     public void invalidTMXNoContents() throws Exception {
@@ -347,6 +382,39 @@ public class TMXParserTest {
         assertThat(tm.getTranslationUnits().size(), is(4));
     }
 
+    @Test
+    @InRequestScope
+    public void parseTMXInSeveralBatches() throws Exception {
+        parser.setBatchSize(3);
+        TransMemory tm = createTMFromFile("/tmx/default-valid-tm.tmx");
+
+        tm = getEm().find(TransMemory.class, tm.getId());
+        assertThat(tm.getTranslationUnits().size(), is(4));
+        assertThat(tm.getSourceLanguage(), equalTo("en"));
+        for (TransMemoryUnit tu : tm.getTranslationUnits()) {
+            assertThat(tu.getTransUnitVariants().size(), greaterThan(0));
+        }
+
+        // Second load (should merge with the units of the first load)
+        populateTMFromFile(tm, "/tmx/default-valid-tm.tmx");
+
+        tm = getEm().find(TransMemory.class, tm.getId());
+        assertThat(tm.getTranslationUnits().size(), is(4));
+    }
+
+    @Test
+    @InRequestScope
+    public void lastDuplicateTUWins() throws Exception {
+        TransMemory tm =
+                createTMFromFile("/tmx/valid-tm-with-duplicate-tuids.tmx");
+
+        tm = getEm().find(TransMemory.class, tm.getId());
+        assertThat(tm.getTranslationUnits().size(), is(2));
+        TransMemoryUnit tu = findInCollection(tm.getTranslationUnits(), "1");
+        assertThat(tu.getTransUnitVariants().keySet(),
+                equalTo((Set<String>) Sets.newHashSet("en", "fr")));
+    }
+
     @Test
     @InRequestScope
     public void mergeComplementaryTM() throws Exception {
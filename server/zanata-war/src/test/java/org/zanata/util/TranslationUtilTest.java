@@ -116,6 +116,13 @@ public class TranslationUtilTest {
         assertThat(to.getCopiedEntityType()).isEqualTo(entityType);
     }
 
+    @Test
+    public void copyVersionMessagePrefix() {
+        assertThat(TranslationUtil.getCopyVersionMessagePrefix("Project",
+            "master")).isEqualTo("Copy version: translation copied from "
+            + "project 'Project', version 'master', document '");
+    }
+
     public HTextFlowTarget generateTarget(Long id, Long entityId) {
         HTextFlowTarget target = new HTextFlowTarget();
         target.setCopiedEntityId(entityId);
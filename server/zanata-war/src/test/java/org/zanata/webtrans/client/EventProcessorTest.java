@@ -9,11 +9,16 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.zanata.common.ProjectType;
 import org.zanata.model.TestFixture;
+import org.zanata.webtrans.client.events.TransUnitUpdatedEvent;
 import org.zanata.webtrans.client.events.WorkspaceContextUpdateEvent;
+import org.zanata.webtrans.shared.auth.EditorClientId;
 import org.zanata.webtrans.shared.model.UserWorkspaceContext;
 import org.zanata.webtrans.shared.rpc.SessionEventData;
+import org.zanata.webtrans.shared.rpc.TransUnitUpdated;
+import org.zanata.webtrans.shared.rpc.TransUnitUpdatedBatch;
 import org.zanata.webtrans.shared.rpc.WorkspaceContextUpdate;
 import com.allen_sauer.gwt.log.client.Log;
+import com.google.common.collect.Lists;
 import com.google.gwt.user.client.rpc.AsyncCallback;
 
 import de.novanic.eventservice.client.config.EventServiceConfigurationTransferable;
@@ -22,9 +27,12 @@ import de.novanic.eventservice.client.event.RemoteEventService;
 import de.novanic.eventservice.client.event.domain.Domain;
 import net.customware.gwt.presenter.client.EventBus;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
@@ -48,6 +56,10 @@ public class EventProcessorTest {
     private ArgumentCaptor<AsyncCallback<Void>> callbackCaptor;
     @Mock
     private EventServiceConfigurationTransferable configuration;
+    @Mock
+    private WebSocketEventChannel webSocketEventChannel;
+    @Captor
+    private ArgumentCaptor<WebSocketEventChannel.Listener> listenerCaptor;
 
     @Before
     public void beforeMethod() {
@@ -55,7 +67,7 @@ public class EventProcessorTest {
         userWorkspaceContext = TestFixture.userWorkspaceContext();
         EventProcessor processor =
                 new EventProcessor(eventBus, userWorkspaceContext,
-                        remoteEventService);
+                        remoteEventService, webSocketEventChannel);
         eventProcessor = spy(processor);
         when(eventProcessor.eventServiceConfiguration()).thenReturn(
                 configuration);
@@ -88,6 +100,46 @@ public class EventProcessorTest {
         Log.setCurrentLogLevel(currentLogLevel);
     }
 
+    @Test
+    public void startWithWebSocket() {
+        when(webSocketEventChannel.isSupported()).thenReturn(true);
+
+        eventProcessor.start(startCallback);
+
+        verify(webSocketEventChannel).open(listenerCaptor.capture());
+        WebSocketEventChannel.Listener listener = listenerCaptor.getValue();
+        listener.onConnected("ws-1");
+        verify(startCallback).onSuccess("ws-1");
+        verify(remoteEventService, never()).addListener(any(Domain.class),
+                eq(eventProcessor), any(AsyncCallback.class));
+
+        listener.onEvent(new WorkspaceContextUpdate(true, ProjectType.Gettext,
+                null));
+        verify(eventBus).fireEvent(any(WorkspaceContextUpdateEvent.class));
+
+        // connection lost: events now come through long polling
+        listener.onClosed();
+        verify(remoteEventService).addListener(any(Domain.class),
+                eq(eventProcessor), callbackCaptor.capture());
+        callbackCaptor.getValue().onSuccess(null);
+        verify(startCallback).onSuccess(any(String.class));
+    }
+
+    @Test
+    public void startFallsBackToLongPollingIfWebSocketFails() {
+        when(webSocketEventChannel.isSupported()).thenReturn(true);
+        when(configuration.getConnectionId()).thenReturn("connectionId");
+
+        eventProcessor.start(startCallback);
+
+        verify(webSocketEventChannel).open(listenerCaptor.capture());
+        listenerCaptor.getValue().onClosed();
+        verify(remoteEventService).addListener(any(Domain.class),
+                eq(eventProcessor), callbackCaptor.capture());
+        callbackCaptor.getValue().onSuccess(null);
+        verify(startCallback).onSuccess("connectionId");
+    }
+
     @Test
     public void callApplyWithNotSessionEvent() throws Exception {
         Event notSessionEvent = mock(Event.class);
@@ -117,4 +169,25 @@ public class EventProcessorTest {
 
         verifyZeroInteractions(eventBus);
     }
+
+    @Test
+    public void applyWithBatchFiresEventForEachUpdate() {
+        TransUnitUpdated first =
+                new TransUnitUpdated(null, new EditorClientId("a", 1),
+                        TransUnitUpdated.UpdateType.WebEditorSave);
+        TransUnitUpdated second =
+                new TransUnitUpdated(null, new EditorClientId("b", 1),
+                        TransUnitUpdated.UpdateType.NonEditorSave);
+        ArgumentCaptor<TransUnitUpdatedEvent> eventCaptor =
+                ArgumentCaptor.forClass(TransUnitUpdatedEvent.class);
+
+        eventProcessor.apply(new TransUnitUpdatedBatch(Lists.newArrayList(
+                first, second)));
+
+        verify(eventBus, times(2)).fireEvent(eventCaptor.capture());
+        assertThat(eventCaptor.getAllValues().get(0).getEditorClientId(),
+                Matchers.equalTo(first.getEditorClientId()));
+        assertThat(eventCaptor.getAllValues().get(1).getUpdateType(),
+                Matchers.equalTo(TransUnitUpdated.UpdateType.NonEditorSave));
+    }
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.webtrans.server;
+
+import java.util.List;
+
+import javax.websocket.CloseReason;
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.zanata.webtrans.shared.auth.EditorClientId;
+
+import com.google.gwt.user.server.rpc.RPC;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class EditorEventSocketTest {
+    @Mock
+    private Session session;
+    @Mock
+    private RemoteEndpoint.Async remote;
+    @Captor
+    private ArgumentCaptor<String> messageCaptor;
+    @Captor
+    private ArgumentCaptor<SendHandler> handlerCaptor;
+
+    private EditorEventSocket socket;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(session.getAsyncRemote()).thenReturn(remote);
+        when(session.getId()).thenReturn("1");
+        socket = new EditorEventSocket(session,
+                new EditorClientId("session", 1),
+                RPC.getDefaultSerializationPolicy(), 2);
+    }
+
+    @Test
+    public void sendsOneMessageAtATime() {
+        socket.sendConnected();
+        socket.sendEvent("first");
+        socket.sendEvent("second");
+
+        verify(remote).sendText(messageCaptor.capture(),
+                handlerCaptor.capture());
+        assertThat(messageCaptor.getValue()).isEqualTo("c:ws-1");
+        assertThat(socket.getQueuedCount()).isEqualTo(2);
+
+        handlerCaptor.getValue().onResult(new SendResult());
+        handlerCaptor.getValue().onResult(new SendResult());
+
+        verify(remote, times(3)).sendText(messageCaptor.capture(),
+                any(SendHandler.class));
+        List<String> sent = messageCaptor.getAllValues();
+        assertThat(sent.subList(sent.size() - 2, sent.size()))
+                .containsExactly("e:first", "e:second");
+        assertThat(socket.getQueuedCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void disconnectsClientWhichFallsBehind() throws Exception {
+        socket.sendConnected();
+        socket.sendEvent("first");
+        socket.sendEvent("second");
+        socket.sendEvent("third");
+
+        verify(session).close(any(CloseReason.class));
+        assertThat(socket.getQueuedCount()).isEqualTo(0);
+
+        socket.sendEvent("fourth");
+        verify(remote).sendText(anyString(), any(SendHandler.class));
+    }
+
+    @Test
+    public void disconnectsClientAfterSendFailure() throws Exception {
+        socket.sendEvent("first");
+        socket.sendEvent("second");
+        verify(remote).sendText(anyString(), handlerCaptor.capture());
+
+        handlerCaptor.getValue().onResult(
+                new SendResult(new RuntimeException("gone")));
+
+        verify(session).close(any(CloseReason.class));
+        verify(remote, never()).sendText(
+                eq("e:second"), any(SendHandler.class));
+    }
+}
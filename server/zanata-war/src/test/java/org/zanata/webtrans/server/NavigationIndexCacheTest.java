@@ -0,0 +1,142 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.webtrans.server;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.zanata.common.ContentState;
+import org.zanata.model.TestFixture;
+import org.zanata.search.FilterConstraints;
+import org.zanata.webtrans.shared.model.DocumentId;
+import org.zanata.webtrans.shared.model.TransUnitId;
+import org.zanata.webtrans.shared.model.TransUnitUpdateInfo;
+import org.zanata.webtrans.shared.rpc.GetTransUnitsNavigationResult;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NavigationIndexCacheTest {
+    private static final Long DOC_ID = 1L;
+
+    private NavigationIndexCache cache;
+    private AtomicInteger loads;
+    private Callable<NavigationIndex> loader;
+
+    @Before
+    public void setUp() {
+        cache = new NavigationIndexCache();
+        loads = new AtomicInteger();
+        loader = () -> {
+            loads.incrementAndGet();
+            return new NavigationIndex(new long[] { 1, 2, 3 },
+                    new ContentState[] { ContentState.New,
+                            ContentState.NeedReview,
+                            ContentState.Translated });
+        };
+    }
+
+    private static FilterConstraints noFilter() {
+        return FilterConstraints.builder().keepAll().build();
+    }
+
+    private static FilterConstraints untranslatedFilter() {
+        return FilterConstraints.builder().keepAll().excludeTranslated()
+                .excludeApproved().build();
+    }
+
+    private static TransUnitUpdateInfo updateInfo(Long documentId, long id,
+            ContentState state) {
+        return new TransUnitUpdateInfo(true, true,
+                new DocumentId(documentId, "doc"),
+                TestFixture.makeTransUnit(id, state), 1, 0, ContentState.New);
+    }
+
+    @Test
+    public void indexIsSharedForEqualFilters() {
+        NavigationIndex first = cache.get(DOC_ID, noFilter(), loader);
+        NavigationIndex second = cache.get(DOC_ID, noFilter(), loader);
+        cache.get(DOC_ID, untranslatedFilter(), loader);
+        cache.get(2L, noFilter(), loader);
+
+        assertThat(second).isSameAs(first);
+        assertThat(loads.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void stateIsUpdatedInPlaceWhenFilterIgnoresTarget() {
+        cache.get(DOC_ID, noFilter(), loader);
+
+        cache.transUnitUpdated(updateInfo(DOC_ID, 2, ContentState.Approved));
+        GetTransUnitsNavigationResult result =
+                cache.get(DOC_ID, noFilter(), loader).toResult();
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(result.getIdIndexList()).containsExactly(
+                new TransUnitId(1), new TransUnitId(2), new TransUnitId(3));
+        assertThat(result.getTransIdStateList().get(new TransUnitId(2)))
+                .isEqualTo(ContentState.Approved);
+    }
+
+    @Test
+    public void indexIsRebuiltWhenFilterDependsOnTarget() {
+        cache.get(DOC_ID, untranslatedFilter(), loader);
+
+        cache.transUnitUpdated(updateInfo(DOC_ID, 2, ContentState.Approved));
+        cache.get(DOC_ID, untranslatedFilter(), loader);
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void otherDocumentsAreNotAffected() {
+        cache.get(DOC_ID, untranslatedFilter(), loader);
+
+        cache.transUnitUpdated(updateInfo(2L, 2, ContentState.Approved));
+        cache.documentChanged(3L);
+        cache.get(DOC_ID, untranslatedFilter(), loader);
+
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void documentChangeDiscardsIndexes() {
+        cache.get(DOC_ID, noFilter(), loader);
+
+        cache.documentChanged(DOC_ID);
+        cache.get(DOC_ID, noFilter(), loader);
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void indexBuiltDuringUpdateIsNotCached() {
+        cache.get(DOC_ID, noFilter(), () -> {
+            cache.transUnitUpdated(
+                    updateInfo(DOC_ID, 2, ContentState.Approved));
+            return loader.call();
+        });
+        cache.get(DOC_ID, noFilter(), loader);
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+}
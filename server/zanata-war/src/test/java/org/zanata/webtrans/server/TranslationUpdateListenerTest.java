@@ -0,0 +1,160 @@
+/*
+ * Copyright 2016, Red Hat, Inc. and individual contributors as indicated by the
+ * @author tags. See the copyright.txt file in the distribution for a full
+ * listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this software; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA, or see the FSF
+ * site: http://www.fsf.org.
+ */
+package org.zanata.webtrans.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import javax.enterprise.event.Event;
+
+import org.hibernate.Query;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.ActionQueue;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.zanata.common.ContentState;
+import org.zanata.common.LocaleId;
+import org.zanata.events.TextFlowTargetUpdatedEvent;
+import org.zanata.model.HLocale;
+import org.zanata.model.HTextFlow;
+import org.zanata.model.HTextFlowTarget;
+import org.zanata.model.TestFixture;
+import org.zanata.util.IServiceLocator;
+import org.zanata.webtrans.server.rpc.TransUnitTransformer;
+import org.zanata.webtrans.shared.model.TransUnitUpdateInfo;
+import org.zanata.webtrans.shared.model.WorkspaceId;
+
+import com.google.common.base.Optional;
+
+public class TranslationUpdateListenerTest {
+    @InjectMocks
+    private TranslationUpdateListener listener;
+    @Mock
+    private TranslationWorkspaceManager translationWorkspaceManager;
+    @Mock
+    private IServiceLocator serviceLocator;
+    @Mock
+    private Event<TextFlowTargetUpdatedEvent> textFlowTargetUpdatedEvent;
+    @Mock
+    private TranslationWorkspace workspace;
+    @Mock
+    private TransUnitTransformer transUnitTransformer;
+    @Mock
+    private EventSource session;
+    @Mock
+    private ActionQueue actionQueue;
+    @Mock
+    private Query commentCountQuery;
+
+    private HTextFlowTarget target;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        HLocale locale = TestFixture.setId(2L, new HLocale(LocaleId.DE));
+        HTextFlow textFlow =
+                TestFixture.makeHTextFlow(1L, locale, ContentState.Translated);
+        TestFixture.setId(1L, textFlow.getDocument());
+        target = textFlow.getTargets().get(locale.getId());
+        target.setLocale(locale);
+        TestFixture.setId(3L, target);
+
+        when(session.getActionQueue()).thenReturn(actionQueue);
+        when(session.createQuery(anyString())).thenReturn(commentCountQuery);
+        when(commentCountQuery.list()).thenReturn(
+                Collections.singletonList(new Object[] { 3L, 2L }));
+        when(serviceLocator.getInstance(TransUnitTransformer.class))
+                .thenReturn(transUnitTransformer);
+        when(translationWorkspaceManager.tryGetWorkspace(
+                any(WorkspaceId.class))).thenReturn(Optional.of(workspace));
+        when(transUnitTransformer.transform(textFlow, target, 2, locale))
+                .thenReturn(TestFixture.makeTransUnit(1L));
+    }
+
+    private PostUpdateEvent updateEvent(ContentState oldState) {
+        return new PostUpdateEvent(target, target.getId(), new Object[0],
+                new Object[] { oldState }, new int[0], null, session);
+    }
+
+    private void completeTransaction(boolean success) {
+        ArgumentCaptor<BeforeTransactionCompletionProcess> before =
+                ArgumentCaptor
+                        .forClass(BeforeTransactionCompletionProcess.class);
+        ArgumentCaptor<AfterTransactionCompletionProcess> after =
+                ArgumentCaptor.forClass(AfterTransactionCompletionProcess.class);
+        verify(actionQueue).registerProcess(before.capture());
+        verify(actionQueue).registerProcess(after.capture());
+        before.getValue().doBeforeTransactionCompletion(session);
+        after.getValue().doAfterTransactionCompletion(success, session);
+    }
+
+    @Test
+    public void publishesTargetChangedTwiceOnceAfterCommit() {
+        target.setVersionNum(3);
+        listener.onPostUpdate(updateEvent(ContentState.NeedReview));
+        target.setVersionNum(4);
+        target.setState(ContentState.Approved);
+        listener.onPostUpdate(updateEvent(ContentState.Translated));
+
+        completeTransaction(true);
+
+        ArgumentCaptor<TextFlowTargetUpdatedEvent> fired =
+                ArgumentCaptor.forClass(TextFlowTargetUpdatedEvent.class);
+        verify(textFlowTargetUpdatedEvent).fire(fired.capture());
+        assertThat(fired.getValue().getWorkspace()).isSameAs(workspace);
+        assertThat(fired.getValue().getTransUnitUpdates()).containsOnlyKeys(3L);
+        TransUnitUpdateInfo updateInfo = fired.getValue().getTransUnitUpdates()
+                .get(3L).getUpdateInfo();
+        assertThat(updateInfo.getPreviousVersionNum()).isEqualTo(2);
+        assertThat(updateInfo.getPreviousState())
+                .isEqualTo(ContentState.NeedReview);
+        // review comments are counted once for the whole transaction
+        verify(session).createQuery(anyString());
+        verify(commentCountQuery).setParameterList(anyString(),
+                anyCollection());
+    }
+
+    @Test
+    public void publishesNothingWhenTransactionRollsBack() {
+        listener.onPostInsert(new PostInsertEvent(target, target.getId(),
+                new Object[0], null, session));
+
+        completeTransaction(false);
+
+        verifyZeroInteractions(textFlowTargetUpdatedEvent);
+    }
+}